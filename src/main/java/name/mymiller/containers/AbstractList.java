@@ -1,8 +1,16 @@
 package name.mymiller.containers;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
+ * Serialized as the length followed by the elements in order, rather than as a
+ * chain of nodes, so long lists do not recurse once per node and carry no per
+ * node overhead.
+ *
  * @param <E> Object type for this list.
  * @author jmiller Abstract list class for List Container
  */
@@ -10,19 +18,19 @@ public abstract class AbstractList<E> implements Container<E>, Serializable {
     /**
      *
      */
-    private static final long serialVersionUID = 2389678681216763471L;
+    private static final long serialVersionUID = 2389678681216763472L;
     /**
      * Pointer to Head of linked list
      */
-    private Node head = null;
+    private transient Node head = null;
     /**
      * Pointer to Tail of Linked List
      */
-    private Node tail = null;
+    private transient Node tail = null;
     /**
      * Length of Linked List
      */
-    private int length = 0;
+    private transient int length = 0;
 
     /**
      * Add the value to the Container.
@@ -37,7 +45,7 @@ public abstract class AbstractList<E> implements Container<E>, Serializable {
             this.setHead(node);
             this.setTail(node);
         } else {
-            final Node node = new Node(value, this.getTail(), null);
+            final Node node = new Node(value, null, this.getTail());
             this.getTail().setNext(node);
             this.setTail(node);
         }
@@ -131,7 +139,7 @@ public abstract class AbstractList<E> implements Container<E>, Serializable {
 
     @Override
     public boolean isEmpty() {
-        return (this.getLength() > 0);
+        return this.getLength() == 0;
     }
 
     /**
@@ -141,48 +149,71 @@ public abstract class AbstractList<E> implements Container<E>, Serializable {
      * @return boolean True if the list contains the value
      */
     protected boolean remove(final E element) {
-        boolean removed = false;
-        Node current = null;
-        if (this.getLength() == 0) {
-            return false;
-        } else if ((this.getHead().getValue() == element) && (this.getTail().getValue() == element)) {
-            this.setHead(null);
-            this.setTail(null);
-            removed = true;
-        } else if (this.getHead().getValue() == element) {
-            current = this.getHead();
-            this.setHead(current.getNext());
-            current.setNext(null);
-            if (this.getHead() != null) {
-                this.getHead().setPrevious(null);
-            }
-            removed = true;
-        } else if (this.getTail().getValue() == element) {
-            current = this.getTail();
-            this.setTail(current.getPrevious());
-            current.setPrevious(null);
-            if (this.getTail() != null) {
-                this.getTail().setNext(null);
+        Node current = this.getHead();
+        while (current != null) {
+            if (current.getValue() == element) {
+                this.unlink(current);
+                return true;
             }
-            removed = true;
+            current = current.getNext();
+        }
+        return false;
+    }
+
+    /**
+     * Remove a node from the list in constant time.
+     *
+     * @param node Node of this list to remove
+     * @return Value of the node removed
+     */
+    protected E unlink(final Node node) {
+        final Node previous = node.getPrevious();
+        final Node next = node.getNext();
+        if (previous == null) {
+            this.setHead(next);
         } else {
-            current = this.getHead();
-            while (current != null) {
-                if (current.getValue() == element) {
-                    current.getPrevious().setNext(current.getNext());
-                    current.getNext().setPrevious(current.getPrevious());
-                    removed = true;
-                    break;
-                }
-                final Node node = current.getNext();
-                current.clear();
-                current = node;
-            }
+            previous.setNext(next);
+        }
+        if (next == null) {
+            this.setTail(previous);
+        } else {
+            next.setPrevious(previous);
+        }
+        this.setLength(this.getLength() - 1);
+        return node.clear();
+    }
+
+    /**
+     * Write the length and then the elements from head to tail.
+     *
+     * @param out Stream to write to
+     * @throws IOException if the stream could not be written.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.getLength());
+        for (Node current = this.getHead(); current != null; current = current.getNext()) {
+            out.writeObject(current.getValue());
+        }
+    }
+
+    /**
+     * Read the length and then the elements, relinking the nodes.
+     *
+     * @param in Stream to read from
+     * @throws IOException            if the stream could not be read.
+     * @throws ClassNotFoundException if the class of an element is not found.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new InvalidObjectException("Illegal length: " + count);
         }
-        if (removed) {
-            this.setLength(this.getLength() - 1);
+        for (int index = 0; index < count; index++) {
+            this.add((E) in.readObject());
         }
-        return removed;
     }
 
     @Override
@@ -0,0 +1,343 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Double ended queue backed by a ring buffer. Inserting and removing at either
+ * end is constant time and allocates nothing until the buffer is full, when it
+ * doubles. Elements sit next to each other in one array, so walking the deque
+ * is cache friendly, unlike the nodes of LinkedList.
+ * <p>
+ * Unlike LinkedList, contains compares elements with equals. The deque is not
+ * safe for concurrent use. It is serialized as the length followed by the
+ * elements from head to tail, without the unused slots of the buffer.
+ *
+ * @param <E> Element type for this deque
+ * @author jmiller
+ */
+public class ArrayDeque<E> implements Container<E>, Iterable<E>, Serializable {
+    /**
+     *
+     */
+    private static final long serialVersionUID = -3217945218640524751L;
+    /**
+     * Default capacity of the buffer
+     */
+    private static final int defaultCapacity = 16;
+    /**
+     * Largest capacity of the buffer
+     */
+    private static final int maximumCapacity = 1 << 30;
+
+    /**
+     * Ring buffer of elements, its length a power of two
+     */
+    private transient Object[] elements;
+    /**
+     * Index of the head element
+     */
+    private transient int head;
+    /**
+     * Number of elements
+     */
+    private transient int length;
+    /**
+     * Number of structural changes, to detect changes during iteration
+     */
+    private transient int modifications;
+
+    /**
+     * Create a deque with the default capacity.
+     */
+    public ArrayDeque() {
+        this(ArrayDeque.defaultCapacity);
+    }
+
+    /**
+     * Create a deque.
+     *
+     * @param capacity Number of elements to hold before growing
+     */
+    public ArrayDeque(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.elements = new Object[ArrayDeque.capacityFor(capacity)];
+    }
+
+    /**
+     * @param capacity Number of elements requested
+     * @return Power of two capacity holding them
+     */
+    static int capacityFor(final int capacity) {
+        if (capacity >= ArrayDeque.maximumCapacity) {
+            return ArrayDeque.maximumCapacity;
+        }
+        return Math.max(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1, 2);
+    }
+
+    /**
+     * Insert an element at the head of the deque.
+     *
+     * @param value Value to insert
+     * @return boolean indicating success
+     */
+    public boolean insertHead(final E value) {
+        this.ensureCapacity(this.length + 1);
+        this.head = (this.head - 1) & (this.elements.length - 1);
+        this.elements[this.head] = value;
+        this.length++;
+        this.modifications++;
+        return true;
+    }
+
+    /**
+     * Insert an element at the tail of the deque.
+     *
+     * @param value Value to insert
+     * @return boolean indicating success
+     */
+    public boolean insertTail(final E value) {
+        this.ensureCapacity(this.length + 1);
+        this.elements[(this.head + this.length) & (this.elements.length - 1)] = value;
+        this.length++;
+        this.modifications++;
+        return true;
+    }
+
+    /**
+     * Insert every element of an array at the tail of the deque, in order.
+     *
+     * @param values Values to insert
+     * @return boolean indicating success
+     */
+    public boolean insertTail(final E[] values) {
+        this.ensureCapacity(this.length + values.length);
+        for (final E value : values) {
+            this.elements[(this.head + this.length++) & (this.elements.length - 1)] = value;
+        }
+        this.modifications++;
+        return true;
+    }
+
+    /**
+     * @return value at the head of the deque, removed, or null if empty.
+     */
+    public E removeHead() {
+        if (this.length == 0) {
+            return null;
+        }
+        final E value = this.element(this.head);
+        this.elements[this.head] = null;
+        this.head = (this.head + 1) & (this.elements.length - 1);
+        this.length--;
+        this.modifications++;
+        return value;
+    }
+
+    /**
+     * @return value at the tail of the deque, removed, or null if empty.
+     */
+    public E removeTail() {
+        if (this.length == 0) {
+            return null;
+        }
+        final int index = (this.head + this.length - 1) & (this.elements.length - 1);
+        final E value = this.element(index);
+        this.elements[index] = null;
+        this.length--;
+        this.modifications++;
+        return value;
+    }
+
+    /**
+     * @return value at the head of the deque, or null if empty.
+     */
+    public E peekHead() {
+        return this.length == 0 ? null : this.element(this.head);
+    }
+
+    /**
+     * @return value at the tail of the deque, or null if empty.
+     */
+    public E peekTail() {
+        return this.length == 0 ? null : this.element((this.head + this.length - 1) & (this.elements.length - 1));
+    }
+
+    /**
+     * Return the element at a position counted from the head.
+     *
+     * @param index Position of the element
+     * @return Element at the position
+     * @throws IndexOutOfBoundsException if the position is not in the deque.
+     */
+    public E get(final int index) {
+        Objects.checkIndex(index, this.length);
+        return this.element((this.head + index) & (this.elements.length - 1));
+    }
+
+    @Override
+    public void clear() {
+        final int mask = this.elements.length - 1;
+        for (int index = 0; index < this.length; index++) {
+            this.elements[(this.head + index) & mask] = null;
+        }
+        this.head = 0;
+        this.length = 0;
+        this.modifications++;
+    }
+
+    @Override
+    public boolean contains(final E element) {
+        final int mask = this.elements.length - 1;
+        for (int index = 0; index < this.length; index++) {
+            if (Objects.equals(this.elements[(this.head + index) & mask], element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    @Override
+    public int size() {
+        return this.length;
+    }
+
+    @Override
+    public E[] toArray(final E[] array) {
+        if (array == null) {
+            throw new NullPointerException();
+        } else if (array.length != this.length) {
+            throw new ArrayStoreException("Length of array should be: " + this.length);
+        }
+        final int first = Math.min(this.length, this.elements.length - this.head);
+        System.arraycopy(this.elements, this.head, array, 0, first);
+        System.arraycopy(this.elements, 0, array, first, this.length - first);
+        return array;
+    }
+
+    /**
+     * Iterate the elements from head to tail.
+     *
+     * @return Iterator of the elements
+     * @throws ConcurrentModificationException from the iterator if the deque
+     *                                         changes while iterating.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private final int expected = ArrayDeque.this.modifications;
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.position < ArrayDeque.this.length;
+            }
+
+            @Override
+            public E next() {
+                if (this.expected != ArrayDeque.this.modifications) {
+                    throw new ConcurrentModificationException();
+                }
+                if (this.position >= ArrayDeque.this.length) {
+                    throw new NoSuchElementException();
+                }
+                return ArrayDeque.this.element((ArrayDeque.this.head + this.position++)
+                        & (ArrayDeque.this.elements.length - 1));
+            }
+        };
+    }
+
+    /**
+     * Write the length and then the elements from head to tail.
+     *
+     * @param out Stream to write to
+     * @throws IOException if the stream could not be written.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.length);
+        final int mask = this.elements.length - 1;
+        for (int index = 0; index < this.length; index++) {
+            out.writeObject(this.elements[(this.head + index) & mask]);
+        }
+    }
+
+    /**
+     * Read the length and then the elements into a buffer sized to hold them.
+     *
+     * @param in Stream to read from
+     * @throws IOException            if the stream could not be read.
+     * @throws ClassNotFoundException if the class of an element is not found.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        if (count < 0 || count > ArrayDeque.maximumCapacity) {
+            throw new InvalidObjectException("Illegal length: " + count);
+        }
+        this.elements = new Object[ArrayDeque.capacityFor(count)];
+        for (int index = 0; index < count; index++) {
+            this.elements[index] = in.readObject();
+        }
+        this.length = count;
+    }
+
+    /**
+     * @param index Index in the buffer
+     * @return Element at the index
+     */
+    @SuppressWarnings("unchecked")
+    private E element(final int index) {
+        return (E) this.elements[index];
+    }
+
+    /**
+     * Grow the buffer by doubling until it holds a number of elements, unwrapping
+     * the ring so the head is at index 0.
+     *
+     * @param capacity Number of elements to hold
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.elements.length) {
+            return;
+        }
+        if (capacity > ArrayDeque.maximumCapacity || capacity < 0) {
+            throw new IllegalStateException("Deque is full");
+        }
+        final Object[] grown = new Object[ArrayDeque.capacityFor(capacity)];
+        final int first = Math.min(this.length, this.elements.length - this.head);
+        System.arraycopy(this.elements, this.head, grown, 0, first);
+        System.arraycopy(this.elements, 0, grown, first, this.length - first);
+        this.elements = grown;
+        this.head = 0;
+    }
+}
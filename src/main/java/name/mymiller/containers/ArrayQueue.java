@@ -0,0 +1,70 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+/**
+ * First in first out queue backed by a ring buffer. Elements are offered at the
+ * tail and polled from the head.
+ *
+ * @param <E> Element type for this queue
+ * @author jmiller
+ */
+public class ArrayQueue<E> extends ArrayDeque<E> {
+    /**
+     *
+     */
+    private static final long serialVersionUID = -1298465537028374612L;
+
+    /**
+     * Create a queue with the default capacity.
+     */
+    public ArrayQueue() {
+        super();
+    }
+
+    /**
+     * Create a queue.
+     *
+     * @param capacity Number of elements to hold before growing
+     */
+    public ArrayQueue(final int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * Add a value at the end of the queue.
+     *
+     * @param value Value to add
+     * @return boolean indicating success
+     */
+    public boolean offer(final E value) {
+        return this.insertTail(value);
+    }
+
+    /**
+     * @return First value in the queue, removed, or null if empty.
+     */
+    public E poll() {
+        return this.removeHead();
+    }
+
+    /**
+     * @return First value in the queue, or null if empty.
+     */
+    public E peek() {
+        return this.peekHead();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+/**
+ * Stack backed by a ring buffer, a drop in for Stack without a node per push.
+ * The top of the stack is the tail of the deque.
+ *
+ * @param <E> Element type for this stack
+ * @author jmiller
+ */
+public class ArrayStack<E> extends ArrayDeque<E> {
+    /**
+     *
+     */
+    private static final long serialVersionUID = 4870391756421906137L;
+
+    /**
+     * Create a stack with the default capacity.
+     */
+    public ArrayStack() {
+        super();
+    }
+
+    /**
+     * Create a stack.
+     *
+     * @param capacity Number of elements to hold before growing
+     */
+    public ArrayStack(final int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * Return the top value in the stack without removing it
+     *
+     * @return Top Value in the stack, or null if empty.
+     */
+    public E peek() {
+        return this.peekTail();
+    }
+
+    /**
+     * @return Top Element in the stack, or null if empty.
+     */
+    public E pop() {
+        return this.removeTail();
+    }
+
+    /**
+     * Push the value onto the stack
+     *
+     * @param value Value to push onto the stack
+     */
+    public void push(final E value) {
+        this.insertTail(value);
+    }
+}
@@ -0,0 +1,1095 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import name.mymiller.task.TaskManager;
+
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Cache bounded by number of entries or total weight, with optional expiry after
+ * write or after access, for fronting expensive lookups.
+ * <p>
+ * Eviction follows W-TinyLFU: new entries enter a small LRU window, and leave it
+ * for the main space only if they have been requested more often than the entry
+ * the main space would evict. Request frequencies are kept in a count-min sketch
+ * which is periodically halved, so the cache adapts as popularity changes. The
+ * main space is a segmented LRU, where entries requested again are protected from
+ * eviction.
+ * <p>
+ * Reads do not block: entries are held in a ConcurrentHashMap, and the policy is
+ * updated only if its lock is free. Writes update the policy under the lock.
+ * Loads of the same key are performed once, other callers wait for the result.
+ * Loaders returning null are not cached.
+ *
+ * @param <K> Type of key
+ * @param <V> Type of value
+ * @author jmiller
+ */
+public class BoundedCache<K, V> {
+    /**
+     * Entry is in the admission window
+     */
+    private static final int WINDOW = 0;
+    /**
+     * Entry is in the probation segment of the main space
+     */
+    private static final int PROBATION = 1;
+    /**
+     * Entry is in the protected segment of the main space
+     */
+    private static final int PROTECTED = 2;
+
+    /**
+     * Entries by key
+     */
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    /**
+     * Loads in progress by key
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    /**
+     * Lock guarding the policy
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /**
+     * Admission window, least recently used first
+     */
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    /**
+     * Probation segment of the main space, least recently used first
+     */
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    /**
+     * Protected segment of the main space, least recently used first
+     */
+    private final AccessOrder<K, V> protect = new AccessOrder<>();
+    /**
+     * Frequency of requests by key
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * Maximum total weight
+     */
+    private final long maximum;
+    /**
+     * Maximum weight of the admission window
+     */
+    private final long windowMaximum;
+    /**
+     * Maximum weight of the protected segment
+     */
+    private final long protectedMaximum;
+    /**
+     * Function weighing entries
+     */
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    /**
+     * Nanoseconds after write an entry expires, 0 if not
+     */
+    private final long expireAfterWriteNanos;
+    /**
+     * Nanoseconds after access an entry expires, 0 if not
+     */
+    private final long expireAfterAccessNanos;
+    /**
+     * Loader used by get(key), or null if none
+     */
+    private final Function<? super K, ? extends V> loader;
+    /**
+     * Executor running asynchronous loads, or null to use the TaskManager pool
+     */
+    private final Executor executor;
+
+    /**
+     * Total weight of the entries, guarded by the lock
+     */
+    private long weight;
+    /**
+     * Writes since expired entries were last removed, guarded by the lock
+     */
+    private long writesSinceCleanUp;
+
+    /**
+     * Number of requests finding a value
+     */
+    private final LongAdder hitCount = new LongAdder();
+    /**
+     * Number of requests not finding a value
+     */
+    private final LongAdder missCount = new LongAdder();
+    /**
+     * Number of loads returning a value
+     */
+    private final LongAdder loadSuccessCount = new LongAdder();
+    /**
+     * Number of loads failing or returning null
+     */
+    private final LongAdder loadFailureCount = new LongAdder();
+    /**
+     * Nanoseconds spent loading
+     */
+    private final LongAdder totalLoadTime = new LongAdder();
+    /**
+     * Number of entries evicted by size or expiry
+     */
+    private final LongAdder evictionCount = new LongAdder();
+    /**
+     * Weight of the entries evicted by size or expiry
+     */
+    private final LongAdder evictionWeight = new LongAdder();
+
+    /**
+     * @param builder Builder holding the configuration
+     * @param loader  Loader used by get(key), or null if none
+     */
+    private BoundedCache(final Builder<K, V> builder, final Function<? super K, ? extends V> loader) {
+        this.maximum = builder.maximum;
+        this.windowMaximum = builder.maximum == Long.MAX_VALUE ? Long.MAX_VALUE : builder.maximum / 100;
+        this.protectedMaximum = (long) ((this.maximum - this.windowMaximum) * 0.8D);
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.executor = builder.executor;
+        this.loader = loader;
+        this.sketch = new FrequencySketch(builder.maximum == Long.MAX_VALUE ? 1 << 16
+                : (int) Math.min(builder.maximum, 1 << 24));
+    }
+
+    /**
+     * @param <K> Type of key
+     * @param <V> Type of value
+     * @return Builder for a new cache
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Return the value cached for a key.
+     *
+     * @param key Key to find
+     * @return Value cached, or null if not cached or expired.
+     */
+    public V getIfPresent(final K key) {
+        final Node<K, V> node = this.data.get(key);
+        if (node == null) {
+            this.missCount.increment();
+            return null;
+        }
+        final long now = System.nanoTime();
+        if (this.isExpired(node, now)) {
+            this.missCount.increment();
+            this.expire(node);
+            return null;
+        }
+        node.accessTime = now;
+        this.hitCount.increment();
+        if (this.evictionLock.tryLock()) {
+            try {
+                this.onAccess(node);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * Return the value cached for a key, loading it with the loader of the cache if
+     * not cached.
+     *
+     * @param key Key to find
+     * @return Value cached or loaded, null if the loader returned null.
+     * @throws IllegalStateException if the cache was built without a loader.
+     */
+    public V get(final K key) {
+        if (this.loader == null) {
+            throw new IllegalStateException("Cache was built without a loader");
+        }
+        return this.get(key, this.loader);
+    }
+
+    /**
+     * Return the value cached for a key, loading it on this thread if not cached.
+     * If another thread is loading the same key, wait for its result.
+     *
+     * @param key    Key to find
+     * @param loader Function loading the value
+     * @return Value cached or loaded, null if the loader returned null.
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        final V cached = this.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return BoundedCache.join(existing);
+        }
+        try {
+            final V value = this.load(key, loader);
+            future.complete(value);
+            return value;
+        } catch (final RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Return the value cached for a key, loading it asynchronously with the loader
+     * of the cache if not cached.
+     *
+     * @param key Key to find
+     * @return Future completed with the value, or null if the loader returned null.
+     * @throws IllegalStateException if the cache was built without a loader.
+     */
+    public CompletableFuture<V> getAsync(final K key) {
+        if (this.loader == null) {
+            throw new IllegalStateException("Cache was built without a loader");
+        }
+        return this.getAsync(key, this.loader);
+    }
+
+    /**
+     * Return the value cached for a key, loading it asynchronously if not cached.
+     * Loads run on the executor of the cache, by default the pool of the
+     * TaskManager.
+     *
+     * @param key    Key to find
+     * @param loader Function loading the value
+     * @return Future completed with the value, or null if the loader returned null.
+     */
+    public CompletableFuture<V> getAsync(final K key, final Function<? super K, ? extends V> loader) {
+        final V cached = this.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            this.getExecutor().execute(() -> {
+                try {
+                    future.complete(this.load(key, loader));
+                } catch (final Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    this.loading.remove(key, future);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            this.loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Cache a value, replacing any value cached for the key.
+     *
+     * @param key   Key of the value
+     * @param value Value to cache
+     */
+    public void put(final K key, final V value) {
+        Objects.requireNonNull(key, "key may not be null");
+        Objects.requireNonNull(value, "value may not be null");
+        final int entryWeight = this.weigher.applyAsInt(key, value);
+        if (entryWeight < 0) {
+            throw new IllegalArgumentException("Weight may not be negative");
+        }
+        final long now = System.nanoTime();
+
+        this.evictionLock.lock();
+        try {
+            this.sketch.increment(key.hashCode());
+            Node<K, V> node = this.data.get(key);
+            if (node == null) {
+                node = new Node<>(key, value, entryWeight, now);
+                this.data.put(key, node);
+                this.window.addLast(node);
+                this.weight += entryWeight;
+            } else {
+                node.value = value;
+                node.writeTime = now;
+                node.accessTime = now;
+                this.weight += entryWeight - node.weight;
+                this.queueOf(node).weight += entryWeight - node.weight;
+                node.weight = entryWeight;
+                this.onAccess(node);
+            }
+            this.evict();
+            if (++this.writesSinceCleanUp > this.data.size()) {
+                this.removeExpired(now);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the value cached for a key.
+     *
+     * @param key Key to remove
+     * @return Value that was cached, or null if none.
+     */
+    public V invalidate(final K key) {
+        this.evictionLock.lock();
+        try {
+            final Node<K, V> node = this.data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            this.unlink(node);
+            return node.value;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove every value.
+     */
+    public void invalidateAll() {
+        this.evictionLock.lock();
+        try {
+            this.data.clear();
+            this.window.clear();
+            this.probation.clear();
+            this.protect.clear();
+            this.weight = 0;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the entries which have expired.
+     */
+    public void cleanUp() {
+        this.evictionLock.lock();
+        try {
+            this.removeExpired(System.nanoTime());
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @param key Key to check
+     * @return true if a value that has not expired is cached for the key.
+     */
+    public boolean containsKey(final K key) {
+        final Node<K, V> node = this.data.get(key);
+        return node != null && !this.isExpired(node, System.nanoTime());
+    }
+
+    /**
+     * @return Number of entries, including expired entries not yet removed.
+     */
+    public long size() {
+        return this.data.size();
+    }
+
+    /**
+     * @return Total weight of the entries
+     */
+    public long weightedSize() {
+        this.evictionLock.lock();
+        try {
+            return this.weight;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return Snapshot of the statistics of this cache
+     */
+    public Stats stats() {
+        return new Stats(this.hitCount.sum(), this.missCount.sum(), this.loadSuccessCount.sum(),
+                this.loadFailureCount.sum(), this.totalLoadTime.sum(), this.evictionCount.sum(),
+                this.evictionWeight.sum());
+    }
+
+    /**
+     * @return Executor running asynchronous loads
+     */
+    private Executor getExecutor() {
+        return this.executor != null ? this.executor : TaskManager.getInstance().getPool();
+    }
+
+    /**
+     * Load a value and cache it.
+     *
+     * @param key    Key to load
+     * @param loader Function loading the value
+     * @return Value loaded
+     */
+    private V load(final K key, final Function<? super K, ? extends V> loader) {
+        final long start = System.nanoTime();
+        final V value;
+        try {
+            value = loader.apply(key);
+        } catch (final RuntimeException | Error e) {
+            this.loadFailureCount.increment();
+            this.totalLoadTime.add(System.nanoTime() - start);
+            throw e;
+        }
+        this.totalLoadTime.add(System.nanoTime() - start);
+        if (value == null) {
+            this.loadFailureCount.increment();
+            return null;
+        }
+        this.loadSuccessCount.increment();
+        this.put(key, value);
+        return value;
+    }
+
+    /**
+     * Wait for a load started by another thread.
+     *
+     * @param future Future of the load
+     * @param <V>    Type of value
+     * @return Value loaded
+     */
+    private static <V> V join(final CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param node Entry to check
+     * @param now  Current nano time
+     * @return true if the entry has expired
+     */
+    private boolean isExpired(final Node<K, V> node, final long now) {
+        return (this.expireAfterWriteNanos > 0 && now - node.writeTime >= this.expireAfterWriteNanos)
+                || (this.expireAfterAccessNanos > 0 && now - node.accessTime >= this.expireAfterAccessNanos);
+    }
+
+    /**
+     * Remove an expired entry, if the policy lock is free.
+     *
+     * @param node Expired entry
+     */
+    private void expire(final Node<K, V> node) {
+        if (this.evictionLock.tryLock()) {
+            try {
+                if (this.data.remove(node.key, node)) {
+                    this.unlink(node);
+                    this.evictionCount.increment();
+                    this.evictionWeight.add(node.weight);
+                }
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove every expired entry. Must hold the lock.
+     *
+     * @param now Current nano time
+     */
+    private void removeExpired(final long now) {
+        this.writesSinceCleanUp = 0;
+        if (this.expireAfterWriteNanos == 0 && this.expireAfterAccessNanos == 0) {
+            return;
+        }
+        for (final Node<K, V> node : this.data.values()) {
+            if (this.isExpired(node, now) && this.data.remove(node.key, node)) {
+                this.unlink(node);
+                this.evictionCount.increment();
+                this.evictionWeight.add(node.weight);
+            }
+        }
+    }
+
+    /**
+     * Record a request for an entry. Must hold the lock.
+     *
+     * @param node Entry requested
+     */
+    private void onAccess(final Node<K, V> node) {
+        this.sketch.increment(node.key.hashCode());
+        if (node.prev == null) {
+            return;
+        }
+        switch (node.queue) {
+            case WINDOW:
+                this.window.moveToEnd(node);
+                break;
+            case PROBATION:
+                this.probation.remove(node);
+                node.queue = PROTECTED;
+                this.protect.addLast(node);
+                while (this.protect.weight > this.protectedMaximum && this.protect.first() != null) {
+                    final Node<K, V> demoted = this.protect.first();
+                    this.protect.remove(demoted);
+                    demoted.queue = PROBATION;
+                    this.probation.addLast(demoted);
+                }
+                break;
+            default:
+                this.protect.moveToEnd(node);
+                break;
+        }
+    }
+
+    /**
+     * Move entries from the window to the main space, and evict entries while the
+     * cache is over its maximum. Must hold the lock.
+     */
+    private void evict() {
+        Node<K, V> candidate = null;
+        while (this.window.weight > this.windowMaximum && this.window.first() != null) {
+            final Node<K, V> node = this.window.first();
+            this.window.remove(node);
+            node.queue = PROBATION;
+            this.probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (this.weight > this.maximum) {
+            final Node<K, V> victim = this.probation.first();
+            final Node<K, V> evict;
+            if (victim == null) {
+                evict = this.protect.first() != null ? this.protect.first() : this.window.first();
+            } else if (candidate == null || candidate == victim || candidate.queue != PROBATION) {
+                evict = victim;
+                candidate = null;
+            } else if (this.sketch.frequency(candidate.key.hashCode())
+                    > this.sketch.frequency(victim.key.hashCode())) {
+                evict = victim;
+            } else {
+                evict = candidate;
+                candidate = candidate.next != this.probation.head ? candidate.next : null;
+            }
+            if (evict == null) {
+                break;
+            }
+            this.data.remove(evict.key, evict);
+            this.unlink(evict);
+            this.evictionCount.increment();
+            this.evictionWeight.add(evict.weight);
+        }
+    }
+
+    /**
+     * Remove an entry from the policy. Must hold the lock.
+     *
+     * @param node Entry to remove
+     */
+    private void unlink(final Node<K, V> node) {
+        if (node.prev != null) {
+            this.queueOf(node).remove(node);
+            this.weight -= node.weight;
+        }
+    }
+
+    /**
+     * @param node Entry
+     * @return Queue holding the entry
+     */
+    private AccessOrder<K, V> queueOf(final Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                return this.window;
+            case PROBATION:
+                return this.probation;
+            default:
+                return this.protect;
+        }
+    }
+
+    /**
+     * Entry of the cache, linked into one of the policy queues.
+     *
+     * @param <K> Type of key
+     * @param <V> Type of value
+     */
+    private static final class Node<K, V> {
+        /**
+         * Key of the entry
+         */
+        private final K key;
+        /**
+         * Value of the entry
+         */
+        private volatile V value;
+        /**
+         * Weight of the entry, guarded by the lock
+         */
+        private int weight;
+        /**
+         * Nano time the value was written
+         */
+        private volatile long writeTime;
+        /**
+         * Nano time the value was last read or written
+         */
+        private volatile long accessTime;
+        /**
+         * Queue holding the entry, guarded by the lock
+         */
+        private int queue;
+        /**
+         * Previous entry in the queue, null if not in a queue
+         */
+        private Node<K, V> prev;
+        /**
+         * Next entry in the queue
+         */
+        private Node<K, V> next;
+
+        /**
+         * @param key    Key of the entry
+         * @param value  Value of the entry
+         * @param weight Weight of the entry
+         * @param now    Current nano time
+         */
+        Node(final K key, final V value, final int weight, final long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+            this.queue = WINDOW;
+        }
+    }
+
+    /**
+     * Doubly linked list of entries, least recently used first.
+     *
+     * @param <K> Type of key
+     * @param <V> Type of value
+     */
+    private static final class AccessOrder<K, V> {
+        /**
+         * Sentinel linking the first and last entries
+         */
+        private final Node<K, V> head = new Node<>(null, null, 0, 0);
+        /**
+         * Total weight of the entries
+         */
+        private long weight;
+
+        /**
+         * Create an empty list
+         */
+        AccessOrder() {
+            this.head.prev = this.head;
+            this.head.next = this.head;
+        }
+
+        /**
+         * @return Least recently used entry, or null if empty.
+         */
+        Node<K, V> first() {
+            return this.head.next == this.head ? null : this.head.next;
+        }
+
+        /**
+         * @param node Entry to add as most recently used
+         */
+        void addLast(final Node<K, V> node) {
+            node.prev = this.head.prev;
+            node.next = this.head;
+            this.head.prev.next = node;
+            this.head.prev = node;
+            this.weight += node.weight;
+        }
+
+        /**
+         * @param node Entry to remove
+         */
+        void remove(final Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            this.weight -= node.weight;
+        }
+
+        /**
+         * @param node Entry to make most recently used
+         */
+        void moveToEnd(final Node<K, V> node) {
+            this.remove(node);
+            this.addLast(node);
+        }
+
+        /**
+         * Remove every entry
+         */
+        void clear() {
+            Node<K, V> node = this.head.next;
+            while (node != this.head) {
+                final Node<K, V> next = node.next;
+                node.prev = null;
+                node.next = null;
+                node = next;
+            }
+            this.head.prev = this.head;
+            this.head.next = this.head;
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters estimating how often keys are requested.
+     * Once the number of increments reaches ten times the number of counters per
+     * row, every counter is halved, so old popularity fades. Guarded by the lock.
+     */
+    private static final class FrequencySketch {
+        /**
+         * Seeds of the four hash functions
+         */
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L};
+        /**
+         * Counters, sixteen per long
+         */
+        private final long[] table;
+        /**
+         * Number of increments before halving
+         */
+        private final int sampleSize;
+        /**
+         * Increments since the last halving
+         */
+        private int size;
+
+        /**
+         * @param capacity Expected number of entries
+         */
+        FrequencySketch(final int capacity) {
+            int length = 1;
+            while (length < Math.max(capacity, 16) / 4) {
+                length <<= 1;
+            }
+            this.table = new long[length];
+            this.sampleSize = 10 * Math.max(capacity, 16);
+        }
+
+        /**
+         * @param hash Hash of the key
+         * @param row  Hash function
+         * @return Index of the counter within the table, times 16, plus the counter
+         */
+        private int indexOf(final int hash, final int row) {
+            long h = (hash + FrequencySketch.SEEDS[row]) * FrequencySketch.SEEDS[row];
+            h += h >>> 32;
+            return (int) h & ((this.table.length << 4) - 1);
+        }
+
+        /**
+         * @param hash Hash of the key
+         * @return Estimated number of requests for the key
+         */
+        int frequency(final int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < 4; row++) {
+                final int index = this.indexOf(hash, row);
+                final int count = (int) ((this.table[index >>> 4] >>> ((index & 15) << 2)) & 0xF);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        /**
+         * Record a request for a key.
+         *
+         * @param hash Hash of the key
+         */
+        void increment(final int hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                final int index = this.indexOf(hash, row);
+                final int shift = (index & 15) << 2;
+                if (((this.table[index >>> 4] >>> shift) & 0xF) < 15) {
+                    this.table[index >>> 4] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++this.size >= this.sampleSize) {
+                for (int index = 0; index < this.table.length; index++) {
+                    this.table[index] = (this.table[index] >>> 1) & 0x7777777777777777L;
+                }
+                this.size /= 2;
+            }
+        }
+    }
+
+    /**
+     * Statistics of a cache at a point in time.
+     */
+    public static final class Stats {
+        /**
+         * Number of requests finding a value
+         */
+        private final long hitCount;
+        /**
+         * Number of requests not finding a value
+         */
+        private final long missCount;
+        /**
+         * Number of loads returning a value
+         */
+        private final long loadSuccessCount;
+        /**
+         * Number of loads failing or returning null
+         */
+        private final long loadFailureCount;
+        /**
+         * Nanoseconds spent loading
+         */
+        private final long totalLoadTime;
+        /**
+         * Number of entries evicted by size or expiry
+         */
+        private final long evictionCount;
+        /**
+         * Weight of the entries evicted by size or expiry
+         */
+        private final long evictionWeight;
+
+        /**
+         * @param hitCount         Number of requests finding a value
+         * @param missCount        Number of requests not finding a value
+         * @param loadSuccessCount Number of loads returning a value
+         * @param loadFailureCount Number of loads failing or returning null
+         * @param totalLoadTime    Nanoseconds spent loading
+         * @param evictionCount    Number of entries evicted by size or expiry
+         * @param evictionWeight   Weight of the entries evicted by size or expiry
+         */
+        Stats(final long hitCount, final long missCount, final long loadSuccessCount, final long loadFailureCount,
+              final long totalLoadTime, final long evictionCount, final long evictionWeight) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadSuccessCount = loadSuccessCount;
+            this.loadFailureCount = loadFailureCount;
+            this.totalLoadTime = totalLoadTime;
+            this.evictionCount = evictionCount;
+            this.evictionWeight = evictionWeight;
+        }
+
+        /**
+         * @return Number of requests finding a value
+         */
+        public long getHitCount() {
+            return this.hitCount;
+        }
+
+        /**
+         * @return Number of requests not finding a value
+         */
+        public long getMissCount() {
+            return this.missCount;
+        }
+
+        /**
+         * @return Fraction of requests finding a value, 1 if there were no requests.
+         */
+        public double getHitRate() {
+            final long requests = this.hitCount + this.missCount;
+            return requests == 0 ? 1D : (double) this.hitCount / requests;
+        }
+
+        /**
+         * @return Number of loads returning a value
+         */
+        public long getLoadSuccessCount() {
+            return this.loadSuccessCount;
+        }
+
+        /**
+         * @return Number of loads failing or returning null
+         */
+        public long getLoadFailureCount() {
+            return this.loadFailureCount;
+        }
+
+        /**
+         * @return Nanoseconds spent loading
+         */
+        public long getTotalLoadTime() {
+            return this.totalLoadTime;
+        }
+
+        /**
+         * @return Number of entries evicted by size or expiry
+         */
+        public long getEvictionCount() {
+            return this.evictionCount;
+        }
+
+        /**
+         * @return Weight of the entries evicted by size or expiry
+         */
+        public long getEvictionWeight() {
+            return this.evictionWeight;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + this.hitCount + ", misses=" + this.missCount + ", hitRate="
+                    + String.format("%.3f", this.getHitRate()) + ", loadSuccess=" + this.loadSuccessCount
+                    + ", loadFailure=" + this.loadFailureCount + ", totalLoadTime=" + this.totalLoadTime
+                    + ", evictions=" + this.evictionCount + ", evictionWeight=" + this.evictionWeight + "}";
+        }
+    }
+
+    /**
+     * Builder of a BoundedCache.
+     *
+     * @param <K> Type of key
+     * @param <V> Type of value
+     */
+    public static final class Builder<K, V> {
+        /**
+         * Maximum total weight
+         */
+        private long maximum = Long.MAX_VALUE;
+        /**
+         * Function weighing entries
+         */
+        private ToIntBiFunction<? super K, ? super V> weigher = (key, value) -> 1;
+        /**
+         * Nanoseconds after write an entry expires, 0 if not
+         */
+        private long expireAfterWriteNanos;
+        /**
+         * Nanoseconds after access an entry expires, 0 if not
+         */
+        private long expireAfterAccessNanos;
+        /**
+         * Executor running asynchronous loads, or null to use the TaskManager pool
+         */
+        private Executor executor;
+
+        /**
+         * Use the builder() method of BoundedCache
+         */
+        private Builder() {
+        }
+
+        /**
+         * @param maximumSize Maximum number of entries
+         * @return this Builder
+         */
+        public Builder<K, V> maximumSize(final long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize may not be negative");
+            }
+            this.maximum = maximumSize;
+            this.weigher = (key, value) -> 1;
+            return this;
+        }
+
+        /**
+         * @param maximumWeight Maximum total weight of the entries
+         * @param weigher       Function weighing an entry
+         * @return this Builder
+         */
+        public Builder<K, V> maximumWeight(final long maximumWeight,
+                                           final ToIntBiFunction<? super K, ? super V> weigher) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("maximumWeight may not be negative");
+            }
+            this.maximum = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "weigher may not be null");
+            return this;
+        }
+
+        /**
+         * @param duration Time after an entry is written that it expires
+         * @param unit     Unit of the duration
+         * @return this Builder
+         */
+        public Builder<K, V> expireAfterWrite(final long duration, final TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be greater than 0");
+            }
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param duration Time after an entry is last read or written that it expires
+         * @param unit     Unit of the duration
+         * @return this Builder
+         */
+        public Builder<K, V> expireAfterAccess(final long duration, final TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be greater than 0");
+            }
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param executor Executor running asynchronous loads, instead of the
+         *                 TaskManager pool
+         * @return this Builder
+         */
+        public Builder<K, V> executor(final Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor may not be null");
+            return this;
+        }
+
+        /**
+         * @return Cache loading values only through get(key, loader)
+         */
+        public BoundedCache<K, V> build() {
+            return new BoundedCache<>(this, null);
+        }
+
+        /**
+         * @param loader Function loading values missing from the cache
+         * @return Cache loading values with the loader
+         */
+        public BoundedCache<K, V> build(final Function<? super K, ? extends V> loader) {
+            return new BoundedCache<>(this, Objects.requireNonNull(loader, "loader may not be null"));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/**
+ * Bounded first in first out queue for any number of producers and consumers,
+ * backed by an array and allocating nothing per element. Each slot carries a
+ * sequence number telling whether it is free for the producer of a position or
+ * full for its consumer, so producers and consumers claim positions with one
+ * compare and set and never wait on each other (Vyukov's bounded queue).
+ * <p>
+ * offer returns false when the queue is full, giving producers back pressure.
+ *
+ * @param <E> Element type for this queue
+ * @author jmiller
+ */
+public class BoundedLockFreeQueue<E> implements ConcurrentContainer<E> {
+    /**
+     * Handle to the elements of the buffer
+     */
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    /**
+     * Handle to the sequence numbers of the slots
+     */
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    /**
+     * Handle to compare and set the producer position
+     */
+    private static final VarHandle TAIL;
+    /**
+     * Handle to compare and set the consumer position
+     */
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(BoundedLockFreeQueue.class, "tail", long.class);
+            HEAD = lookup.findVarHandle(BoundedLockFreeQueue.class, "head", long.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Slots of the queue, its length a power of two
+     */
+    private final Object[] buffer;
+    /**
+     * Sequence number of each slot: its position when free for a producer, its
+     * position + 1 when full for a consumer
+     */
+    private final long[] sequences;
+    /**
+     * Mask selecting the slot of a position
+     */
+    private final int mask;
+    /**
+     * Next position to produce
+     */
+    private volatile long tail;
+    /**
+     * Next position to consume
+     */
+    private volatile long head;
+
+    /**
+     * Create a queue.
+     *
+     * @param capacity Number of elements the queue holds, rounded up to a power of
+     *                 two
+     */
+    public BoundedLockFreeQueue(final int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        final int length = ArrayDeque.capacityFor(capacity);
+        this.buffer = new Object[length];
+        this.sequences = new long[length];
+        this.mask = length - 1;
+        for (int index = 0; index < length; index++) {
+            this.sequences[index] = index;
+        }
+    }
+
+    /**
+     * @return Number of elements the queue holds
+     */
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    @Override
+    public boolean offer(final E element) {
+        Objects.requireNonNull(element);
+        long position = this.tail;
+        while (true) {
+            final int index = (int) position & this.mask;
+            final long difference = (long) BoundedLockFreeQueue.SEQUENCES.getAcquire(this.sequences, index) - position;
+            if (difference == 0) {
+                if (BoundedLockFreeQueue.TAIL.compareAndSet(this, position, position + 1)) {
+                    BoundedLockFreeQueue.ELEMENTS.set(this.buffer, index, element);
+                    BoundedLockFreeQueue.SEQUENCES.setRelease(this.sequences, index, position + 1);
+                    return true;
+                }
+                position = this.tail;
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.tail;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = this.head;
+        while (true) {
+            final int index = (int) position & this.mask;
+            final long difference = (long) BoundedLockFreeQueue.SEQUENCES.getAcquire(this.sequences, index)
+                    - (position + 1);
+            if (difference == 0) {
+                if (BoundedLockFreeQueue.HEAD.compareAndSet(this, position, position + 1)) {
+                    final E element = (E) BoundedLockFreeQueue.ELEMENTS.get(this.buffer, index);
+                    BoundedLockFreeQueue.ELEMENTS.set(this.buffer, index, null);
+                    BoundedLockFreeQueue.SEQUENCES.setRelease(this.sequences, index, position + this.mask + 1);
+                    return element;
+                }
+                position = this.head;
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = this.head;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        while (true) {
+            final long position = this.head;
+            final int index = (int) position & this.mask;
+            if ((long) BoundedLockFreeQueue.SEQUENCES.getAcquire(this.sequences, index) != position + 1) {
+                return null;
+            }
+            final E element = (E) BoundedLockFreeQueue.ELEMENTS.getAcquire(this.buffer, index);
+            if (position == this.head && element != null) {
+                return element;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(final E element) {
+        final long end = this.tail;
+        for (long position = this.head; position < end; position++) {
+            final Object item = BoundedLockFreeQueue.ELEMENTS.getAcquire(this.buffer, (int) position & this.mask);
+            if (item != null && item.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public int size() {
+        while (true) {
+            final long first = this.head;
+            final long last = this.tail;
+            if (first == this.head) {
+                return (int) Math.max(0, Math.min(last - first, this.buffer.length));
+            }
+        }
+    }
+
+    /**
+     * Copy the elements from head to tail into an array. If the queue changed
+     * since the array was sized, extra elements are left out and unused slots are
+     * set to null.
+     *
+     * @param array Array of type E[] the size of this container.
+     * @return Array containing the data of this container
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(final E[] array) {
+        final long end = this.tail;
+        int index = 0;
+        for (long position = this.head; position < end && index < array.length; position++) {
+            final Object item = BoundedLockFreeQueue.ELEMENTS.getAcquire(this.buffer, (int) position & this.mask);
+            if (item != null) {
+                array[index++] = (E) item;
+            }
+        }
+        while (index < array.length) {
+            array[index++] = null;
+        }
+        return array;
+    }
+}
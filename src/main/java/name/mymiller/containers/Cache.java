@@ -18,14 +18,41 @@
  */
 package name.mymiller.containers;
 
-import name.mymiller.utils.ListUtils;
+import name.mymiller.task.TaskManager;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
 
 /**
  * Object Cache to remove redundant Objects that contain the same data.
+ * <p>
+ * The cache is split into segments, each guarded by its own lock, so threads caching different Objects rarely contend.
+ * Objects are held by weak references, so an Object is removed once only the cache refers to it. Lookups of an Object
+ * already cached do not lock: they probe the segment's table once and return the cached instance. Only a miss locks
+ * the segment to insert the Object.
  *
  * @author jmiller
  */
@@ -38,16 +65,45 @@ public class Cache<E> {
      * Initial Load factor to grow the map.
      */
     private static final float globalLoadFactor = (float) 0.75;
+    /**
+     * Maximum number of segments
+     */
+    private static final int maximumSegments = 1 << 16;
+    /**
+     * Number of Objects from which the parallel bulk operations split the work
+     * across threads.
+     */
+    private static final int parallelThreshold = 8192;
+    /**
+     * First int of a snapshot file
+     */
+    private static final int snapshotMagic = 0x4D434348;
+    /**
+     * Version of the snapshot format
+     */
+    private static final int snapshotVersion = 1;
 
+    /**
+     * Segments of the cache, selected by the high bits of the hash.
+     */
+    private final Segment<E>[] segments;
+    /**
+     * Shift selecting the segment from the hash.
+     */
+    private final int segmentShift;
     /**
      * Number of collisions the cache has saved.
      */
-    private int collisionCount = 0;
+    private final LongAdder collisionCount = new LongAdder();
+    /**
+     * Number of Objects inserted into the cache.
+     */
+    private final LongAdder insertCount = new LongAdder();
     /**
-     * Weak has map to allow Objects to be removed when only the cache has a link to
-     * them.
+     * Objects loaded from snapshots, held strongly until unpinned so the weak
+     * entries survive until the application refers to them.
      */
-    private WeakHashMap<E, WeakReference<E>> cache = null;
+    private final List<E> pinned = new ArrayList<>();
 
     /**
      * Protected constructor forcing the use of the getInstance methods.
@@ -64,7 +120,68 @@ public class Cache<E> {
      * @param globalLoadFactor      Load factor for growth.
      */
     public Cache(final int globalInitialCapacity, final float globalLoadFactor) {
-        this.cache = new WeakHashMap<>(globalInitialCapacity, globalLoadFactor);
+        this(globalInitialCapacity, globalLoadFactor, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Constructor allowing the configuration of the capacity, load factor, and
+     * number of segments.
+     *
+     * @param globalInitialCapacity Initial Capacity of the cache
+     * @param globalLoadFactor      Load factor for growth.
+     * @param concurrencyLevel      Estimated number of threads caching at once,
+     *                              rounded up to a power of two segments.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Cache(final int globalInitialCapacity, final float globalLoadFactor, final int concurrencyLevel) {
+        if (globalInitialCapacity < 0 || !(globalLoadFactor > 0) || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal capacity, load factor or concurrency level");
+        }
+        int segmentCount = 1;
+        int segmentBits = 0;
+        while (segmentCount < Math.min(concurrencyLevel, Cache.maximumSegments)) {
+            segmentCount <<= 1;
+            segmentBits++;
+        }
+        this.segmentShift = 32 - segmentBits;
+        this.segments = new Segment[segmentCount];
+        final int segmentCapacity = Math.max(globalInitialCapacity / segmentCount, 1);
+        for (int index = 0; index < segmentCount; index++) {
+            this.segments[index] = new Segment<>(segmentCapacity, globalLoadFactor);
+        }
+    }
+
+    /**
+     * Spread the bits of a hash code, so both the segment and the bucket depend on
+     * every bit of it.
+     *
+     * @param key Object to hash
+     * @return Spread hash
+     */
+    private static int hash(final Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * @param hash Spread hash
+     * @return Segment holding the hash
+     */
+    private Segment<E> segmentFor(final int hash) {
+        return this.segments[this.segmentIndex(hash)];
+    }
+
+    /**
+     * @param hash Spread hash
+     * @return Index of the segment holding the hash
+     */
+    private int segmentIndex(final int hash) {
+        return this.segments.length == 1 ? 0 : hash >>> this.segmentShift;
     }
 
     /**
@@ -73,31 +190,267 @@ public class Cache<E> {
      * @param key Object to find cache value.
      * @return Cached instance of the string.
      */
-    public synchronized E cache(final E key) {
-        E cached = null;
-        if (this.cache.containsKey(key)) {
-            final WeakReference<E> ref = this.cache.get(key);
+    public E cache(final E key) {
+        if (key == null) {
+            return null;
+        }
+        final int hash = Cache.hash(key);
+        final Segment<E> segment = this.segmentFor(hash);
+
+        E cached = segment.find(key, hash);
+        if (cached == null) {
+            cached = segment.intern(key, hash, this.insertCount);
+        }
+        if (cached != key) {
+            this.collisionCount.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Replace every Object of an array with its cached instance, such as a column
+     * of values read from a file. Objects already cached are found without
+     * locking; the others are grouped by segment and inserted taking each
+     * segment's lock once for the whole group. Null elements are left null.
+     *
+     * @param keys Objects to cache, replaced in place.
+     * @return The array passed in
+     */
+    public E[] cacheAll(final E[] keys) {
+        this.cacheAll(keys, false);
+        return keys;
+    }
+
+    /**
+     * Return the cached instance of every Object of a collection.
+     *
+     * @param keys Objects to cache
+     * @return Cached instances, in the iteration order of the collection.
+     * @see #cacheAll(Object[])
+     */
+    public List<E> cacheAll(final Collection<? extends E> keys) {
+        @SuppressWarnings("unchecked") final E[] array = (E[]) keys.toArray();
+        this.cacheAll(array, false);
+        return Arrays.asList(array);
+    }
+
+    /**
+     * Replace every Object of an array with its cached instance, as cacheAll(E[]),
+     * splitting the lookups and the segments across the common fork join pool
+     * when the array is large.
+     *
+     * @param keys Objects to cache, replaced in place.
+     * @return The array passed in
+     */
+    public E[] parallelCacheAll(final E[] keys) {
+        this.cacheAll(keys, keys.length >= Cache.parallelThreshold);
+        return keys;
+    }
 
-            if (ref != null) {
-                cached = ref.get();
-                this.collisionCount++;
+    /**
+     * Return the cached instance of every Object of a collection, as
+     * cacheAll(Collection), splitting the work across the common fork join pool
+     * when the collection is large.
+     *
+     * @param keys Objects to cache
+     * @return Cached instances, in the iteration order of the collection.
+     */
+    public List<E> parallelCacheAll(final Collection<? extends E> keys) {
+        @SuppressWarnings("unchecked") final E[] array = (E[]) keys.toArray();
+        this.cacheAll(array, array.length >= Cache.parallelThreshold);
+        return Arrays.asList(array);
+    }
+
+    /**
+     * Cache an array in three passes: lock free lookups, grouping the misses by
+     * segment, then inserting each group under a single acquisition of its
+     * segment's lock.
+     *
+     * @param keys     Objects to cache, replaced in place.
+     * @param parallel true to run the lookups and segments in parallel
+     */
+    private void cacheAll(final E[] keys, final boolean parallel) {
+        final int length = keys.length;
+        final int[] hashes = new int[length];
+        final boolean[] missed = new boolean[length];
+        IntStream lookups = IntStream.range(0, length);
+        if (parallel) {
+            lookups = lookups.parallel();
+        }
+        lookups.forEach(index -> {
+            final E key = keys[index];
+            if (key != null) {
+                final int hash = Cache.hash(key);
+                final E cached = this.segmentFor(hash).find(key, hash);
+                if (cached == null) {
+                    hashes[index] = hash;
+                    missed[index] = true;
+                } else {
+                    if (cached != key) {
+                        this.collisionCount.increment();
+                    }
+                    keys[index] = cached;
+                }
+            }
+        });
+
+        final int[] starts = new int[this.segments.length + 1];
+        int misses = 0;
+        for (int index = 0; index < length; index++) {
+            if (missed[index]) {
+                starts[this.segmentIndex(hashes[index]) + 1]++;
+                misses++;
+            }
+        }
+        if (misses == 0) {
+            return;
+        }
+        for (int segment = 0; segment < this.segments.length; segment++) {
+            starts[segment + 1] += starts[segment];
+        }
+        final int[] order = new int[misses];
+        final int[] next = Arrays.copyOf(starts, this.segments.length);
+        for (int index = 0; index < length; index++) {
+            if (missed[index]) {
+                order[next[this.segmentIndex(hashes[index])]++] = index;
             }
         }
 
-        if (cached == null) {
-            this.cache.put(key, new WeakReference<>(key));
-            cached = key;
+        IntStream inserts = IntStream.range(0, this.segments.length)
+                .filter(segment -> starts[segment] < starts[segment + 1]);
+        if (parallel) {
+            inserts = inserts.parallel();
         }
+        inserts.forEach(segment -> this.segments[segment].internAll(keys, hashes, order, starts[segment],
+                starts[segment + 1], this.insertCount, this.collisionCount));
+    }
 
-        return cached;
+    /**
+     * Write the Objects currently cached to a snapshot file, to warm a cache at
+     * the next start with readSnapshot. The file is written beside the target and
+     * moved into place, so a reader never sees a partial snapshot.
+     *
+     * @param path  File to write
+     * @param codec Codec converting the Objects to bytes
+     * @return Number of Objects written
+     * @throws IOException if the file could not be written.
+     */
+    public int writeSnapshot(final Path path, final Codec<E> codec) throws IOException {
+        final List<E> cached = this.getCached();
+        final Path absolute = path.toAbsolutePath();
+        final Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(Cache.snapshotMagic);
+                out.writeInt(Cache.snapshotVersion);
+                out.writeInt(cached.size());
+                for (final E value : cached) {
+                    final byte[] bytes = codec.encode(value);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return cached.size();
+    }
+
+    /**
+     * Load a snapshot file written by writeSnapshot, mapping it into memory and
+     * caching its Objects in bulk. The Objects are pinned, held strongly by the
+     * cache, until unpin() is called; otherwise they would be collected before the
+     * application first refers to them.
+     *
+     * @param path  File to read
+     * @param codec Codec converting bytes to the Objects
+     * @return Number of Objects read
+     * @throws IOException if the file could not be read or is not a snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    public int readSnapshot(final Path path, final Codec<E> codec) throws IOException {
+        final E[] values;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (buffer.getInt() != Cache.snapshotMagic || buffer.getInt() != Cache.snapshotVersion) {
+                    throw new IOException("Not a cache snapshot: " + path);
+                }
+                final int count = buffer.getInt();
+                if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+                    throw new IOException("Corrupt cache snapshot: " + path);
+                }
+                values = (E[]) new Object[count];
+                for (int index = 0; index < count; index++) {
+                    final int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) {
+                        throw new IOException("Corrupt cache snapshot: " + path);
+                    }
+                    values[index] = codec.decode(buffer, length);
+                }
+            } catch (final BufferUnderflowException e) {
+                throw new IOException("Truncated cache snapshot: " + path, e);
+            }
+        }
+
+        this.cacheAll(values, values.length >= Cache.parallelThreshold);
+        synchronized (this.pinned) {
+            this.pinned.addAll(Arrays.asList(values));
+        }
+        return values.length;
+    }
+
+    /**
+     * Load a snapshot file in the background on the TaskManager pool, so startup
+     * can continue while the cache warms.
+     *
+     * @param path  File to read
+     * @param codec Codec converting bytes to the Objects
+     * @return Future completing with the number of Objects read, or exceptionally
+     * with the IOException.
+     * @see #readSnapshot(Path, Codec)
+     */
+    public CompletableFuture<Integer> readSnapshotAsync(final Path path, final Codec<E> codec) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.readSnapshot(path, codec);
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        }, TaskManager.getInstance().getPool());
+    }
+
+    /**
+     * Release the Objects pinned by readSnapshot, so those the application no
+     * longer refers to can be collected and removed from the cache.
+     */
+    public void unpin() {
+        synchronized (this.pinned) {
+            this.pinned.clear();
+        }
+    }
+
+    /**
+     * @return Number of Objects pinned by readSnapshot
+     */
+    public int getPinnedCount() {
+        synchronized (this.pinned) {
+            return this.pinned.size();
+        }
     }
 
     /**
      * Clears the cache
      */
-    public synchronized void clear() {
-        this.cache.clear();
-        this.collisionCount = 0;
+    public void clear() {
+        for (final Segment<E> segment : this.segments) {
+            segment.clear();
+        }
+        this.collisionCount.reset();
+        this.insertCount.reset();
+        this.unpin();
     }
 
     /**
@@ -105,10 +458,13 @@ public class Cache<E> {
      *
      * @param key Object to check if it is in the Cache.
      * @return boolean indicating if the Object was found.
-     * @see WeakHashMap#containsKey(Object)
      */
-    public synchronized boolean containsKey(final E key) {
-        return this.cache.containsKey(key);
+    public boolean containsKey(final E key) {
+        if (key == null) {
+            return false;
+        }
+        final int hash = Cache.hash(key);
+        return this.segmentFor(hash).find(key, hash) != null;
     }
 
     /*
@@ -118,7 +474,7 @@ public class Cache<E> {
      * extensions.lang.Object)
      */
     @Override
-    public synchronized boolean equals(final Object obj) {
+    public boolean equals(final Object obj) {
         if (this == obj) {
             return true;
         }
@@ -128,12 +484,8 @@ public class Cache<E> {
         if (!(obj instanceof Cache)) {
             return false;
         }
-        final Cache other = (Cache) obj;
-        if (this.cache == null) {
-            return other.cache == null;
-        } else {
-            return this.cache.equals(other.cache);
-        }
+        final Cache<?> other = (Cache<?>) obj;
+        return new HashSet<>(this.getCached()).equals(new HashSet<>(other.getCached()));
     }
 
     /**
@@ -141,15 +493,26 @@ public class Cache<E> {
      *
      * @return Set View
      */
-    public synchronized List<E> getCached() {
-        return ListUtils.iterate(this.cache.keySet().iterator());
+    public List<E> getCached() {
+        final List<E> cached = new ArrayList<>();
+        for (final Segment<E> segment : this.segments) {
+            segment.collect(cached);
+        }
+        return cached;
     }
 
     /**
      * @return Number of Collisions that have occurred.
      */
     public int getCollisionCount() {
-        return this.collisionCount;
+        return (int) this.collisionCount.sum();
+    }
+
+    /**
+     * @return Number of Objects inserted into the cache.
+     */
+    public long getInsertCount() {
+        return this.insertCount.sum();
     }
 
     /*
@@ -158,10 +521,10 @@ public class Cache<E> {
      * @see java.name.mymiller.lang.Object#hashCode()
      */
     @Override
-    public synchronized int hashCode() {
+    public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = (prime * result) + ((this.cache == null) ? 0 : this.cache.hashCode());
+        result = (prime * result) + new HashSet<>(this.getCached()).hashCode();
         return result;
     }
 
@@ -170,8 +533,8 @@ public class Cache<E> {
      *
      * @param insert Cache to insert.
      */
-    protected synchronized void insertCache(final Cache<E> insert) {
-        this.cache.putAll(insert.cache);
+    protected void insertCache(final Cache<E> insert) {
+        insert.getCached().forEach(this::cache);
     }
 
     /**
@@ -179,15 +542,347 @@ public class Cache<E> {
      *
      * @param key Object to remove.
      */
-    public synchronized void remove(final E key) {
-        this.cache.remove(key);
+    public void remove(final E key) {
+        if (key != null) {
+            final int hash = Cache.hash(key);
+            this.segmentFor(hash).remove(key, hash);
+        }
     }
 
     /**
      * @return The size of the Cache.
-     * @see WeakHashMap#size()
      */
-    public synchronized int size() {
-        return this.cache.size();
+    public int size() {
+        long size = 0;
+        for (final Segment<E> segment : this.segments) {
+            size += segment.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Weak reference to a cached Object, chained within a bucket.
+     *
+     * @param <E> Type of Object cached
+     */
+    private static final class WeakEntry<E> extends WeakReference<E> {
+        /**
+         * Spread hash of the Object
+         */
+        private final int hash;
+        /**
+         * Next entry in the bucket, written under the segment lock and read without it.
+         */
+        private volatile WeakEntry<E> next;
+
+        /**
+         * @param referent Object cached
+         * @param hash     Spread hash of the Object
+         * @param queue    Queue receiving the entry once the Object is collected
+         * @param next     Next entry in the bucket
+         */
+        WeakEntry(final E referent, final int hash, final ReferenceQueue<E> queue, final WeakEntry<E> next) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Segment of the cache: a chained hash table guarded by a lock for writes. Reads
+     * walk the chains without the lock; a read racing a write may miss an entry, in
+     * which case the caller falls back to intern(), which searches again under the
+     * lock.
+     *
+     * @param <E> Type of Object cached
+     */
+    private static final class Segment<E> {
+        /**
+         * Access to the buckets of the table with acquire/release semantics.
+         */
+        private static final VarHandle BUCKETS = MethodHandles.arrayElementVarHandle(WeakEntry[].class);
+
+        /**
+         * Lock guarding writes to the segment.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        /**
+         * Load factor to grow the table.
+         */
+        private final float loadFactor;
+        /**
+         * Entries whose Object has been collected.
+         */
+        private final ReferenceQueue<E> queue = new ReferenceQueue<>();
+        /**
+         * Buckets of the table, the length is a power of two.
+         */
+        private volatile WeakEntry<E>[] table;
+        /**
+         * Number of entries in the table, including those not yet expunged.
+         */
+        private volatile int count;
+        /**
+         * Count at which the table grows.
+         */
+        private int threshold;
+
+        /**
+         * @param capacity   Initial capacity of the segment
+         * @param loadFactor Load factor to grow the table.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment(final int capacity, final float loadFactor) {
+            int length = 1;
+            while (length < capacity / loadFactor && length < (1 << 30)) {
+                length <<= 1;
+            }
+            this.loadFactor = loadFactor;
+            this.table = new WeakEntry[length];
+            this.threshold = (int) (length * loadFactor);
+        }
+
+        /**
+         * @param table Table to read
+         * @param index Index of the bucket
+         * @param <E>   Type of Object cached
+         * @return First entry of the bucket
+         */
+        @SuppressWarnings("unchecked")
+        private static <E> WeakEntry<E> bucket(final WeakEntry<E>[] table, final int index) {
+            return (WeakEntry<E>) Segment.BUCKETS.getAcquire(table, index);
+        }
+
+        /**
+         * Find the cached instance of an Object without locking.
+         *
+         * @param key  Object to find
+         * @param hash Spread hash of the Object
+         * @return Cached instance, or null if not found.
+         */
+        E find(final Object key, final int hash) {
+            final WeakEntry<E>[] tab = this.table;
+            for (WeakEntry<E> entry = Segment.bucket(tab, hash & (tab.length - 1)); entry != null;
+                 entry = entry.next) {
+                if (entry.hash == hash) {
+                    final E value = entry.get();
+                    if (value != null && (value == key || value.equals(key))) {
+                        return value;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Return the cached instance of an Object, inserting it if not cached.
+         *
+         * @param key         Object to cache
+         * @param hash        Spread hash of the Object
+         * @param insertCount Counter of inserts
+         * @return Cached instance
+         */
+        E intern(final E key, final int hash, final LongAdder insertCount) {
+            this.lock.lock();
+            try {
+                this.expunge();
+                final E cached = this.find(key, hash);
+                return cached != null ? cached : this.insert(key, hash, insertCount);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Replace a group of Objects of this segment with their cached instances,
+         * taking the lock once for the whole group.
+         *
+         * @param keys           Objects being cached, replaced in place.
+         * @param hashes         Spread hash of each Object
+         * @param order          Indexes into keys, grouped by segment
+         * @param from           First position in order of this segment's group
+         * @param to             Position in order after this segment's group
+         * @param insertCount    Counter of inserts
+         * @param collisionCount Counter of collisions
+         */
+        void internAll(final E[] keys, final int[] hashes, final int[] order, final int from, final int to,
+                       final LongAdder insertCount, final LongAdder collisionCount) {
+            int collisions = 0;
+            this.lock.lock();
+            try {
+                this.expunge();
+                for (int position = from; position < to; position++) {
+                    final int index = order[position];
+                    final E key = keys[index];
+                    E cached = this.find(key, hashes[index]);
+                    if (cached == null) {
+                        cached = this.insert(key, hashes[index], insertCount);
+                    }
+                    if (cached != key) {
+                        collisions++;
+                        keys[index] = cached;
+                    }
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            collisionCount.add(collisions);
+        }
+
+        /**
+         * Insert an Object known not to be cached. Must hold the lock.
+         *
+         * @param key         Object to cache
+         * @param hash        Spread hash of the Object
+         * @param insertCount Counter of inserts
+         * @return The Object inserted
+         */
+        private E insert(final E key, final int hash, final LongAdder insertCount) {
+            if (this.count >= this.threshold) {
+                this.rehash();
+            }
+            final WeakEntry<E>[] tab = this.table;
+            final int index = hash & (tab.length - 1);
+            Segment.BUCKETS.setRelease(tab, index,
+                    new WeakEntry<>(key, hash, this.queue, Segment.bucket(tab, index)));
+            this.count = this.count + 1;
+            insertCount.increment();
+            return key;
+        }
+
+        /**
+         * Remove an Object from the segment.
+         *
+         * @param key  Object to remove
+         * @param hash Spread hash of the Object
+         */
+        void remove(final Object key, final int hash) {
+            this.lock.lock();
+            try {
+                this.expunge();
+                final WeakEntry<E>[] tab = this.table;
+                for (WeakEntry<E> entry = Segment.bucket(tab, hash & (tab.length - 1)); entry != null;
+                     entry = entry.next) {
+                    final E value = entry.get();
+                    if (entry.hash == hash && value != null && (value == key || value.equals(key))) {
+                        this.unlink(tab, entry);
+                        entry.clear();
+                        return;
+                    }
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Remove every entry.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void clear() {
+            this.lock.lock();
+            try {
+                this.table = new WeakEntry[this.table.length];
+                this.count = 0;
+                while (this.queue.poll() != null) {
+                    // entries of the old table no longer need expunging
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * @return Number of live entries
+         */
+        int size() {
+            this.lock.lock();
+            try {
+                this.expunge();
+                return this.count;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Add every live Object to a list.
+         *
+         * @param list List receiving the Objects
+         */
+        void collect(final List<E> list) {
+            final WeakEntry<E>[] tab = this.table;
+            for (int index = 0; index < tab.length; index++) {
+                for (WeakEntry<E> entry = Segment.bucket(tab, index); entry != null; entry = entry.next) {
+                    final E value = entry.get();
+                    if (value != null) {
+                        list.add(value);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Remove the entries whose Object has been collected. Must hold the lock.
+         */
+        @SuppressWarnings("unchecked")
+        private void expunge() {
+            Reference<? extends E> reference;
+            while ((reference = this.queue.poll()) != null) {
+                this.unlink(this.table, (WeakEntry<E>) reference);
+            }
+        }
+
+        /**
+         * Remove an entry from its bucket, if still present. Must hold the lock.
+         *
+         * @param tab    Table holding the entry
+         * @param target Entry to remove
+         */
+        private void unlink(final WeakEntry<E>[] tab, final WeakEntry<E> target) {
+            final int index = target.hash & (tab.length - 1);
+            WeakEntry<E> previous = null;
+            for (WeakEntry<E> entry = Segment.bucket(tab, index); entry != null; entry = entry.next) {
+                if (entry == target) {
+                    if (previous == null) {
+                        Segment.BUCKETS.setRelease(tab, index, entry.next);
+                    } else {
+                        previous.next = entry.next;
+                    }
+                    this.count = this.count - 1;
+                    return;
+                }
+                previous = entry;
+            }
+        }
+
+        /**
+         * Double the table, dropping entries whose Object has been collected. Live
+         * entries are copied into the new table rather than relinked, so readers
+         * still walking the old table see its chains unchanged. Must hold the lock.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void rehash() {
+            final WeakEntry<E>[] old = this.table;
+            if (old.length >= (1 << 30)) {
+                return;
+            }
+            final WeakEntry<E>[] tab = new WeakEntry[old.length << 1];
+            int live = 0;
+            for (int index = 0; index < old.length; index++) {
+                WeakEntry<E> entry = Segment.bucket(old, index);
+                for (; entry != null; entry = entry.next) {
+                    final E value = entry.get();
+                    if (value != null) {
+                        final int target = entry.hash & (tab.length - 1);
+                        tab[target] = new WeakEntry<>(value, entry.hash, this.queue, tab[target]);
+                        live++;
+                    }
+                }
+            }
+            this.count = live;
+            this.threshold = (int) (tab.length * this.loadFactor);
+            this.table = tab;
+        }
     }
 }
@@ -0,0 +1,69 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts Objects to and from bytes for the containers that store them outside
+ * the heap or in files.
+ *
+ * @param <E> Type of Object converted
+ * @author jmiller
+ */
+public interface Codec<E> {
+    /**
+     * Codec storing Strings as UTF-8.
+     */
+    Codec<String> STRING = new Codec<>() {
+        @Override
+        public byte[] encode(final String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(final ByteBuffer buffer, final int length) {
+            if (buffer.hasArray()) {
+                final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                        StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return value;
+            }
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Convert an Object to bytes.
+     *
+     * @param value Object to convert
+     * @return Bytes of the Object
+     */
+    byte[] encode(E value);
+
+    /**
+     * Convert bytes back to an Object, reading them from the position of the
+     * buffer and leaving the position after them.
+     *
+     * @param buffer Buffer to read
+     * @param length Number of bytes of the Object
+     * @return Object of the bytes
+     */
+    E decode(ByteBuffer buffer, int length);
+}
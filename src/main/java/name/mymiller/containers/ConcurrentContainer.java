@@ -0,0 +1,105 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Collection;
+
+/**
+ * Container safe for use by several threads at once, to hand elements from
+ * producers to consumers. Null elements are not permitted, as poll returns null
+ * when empty.
+ * <p>
+ * size, contains and toArray are only a snapshot while other threads are adding
+ * and removing elements.
+ *
+ * @param <E> Object type for this Container
+ * @author jmiller
+ */
+public interface ConcurrentContainer<E> extends Container<E> {
+    /**
+     * Add an element, if there is room.
+     *
+     * @param element Element to add
+     * @return boolean indicating if the element was added, false if full.
+     * @throws NullPointerException if the element is null.
+     */
+    boolean offer(E element);
+
+    /**
+     * @return Next element, removed, or null if empty.
+     */
+    E poll();
+
+    /**
+     * @return Next element without removing it, or null if empty.
+     */
+    E peek();
+
+    /**
+     * Add the elements of a collection in order, stopping at the first that does
+     * not fit.
+     *
+     * @param elements Elements to add
+     * @return Number of elements added
+     */
+    default int offerAll(final Collection<? extends E> elements) {
+        int count = 0;
+        for (final E element : elements) {
+            if (!this.offer(element)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Remove every available element, adding them to a collection.
+     *
+     * @param target Collection receiving the elements
+     * @return Number of elements moved
+     */
+    default int drainTo(final Collection<? super E> target) {
+        return this.drainTo(target, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Remove up to a number of available elements, adding them to a collection.
+     *
+     * @param target      Collection receiving the elements
+     * @param maxElements Largest number of elements to move
+     * @return Number of elements moved
+     */
+    default int drainTo(final Collection<? super E> target, final int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = this.poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes all available elements.
+     */
+    @Override
+    default void clear() {
+        while (this.poll() != null) {
+            // discard
+        }
+    }
+}
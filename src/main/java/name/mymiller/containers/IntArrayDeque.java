@@ -0,0 +1,271 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Double ended queue of ints backed by a ring buffer, as ArrayDeque but storing
+ * the values unboxed. Removing from an empty deque throws NoSuchElementException,
+ * as there is no null to return.
+ *
+ * @author jmiller
+ */
+public class IntArrayDeque implements Serializable {
+    /**
+     *
+     */
+    private static final long serialVersionUID = 5830213794502948311L;
+    /**
+     * Ring buffer of values, its length a power of two
+     */
+    private transient int[] elements;
+    /**
+     * Index of the head value
+     */
+    private transient int head;
+    /**
+     * Number of values
+     */
+    private transient int length;
+
+    /**
+     * Create a deque with the default capacity.
+     */
+    public IntArrayDeque() {
+        this(16);
+    }
+
+    /**
+     * Create a deque.
+     *
+     * @param capacity Number of values to hold before growing
+     */
+    public IntArrayDeque(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.elements = new int[ArrayDeque.capacityFor(capacity)];
+    }
+
+    /**
+     * Insert a value at the head of the deque.
+     *
+     * @param value Value to insert
+     */
+    public void insertHead(final int value) {
+        this.ensureCapacity(this.length + 1);
+        this.head = (this.head - 1) & (this.elements.length - 1);
+        this.elements[this.head] = value;
+        this.length++;
+    }
+
+    /**
+     * Insert a value at the tail of the deque.
+     *
+     * @param value Value to insert
+     */
+    public void insertTail(final int value) {
+        this.ensureCapacity(this.length + 1);
+        this.elements[(this.head + this.length) & (this.elements.length - 1)] = value;
+        this.length++;
+    }
+
+    /**
+     * @return value at the head of the deque, removed.
+     * @throws NoSuchElementException if the deque is empty.
+     */
+    public int removeHead() {
+        if (this.length == 0) {
+            throw new NoSuchElementException();
+        }
+        final int value = this.elements[this.head];
+        this.head = (this.head + 1) & (this.elements.length - 1);
+        this.length--;
+        return value;
+    }
+
+    /**
+     * @return value at the tail of the deque, removed.
+     * @throws NoSuchElementException if the deque is empty.
+     */
+    public int removeTail() {
+        if (this.length == 0) {
+            throw new NoSuchElementException();
+        }
+        this.length--;
+        return this.elements[(this.head + this.length) & (this.elements.length - 1)];
+    }
+
+    /**
+     * @return value at the head of the deque.
+     * @throws NoSuchElementException if the deque is empty.
+     */
+    public int peekHead() {
+        if (this.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return this.elements[this.head];
+    }
+
+    /**
+     * @return value at the tail of the deque.
+     * @throws NoSuchElementException if the deque is empty.
+     */
+    public int peekTail() {
+        if (this.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return this.elements[(this.head + this.length - 1) & (this.elements.length - 1)];
+    }
+
+    /**
+     * Return the value at a position counted from the head.
+     *
+     * @param index Position of the value
+     * @return Value at the position
+     * @throws IndexOutOfBoundsException if the position is not in the deque.
+     */
+    public int get(final int index) {
+        Objects.checkIndex(index, this.length);
+        return this.elements[(this.head + index) & (this.elements.length - 1)];
+    }
+
+    /**
+     * Removes all values in this deque.
+     */
+    public void clear() {
+        this.head = 0;
+        this.length = 0;
+    }
+
+    /**
+     * Checks to see if the deque contains value
+     *
+     * @param value Value to check
+     * @return boolean indicating if the value is found.
+     */
+    public boolean contains(final int value) {
+        final int mask = this.elements.length - 1;
+        for (int index = 0; index < this.length; index++) {
+            if (this.elements[(this.head + index) & mask] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the deque is empty;
+     */
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    /**
+     * @return int indicating the number of values in the deque.
+     */
+    public int size() {
+        return this.length;
+    }
+
+    /**
+     * Perform an action on each value from head to tail.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final IntConsumer action) {
+        final int mask = this.elements.length - 1;
+        for (int index = 0; index < this.length; index++) {
+            action.accept(this.elements[(this.head + index) & mask]);
+        }
+    }
+
+    /**
+     * @return Array containing the values of this deque from head to tail.
+     */
+    public int[] toArray() {
+        final int[] array = new int[this.length];
+        final int first = Math.min(this.length, this.elements.length - this.head);
+        System.arraycopy(this.elements, this.head, array, 0, first);
+        System.arraycopy(this.elements, 0, array, first, this.length - first);
+        return array;
+    }
+
+    /**
+     * Grow the buffer by doubling until it holds a number of values, unwrapping
+     * the ring so the head is at index 0.
+     *
+     * @param capacity Number of values to hold
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.elements.length) {
+            return;
+        }
+        if (capacity > (1 << 30) || capacity < 0) {
+            throw new IllegalStateException("Deque is full");
+        }
+        final int[] grown = new int[ArrayDeque.capacityFor(capacity)];
+        final int first = Math.min(this.length, this.elements.length - this.head);
+        System.arraycopy(this.elements, this.head, grown, 0, first);
+        System.arraycopy(this.elements, 0, grown, first, this.length - first);
+        this.elements = grown;
+        this.head = 0;
+    }
+
+    /**
+     * Write the length and then the values from head to tail as raw ints,
+     * without boxing or the unused capacity.
+     *
+     * @param out Stream to write to
+     * @throws IOException if the stream could not be written.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.length);
+        final int mask = this.elements.length - 1;
+        for (int index = 0; index < this.length; index++) {
+            out.writeInt(this.elements[(this.head + index) & mask]);
+        }
+    }
+
+    /**
+     * Read the length and then the values.
+     *
+     * @param in Stream to read from
+     * @throws IOException            if the stream could not be read.
+     * @throws ClassNotFoundException if a class of the stream is not found.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        if (count < 0 || count > (1 << 30)) {
+            throw new InvalidObjectException("Illegal length: " + count);
+        }
+        this.elements = new int[ArrayDeque.capacityFor(count)];
+        for (int index = 0; index < count; index++) {
+            this.elements[index] = in.readInt();
+        }
+        this.length = count;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Growable list of ints without boxing, backed by one array that grows by half
+ * again when full.
+ * <p>
+ * The list is not safe for concurrent use.
+ *
+ * @author jmiller
+ */
+public class IntArrayList implements Serializable {
+    /**
+     *
+     */
+    private static final long serialVersionUID = 2947718385106641929L;
+    /**
+     * Values of the list, the first length of them in use
+     */
+    private transient int[] elements;
+    /**
+     * Number of values
+     */
+    private transient int length;
+
+    /**
+     * Create a list with the default capacity.
+     */
+    public IntArrayList() {
+        this(16);
+    }
+
+    /**
+     * Create a list.
+     *
+     * @param capacity Number of values to hold before growing
+     */
+    public IntArrayList(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.elements = new int[capacity];
+    }
+
+    /**
+     * Add a value at the end of the list.
+     *
+     * @param value Value to add
+     */
+    public void add(final int value) {
+        if (this.length == this.elements.length) {
+            this.ensureCapacity(this.length + 1);
+        }
+        this.elements[this.length++] = value;
+    }
+
+    /**
+     * Add the values of an array at the end of the list.
+     *
+     * @param values Values to add
+     */
+    public void addAll(final int[] values) {
+        this.ensureCapacity(this.length + values.length);
+        System.arraycopy(values, 0, this.elements, this.length, values.length);
+        this.length += values.length;
+    }
+
+    /**
+     * @param index Position of the value
+     * @return Value at the position
+     * @throws IndexOutOfBoundsException if the position is not in the list.
+     */
+    public int get(final int index) {
+        Objects.checkIndex(index, this.length);
+        return this.elements[index];
+    }
+
+    /**
+     * Replace the value at a position.
+     *
+     * @param index Position of the value
+     * @param value New value
+     * @return Previous value
+     * @throws IndexOutOfBoundsException if the position is not in the list.
+     */
+    public int set(final int index, final int value) {
+        Objects.checkIndex(index, this.length);
+        final int previous = this.elements[index];
+        this.elements[index] = value;
+        return previous;
+    }
+
+    /**
+     * Remove the value at a position, shifting later values down.
+     *
+     * @param index Position of the value
+     * @return Value removed
+     * @throws IndexOutOfBoundsException if the position is not in the list.
+     */
+    public int removeAt(final int index) {
+        Objects.checkIndex(index, this.length);
+        final int previous = this.elements[index];
+        System.arraycopy(this.elements, index + 1, this.elements, index, this.length - index - 1);
+        this.length--;
+        return previous;
+    }
+
+    /**
+     * @param value Value to find
+     * @return Position of the first occurrence, or -1 if absent.
+     */
+    public int indexOf(final int value) {
+        for (int index = 0; index < this.length; index++) {
+            if (this.elements[index] == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param value Value to find
+     * @return true if the value is in the list
+     */
+    public boolean contains(final int value) {
+        return this.indexOf(value) >= 0;
+    }
+
+    /**
+     * Sort the values in ascending order.
+     */
+    public void sort() {
+        Arrays.sort(this.elements, 0, this.length);
+    }
+
+    /**
+     * @return Number of values
+     */
+    public int size() {
+        return this.length;
+    }
+
+    /**
+     * @return True if the list is empty;
+     */
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    /**
+     * Removes all values, keeping the capacity.
+     */
+    public void clear() {
+        this.length = 0;
+    }
+
+    /**
+     * Perform an action on each value in order.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final IntConsumer action) {
+        for (int index = 0; index < this.length; index++) {
+            action.accept(this.elements[index]);
+        }
+    }
+
+    /**
+     * @return Array of the values in order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.elements, this.length);
+    }
+
+    /**
+     * Grow the array to hold a number of values.
+     *
+     * @param capacity Number of values to hold
+     */
+    public void ensureCapacity(final int capacity) {
+        if (capacity > this.elements.length) {
+            final int grown = Math.max(capacity, this.elements.length + (this.elements.length >> 1) + 1);
+            this.elements = Arrays.copyOf(this.elements, grown < 0 ? Integer.MAX_VALUE - 8 : grown);
+        }
+    }
+
+    /**
+     * Write the length and then the values in order as raw ints,
+     * without boxing or the unused capacity.
+     *
+     * @param out Stream to write to
+     * @throws IOException if the stream could not be written.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.length);
+        for (int index = 0; index < this.length; index++) {
+            out.writeInt(this.elements[index]);
+        }
+    }
+
+    /**
+     * Read the length and then the values.
+     *
+     * @param in Stream to read from
+     * @throws IOException            if the stream could not be read.
+     * @throws ClassNotFoundException if a class of the stream is not found.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new InvalidObjectException("Illegal length: " + count);
+        }
+        this.elements = new int[count];
+        for (int index = 0; index < count; index++) {
+            this.elements[index] = in.readInt();
+        }
+        this.length = count;
+    }
+}
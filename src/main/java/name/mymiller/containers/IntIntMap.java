@@ -0,0 +1,348 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Arrays;
+
+/**
+ * Map from int keys to int values without boxing, for counters and id lookups.
+ * Keys and values sit in two parallel arrays searched by linear probing, so there
+ * is no object per entry, and removal shifts later entries back rather than
+ * leaving tombstones. Key 0 marks an empty slot, so its entry is held apart from
+ * the table. Missing keys read as 0 unless a default is given.
+ * <p>
+ * The map is not safe for concurrent use.
+ *
+ * @author jmiller
+ */
+public class IntIntMap {
+    /**
+     * Keys of the table, 0 for an empty slot
+     */
+    private int[] keys;
+    /**
+     * Values of the table
+     */
+    private int[] values;
+    /**
+     * Mask selecting a slot
+     */
+    private int mask;
+    /**
+     * Number of entries before the table doubles
+     */
+    private int threshold;
+    /**
+     * Number of entries in the table, not counting key 0
+     */
+    private int length;
+    /**
+     * True if key 0 is in the map
+     */
+    private boolean hasZeroKey;
+    /**
+     * Value of key 0
+     */
+    private int zeroValue;
+
+    /**
+     * Create a map with the default capacity.
+     */
+    public IntIntMap() {
+        this(16);
+    }
+
+    /**
+     * Create a map.
+     *
+     * @param expected Number of entries to hold before growing
+     */
+    public IntIntMap(final int expected) {
+        this.allocate(PrimitiveHashing.tableSize(expected));
+    }
+
+    /**
+     * @param capacity Length of the new table
+     */
+    private void allocate(final int capacity) {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.threshold = PrimitiveHashing.threshold(capacity);
+    }
+
+    /**
+     * @param key Key to find
+     * @return Slot of the key, or -1 if absent.
+     */
+    private int slot(final int key) {
+        int index = PrimitiveHashing.mix(key) & this.mask;
+        int current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key Key to find
+     * @return Value of the key, or 0 if absent.
+     */
+    public int get(final int key) {
+        return this.getOrDefault(key, 0);
+    }
+
+    /**
+     * @param key          Key to find
+     * @param defaultValue Value returned if the key is absent
+     * @return Value of the key, or defaultValue if absent.
+     */
+    public int getOrDefault(final int key, final int defaultValue) {
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroValue : defaultValue;
+        }
+        final int index = this.slot(key);
+        return index < 0 ? defaultValue : this.values[index];
+    }
+
+    /**
+     * @param key Key to find
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(final int key) {
+        return key == 0 ? this.hasZeroKey : this.slot(key) >= 0;
+    }
+
+    /**
+     * Set the value of a key.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Previous value of the key, or 0 if absent.
+     * @throws IllegalStateException if the table is full at its largest length.
+     */
+    public int put(final int key, final int value) {
+        if (key == 0) {
+            final int previous = this.zeroValue;
+            this.zeroValue = value;
+            this.hasZeroKey = true;
+            return previous;
+        }
+        final int index = this.insertionSlot(key);
+        final int previous = this.values[index];
+        this.values[index] = value;
+        if (this.keys[index] == 0) {
+            this.keys[index] = key;
+            this.grow();
+        }
+        return previous;
+    }
+
+    /**
+     * Add to the value of a key, a missing key counting as 0.
+     *
+     * @param key   Key to add to
+     * @param delta Amount to add
+     * @return New value of the key
+     * @throws IllegalStateException if the table is full at its largest length.
+     */
+    public int addTo(final int key, final int delta) {
+        if (key == 0) {
+            this.zeroValue = (this.hasZeroKey ? this.zeroValue : 0) + delta;
+            this.hasZeroKey = true;
+            return this.zeroValue;
+        }
+        final int index = this.insertionSlot(key);
+        final int value = this.values[index] + delta;
+        this.values[index] = value;
+        if (this.keys[index] == 0) {
+            this.keys[index] = key;
+            this.grow();
+        }
+        return value;
+    }
+
+    /**
+     * @param key Key other than 0
+     * @return Slot holding the key, or the empty slot where it belongs
+     * @throws IllegalStateException if the key is missing and the table is full at its largest length.
+     */
+    private int insertionSlot(final int key) {
+        int index = PrimitiveHashing.mix(key) & this.mask;
+        int current;
+        while ((current = this.keys[index]) != 0 && current != key) {
+            index = (index + 1) & this.mask;
+        }
+        if (current == 0 && this.length > this.threshold) {
+            throw new IllegalStateException("Map is full");
+        }
+        return index;
+    }
+
+    /**
+     * Count a new entry, doubling the table past the threshold until it reaches
+     * its largest length.
+     */
+    private void grow() {
+        if (++this.length > this.threshold && this.keys.length < PrimitiveHashing.maximumCapacity) {
+            this.rehash(this.keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key Key to remove
+     * @return Value of the key, or 0 if absent.
+     */
+    public int remove(final int key) {
+        if (key == 0) {
+            final int previous = this.zeroValue;
+            this.hasZeroKey = false;
+            this.zeroValue = 0;
+            return previous;
+        }
+        final int index = this.slot(key);
+        if (index < 0) {
+            return 0;
+        }
+        final int previous = this.values[index];
+        this.shiftBack(index);
+        this.length--;
+        return previous;
+    }
+
+    /**
+     * Close the gap left by a removed entry, moving back each following entry
+     * whose home slot is at or before the gap.
+     *
+     * @param gap Slot emptied
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & this.mask;
+            final int current = this.keys[index];
+            if (current == 0) {
+                break;
+            }
+            final int home = PrimitiveHashing.mix(current) & this.mask;
+            if (((index - home) & this.mask) >= ((index - gap) & this.mask)) {
+                this.keys[gap] = current;
+                this.values[gap] = this.values[index];
+                gap = index;
+            }
+        }
+        this.keys[gap] = 0;
+        this.values[gap] = 0;
+    }
+
+    /**
+     * Rebuild the table at a new length.
+     *
+     * @param capacity Length of the new table
+     */
+    private void rehash(final int capacity) {
+        final int[] oldKeys = this.keys;
+        final int[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int old = 0; old < oldKeys.length; old++) {
+            final int key = oldKeys[old];
+            if (key != 0) {
+                int index = PrimitiveHashing.mix(key) & this.mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = key;
+                this.values[index] = oldValues[old];
+            }
+        }
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public int size() {
+        return this.length + (this.hasZeroKey ? 1 : 0);
+    }
+
+    /**
+     * @return True if the map is empty;
+     */
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, 0);
+        this.length = 0;
+        this.hasZeroKey = false;
+        this.zeroValue = 0;
+    }
+
+    /**
+     * Perform an action on each entry, in no particular order, without
+     * allocating.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final EntryConsumer action) {
+        if (this.hasZeroKey) {
+            action.accept(0, this.zeroValue);
+        }
+        for (int index = 0; index < this.keys.length; index++) {
+            if (this.keys[index] != 0) {
+                action.accept(this.keys[index], this.values[index]);
+            }
+        }
+    }
+
+    /**
+     * @return Array of the keys, in no particular order
+     */
+    public int[] keys() {
+        final int[] array = new int[this.size()];
+        int count = 0;
+        if (this.hasZeroKey) {
+            array[count++] = 0;
+        }
+        for (final int key : this.keys) {
+            if (key != 0) {
+                array[count++] = key;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Receives the entries of an IntIntMap.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * @param key   Key of the entry
+         * @param value Value of the entry
+         */
+        void accept(int key, int value);
+    }
+}
@@ -77,10 +77,7 @@ public class LinkedList<E> extends AbstractList<E> implements Serializable {
             return null;
         }
 
-        final Node node = this.getHead();
-        this.remove(node.getValue());
-
-        return node.getValue();
+        return this.unlink(this.getHead());
     }
 
     /**
@@ -91,9 +88,6 @@ public class LinkedList<E> extends AbstractList<E> implements Serializable {
         if (this.getTail() == null) {
             return null;
         }
-        final Node node = this.getTail();
-        this.remove(node.getValue());
-
-        return node.getValue();
+        return this.unlink(this.getTail());
     }
 }
@@ -0,0 +1,241 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Unbounded first in first out queue for any number of producers and consumers,
+ * using the Michael-Scott algorithm: a linked list with a dummy head node, where
+ * offer links a node at the tail and poll advances the head, each with a compare
+ * and set, so no thread ever blocks another.
+ * <p>
+ * offerAll links the whole batch as a chain with a single compare and set, so
+ * the batch is appended atomically and in order.
+ *
+ * @param <E> Element type for this queue
+ * @author jmiller
+ */
+public class LockFreeQueue<E> implements ConcurrentContainer<E> {
+    /**
+     * Handle to compare and set the head
+     */
+    private static final VarHandle HEAD;
+    /**
+     * Handle to compare and set the tail
+     */
+    private static final VarHandle TAIL;
+    /**
+     * Handle to compare and set the next node
+     */
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(LockFreeQueue.class, "head", Node.class);
+            TAIL = lookup.findVarHandle(LockFreeQueue.class, "tail", Node.class);
+            NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Dummy node before the first element
+     */
+    private volatile Node<E> head;
+    /**
+     * Last node, or a node shortly before it
+     */
+    private volatile Node<E> tail;
+
+    /**
+     * Create an empty queue.
+     */
+    public LockFreeQueue() {
+        this.head = new Node<>(null);
+        this.tail = this.head;
+    }
+
+    @Override
+    public boolean offer(final E element) {
+        final Node<E> node = new Node<>(Objects.requireNonNull(element));
+        this.append(node, node);
+        return true;
+    }
+
+    @Override
+    public int offerAll(final Collection<? extends E> elements) {
+        Node<E> first = null;
+        Node<E> last = null;
+        int count = 0;
+        for (final E element : elements) {
+            final Node<E> node = new Node<>(Objects.requireNonNull(element));
+            if (first == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            count++;
+        }
+        if (first != null) {
+            this.append(first, last);
+        }
+        return count;
+    }
+
+    /**
+     * Link a chain of nodes after the last node.
+     *
+     * @param first First node of the chain
+     * @param last  Last node of the chain
+     */
+    private void append(final Node<E> first, final Node<E> last) {
+        while (true) {
+            final Node<E> current = this.tail;
+            final Node<E> next = current.next;
+            if (current == this.tail) {
+                if (next == null) {
+                    if (LockFreeQueue.NEXT.compareAndSet(current, null, first)) {
+                        LockFreeQueue.TAIL.compareAndSet(this, current, last);
+                        return;
+                    }
+                } else {
+                    LockFreeQueue.TAIL.compareAndSet(this, current, next);
+                }
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        while (true) {
+            final Node<E> first = this.head;
+            final Node<E> last = this.tail;
+            final Node<E> next = first.next;
+            if (first == this.head) {
+                if (next == null) {
+                    return null;
+                }
+                if (first == last) {
+                    LockFreeQueue.TAIL.compareAndSet(this, last, next);
+                } else {
+                    final E item = next.item;
+                    if (LockFreeQueue.HEAD.compareAndSet(this, first, next)) {
+                        next.item = null;
+                        return item;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        while (true) {
+            final Node<E> first = this.head;
+            final Node<E> next = first.next;
+            if (next == null) {
+                return null;
+            }
+            final E item = next.item;
+            if (first == this.head && item != null) {
+                return item;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(final E element) {
+        for (Node<E> node = this.head.next; node != null; node = node.next) {
+            final E item = node.item;
+            if (item != null && item.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.head.next == null;
+    }
+
+    /**
+     * @return Number of elements, counted by walking the queue.
+     */
+    @Override
+    public int size() {
+        int count = 0;
+        for (Node<E> node = this.head.next; node != null && count < Integer.MAX_VALUE; node = node.next) {
+            if (node.item != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copy the elements from head to tail into an array. If the queue changed
+     * since the array was sized, extra elements are left out and unused slots are
+     * set to null.
+     *
+     * @param array Array of type E[] the size of this container.
+     * @return Array containing the data of this container
+     */
+    @Override
+    public E[] toArray(final E[] array) {
+        int index = 0;
+        for (Node<E> node = this.head.next; node != null && index < array.length; node = node.next) {
+            final E item = node.item;
+            if (item != null) {
+                array[index++] = item;
+            }
+        }
+        while (index < array.length) {
+            array[index++] = null;
+        }
+        return array;
+    }
+
+    /**
+     * Node of the queue
+     *
+     * @param <E> Element type
+     */
+    private static final class Node<E> {
+        /**
+         * Element of the node, null once polled
+         */
+        private volatile E item;
+        /**
+         * Next node
+         */
+        private volatile Node<E> next;
+
+        /**
+         * @param item Element of the node
+         */
+        Node(final E item) {
+            this.item = item;
+        }
+    }
+}
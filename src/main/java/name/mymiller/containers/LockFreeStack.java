@@ -0,0 +1,222 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Unbounded last in first out stack for any number of threads, using Treiber's
+ * algorithm: push and pop replace the top node with a compare and set. offer and
+ * poll are push and pop.
+ * <p>
+ * pushAll pushes a batch with a single compare and set, and drainTo takes the
+ * whole stack by swapping the top for null, so batches cost one atomic
+ * operation rather than one per element.
+ *
+ * @param <E> Element type for this stack
+ * @author jmiller
+ */
+public class LockFreeStack<E> implements ConcurrentContainer<E> {
+    /**
+     * Handle to compare and set the top
+     */
+    private static final VarHandle TOP;
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(LockFreeStack.class, "top", Node.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Top node of the stack, null if empty
+     */
+    private volatile Node<E> top;
+
+    /**
+     * Push the value onto the stack
+     *
+     * @param value Value to push onto the stack
+     */
+    public void push(final E value) {
+        final Node<E> node = new Node<>(Objects.requireNonNull(value));
+        do {
+            node.next = this.top;
+        } while (!LockFreeStack.TOP.compareAndSet(this, node.next, node));
+    }
+
+    /**
+     * Push the elements of a collection in order, so the last is on top, as one
+     * atomic operation.
+     *
+     * @param values Values to push
+     * @return Number of values pushed
+     */
+    public int pushAll(final Collection<? extends E> values) {
+        Node<E> first = null;
+        Node<E> last = null;
+        int count = 0;
+        for (final E value : values) {
+            final Node<E> node = new Node<>(Objects.requireNonNull(value));
+            node.next = first;
+            if (last == null) {
+                last = node;
+            }
+            first = node;
+            count++;
+        }
+        if (first != null) {
+            do {
+                last.next = this.top;
+            } while (!LockFreeStack.TOP.compareAndSet(this, last.next, first));
+        }
+        return count;
+    }
+
+    /**
+     * @return Top Element in the stack, or null if empty.
+     */
+    public E pop() {
+        Node<E> current;
+        do {
+            current = this.top;
+            if (current == null) {
+                return null;
+            }
+        } while (!LockFreeStack.TOP.compareAndSet(this, current, current.next));
+        return current.item;
+    }
+
+    @Override
+    public boolean offer(final E element) {
+        this.push(element);
+        return true;
+    }
+
+    @Override
+    public int offerAll(final Collection<? extends E> elements) {
+        return this.pushAll(elements);
+    }
+
+    @Override
+    public E poll() {
+        return this.pop();
+    }
+
+    @Override
+    public E peek() {
+        final Node<E> current = this.top;
+        return current == null ? null : current.item;
+    }
+
+    /**
+     * Take every element in one atomic operation, adding them to a collection from
+     * the top down.
+     *
+     * @param target Collection receiving the elements
+     * @return Number of elements moved
+     */
+    @Override
+    public int drainTo(final Collection<? super E> target) {
+        int count = 0;
+        for (Node<E> node = (Node<E>) LockFreeStack.TOP.getAndSet(this, (Node<E>) null); node != null;
+             node = node.next) {
+            target.add(node.item);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        this.top = null;
+    }
+
+    @Override
+    public boolean contains(final E element) {
+        for (Node<E> node = this.top; node != null; node = node.next) {
+            if (node.item.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.top == null;
+    }
+
+    /**
+     * @return Number of elements, counted by walking the stack.
+     */
+    @Override
+    public int size() {
+        int count = 0;
+        for (Node<E> node = this.top; node != null && count < Integer.MAX_VALUE; node = node.next) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Copy the elements from the top down into an array. If the stack changed
+     * since the array was sized, extra elements are left out and unused slots are
+     * set to null.
+     *
+     * @param array Array of type E[] the size of this container.
+     * @return Array containing the data of this container
+     */
+    @Override
+    public E[] toArray(final E[] array) {
+        int index = 0;
+        for (Node<E> node = this.top; node != null && index < array.length; node = node.next) {
+            array[index++] = node.item;
+        }
+        while (index < array.length) {
+            array[index++] = null;
+        }
+        return array;
+    }
+
+    /**
+     * Node of the stack, immutable once pushed
+     *
+     * @param <E> Element type
+     */
+    private static final class Node<E> {
+        /**
+         * Element of the node
+         */
+        private final E item;
+        /**
+         * Node below this one
+         */
+        private Node<E> next;
+
+        /**
+         * @param item Element of the node
+         */
+        Node(final E item) {
+            this.item = item;
+        }
+    }
+}
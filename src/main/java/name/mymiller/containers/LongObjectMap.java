@@ -0,0 +1,324 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * Map from long keys to Objects without boxing the keys. Keys and values sit in
+ * two parallel arrays searched by linear probing, so there is no object per
+ * entry, and removal shifts later entries back rather than leaving tombstones.
+ * Key 0 marks an empty slot, so its entry is held apart from the table. Null
+ * values are not permitted, as get returns null for a missing key.
+ * <p>
+ * The map is not safe for concurrent use.
+ *
+ * @param <V> Type of the values
+ * @author jmiller
+ */
+public class LongObjectMap<V> {
+    /**
+     * Keys of the table, 0 for an empty slot
+     */
+    private long[] keys;
+    /**
+     * Values of the table
+     */
+    private Object[] values;
+    /**
+     * Mask selecting a slot
+     */
+    private int mask;
+    /**
+     * Number of entries before the table doubles
+     */
+    private int threshold;
+    /**
+     * Number of entries in the table, not counting key 0
+     */
+    private int length;
+    /**
+     * Value of key 0, or null if absent
+     */
+    private V zeroValue;
+
+    /**
+     * Create a map with the default capacity.
+     */
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Create a map.
+     *
+     * @param expected Number of entries to hold before growing
+     */
+    public LongObjectMap(final int expected) {
+        this.allocate(PrimitiveHashing.tableSize(expected));
+    }
+
+    /**
+     * @param capacity Length of the new table
+     */
+    private void allocate(final int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.threshold = PrimitiveHashing.threshold(capacity);
+    }
+
+    /**
+     * @param key Key to find
+     * @return Slot of the key, or -1 if absent.
+     */
+    private int slot(final long key) {
+        int index = PrimitiveHashing.mix(key) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key Key to find
+     * @return Value of the key, or null if absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        if (key == 0) {
+            return this.zeroValue;
+        }
+        final int index = this.slot(key);
+        return index < 0 ? null : (V) this.values[index];
+    }
+
+    /**
+     * @param key Key to find
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(final long key) {
+        return key == 0 ? this.zeroValue != null : this.slot(key) >= 0;
+    }
+
+    /**
+     * Set the value of a key.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Previous value of the key, or null if absent.
+     * @throws IllegalStateException if the table is full at its largest length.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        Objects.requireNonNull(value, "value may not be null");
+        if (key == 0) {
+            final V previous = this.zeroValue;
+            this.zeroValue = value;
+            return previous;
+        }
+        int index = PrimitiveHashing.mix(key) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                final V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+        if (this.length > this.threshold) {
+            throw new IllegalStateException("Map is full");
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.length > this.threshold && this.keys.length < PrimitiveHashing.maximumCapacity) {
+            this.rehash(this.keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Return the value of a key, computing and setting it if absent.
+     *
+     * @param key      Key to find
+     * @param function Computes the value of a missing key
+     * @return Value of the key
+     */
+    public V computeIfAbsent(final long key, final LongFunction<? extends V> function) {
+        final V current = this.get(key);
+        if (current != null) {
+            return current;
+        }
+        final V value = function.apply(key);
+        if (value != null) {
+            this.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key Key to remove
+     * @return Value of the key, or null if absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        if (key == 0) {
+            final V previous = this.zeroValue;
+            this.zeroValue = null;
+            return previous;
+        }
+        final int index = this.slot(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = (V) this.values[index];
+        this.shiftBack(index);
+        this.length--;
+        return previous;
+    }
+
+    /**
+     * Close the gap left by a removed entry, moving back each following entry
+     * whose home slot is at or before the gap, so every entry stays reachable
+     * from its home slot without tombstones.
+     *
+     * @param gap Slot emptied
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & this.mask;
+            final long current = this.keys[index];
+            if (current == 0) {
+                break;
+            }
+            final int home = PrimitiveHashing.mix(current) & this.mask;
+            if (((index - home) & this.mask) >= ((index - gap) & this.mask)) {
+                this.keys[gap] = current;
+                this.values[gap] = this.values[index];
+                gap = index;
+            }
+        }
+        this.keys[gap] = 0;
+        this.values[gap] = null;
+    }
+
+    /**
+     * Rebuild the table at a new length.
+     *
+     * @param capacity Length of the new table
+     */
+    private void rehash(final int capacity) {
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int old = 0; old < oldKeys.length; old++) {
+            final long key = oldKeys[old];
+            if (key != 0) {
+                int index = PrimitiveHashing.mix(key) & this.mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = key;
+                this.values[index] = oldValues[old];
+            }
+        }
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public int size() {
+        return this.length + (this.zeroValue != null ? 1 : 0);
+    }
+
+    /**
+     * @return True if the map is empty;
+     */
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.length = 0;
+        this.zeroValue = null;
+    }
+
+    /**
+     * Perform an action on each entry, in no particular order, without
+     * allocating.
+     *
+     * @param action Action to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final EntryConsumer<? super V> action) {
+        if (this.zeroValue != null) {
+            action.accept(0, this.zeroValue);
+        }
+        for (int index = 0; index < this.keys.length; index++) {
+            if (this.keys[index] != 0) {
+                action.accept(this.keys[index], (V) this.values[index]);
+            }
+        }
+    }
+
+    /**
+     * @return Array of the keys, in no particular order
+     */
+    public long[] keys() {
+        final long[] array = new long[this.size()];
+        int count = 0;
+        if (this.zeroValue != null) {
+            array[count++] = 0;
+        }
+        for (final long key : this.keys) {
+            if (key != 0) {
+                array[count++] = key;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Receives the entries of a LongObjectMap.
+     *
+     * @param <V> Type of the values
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * @param key   Key of the entry
+         * @param value Value of the entry
+         */
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of longs without boxing, for distinct ids. Values sit in one array searched
+ * by linear probing, and removal shifts later values back rather than leaving
+ * tombstones. 0 marks an empty slot, so its presence is held apart from the
+ * table.
+ * <p>
+ * The set is not safe for concurrent use.
+ *
+ * @author jmiller
+ */
+public class LongSet {
+    /**
+     * Values of the table, 0 for an empty slot
+     */
+    private long[] keys;
+    /**
+     * Mask selecting a slot
+     */
+    private int mask;
+    /**
+     * Number of values before the table doubles
+     */
+    private int threshold;
+    /**
+     * Number of values in the table, not counting 0
+     */
+    private int length;
+    /**
+     * True if 0 is in the set
+     */
+    private boolean hasZero;
+
+    /**
+     * Create a set with the default capacity.
+     */
+    public LongSet() {
+        this(16);
+    }
+
+    /**
+     * Create a set.
+     *
+     * @param expected Number of values to hold before growing
+     */
+    public LongSet(final int expected) {
+        this.allocate(PrimitiveHashing.tableSize(expected));
+    }
+
+    /**
+     * @param capacity Length of the new table
+     */
+    private void allocate(final int capacity) {
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        this.threshold = PrimitiveHashing.threshold(capacity);
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value Value to add
+     * @return true if the value was not already in the set
+     * @throws IllegalStateException if the table is full at its largest length.
+     */
+    public boolean add(final long value) {
+        if (value == 0) {
+            final boolean added = !this.hasZero;
+            this.hasZero = true;
+            return added;
+        }
+        int index = PrimitiveHashing.mix(value) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == value) {
+                return false;
+            }
+            index = (index + 1) & this.mask;
+        }
+        if (this.length > this.threshold) {
+            throw new IllegalStateException("Set is full");
+        }
+        this.keys[index] = value;
+        if (++this.length > this.threshold && this.keys.length < PrimitiveHashing.maximumCapacity) {
+            this.rehash(this.keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @param value Value to find
+     * @return true if the value is in the set
+     */
+    public boolean contains(final long value) {
+        return value == 0 ? this.hasZero : this.slot(value) >= 0;
+    }
+
+    /**
+     * @param value Value to find
+     * @return Slot of the value, or -1 if absent.
+     */
+    private int slot(final long value) {
+        int index = PrimitiveHashing.mix(value) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == value) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param value Value to remove
+     * @return true if the value was in the set
+     */
+    public boolean remove(final long value) {
+        if (value == 0) {
+            final boolean removed = this.hasZero;
+            this.hasZero = false;
+            return removed;
+        }
+        int gap = this.slot(value);
+        if (gap < 0) {
+            return false;
+        }
+        int index = gap;
+        while (true) {
+            index = (index + 1) & this.mask;
+            final long current = this.keys[index];
+            if (current == 0) {
+                break;
+            }
+            final int home = PrimitiveHashing.mix(current) & this.mask;
+            if (((index - home) & this.mask) >= ((index - gap) & this.mask)) {
+                this.keys[gap] = current;
+                gap = index;
+            }
+        }
+        this.keys[gap] = 0;
+        this.length--;
+        return true;
+    }
+
+    /**
+     * Rebuild the table at a new length.
+     *
+     * @param capacity Length of the new table
+     */
+    private void rehash(final int capacity) {
+        final long[] oldKeys = this.keys;
+        this.allocate(capacity);
+        for (final long value : oldKeys) {
+            if (value != 0) {
+                int index = PrimitiveHashing.mix(value) & this.mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = value;
+            }
+        }
+    }
+
+    /**
+     * @return Number of values
+     */
+    public int size() {
+        return this.length + (this.hasZero ? 1 : 0);
+    }
+
+    /**
+     * @return True if the set is empty;
+     */
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        this.length = 0;
+        this.hasZero = false;
+    }
+
+    /**
+     * Perform an action on each value, in no particular order, without
+     * allocating.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final LongConsumer action) {
+        if (this.hasZero) {
+            action.accept(0);
+        }
+        for (final long value : this.keys) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * @return Array of the values, in no particular order
+     */
+    public long[] toArray() {
+        final long[] array = new long[this.size()];
+        int count = 0;
+        if (this.hasZero) {
+            array[count++] = 0;
+        }
+        for (final long value : this.keys) {
+            if (value != 0) {
+                array[count++] = value;
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,552 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Sorted map from long keys to Objects backed by a skip list, as SkipListMap but
+ * holding the keys unboxed and comparing them without a Comparator, for buffers
+ * ordered by timestamp or sequence number.
+ * <p>
+ * Reads walk the list without locking and writes are serialized, as in
+ * SkipListMap. Entries are returned as LongSkipListMap.Entry so the key stays a
+ * long. Null values are not permitted.
+ *
+ * @param <V> Type of the values
+ * @author jmiller
+ */
+public class LongSkipListMap<V> implements Iterable<LongSkipListMap.Entry<V>> {
+    /**
+     * Handle to load and store the links of a node with ordering
+     */
+    private static final VarHandle NEXT = MethodHandles.arrayElementVarHandle(Node[].class);
+
+    /**
+     * Sentinel before the first node, linked at every level
+     */
+    private final Node<V> head = new Node<>(0, null, SkipListMap.maxLevel);
+    /**
+     * Number of keys
+     */
+    private volatile int length;
+    /**
+     * Number of levels in use
+     */
+    private volatile int levels = 1;
+
+    /**
+     * @param node  Node to read
+     * @param level Level of the link
+     * @param <V>   Type of the values
+     * @return Next node at the level, or null
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V> next(final Node<V> node, final int level) {
+        return (Node<V>) LongSkipListMap.NEXT.getAcquire(node.next, level);
+    }
+
+    /**
+     * Walk down the levels to the last node before a key.
+     *
+     * @param key       Key to find
+     * @param inclusive true to also pass a node equal to the key
+     * @return Last node below the key, or at it if inclusive; the head if none.
+     */
+    private Node<V> descend(final long key, final boolean inclusive) {
+        Node<V> current = this.head;
+        for (int level = this.levels - 1; level >= 0; level--) {
+            Node<V> next;
+            while ((next = LongSkipListMap.next(current, level)) != null) {
+                if (next.key > key || (next.key == key && !inclusive)) {
+                    break;
+                }
+                current = next;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param node Node to start from
+     * @param <V>  Type of the values
+     * @return The node or the first node after it that is not removed, or null.
+     */
+    private static <V> Node<V> live(Node<V> node) {
+        while (node != null && node.removed) {
+            node = LongSkipListMap.next(node, 0);
+        }
+        return node;
+    }
+
+    /**
+     * @param key       Key to find
+     * @param inclusive true to accept a node equal to the key
+     * @return Last live node below the key, or at it if inclusive; null if none.
+     */
+    private Node<V> before(final long key, final boolean inclusive) {
+        Node<V> node = this.descend(key, inclusive);
+        while (node != this.head && node.removed) {
+            node = this.descend(node.key, false);
+        }
+        return node == this.head ? null : node;
+    }
+
+    /**
+     * @param key       Key to find
+     * @param inclusive true to accept a node equal to the key
+     * @return First live node above the key, or at it if inclusive; null if none.
+     */
+    private Node<V> after(final long key, final boolean inclusive) {
+        return LongSkipListMap.live(LongSkipListMap.next(this.descend(key, !inclusive), 0));
+    }
+
+    /**
+     * @param node Node to copy, or null
+     * @param <V>  Type of the values
+     * @return Snapshot of the node's key and value, or null.
+     */
+    private static <V> Entry<V> entry(final Node<V> node) {
+        return node == null ? null : new Entry<>(node.key, node.value);
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key Key to find
+     * @return Value of the key, or null if absent.
+     */
+    public V get(final long key) {
+        final Node<V> node = this.after(key, true);
+        return node != null && node.key == key ? node.value : null;
+    }
+
+    /**
+     * @param key Key to find
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(final long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the greatest key at or below the key, or null if none.
+     */
+    public Entry<V> floorEntry(final long key) {
+        return LongSkipListMap.entry(this.before(key, true));
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the greatest key strictly below the key, or null if
+     * none.
+     */
+    public Entry<V> lowerEntry(final long key) {
+        return LongSkipListMap.entry(this.before(key, false));
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the least key at or above the key, or null if none.
+     */
+    public Entry<V> ceilingEntry(final long key) {
+        return LongSkipListMap.entry(this.after(key, true));
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the least key strictly above the key, or null if none.
+     */
+    public Entry<V> higherEntry(final long key) {
+        return LongSkipListMap.entry(this.after(key, false));
+    }
+
+    /**
+     * @return Entry with the least key, or null if empty.
+     */
+    public Entry<V> firstEntry() {
+        return LongSkipListMap.entry(LongSkipListMap.live(LongSkipListMap.next(this.head, 0)));
+    }
+
+    /**
+     * @return Entry with the greatest key, or null if empty.
+     */
+    public Entry<V> lastEntry() {
+        Node<V> current = this.head;
+        for (int level = this.levels - 1; level >= 0; level--) {
+            Node<V> next;
+            while ((next = LongSkipListMap.next(current, level)) != null) {
+                current = next;
+            }
+        }
+        if (current != this.head && current.removed) {
+            return LongSkipListMap.entry(this.before(current.key, false));
+        }
+        return LongSkipListMap.entry(current == this.head ? null : current);
+    }
+
+    /**
+     * Set the value of a key.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Previous value of the key, or null if absent.
+     */
+    public V put(final long key, final V value) {
+        return this.insert(key, value, false);
+    }
+
+    /**
+     * Set the value of a key if absent.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Current value of the key, or null if it was absent and is now set.
+     */
+    public V putIfAbsent(final long key, final V value) {
+        return this.insert(key, value, true);
+    }
+
+    /**
+     * Find the last node before a key at every level. Must hold the monitor.
+     *
+     * @param key   Key to find
+     * @param preds Receives the last node before the key at each level
+     * @return Node of the key, or null if absent.
+     */
+    private Node<V> predecessors(final long key, final Node<V>[] preds) {
+        Node<V> current = this.head;
+        for (int level = SkipListMap.maxLevel - 1; level >= 0; level--) {
+            Node<V> next;
+            while ((next = current.next[level]) != null && next.key < key) {
+                current = next;
+            }
+            preds[level] = current;
+        }
+        final Node<V> next = current.next[0];
+        return next != null && next.key == key ? next : null;
+    }
+
+    /**
+     * @param key          Key to set
+     * @param value        Value of the key
+     * @param onlyIfAbsent true to leave an existing value
+     * @return Previous value of the key, or null if absent.
+     */
+    private synchronized V insert(final long key, final V value, final boolean onlyIfAbsent) {
+        Objects.requireNonNull(value, "value may not be null");
+        final Node<V>[] preds = Node.array(SkipListMap.maxLevel);
+        final Node<V> found = this.predecessors(key, preds);
+        if (found != null) {
+            final V previous = found.value;
+            if (!onlyIfAbsent) {
+                found.value = value;
+            }
+            return previous;
+        }
+        final int level = SkipListMap.randomLevel();
+        final Node<V> node = new Node<>(key, value, level);
+        for (int index = 0; index < level; index++) {
+            node.next[index] = preds[index].next[index];
+        }
+        for (int index = 0; index < level; index++) {
+            LongSkipListMap.NEXT.setRelease(preds[index].next, index, node);
+        }
+        if (level > this.levels) {
+            this.levels = level;
+        }
+        this.length++;
+        return null;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key Key to remove
+     * @return Value of the key, or null if absent.
+     */
+    public synchronized V remove(final long key) {
+        final Node<V>[] preds = Node.array(SkipListMap.maxLevel);
+        final Node<V> found = this.predecessors(key, preds);
+        if (found == null) {
+            return null;
+        }
+        found.removed = true;
+        for (int index = found.next.length - 1; index >= 0; index--) {
+            LongSkipListMap.NEXT.setRelease(preds[index].next, index, found.next[index]);
+        }
+        this.length--;
+        this.trimLevels();
+        return found.value;
+    }
+
+    /**
+     * Remove the entry with the least key.
+     *
+     * @return Entry removed, or null if empty.
+     */
+    public synchronized Entry<V> pollFirstEntry() {
+        final Node<V> first = this.head.next[0];
+        if (first == null) {
+            return null;
+        }
+        final Entry<V> entry = LongSkipListMap.entry(first);
+        this.remove(first.key);
+        return entry;
+    }
+
+    /**
+     * Remove every key below a bound in one pass.
+     *
+     * @param key Least key to keep
+     * @return Number of keys removed
+     */
+    public synchronized int removeBefore(final long key) {
+        int removed = 0;
+        for (Node<V> node = this.head.next[0]; node != null && node.key < key;
+             node = node.next[0]) {
+            node.removed = true;
+            removed++;
+        }
+        if (removed == 0) {
+            return 0;
+        }
+        for (int level = this.levels - 1; level >= 0; level--) {
+            Node<V> node = this.head.next[level];
+            while (node != null && node.removed) {
+                node = node.next[level];
+            }
+            LongSkipListMap.NEXT.setRelease(this.head.next, level, node);
+        }
+        this.length -= removed;
+        this.trimLevels();
+        return removed;
+    }
+
+    /**
+     * Drop empty top levels. Must hold the monitor.
+     */
+    private void trimLevels() {
+        int top = this.levels;
+        while (top > 1 && this.head.next[top - 1] == null) {
+            top--;
+        }
+        this.levels = top;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        for (Node<V> node = this.head.next[0]; node != null; node = node.next[0]) {
+            node.removed = true;
+        }
+        for (int level = 0; level < SkipListMap.maxLevel; level++) {
+            LongSkipListMap.NEXT.setRelease(this.head.next, level, null);
+        }
+        this.length = 0;
+        this.levels = 1;
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public int size() {
+        return this.length;
+    }
+
+    /**
+     * @return True if the map is empty;
+     */
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    /**
+     * Perform an action on each entry in key order, without allocating.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final LongObjectMap.EntryConsumer<? super V> action) {
+        for (Node<V> node = LongSkipListMap.live(LongSkipListMap.next(this.head, 0)); node != null;
+             node = LongSkipListMap.live(LongSkipListMap.next(node, 0))) {
+            action.accept(node.key, node.value);
+        }
+    }
+
+    /**
+     * Perform an action on each entry with a key in a range, in key order,
+     * without allocating.
+     *
+     * @param from   Least key, inclusive
+     * @param to     Bound above the keys, exclusive
+     * @param action Action to perform
+     */
+    public void forEachInRange(final long from, final long to, final LongObjectMap.EntryConsumer<? super V> action) {
+        for (Node<V> node = this.after(from, true); node != null && node.key < to;
+             node = LongSkipListMap.live(LongSkipListMap.next(node, 0))) {
+            action.accept(node.key, node.value);
+        }
+    }
+
+    /**
+     * @param from Least key, inclusive
+     * @param to   Bound above the keys, exclusive
+     * @return Entries with a key in the range, in key order
+     */
+    public Iterable<Entry<V>> range(final long from, final long to) {
+        return () -> this.iterate(this.after(from, true), true, to);
+    }
+
+    /**
+     * Iterate the entries in key order.
+     *
+     * @return Iterator of the entries
+     */
+    @Override
+    public Iterator<Entry<V>> iterator() {
+        return this.iterate(LongSkipListMap.live(LongSkipListMap.next(this.head, 0)), false, 0);
+    }
+
+    /**
+     * @param first   First live node, or null
+     * @param bounded true to stop at the bound
+     * @param to      Bound above the keys, exclusive
+     * @return Iterator of the entries from the node
+     */
+    private Iterator<Entry<V>> iterate(final Node<V> first, final boolean bounded, final long to) {
+        return new Iterator<>() {
+            private Node<V> next = this.check(first);
+
+            /**
+             * @param node Live node, or null
+             * @return The node, or null past the bound
+             */
+            private Node<V> check(final Node<V> node) {
+                return node != null && (!bounded || node.key < to) ? node : null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public Entry<V> next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Entry<V> entry = LongSkipListMap.entry(this.next);
+                this.next = this.check(LongSkipListMap.live(LongSkipListMap.next(this.next, 0)));
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Key and value of a LongSkipListMap, copied when read
+     *
+     * @param <V> Type of the value
+     */
+    public static final class Entry<V> {
+        /**
+         * Key of the entry
+         */
+        private final long key;
+        /**
+         * Value of the entry
+         */
+        private final V value;
+
+        /**
+         * @param key   Key of the entry
+         * @param value Value of the entry
+         */
+        Entry(final long key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * @return Key of the entry
+         */
+        public long getKey() {
+            return this.key;
+        }
+
+        /**
+         * @return Value of the entry
+         */
+        public V getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
+    }
+
+    /**
+     * Node of the skip list, linked at one or more levels
+     *
+     * @param <V> Type of the values
+     */
+    private static final class Node<V> {
+        /**
+         * Key of the node
+         */
+        private final long key;
+        /**
+         * Links to the next node at each level
+         */
+        private final Node<V>[] next;
+        /**
+         * Value of the key
+         */
+        private volatile V value;
+        /**
+         * True once removed, before being unlinked
+         */
+        private volatile boolean removed;
+
+        /**
+         * @param key   Key of the node
+         * @param value Value of the key
+         * @param level Number of levels the node is linked at
+         */
+        Node(final long key, final V value, final int level) {
+            this.key = key;
+            this.value = value;
+            this.next = Node.array(level);
+        }
+
+        /**
+         * @param length Length of the array
+         * @param <V>    Type of the values
+         * @return Array of nodes
+         */
+        @SuppressWarnings("unchecked")
+        static <V> Node<V>[] array(final int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+    }
+}
@@ -0,0 +1,711 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent key value store kept in memory mapped files, so large tables live
+ * outside the heap and are usable as soon as the files are mapped.
+ * <p>
+ * Records are appended to a log split into segment files, each record a CRC32C,
+ * the key and value lengths, and the encoded key and value. Removing a key
+ * appends a tombstone. The heap holds only an open addressing index of record
+ * locations and key hashes, two primitive arrays, with keys compared against the
+ * log.
+ * <p>
+ * On open the segments are replayed in order to rebuild the index. A record whose
+ * CRC does not match, such as one torn by a crash, ends its segment, so recovery
+ * keeps every record written before it. flush() forces the segments to disk.
+ * compact() rewrites the live records into new segments and deletes the old ones,
+ * reclaiming the space of overwritten and removed records.
+ * <p>
+ * Any number of threads may read at once; writes take an exclusive lock.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ * @author jmiller
+ */
+public class MappedStore<K, V> implements Closeable {
+    /**
+     * Default size of a segment file
+     */
+    private static final int defaultSegmentSize = 64 << 20;
+    /**
+     * Bytes of a record header: CRC, key length + 1, value length or -1
+     */
+    private static final int headerSize = 12;
+    /**
+     * Value length marking a tombstone
+     */
+    private static final int tombstone = -1;
+    /**
+     * Suffix of segment files
+     */
+    private static final String segmentSuffix = ".seg";
+
+    /**
+     * Directory of the segment files
+     */
+    private final Path directory;
+    /**
+     * Codec of the keys
+     */
+    private final Codec<K> keyCodec;
+    /**
+     * Codec of the values
+     */
+    private final Codec<V> valueCodec;
+    /**
+     * Size of a new segment file
+     */
+    private final int segmentSize;
+    /**
+     * Lock shared by readers, exclusive to writers
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Segments by id
+     */
+    private final LongObjectMap<Segment> segments = new LongObjectMap<>();
+
+    /**
+     * Location of each record in the index, segment id in the high 32 bits and
+     * offset in the low 32 bits, plus one; 0 for an empty slot
+     */
+    private long[] locations;
+    /**
+     * Hash of the key of each record in the index
+     */
+    private int[] hashes;
+    /**
+     * Number of keys
+     */
+    private int length;
+    /**
+     * Segment being appended to
+     */
+    private Segment active;
+    /**
+     * True once closed
+     */
+    private boolean closed;
+
+    /**
+     * Open a store with the default segment size, creating the directory if
+     * needed.
+     *
+     * @param directory  Directory of the segment files
+     * @param keyCodec   Codec of the keys
+     * @param valueCodec Codec of the values
+     * @throws IOException if the segments could not be opened.
+     */
+    public MappedStore(final Path directory, final Codec<K> keyCodec, final Codec<V> valueCodec) throws IOException {
+        this(directory, keyCodec, valueCodec, MappedStore.defaultSegmentSize);
+    }
+
+    /**
+     * Open a store, creating the directory if needed.
+     *
+     * @param directory   Directory of the segment files
+     * @param keyCodec    Codec of the keys
+     * @param valueCodec  Codec of the values
+     * @param segmentSize Size of a new segment file
+     * @throws IOException if the segments could not be opened.
+     */
+    public MappedStore(final Path directory, final Codec<K> keyCodec, final Codec<V> valueCodec,
+                       final int segmentSize) throws IOException {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+        }
+        this.directory = Objects.requireNonNull(directory, "directory may not be null");
+        this.keyCodec = Objects.requireNonNull(keyCodec, "keyCodec may not be null");
+        this.valueCodec = Objects.requireNonNull(valueCodec, "valueCodec may not be null");
+        this.segmentSize = segmentSize;
+        this.locations = new long[16];
+        this.hashes = new int[16];
+        Files.createDirectories(directory);
+        this.recover();
+    }
+
+    /**
+     * Map the existing segments in order and replay their records.
+     *
+     * @throws IOException if a segment could not be opened.
+     */
+    private void recover() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+                "*" + MappedStore.segmentSuffix)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - MappedStore.segmentSuffix.length())));
+                } catch (final NumberFormatException e) {
+                    // not a segment of this store
+                }
+            }
+        }
+        ids.sort(null);
+        for (final long id : ids) {
+            final Segment segment = this.openSegment(id, 0);
+            this.replay(segment);
+            this.active = segment;
+        }
+        if (this.active == null) {
+            this.active = this.openSegment(0, this.segmentSize);
+        }
+    }
+
+    /**
+     * Replay the records of a segment into the index, stopping at the end of the
+     * data or at the first damaged record.
+     *
+     * @param segment Segment to replay
+     */
+    private void replay(final Segment segment) {
+        final ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + MappedStore.headerSize <= buffer.capacity()) {
+            final int keyLength = buffer.getInt(offset + 4) - 1;
+            final int valueLength = buffer.getInt(offset + 8);
+            if (keyLength < 0 || valueLength < MappedStore.tombstone) {
+                break;
+            }
+            final long size = (long) MappedStore.headerSize + keyLength + Math.max(valueLength, 0);
+            if (offset + size > buffer.capacity() || buffer.getInt(offset) != MappedStore.crc(buffer, offset)) {
+                break;
+            }
+            final byte[] key = new byte[keyLength];
+            buffer.get(offset + MappedStore.headerSize, key);
+            final int hash = MappedStore.hash(key);
+            final int slot = this.slot(key, hash);
+            if (slot >= 0) {
+                this.release(this.locations[slot] - 1);
+            }
+            if (valueLength == MappedStore.tombstone) {
+                segment.garbage += (int) size;
+                if (slot >= 0) {
+                    this.deleteSlot(slot);
+                }
+            } else {
+                this.store(slot, hash, MappedStore.location(segment.id, offset));
+            }
+            offset += (int) size;
+        }
+        segment.writeOffset = offset;
+    }
+
+    /**
+     * Open or create a segment file.
+     *
+     * @param id   Id of the segment
+     * @param size Size of a new file, or 0 to map an existing file at its size
+     * @return Segment mapped
+     * @throws IOException if the file could not be mapped.
+     */
+    private Segment openSegment(final long id, final int size) throws IOException {
+        final Path path = this.segmentPath(id);
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final long mapped = size > 0 ? size : channel.size();
+            if (mapped > Integer.MAX_VALUE) {
+                throw new IOException("Segment too large: " + path);
+            }
+            final Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped));
+            this.segments.put(id, segment);
+            return segment;
+        }
+    }
+
+    /**
+     * @param id Id of a segment
+     * @return Path of the segment file
+     */
+    private Path segmentPath(final long id) {
+        return this.directory.resolve(String.format("%012d%s", id, MappedStore.segmentSuffix));
+    }
+
+    /**
+     * @param id     Id of a segment
+     * @param offset Offset of a record in the segment
+     * @return Location of the record
+     */
+    private static long location(final long id, final int offset) {
+        return (id << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key Encoded key
+     * @return Hash of the key
+     */
+    private static int hash(final byte[] key) {
+        return PrimitiveHashing.mix(Arrays.hashCode(key));
+    }
+
+    /**
+     * Compute the CRC of a record from its lengths, key and value.
+     *
+     * @param buffer Segment holding the record
+     * @param offset Offset of the record
+     * @return CRC of the record
+     */
+    private static int crc(final ByteBuffer buffer, final int offset) {
+        final int keyLength = buffer.getInt(offset + 4) - 1;
+        final int valueLength = Math.max(buffer.getInt(offset + 8), 0);
+        final CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(offset + 4).limit(offset + MappedStore.headerSize + keyLength
+                + valueLength));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key Key to find
+     * @return Value of the key, or null if absent.
+     */
+    public V get(final K key) {
+        final byte[] encoded = this.keyCodec.encode(key);
+        this.lock.readLock().lock();
+        try {
+            this.checkOpen();
+            final int slot = this.slot(encoded, MappedStore.hash(encoded));
+            if (slot < 0) {
+                return null;
+            }
+            final long location = this.locations[slot] - 1;
+            final ByteBuffer buffer = this.segments.get(location >>> 32).buffer.duplicate();
+            final int offset = (int) location;
+            buffer.position(offset + MappedStore.headerSize + encoded.length);
+            return this.valueCodec.decode(buffer, buffer.getInt(offset + 8));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key Key to find
+     * @return true if the key is in the store
+     */
+    public boolean containsKey(final K key) {
+        final byte[] encoded = this.keyCodec.encode(key);
+        this.lock.readLock().lock();
+        try {
+            this.checkOpen();
+            return this.slot(encoded, MappedStore.hash(encoded)) >= 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Set the value of a key, appending a record to the log.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @throws IOException if a new segment could not be created.
+     */
+    public void put(final K key, final V value) throws IOException {
+        final byte[] encodedKey = this.keyCodec.encode(key);
+        final byte[] encodedValue = this.valueCodec.encode(Objects.requireNonNull(value, "value may not be null"));
+        this.lock.writeLock().lock();
+        try {
+            this.checkOpen();
+            final int hash = MappedStore.hash(encodedKey);
+            final int slot = this.slot(encodedKey, hash);
+            final long location = this.append(encodedKey, encodedValue);
+            if (slot >= 0) {
+                this.release(this.locations[slot] - 1);
+            }
+            this.store(slot, hash, location);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a key, appending a tombstone to the log.
+     *
+     * @param key Key to remove
+     * @return true if the key was in the store
+     * @throws IOException if a new segment could not be created.
+     */
+    public boolean remove(final K key) throws IOException {
+        final byte[] encoded = this.keyCodec.encode(key);
+        this.lock.writeLock().lock();
+        try {
+            this.checkOpen();
+            final int slot = this.slot(encoded, MappedStore.hash(encoded));
+            if (slot < 0) {
+                return false;
+            }
+            final long location = this.append(encoded, null);
+            this.segments.get(location >>> 32).garbage += MappedStore.headerSize + encoded.length;
+            this.release(this.locations[slot] - 1);
+            this.deleteSlot(slot);
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of keys
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.length;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Perform an action on each key and value, in no particular order, holding
+     * the read lock.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        this.lock.readLock().lock();
+        try {
+            this.checkOpen();
+            for (final long stored : this.locations) {
+                if (stored != 0) {
+                    final ByteBuffer buffer = this.segments.get((stored - 1) >>> 32).buffer.duplicate();
+                    final int offset = (int) (stored - 1);
+                    final int keyLength = buffer.getInt(offset + 4) - 1;
+                    buffer.position(offset + MappedStore.headerSize);
+                    final K key = this.keyCodec.decode(buffer, keyLength);
+                    buffer.position(offset + MappedStore.headerSize + keyLength);
+                    action.accept(key, this.valueCodec.decode(buffer, buffer.getInt(offset + 8)));
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Fraction of the bytes written that belong to overwritten or removed
+     * records, reclaimed by compact().
+     */
+    public double getGarbageRatio() {
+        this.lock.readLock().lock();
+        try {
+            final long[] totals = new long[2];
+            this.segments.forEach((id, segment) -> {
+                totals[0] += segment.garbage;
+                totals[1] += segment.writeOffset;
+            });
+            return totals[1] == 0 ? 0D : (double) totals[0] / totals[1];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Force the segments written to disk.
+     */
+    public void flush() {
+        this.lock.readLock().lock();
+        try {
+            this.checkOpen();
+            this.segments.forEach((id, segment) -> segment.buffer.force());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live records into new segments and delete the old segments,
+     * oldest first. A crash part way leaves the old records and their copies,
+     * which replay to the same contents.
+     *
+     * @throws IOException if a segment could not be written or deleted.
+     */
+    public void compact() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.checkOpen();
+            final long[] old = this.segments.keys();
+            Arrays.sort(old);
+            final Segment previous = this.active;
+            this.active = this.openSegment(previous.id + 1, this.segmentSize);
+            for (int slot = 0; slot < this.locations.length; slot++) {
+                final long stored = this.locations[slot];
+                if (stored != 0) {
+                    final ByteBuffer source = this.segments.get((stored - 1) >>> 32).buffer;
+                    final int offset = (int) (stored - 1);
+                    final byte[] key = new byte[source.getInt(offset + 4) - 1];
+                    final byte[] value = new byte[source.getInt(offset + 8)];
+                    source.get(offset + MappedStore.headerSize, key);
+                    source.get(offset + MappedStore.headerSize + key.length, value);
+                    this.locations[slot] = this.append(key, value) + 1;
+                }
+            }
+            this.segments.forEach((id, segment) -> {
+                if (id > previous.id) {
+                    segment.buffer.force();
+                }
+            });
+            for (final long id : old) {
+                final Segment segment = this.segments.remove(id);
+                Files.deleteIfExists(segment.path);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flush and close the store. The mapped memory is released once the store is
+     * no longer referenced.
+     */
+    @Override
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.closed) {
+                this.segments.forEach((id, segment) -> segment.buffer.force());
+                this.closed = true;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the store is closed.
+     */
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+    }
+
+    /**
+     * Append a record to the active segment, starting a new segment when it is
+     * full. The key length after the record is cleared, so replay ends at the last
+     * record written even where it replaced a damaged record with valid ones
+     * behind it. Must hold the write lock.
+     *
+     * @param key   Encoded key
+     * @param value Encoded value, or null for a tombstone
+     * @return Location of the record
+     * @throws IOException if a new segment could not be created.
+     */
+    private long append(final byte[] key, final byte[] value) throws IOException {
+        final long size = (long) MappedStore.headerSize + key.length + (value == null ? 0 : value.length);
+        if (size > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("Record too large");
+        }
+        if (this.active.writeOffset + size > this.active.buffer.capacity()) {
+            this.active.buffer.force();
+            this.active = this.openSegment(this.active.id + 1, (int) Math.max(this.segmentSize, size));
+        }
+        final MappedByteBuffer buffer = this.active.buffer;
+        final int offset = this.active.writeOffset;
+        if (offset + size + MappedStore.headerSize <= buffer.capacity()) {
+            buffer.putInt(offset + (int) size + 4, 0);
+        }
+        buffer.putInt(offset + 4, key.length + 1);
+        buffer.putInt(offset + 8, value == null ? MappedStore.tombstone : value.length);
+        buffer.put(offset + MappedStore.headerSize, key);
+        if (value != null) {
+            buffer.put(offset + MappedStore.headerSize + key.length, value);
+        }
+        buffer.putInt(offset, MappedStore.crc(buffer, offset));
+        this.active.writeOffset = offset + (int) size;
+        return MappedStore.location(this.active.id, offset);
+    }
+
+    /**
+     * Count the record at a location as garbage, once replaced or removed.
+     *
+     * @param location Location of the record
+     */
+    private void release(final long location) {
+        final Segment segment = this.segments.get(location >>> 32);
+        final int offset = (int) location;
+        segment.garbage += MappedStore.headerSize + segment.buffer.getInt(offset + 4) - 1
+                + Math.max(segment.buffer.getInt(offset + 8), 0);
+    }
+
+    /**
+     * Find the slot of a key, comparing candidates against their records.
+     *
+     * @param key  Encoded key
+     * @param hash Hash of the key
+     * @return Slot of the key, or -1 if absent.
+     */
+    private int slot(final byte[] key, final int hash) {
+        final int mask = this.locations.length - 1;
+        for (int index = hash & mask; this.locations[index] != 0; index = (index + 1) & mask) {
+            if (this.hashes[index] == hash && this.keyEquals(this.locations[index] - 1, key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param location Location of a record
+     * @param key      Encoded key
+     * @return true if the record has the key
+     */
+    private boolean keyEquals(final long location, final byte[] key) {
+        final ByteBuffer buffer = this.segments.get(location >>> 32).buffer;
+        final int offset = (int) location;
+        if (buffer.getInt(offset + 4) - 1 != key.length) {
+            return false;
+        }
+        for (int index = 0; index < key.length; index++) {
+            if (buffer.get(offset + MappedStore.headerSize + index) != key[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set the location of a key in the index.
+     *
+     * @param slot     Slot of the key, or -1 to insert it
+     * @param hash     Hash of the key
+     * @param location Location of the record
+     */
+    private void store(final int slot, final int hash, final long location) {
+        if (slot >= 0) {
+            this.locations[slot] = location + 1;
+            return;
+        }
+        if ((this.length + 1) * 4L > this.locations.length * 3L) {
+            this.rehash(this.locations.length * 2);
+        }
+        final int mask = this.locations.length - 1;
+        int index = hash & mask;
+        while (this.locations[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        this.locations[index] = location + 1;
+        this.hashes[index] = hash;
+        this.length++;
+    }
+
+    /**
+     * Empty a slot of the index, shifting later entries back.
+     *
+     * @param gap Slot to empty
+     */
+    private void deleteSlot(int gap) {
+        final int mask = this.locations.length - 1;
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            if (this.locations[index] == 0) {
+                break;
+            }
+            final int home = this.hashes[index] & mask;
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                this.locations[gap] = this.locations[index];
+                this.hashes[gap] = this.hashes[index];
+                gap = index;
+            }
+        }
+        this.locations[gap] = 0;
+        this.hashes[gap] = 0;
+        this.length--;
+    }
+
+    /**
+     * Rebuild the index at a new length.
+     *
+     * @param capacity Length of the new index
+     */
+    private void rehash(final int capacity) {
+        final long[] oldLocations = this.locations;
+        final int[] oldHashes = this.hashes;
+        this.locations = new long[capacity];
+        this.hashes = new int[capacity];
+        final int mask = capacity - 1;
+        for (int old = 0; old < oldLocations.length; old++) {
+            if (oldLocations[old] != 0) {
+                int index = oldHashes[old] & mask;
+                while (this.locations[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                this.locations[index] = oldLocations[old];
+                this.hashes[index] = oldHashes[old];
+            }
+        }
+    }
+
+    /**
+     * Segment file of the log
+     */
+    private static final class Segment {
+        /**
+         * Id of the segment, ordering the segments
+         */
+        private final long id;
+        /**
+         * Path of the file
+         */
+        private final Path path;
+        /**
+         * Mapped contents of the file
+         */
+        private final MappedByteBuffer buffer;
+        /**
+         * Offset after the last record
+         */
+        private int writeOffset;
+        /**
+         * Bytes of overwritten and removed records
+         */
+        private long garbage;
+
+        /**
+         * @param id     Id of the segment
+         * @param path   Path of the file
+         * @param buffer Mapped contents of the file
+         */
+        Segment(final long id, final Path path, final MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -2,30 +2,284 @@ package name.mymiller.containers;
 
 import name.mymiller.lang.singleton.SingletonInterface;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
-public class ObjectManager  implements SingletonInterface<ObjectManager> {
+/**
+ * Registry of shared Objects by name, used as a service locator. Lookups do not
+ * lock, and computeIfAbsent registers a single Object for a missing name even
+ * when many threads ask for it at the same time.
+ * <p>
+ * Objects may be registered under a String, or under a typed Key so they are
+ * returned without a cast. An Object may be held strongly, or through a weak or
+ * soft reference, so the registry does not keep it alive; once collected its
+ * entry behaves as absent. Namespaces are separate registries scoped by name, so
+ * modules can register the same names without clashing.
+ * <p>
+ * Null names and values are not permitted. Looking up or removing a null name,
+ * or registering a null value, throws NullPointerException, where the earlier
+ * HashMap based registry accepted them; remove an entry rather than registering
+ * null under its name.
+ */
+public class ObjectManager implements SingletonInterface<ObjectManager> {
     /**
-     * Object Manager Global Instance
+     * Holder of the global instance, created on first use
      */
-    private static ObjectManager global_instance = null;
+    private static final class Holder {
+        /**
+         * Object Manager Global Instance
+         */
+        private static final ObjectManager globalInstance = new ObjectManager();
+    }
 
     /**
      * @return Global Instance of the Object Manager
      */
     public static ObjectManager getInstance() {
-        if (ObjectManager.global_instance == null) {
-            ObjectManager.global_instance = new ObjectManager();
-        }
-        return ObjectManager.global_instance;
+        return Holder.globalInstance;
     }
 
-    private final Map<String,Object> map;
+    /**
+     * Registered Objects by String or Key, values held weakly or softly wrapped in
+     * a ValueReference
+     */
+    private final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<>();
+    /**
+     * Namespaces of this registry by name
+     */
+    private final ConcurrentMap<String, ObjectManager> namespaces = new ConcurrentHashMap<>();
+    /**
+     * Queue of the weak and soft values that have been collected
+     */
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    /**
+     * Qualified name of this namespace, empty for a root registry
+     */
+    private final String name;
 
     public ObjectManager() {
-        this.map = Collections.synchronizedMap(new HashMap<>());
+        this("");
+    }
+
+    /**
+     * @param name Qualified name of the namespace
+     */
+    private ObjectManager(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return Qualified name of this namespace, empty for a root registry.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Return the namespace of this registry with a name, creating it on first use.
+     * A namespace is a separate registry; its names do not clash with those of
+     * this registry or of other namespaces.
+     *
+     * @param name Name of the namespace
+     * @return Registry of the namespace
+     */
+    public ObjectManager namespace(String name) {
+        Objects.requireNonNull(name, "name may not be null");
+        return this.namespaces.computeIfAbsent(name,
+                key -> new ObjectManager(this.name.isEmpty() ? key : this.name + "." + key));
+    }
+
+    /**
+     * Returns the Object registered under a Key.
+     *
+     * @param key Key of the Object
+     * @param <T> Type of the Object
+     * @return Object registered, or null if none is or it has been collected.
+     */
+    public <T> T get(Key<T> key) {
+        return key.cast(ObjectManager.unwrap(this.map.get(key)));
+    }
+
+    /**
+     * Register an Object under a Key, held strongly.
+     *
+     * @param key   Key of the Object
+     * @param value Object to register
+     * @param <T>   Type of the Object
+     * @return Object previously registered, or null.
+     */
+    public <T> T put(Key<T> key, T value) {
+        return this.put(key, value, Strength.STRONG);
+    }
+
+    /**
+     * Register an Object under a Key.
+     *
+     * @param key      Key of the Object
+     * @param value    Object to register
+     * @param strength How the registry holds the Object
+     * @param <T>      Type of the Object
+     * @return Object previously registered, or null.
+     */
+    public <T> T put(Key<T> key, T value, Strength strength) {
+        this.expunge();
+        return key.cast(ObjectManager.unwrap(this.map.put(key, this.wrap(key, key.cast(value), strength))));
+    }
+
+    /**
+     * Return the Object registered under a Key, creating and registering it with
+     * the factory if absent. The factory runs outside any lock, so it may use the
+     * registry itself, such as creating the Objects it depends on. Threads asking
+     * for a missing key together may each run the factory, but only the first
+     * Object registered is kept and returned to all of them.
+     *
+     * @param key     Key of the Object
+     * @param factory Creates the Object if absent, may return null to register
+     *                nothing
+     * @param <T>     Type of the Object
+     * @return Object registered
+     */
+    public <T> T computeIfAbsent(Key<T> key, Supplier<? extends T> factory) {
+        return this.computeIfAbsent(key, factory, Strength.STRONG);
+    }
+
+    /**
+     * Return the Object registered under a Key, creating and registering it with
+     * the factory if absent or collected.
+     *
+     * @param key      Key of the Object
+     * @param factory  Creates the Object if absent, may return null to register
+     *                 nothing
+     * @param strength How the registry holds a created Object
+     * @param <T>      Type of the Object
+     * @return Object registered
+     */
+    public <T> T computeIfAbsent(Key<T> key, Supplier<? extends T> factory, Strength strength) {
+        return key.cast(this.compute(key, factory, strength));
+    }
+
+    /**
+     * Return the Object registered under a name, creating and registering it with
+     * the factory if absent.
+     *
+     * @param key     Name of the Object
+     * @param factory Creates the Object if absent, may return null to register
+     *                nothing
+     * @return Object registered
+     */
+    public Object computeIfAbsent(String key, Supplier<?> factory) {
+        return this.compute(key, factory, Strength.STRONG);
+    }
+
+    /**
+     * Remove the Object registered under a Key.
+     *
+     * @param key Key of the Object
+     * @param <T> Type of the Object
+     * @return Object removed, or null.
+     */
+    public <T> T remove(Key<T> key) {
+        return key.cast(ObjectManager.unwrap(this.map.remove(key)));
+    }
+
+    /**
+     * @param key Key of the Object
+     * @return true if an Object is registered under the Key and not collected.
+     */
+    public boolean containsKey(Key<?> key) {
+        return ObjectManager.unwrap(this.map.get(key)) != null;
+    }
+
+    /**
+     * @return Number of entries registered, including collected weak or soft
+     * values not yet removed.
+     */
+    public int size() {
+        this.expunge();
+        return this.map.size();
+    }
+
+    /**
+     * Return the Object registered under a key, creating it if absent. The factory
+     * runs before the map is touched, and its Object is published only if no other
+     * has been registered meanwhile, replacing an entry whose value was collected.
+     *
+     * @param key      String or Key of the Object
+     * @param factory  Creates the Object if absent
+     * @param strength How the registry holds a created Object
+     * @return Object registered, or null if the factory returned null.
+     */
+    private Object compute(Object key, Supplier<?> factory, Strength strength) {
+        final Object current = ObjectManager.unwrap(this.map.get(key));
+        if (current != null) {
+            return current;
+        }
+        this.expunge();
+        final Object created = factory.get();
+        if (created == null) {
+            return ObjectManager.unwrap(this.map.get(key));
+        }
+        if (key instanceof Key) {
+            ((Key<?>) key).cast(created);
+        }
+        final Object wrapped = this.wrap(key, created, strength);
+        while (true) {
+            final Object existing = this.map.putIfAbsent(key, wrapped);
+            if (existing == null) {
+                return created;
+            }
+            final Object value = ObjectManager.unwrap(existing);
+            if (value != null) {
+                return value;
+            }
+            if (this.map.replace(key, existing, wrapped)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Wrap a value for storage.
+     *
+     * @param key      Key of the value
+     * @param value    Value to store
+     * @param strength How the registry holds the value
+     * @return Value, or a reference to it
+     */
+    private Object wrap(Object key, Object value, Strength strength) {
+        Objects.requireNonNull(value, "value may not be null");
+        switch (strength) {
+            case WEAK:
+                return new WeakValue(key, value, this.queue);
+            case SOFT:
+                return new SoftValue(key, value, this.queue);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @param stored Value as stored
+     * @return Value, or null if it has been collected.
+     */
+    private static Object unwrap(Object stored) {
+        return stored instanceof ValueReference ? ((ValueReference) stored).get() : stored;
+    }
+
+    /**
+     * Remove the entries whose weak or soft value has been collected.
+     */
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = this.queue.poll()) != null) {
+            this.map.remove(((ValueReference) reference).key(), reference);
+        }
     }
 
     /**
@@ -41,12 +295,10 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the key is of an inappropriate type for
      *         this map
      * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this map
-     *         does not permit null keys
-     * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key is null
      */
     public boolean containsKey(String key) {
-        return map.containsKey(key);
+        return ObjectManager.unwrap(this.map.get(key)) != null;
     }
 
     /**
@@ -71,12 +323,10 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the key is of an inappropriate type for
      *         this map
      * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this map
-     *         does not permit null keys
-     * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key is null
      */
     public Object get(String key) {
-        return map.get(key);
+        return ObjectManager.unwrap(this.map.get(key));
     }
 
     /**
@@ -99,12 +349,12 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the class of the specified key or value
      *         prevents it from being stored in this map
      * @throws NullPointerException if the specified key or value is null
-     *         and this map does not permit null keys or values
      * @throws IllegalArgumentException if some property of the specified key
      *         or value prevents it from being stored in this map
      */
     public Object put(String key, Object value) {
-        return map.put(key, value);
+        this.expunge();
+        return ObjectManager.unwrap(this.map.put(key, this.wrap(key, value, Strength.STRONG)));
     }
 
     /**
@@ -133,12 +383,10 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the key is of an inappropriate type for
      *         this map
      * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this
-     *         map does not permit null keys
-     * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key is null
      */
     public Object remove(String key) {
-        return map.remove(key);
+        return ObjectManager.unwrap(this.map.remove(key));
     }
 
     /**
@@ -149,7 +397,10 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      *         is not supported by this map
      */
     public void clear() {
-        map.clear();
+        this.map.clear();
+        while (this.queue.poll() != null) {
+            // entries already removed
+        }
     }
 
     /**
@@ -163,13 +414,12 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the key is of an inappropriate type for
      * this map
      * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key is null and this map
-     * does not permit null keys
-     * (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key is null
      * @since 1.8
      */
     public Object getOrDefault(String key, Object defaultValue) {
-        return map.getOrDefault(key, defaultValue);
+        final Object value = ObjectManager.unwrap(this.map.get(key));
+        return value != null ? value : defaultValue;
     }
 
     /**
@@ -185,10 +435,7 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * return v;
      * }</pre>
      *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
+     * <p>The operation is atomic.
      *
      * @param key key with which the specified value is to be associated
      * @param value value to be associated with the specified key
@@ -203,16 +450,21 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the key or value is of an inappropriate
      *         type for this map
      *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key or value is null,
-     *         and this map does not permit null keys or values
-     *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key or value is null
      * @throws IllegalArgumentException if some property of the specified key
      *         or value prevents it from being stored in this map
      *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
      * @since 1.8
      */
     public Object putIfAbsent(String key, Object value) {
-        return map.putIfAbsent(key, value);
+        Objects.requireNonNull(value, "value may not be null");
+        final Object[] previous = new Object[1];
+        this.expunge();
+        this.map.compute(key, (k, existing) -> {
+            previous[0] = ObjectManager.unwrap(existing);
+            return previous[0] != null ? existing : value;
+        });
+        return previous[0];
     }
 
     /**
@@ -228,10 +480,7 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      *     return false;
      * }</pre>
      *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
+     * <p>The operation is atomic.
      *
      * @param key key with which the specified value is associated
      * @param value value expected to be associated with the specified key
@@ -242,13 +491,16 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the key or value is of an inappropriate
      *         type for this map
      *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key or value is null,
-     *         and this map does not permit null keys or values
-     *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key or value is null
      * @since 1.8
      */
     public boolean remove(String key, Object value) {
-        return map.remove(key, value);
+        final boolean[] removed = new boolean[1];
+        this.map.computeIfPresent(key, (k, existing) -> {
+            removed[0] = Objects.equals(ObjectManager.unwrap(existing), value);
+            return removed[0] ? null : existing;
+        });
+        return removed[0];
     }
 
     /**
@@ -266,10 +518,7 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * for maps that do not support null values if oldValue is null unless
      * newValue is also null.
      *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
+     * <p>The operation is atomic.
      *
      * @param key key with which the specified value is associated
      * @param oldValue value expected to be associated with the specified key
@@ -280,17 +529,19 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
      * @throws ClassCastException if the class of a specified key or value
      *         prevents it from being stored in this map
-     * @throws NullPointerException if a specified key or newValue is null,
-     *         and this map does not permit null keys or values
-     * @throws NullPointerException if oldValue is null and this map does not
-     *         permit null values
-     *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if the specified key or newValue is null
      * @throws IllegalArgumentException if some property of a specified key
      *         or value prevents it from being stored in this map
      * @since 1.8
      */
     public boolean replace(String key, Object oldValue, Object newValue) {
-        return map.replace(key, oldValue, newValue);
+        Objects.requireNonNull(newValue, "value may not be null");
+        final boolean[] replaced = new boolean[1];
+        this.map.computeIfPresent(key, (k, existing) -> {
+            replaced[0] = Objects.equals(ObjectManager.unwrap(existing), oldValue);
+            return replaced[0] ? newValue : existing;
+        });
+        return replaced[0];
     }
 
     /**
@@ -304,10 +555,7 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      *     return null;
      * }</pre>
      *
-     * <p>The default implementation makes no guarantees about synchronization
-     * or atomicity properties of this method. Any implementation providing
-     * atomicity guarantees must override this method and document its
-     * concurrency properties.
+     * <p>The operation is atomic.
      *
      * @param key key with which the specified value is associated
      * @param value value to be associated with the specified key
@@ -322,13 +570,198 @@ public class ObjectManager  implements SingletonInterface<ObjectManager> {
      * @throws ClassCastException if the class of the specified key or value
      *         prevents it from being stored in this map
      *         (<a href="{@docRoot}/java.base/java/util/Collection.html#optional-restrictions">optional</a>)
-     * @throws NullPointerException if the specified key or value is null,
-     *         and this map does not permit null keys or values
+     * @throws NullPointerException if the specified key or value is null
      * @throws IllegalArgumentException if some property of the specified key
      *         or value prevents it from being stored in this map
      * @since 1.8
      */
     public Object replace(String key, Object value) {
-        return map.replace(key, value);
+        Objects.requireNonNull(value, "value may not be null");
+        final Object[] previous = new Object[1];
+        this.map.computeIfPresent(key, (k, existing) -> {
+            previous[0] = ObjectManager.unwrap(existing);
+            return previous[0] != null ? value : null;
+        });
+        return previous[0];
+    }
+
+    /**
+     * How the registry holds an Object.
+     */
+    public enum Strength {
+        /**
+         * Held strongly, until removed
+         */
+        STRONG,
+        /**
+         * Held by a weak reference, removed once nothing else refers to it
+         */
+        WEAK,
+        /**
+         * Held by a soft reference, removed when memory runs low and nothing else
+         * refers to it
+         */
+        SOFT
+    }
+
+    /**
+     * Typed key of a registered Object, so the Object is returned without a cast.
+     * Keys are equal when their names and types are equal; they never equal a
+     * String name.
+     *
+     * @param <T> Type of the Object
+     */
+    public static final class Key<T> {
+        /**
+         * Name of the Object
+         */
+        private final String name;
+        /**
+         * Type of the Object
+         */
+        private final Class<T> type;
+
+        /**
+         * @param name Name of the Object
+         * @param type Type of the Object
+         */
+        private Key(String name, Class<T> type) {
+            this.name = Objects.requireNonNull(name, "name may not be null");
+            this.type = Objects.requireNonNull(type, "type may not be null");
+        }
+
+        /**
+         * Create a key.
+         *
+         * @param name Name of the Object
+         * @param type Type of the Object
+         * @param <T>  Type of the Object
+         * @return Key of the name and type
+         */
+        public static <T> Key<T> of(String name, Class<T> type) {
+            return new Key<>(name, type);
+        }
+
+        /**
+         * Create a key named after its type.
+         *
+         * @param type Type of the Object
+         * @param <T>  Type of the Object
+         * @return Key of the type
+         */
+        public static <T> Key<T> of(Class<T> type) {
+            return new Key<>(type.getName(), type);
+        }
+
+        /**
+         * @return Name of the Object
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return Type of the Object
+         */
+        public Class<T> getType() {
+            return this.type;
+        }
+
+        /**
+         * @param value Object registered under this key
+         * @return Object cast to the type of the key
+         * @throws ClassCastException if the Object is not of the type of the key.
+         */
+        T cast(Object value) {
+            return this.type.cast(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key<?> other = (Key<?>) obj;
+            return this.name.equals(other.name) && this.type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.name.hashCode() + this.type.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.name + ":" + this.type.getSimpleName();
+        }
+    }
+
+    /**
+     * Reference to a value held weakly or softly, knowing its key so the entry can
+     * be removed once the value is collected.
+     */
+    private interface ValueReference {
+        /**
+         * @return Key of the value
+         */
+        Object key();
+
+        /**
+         * @return Value, or null if collected
+         */
+        Object get();
+    }
+
+    /**
+     * Value held by a weak reference
+     */
+    private static final class WeakValue extends WeakReference<Object> implements ValueReference {
+        /**
+         * Key of the value
+         */
+        private final Object key;
+
+        /**
+         * @param key   Key of the value
+         * @param value Value to hold
+         * @param queue Queue notified when the value is collected
+         */
+        WeakValue(Object key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public Object key() {
+            return this.key;
+        }
+    }
+
+    /**
+     * Value held by a soft reference
+     */
+    private static final class SoftValue extends SoftReference<Object> implements ValueReference {
+        /**
+         * Key of the value
+         */
+        private final Object key;
+
+        /**
+         * @param key   Key of the value
+         * @param value Value to hold
+         * @param queue Queue notified when the value is collected
+         */
+        SoftValue(Object key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public Object key() {
+            return this.key;
+        }
     }
 }
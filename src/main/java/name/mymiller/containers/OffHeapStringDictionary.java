@@ -0,0 +1,452 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of Strings stored off heap as UTF-8, assigning each distinct String a
+ * compact int id. Use it in place of StringCache when the number of distinct
+ * Strings is large enough that their objects dominate the heap: the bytes live in
+ * direct ByteBuffer pages, and the heap holds only primitive arrays, about 20
+ * bytes per String, which the garbage collector does not need to trace.
+ * <p>
+ * Ids are assigned in order from 0 and never change. get(id) decodes the String
+ * on demand; a small direct-mapped front cache holds recently used Strings on heap
+ * so hot entries are neither decoded nor looked up again. Lookups do not lock;
+ * only the insertion of a new String does. Entries are never removed, the
+ * dictionary is released as a whole when no longer referenced.
+ *
+ * @author jmiller
+ */
+public class OffHeapStringDictionary {
+    /**
+     * Default size of a page of String bytes
+     */
+    private static final int DEFAULT_PAGE_SIZE = 1 << 20;
+    /**
+     * Number of entries in each front cache, a power of two
+     */
+    private static final int FRONT_CACHE_SIZE = 4096;
+    /**
+     * Largest length of the id table, a power of two
+     */
+    private static final int MAXIMUM_TABLE_SIZE = 1 << 30;
+
+    /**
+     * Size of a page of String bytes
+     */
+    private final int pageSize;
+    /**
+     * Recently used Strings by hash
+     */
+    private final FrontEntry[] byValue = new FrontEntry[OffHeapStringDictionary.FRONT_CACHE_SIZE];
+    /**
+     * Recently used Strings by id
+     */
+    private final FrontEntry[] byId = new FrontEntry[OffHeapStringDictionary.FRONT_CACHE_SIZE];
+
+    /**
+     * Pages of String bytes, each String a varint length followed by its UTF-8 bytes
+     */
+    private volatile ByteBuffer[] pages;
+    /**
+     * Location of each String by id: page index in the high 32 bits, position in
+     * the low 32 bits
+     */
+    private volatile long[] offsets;
+    /**
+     * Hash of each String by id
+     */
+    private volatile int[] hashes;
+    /**
+     * Open addressing table of id + 1, 0 for an empty slot
+     */
+    private volatile int[] table;
+    /**
+     * Number of Strings, written last when inserting to publish the new entry
+     */
+    private volatile int size;
+
+    /**
+     * Number of pages in use, guarded by this
+     */
+    private int pageCount;
+    /**
+     * Position in the current page, guarded by this
+     */
+    private int pagePosition;
+    /**
+     * Bytes of Strings stored, guarded by this
+     */
+    private long bytesStored;
+
+    /**
+     * Create a dictionary with the default page size.
+     */
+    public OffHeapStringDictionary() {
+        this(1024, OffHeapStringDictionary.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Create a dictionary.
+     *
+     * @param initialCapacity Expected number of Strings
+     * @param pageSize        Size of a page of String bytes
+     */
+    public OffHeapStringDictionary(final int initialCapacity, final int pageSize) {
+        if (initialCapacity < 0 || pageSize < 16) {
+            throw new IllegalArgumentException("Illegal capacity or page size");
+        }
+        this.pageSize = pageSize;
+        this.pages = new ByteBuffer[4];
+        this.offsets = new long[Math.max(initialCapacity, 16)];
+        this.hashes = new int[this.offsets.length];
+        int length = 16;
+        while (length < this.offsets.length * 2) {
+            length <<= 1;
+        }
+        this.table = new int[length];
+    }
+
+    /**
+     * Spread the bits of a hash code.
+     *
+     * @param hash Hash code of a String
+     * @return Spread hash
+     */
+    private static int spread(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Return the id of a String, adding it to the dictionary if not present.
+     *
+     * @param value String to intern
+     * @return Id of the String
+     * @throws IllegalStateException if the dictionary is full.
+     */
+    public int intern(final String value) {
+        final int hash = value.hashCode();
+        final int front = OffHeapStringDictionary.spread(hash) & (OffHeapStringDictionary.FRONT_CACHE_SIZE - 1);
+        final FrontEntry cached = this.byValue[front];
+        if (cached != null && cached.value.equals(value)) {
+            return cached.id;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int id = this.find(bytes, hash);
+        if (id < 0) {
+            id = this.insert(bytes, hash);
+        }
+        this.byValue[front] = new FrontEntry(id, value);
+        return id;
+    }
+
+    /**
+     * Return the id of a String without adding it.
+     *
+     * @param value String to find
+     * @return Id of the String, or -1 if not present.
+     */
+    public int lookup(final String value) {
+        final int hash = value.hashCode();
+        final FrontEntry cached = this.byValue[OffHeapStringDictionary.spread(hash)
+                & (OffHeapStringDictionary.FRONT_CACHE_SIZE - 1)];
+        if (cached != null && cached.value.equals(value)) {
+            return cached.id;
+        }
+        return this.find(value.getBytes(StandardCharsets.UTF_8), hash);
+    }
+
+    /**
+     * @param value String to find
+     * @return true if the String is in the dictionary
+     */
+    public boolean contains(final String value) {
+        return this.lookup(value) >= 0;
+    }
+
+    /**
+     * Return the String of an id.
+     *
+     * @param id Id of the String
+     * @return String of the id
+     * @throws IndexOutOfBoundsException if the id was not assigned.
+     */
+    public String get(final int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException("Id " + id + " not in dictionary");
+        }
+        final int front = id & (OffHeapStringDictionary.FRONT_CACHE_SIZE - 1);
+        final FrontEntry cached = this.byId[front];
+        if (cached != null && cached.id == id) {
+            return cached.value;
+        }
+        final String value = new String(this.bytes(id), StandardCharsets.UTF_8);
+        this.byId[front] = new FrontEntry(id, value);
+        return value;
+    }
+
+    /**
+     * Return the UTF-8 bytes of an id, without decoding them.
+     *
+     * @param id Id of the String
+     * @return UTF-8 bytes of the String
+     * @throws IndexOutOfBoundsException if the id was not assigned.
+     */
+    public byte[] getBytes(final int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException("Id " + id + " not in dictionary");
+        }
+        return this.bytes(id);
+    }
+
+    /**
+     * @return Number of Strings in the dictionary
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Bytes of UTF-8 and length prefixes stored off heap
+     */
+    public synchronized long getBytesStored() {
+        return this.bytesStored;
+    }
+
+    /**
+     * @return Bytes of off heap memory allocated for pages
+     */
+    public synchronized long getMemoryAllocated() {
+        long allocated = 0;
+        for (int index = 0; index < this.pageCount; index++) {
+            allocated += this.pages[index].capacity();
+        }
+        return allocated;
+    }
+
+    /**
+     * Find the id of a String without locking. An entry being inserted by another
+     * thread may not be found yet.
+     *
+     * @param bytes UTF-8 bytes of the String
+     * @param hash  Hash code of the String
+     * @return Id of the String, or -1 if not found.
+     */
+    private int find(final byte[] bytes, final int hash) {
+        final int limit = this.size;
+        final int[] tab = this.table;
+        final int[] hashCodes = this.hashes;
+        final int mask = tab.length - 1;
+        for (int index = OffHeapStringDictionary.spread(hash) & mask; ; index = (index + 1) & mask) {
+            final int slot = tab[index];
+            if (slot == 0) {
+                return -1;
+            }
+            final int id = slot - 1;
+            if (id < limit && id < hashCodes.length && hashCodes[id] == hash && this.matches(id, bytes)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Insert a String, unless another thread inserted it first.
+     *
+     * @param bytes UTF-8 bytes of the String
+     * @param hash  Hash code of the String
+     * @return Id of the String
+     */
+    private synchronized int insert(final byte[] bytes, final int hash) {
+        final int found = this.find(bytes, hash);
+        if (found >= 0) {
+            return found;
+        }
+
+        final int id = this.size;
+        if (id == Integer.MAX_VALUE - 1) {
+            throw new IllegalStateException("Dictionary is full");
+        }
+        if (id == this.offsets.length) {
+            final int capacity = (int) Math.min(this.offsets.length * 2L, Integer.MAX_VALUE - 8);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+            this.hashes = Arrays.copyOf(this.hashes, capacity);
+        }
+        if ((id + 1) * 2L > this.table.length) {
+            if (this.table.length >= OffHeapStringDictionary.MAXIMUM_TABLE_SIZE) {
+                throw new IllegalStateException("Dictionary is full");
+            }
+            this.rehash(this.table.length * 2);
+        }
+
+        this.offsets[id] = this.write(bytes);
+        this.hashes[id] = hash;
+        final int[] tab = this.table;
+        final int mask = tab.length - 1;
+        int index = OffHeapStringDictionary.spread(hash) & mask;
+        while (tab[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        tab[index] = id + 1;
+        this.size = id + 1;
+        return id;
+    }
+
+    /**
+     * Rebuild the table at a new length. Must hold the lock.
+     *
+     * @param length New length, a power of two
+     */
+    private void rehash(final int length) {
+        final int[] tab = new int[length];
+        final int mask = length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int index = OffHeapStringDictionary.spread(this.hashes[id]) & mask;
+            while (tab[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            tab[index] = id + 1;
+        }
+        this.table = tab;
+    }
+
+    /**
+     * Append a String to the pages. Must hold the lock.
+     *
+     * @param bytes UTF-8 bytes of the String
+     * @return Location of the String
+     */
+    private long write(final byte[] bytes) {
+        final int length = OffHeapStringDictionary.varintLength(bytes.length) + bytes.length;
+        if (this.pageCount == 0 || this.pagePosition + length > this.pages[this.pageCount - 1].capacity()) {
+            if (this.pageCount == this.pages.length) {
+                this.pages = Arrays.copyOf(this.pages, this.pages.length * 2);
+            }
+            this.pages[this.pageCount++] = ByteBuffer.allocateDirect(Math.max(this.pageSize, length));
+            this.pagePosition = 0;
+        }
+
+        final ByteBuffer page = this.pages[this.pageCount - 1];
+        final int start = this.pagePosition;
+        int position = start;
+        int remaining = bytes.length;
+        while ((remaining & ~0x7F) != 0) {
+            page.put(position++, (byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        page.put(position++, (byte) remaining);
+        page.put(position, bytes);
+        this.pagePosition = position + bytes.length;
+        this.bytesStored += length;
+        return ((long) (this.pageCount - 1) << 32) | start;
+    }
+
+    /**
+     * @param value Value to encode
+     * @return Number of bytes of the varint encoding
+     */
+    private static int varintLength(final int value) {
+        int length = 1;
+        int remaining = value >>> 7;
+        while (remaining != 0) {
+            length++;
+            remaining >>>= 7;
+        }
+        return length;
+    }
+
+    /**
+     * Read the bytes of a String.
+     *
+     * @param id Id of the String
+     * @return UTF-8 bytes of the String
+     */
+    private byte[] bytes(final int id) {
+        final long offset = this.offsets[id];
+        final ByteBuffer page = this.pages[(int) (offset >>> 32)];
+        int position = (int) offset;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        final byte[] bytes = new byte[length];
+        page.get(position, bytes);
+        return bytes;
+    }
+
+    /**
+     * Compare the stored bytes of an id to the bytes of a String.
+     *
+     * @param id    Id of the stored String
+     * @param bytes UTF-8 bytes of the String
+     * @return true if equal
+     */
+    private boolean matches(final int id, final byte[] bytes) {
+        final long offset = this.offsets[id];
+        final ByteBuffer page = this.pages[(int) (offset >>> 32)];
+        int position = (int) offset;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (page.get(position + index) != bytes[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Entry of a front cache. Immutable, so it can be published through a plain
+     * array write.
+     */
+    private static final class FrontEntry {
+        /**
+         * Id of the String
+         */
+        private final int id;
+        /**
+         * String of the id
+         */
+        private final String value;
+
+        /**
+         * @param id    Id of the String
+         * @param value String of the id
+         */
+        FrontEntry(final int id, final String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
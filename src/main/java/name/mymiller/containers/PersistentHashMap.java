@@ -0,0 +1,766 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable map that shares structure with the versions it was derived from, so
+ * a snapshot can be handed to another stage without copying.
+ * <p>
+ * Entries sit in a hash array mapped trie: each level takes 5 bits of the hash
+ * and keeps a 32 bit bitmap of the slots in use, with an array holding only
+ * those slots, so sparse levels stay small. Keys whose full hashes collide share
+ * a collision node. get walks at most log32(n) levels, and put and remove copy
+ * only the nodes on the path to the entry.
+ * <p>
+ * A Builder puts and removes entries in place on nodes it owns, marked by its
+ * edit token as in PersistentVector. Null keys and values are not permitted, as
+ * get returns null for a missing key.
+ * <p>
+ * Maps are safe to share between threads; builders are not.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ * @author jmiller
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    /**
+     * Bits of the hash consumed per level
+     */
+    private static final int bits = 5;
+    /**
+     * Mask selecting a slot of a level
+     */
+    private static final int mask = (1 << PersistentHashMap.bits) - 1;
+    /**
+     * The empty map
+     */
+    private static final PersistentHashMap<?, ?> empty = new PersistentHashMap<>(0, null);
+
+    /**
+     * Number of entries
+     */
+    private final int count;
+    /**
+     * Root of the trie, or null when empty
+     */
+    private final Node root;
+
+    /**
+     * @param count Number of entries
+     * @param root  Root of the trie
+     */
+    private PersistentHashMap(final int count, final Node root) {
+        this.count = count;
+        this.root = root;
+    }
+
+    /**
+     * @param <K> Type of the keys
+     * @param <V> Type of the values
+     * @return The empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) PersistentHashMap.empty;
+    }
+
+    /**
+     * @param map Entries of the map
+     * @param <K> Type of the keys
+     * @param <V> Type of the values
+     * @return Map of the entries
+     */
+    public static <K, V> PersistentHashMap<K, V> from(final Map<? extends K, ? extends V> map) {
+        final Builder<K, V> builder = PersistentHashMap.builder();
+        map.forEach(builder::put);
+        return builder.build();
+    }
+
+    /**
+     * @param <K> Type of the keys
+     * @param <V> Type of the values
+     * @return Builder starting from the empty map
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(PersistentHashMap.empty());
+    }
+
+    /**
+     * @return Builder starting from this map, leaving this map unchanged
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * @param key Key of an entry
+     * @return Hash of the key
+     */
+    private static int hash(final Object key) {
+        return PrimitiveHashing.mix(key.hashCode());
+    }
+
+    /**
+     * @param hash  Hash of a key
+     * @param shift Shift of the level
+     * @return Bit of the key's slot at the level
+     */
+    private static int bitFor(final int hash, final int shift) {
+        return 1 << ((hash >>> shift) & PersistentHashMap.mask);
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @return True if the map is empty;
+     */
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key Key to find
+     * @return Value of the key, or null if absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        return this.root == null ? null : (V) this.root.find(0, PersistentHashMap.hash(key), key);
+    }
+
+    /**
+     * @param key          Key to find
+     * @param defaultValue Value returned if the key is absent
+     * @return Value of the key, or defaultValue if absent.
+     */
+    public V getOrDefault(final Object key, final V defaultValue) {
+        final V value = this.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @param key Key to find
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(final Object key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Map with the key set to the value
+     */
+    public PersistentHashMap<K, V> put(final K key, final V value) {
+        Objects.requireNonNull(key, "key may not be null");
+        Objects.requireNonNull(value, "value may not be null");
+        final boolean[] added = new boolean[1];
+        final Node start = this.root == null ? BitmapNode.emptyNode : this.root;
+        final Node newRoot = start.assoc(null, 0, PersistentHashMap.hash(key), key, value, added);
+        if (newRoot == this.root) {
+            return this;
+        }
+        return new PersistentHashMap<>(added[0] ? this.count + 1 : this.count, newRoot);
+    }
+
+    /**
+     * @param key Key to remove
+     * @return Map without the key
+     */
+    public PersistentHashMap<K, V> remove(final Object key) {
+        if (this.root == null) {
+            return this;
+        }
+        final Node newRoot = this.root.without(null, 0, PersistentHashMap.hash(key), key);
+        if (newRoot == this.root) {
+            return this;
+        }
+        return newRoot == null ? PersistentHashMap.empty() : new PersistentHashMap<>(this.count - 1, newRoot);
+    }
+
+    /**
+     * Perform an action on each entry, in no particular order.
+     *
+     * @param action Action to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        if (this.root != null) {
+            this.root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    /**
+     * Iterate the entries in no particular order, walking the trie with a stack
+     * of node arrays.
+     *
+     * @return Iterator of the entries
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<>() {
+            /**
+             * Arrays of the nodes on the path, one per level plus collisions
+             */
+            private final Object[][] arrays = new Object[8][];
+            /**
+             * Next pair index in each array
+             */
+            private final int[] positions = new int[8];
+            /**
+             * Depth of the current array, -1 when done
+             */
+            private int depth = -1;
+            /**
+             * Next entry, or null when done
+             */
+            private Map.Entry<K, V> next;
+
+            {
+                if (PersistentHashMap.this.root != null) {
+                    this.push(PersistentHashMap.this.root);
+                    this.advance();
+                }
+            }
+
+            /**
+             * @param node Node to descend into
+             */
+            private void push(final Node node) {
+                this.arrays[++this.depth] = node.array();
+                this.positions[this.depth] = 0;
+            }
+
+            /**
+             * Find the next entry.
+             */
+            @SuppressWarnings("unchecked")
+            private void advance() {
+                while (this.depth >= 0) {
+                    final Object[] array = this.arrays[this.depth];
+                    final int position = this.positions[this.depth];
+                    if (position >= array.length) {
+                        this.arrays[this.depth--] = null;
+                        continue;
+                    }
+                    this.positions[this.depth] = position + 2;
+                    if (array[position] == null) {
+                        this.push((Node) array[position + 1]);
+                    } else {
+                        this.next = new AbstractMap.SimpleImmutableEntry<>((K) array[position],
+                                (V) array[position + 1]);
+                        return;
+                    }
+                }
+                this.next = null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Map.Entry<K, V> entry = this.next;
+                this.advance();
+                return entry;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PersistentHashMap) || ((PersistentHashMap<?, ?>) obj).count != this.count) {
+            return false;
+        }
+        final PersistentHashMap<?, ?> other = (PersistentHashMap<?, ?>) obj;
+        for (final Map.Entry<K, V> entry : this) {
+            if (!entry.getValue().equals(other.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = new int[1];
+        this.forEach((key, value) -> hash[0] += key.hashCode() ^ value.hashCode());
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        this.forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Node of the trie. Arrays hold pairs: a key and its value, or null and a
+     * child node.
+     */
+    private abstract static class Node {
+        /**
+         * Edit token of the builder that may change this node in place, or null
+         */
+        final Object edit;
+
+        /**
+         * @param edit Edit token of the owning builder, or null
+         */
+        Node(final Object edit) {
+            this.edit = edit;
+        }
+
+        /**
+         * @param edit Edit token of the caller, or null
+         * @return true if the caller may change this node in place
+         */
+        boolean editableBy(final Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        /**
+         * @return Pairs of the node
+         */
+        abstract Object[] array();
+
+        /**
+         * @param shift Shift of the level
+         * @param hash  Hash of the key
+         * @param key   Key to find
+         * @return Value of the key, or null if absent.
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * @param edit  Edit token of the caller, or null to copy every node
+         * @param shift Shift of the level
+         * @param hash  Hash of the key
+         * @param key   Key to set
+         * @param value Value of the key
+         * @param added Set to true if the key was absent
+         * @return Node with the key set, this node if unchanged
+         */
+        abstract Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @param edit  Edit token of the caller, or null to copy every node
+         * @param shift Shift of the level
+         * @param hash  Hash of the key
+         * @param key   Key to remove
+         * @return Node without the key, this node if absent, or null if left
+         * empty.
+         */
+        abstract Node without(Object edit, int shift, int hash, Object key);
+
+        /**
+         * @param action Action to perform on each entry
+         */
+        void forEach(final BiConsumer<Object, Object> action) {
+            final Object[] array = this.array();
+            for (int index = 0; index < array.length; index += 2) {
+                if (array[index] == null) {
+                    ((Node) array[index + 1]).forEach(action);
+                } else {
+                    action.accept(array[index], array[index + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Level of the trie holding the slots in use in a bitmap
+     */
+    private static final class BitmapNode extends Node {
+        /**
+         * Root of the empty trie
+         */
+        static final BitmapNode emptyNode = new BitmapNode(null, 0, new Object[0]);
+
+        /**
+         * Slots in use
+         */
+        private int bitmap;
+        /**
+         * Pairs of the slots in use, in slot order
+         */
+        private Object[] array;
+
+        /**
+         * @param edit   Edit token of the owning builder, or null
+         * @param bitmap Slots in use
+         * @param array  Pairs of the slots in use
+         */
+        BitmapNode(final Object edit, final int bitmap, final Object[] array) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object[] array() {
+            return this.array;
+        }
+
+        /**
+         * @param bit Bit of a slot
+         * @return Pair index of the slot
+         */
+        private int index(final int bit) {
+            return Integer.bitCount(this.bitmap & (bit - 1)) * 2;
+        }
+
+        @Override
+        Object find(final int shift, final int hash, final Object key) {
+            final int bit = PersistentHashMap.bitFor(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return null;
+            }
+            final int index = this.index(bit);
+            final Object current = this.array[index];
+            if (current == null) {
+                return ((Node) this.array[index + 1]).find(shift + PersistentHashMap.bits, hash, key);
+            }
+            return key.equals(current) ? this.array[index + 1] : null;
+        }
+
+        @Override
+        Node assoc(final Object edit, final int shift, final int hash, final Object key, final Object value,
+                   final boolean[] added) {
+            final int bit = PersistentHashMap.bitFor(hash, shift);
+            final int index = this.index(bit);
+            if ((this.bitmap & bit) == 0) {
+                final Object[] grown = new Object[this.array.length + 2];
+                System.arraycopy(this.array, 0, grown, 0, index);
+                grown[index] = key;
+                grown[index + 1] = value;
+                System.arraycopy(this.array, index, grown, index + 2, this.array.length - index);
+                added[0] = true;
+                if (this.editableBy(edit)) {
+                    this.array = grown;
+                    this.bitmap |= bit;
+                    return this;
+                }
+                return new BitmapNode(edit, this.bitmap | bit, grown);
+            }
+            final Object current = this.array[index];
+            final Object currentValue = this.array[index + 1];
+            if (current == null) {
+                final Node child = ((Node) currentValue).assoc(edit, shift + PersistentHashMap.bits, hash, key,
+                        value, added);
+                return child == currentValue ? this : this.set(edit, index + 1, child);
+            }
+            if (key.equals(current)) {
+                return currentValue == value ? this : this.set(edit, index + 1, value);
+            }
+            added[0] = true;
+            final Node child = BitmapNode.pair(edit, shift + PersistentHashMap.bits, current, currentValue, hash,
+                    key, value);
+            final BitmapNode target = this.editableBy(edit) ? this : new BitmapNode(edit, this.bitmap,
+                    this.array.clone());
+            target.array[index] = null;
+            target.array[index + 1] = child;
+            return target;
+        }
+
+        @Override
+        Node without(final Object edit, final int shift, final int hash, final Object key) {
+            final int bit = PersistentHashMap.bitFor(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return this;
+            }
+            final int index = this.index(bit);
+            final Object current = this.array[index];
+            if (current == null) {
+                final Node child = (Node) this.array[index + 1];
+                final Node newChild = child.without(edit, shift + PersistentHashMap.bits, hash, key);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return this.set(edit, index + 1, newChild);
+                }
+            } else if (!key.equals(current)) {
+                return this;
+            }
+            if (this.bitmap == bit) {
+                return null;
+            }
+            final Object[] shrunk = new Object[this.array.length - 2];
+            System.arraycopy(this.array, 0, shrunk, 0, index);
+            System.arraycopy(this.array, index + 2, shrunk, index, shrunk.length - index);
+            if (this.editableBy(edit)) {
+                this.array = shrunk;
+                this.bitmap ^= bit;
+                return this;
+            }
+            return new BitmapNode(edit, this.bitmap ^ bit, shrunk);
+        }
+
+        /**
+         * @param edit  Edit token of the caller, or null
+         * @param index Index in the array
+         * @param value Value to set
+         * @return This node changed in place if owned, otherwise a changed copy
+         */
+        private Node set(final Object edit, final int index, final Object value) {
+            if (this.editableBy(edit)) {
+                this.array[index] = value;
+                return this;
+            }
+            final Object[] copy = this.array.clone();
+            copy[index] = value;
+            return new BitmapNode(edit, this.bitmap, copy);
+        }
+
+        /**
+         * Create a node holding two entries that shared a slot.
+         *
+         * @param edit   Edit token of the caller, or null
+         * @param shift  Shift of the new level
+         * @param key1   First key
+         * @param value1 First value
+         * @param hash2  Hash of the second key
+         * @param key2   Second key
+         * @param value2 Second value
+         * @return Node holding both entries
+         */
+        private static Node pair(final Object edit, final int shift, final Object key1, final Object value1,
+                                 final int hash2, final Object key2, final Object value2) {
+            final int hash1 = PersistentHashMap.hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(edit, hash1, new Object[]{key1, value1, key2, value2});
+            }
+            final boolean[] added = new boolean[1];
+            return new BitmapNode(edit, 0, new Object[0])
+                    .assoc(edit, shift, hash1, key1, value1, added)
+                    .assoc(edit, shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * Entries whose keys have the same full hash, searched linearly
+     */
+    private static final class CollisionNode extends Node {
+        /**
+         * Hash shared by the keys
+         */
+        private final int hash;
+        /**
+         * Pairs of the entries
+         */
+        private Object[] array;
+
+        /**
+         * @param edit  Edit token of the owning builder, or null
+         * @param hash  Hash shared by the keys
+         * @param array Pairs of the entries
+         */
+        CollisionNode(final Object edit, final int hash, final Object[] array) {
+            super(edit);
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object[] array() {
+            return this.array;
+        }
+
+        /**
+         * @param key Key to find
+         * @return Pair index of the key, or -1 if absent.
+         */
+        private int indexOf(final Object key) {
+            for (int index = 0; index < this.array.length; index += 2) {
+                if (key.equals(this.array[index])) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(final int shift, final int hash, final Object key) {
+            final int index = this.indexOf(key);
+            return index < 0 ? null : this.array[index + 1];
+        }
+
+        @Override
+        Node assoc(final Object edit, final int shift, final int hash, final Object key, final Object value,
+                   final boolean[] added) {
+            if (hash != this.hash) {
+                return new BitmapNode(edit, PersistentHashMap.bitFor(this.hash, shift), new Object[]{null, this})
+                        .assoc(edit, shift, hash, key, value, added);
+            }
+            final int index = this.indexOf(key);
+            final Object[] changed;
+            if (index >= 0) {
+                if (this.array[index + 1] == value) {
+                    return this;
+                }
+                changed = this.editableBy(edit) ? this.array : this.array.clone();
+                changed[index + 1] = value;
+            } else {
+                changed = new Object[this.array.length + 2];
+                System.arraycopy(this.array, 0, changed, 0, this.array.length);
+                changed[this.array.length] = key;
+                changed[this.array.length + 1] = value;
+                added[0] = true;
+            }
+            if (this.editableBy(edit)) {
+                this.array = changed;
+                return this;
+            }
+            return new CollisionNode(edit, this.hash, changed);
+        }
+
+        @Override
+        Node without(final Object edit, final int shift, final int hash, final Object key) {
+            final int index = this.indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (this.array.length == 2) {
+                return null;
+            }
+            final Object[] shrunk = new Object[this.array.length - 2];
+            System.arraycopy(this.array, 0, shrunk, 0, index);
+            System.arraycopy(this.array, index + 2, shrunk, index, shrunk.length - index);
+            if (this.editableBy(edit)) {
+                this.array = shrunk;
+                return this;
+            }
+            return new CollisionNode(edit, this.hash, shrunk);
+        }
+    }
+
+    /**
+     * Builds a map by changing nodes in place. A builder may keep being used after
+     * build(), without affecting the maps it built.
+     *
+     * @param <K> Type of the keys
+     * @param <V> Type of the values
+     */
+    public static final class Builder<K, V> {
+        /**
+         * Token marking the nodes this builder may change
+         */
+        private Object edit = new Object();
+        /**
+         * Number of entries
+         */
+        private int count;
+        /**
+         * Root of the trie, or null when empty
+         */
+        private Node root;
+
+        /**
+         * @param map Map to start from
+         */
+        private Builder(final PersistentHashMap<K, V> map) {
+            this.count = map.count;
+            this.root = map.root;
+        }
+
+        /**
+         * @param key   Key to set
+         * @param value Value of the key
+         * @return This builder
+         */
+        public Builder<K, V> put(final K key, final V value) {
+            Objects.requireNonNull(key, "key may not be null");
+            Objects.requireNonNull(value, "value may not be null");
+            final boolean[] added = new boolean[1];
+            final Node start = this.root == null ? BitmapNode.emptyNode : this.root;
+            this.root = start.assoc(this.edit, 0, PersistentHashMap.hash(key), key, value, added);
+            if (added[0]) {
+                this.count++;
+            }
+            return this;
+        }
+
+        /**
+         * @param key Key to remove
+         * @return This builder
+         */
+        public Builder<K, V> remove(final Object key) {
+            if (this.get(key) != null) {
+                this.root = this.root.without(this.edit, 0, PersistentHashMap.hash(key), key);
+                this.count--;
+            }
+            return this;
+        }
+
+        /**
+         * Returns the value of a key.
+         *
+         * @param key Key to find
+         * @return Value of the key, or null if absent.
+         */
+        @SuppressWarnings("unchecked")
+        public V get(final Object key) {
+            return this.root == null ? null : (V) this.root.find(0, PersistentHashMap.hash(key), key);
+        }
+
+        /**
+         * @return Number of entries
+         */
+        public int size() {
+            return this.count;
+        }
+
+        /**
+         * @return Map of the entries put, after which the nodes it shares are no
+         * longer changed in place.
+         */
+        public PersistentHashMap<K, V> build() {
+            if (this.count == 0) {
+                return PersistentHashMap.empty();
+            }
+            this.edit = new Object();
+            return new PersistentHashMap<>(this.count, this.root);
+        }
+    }
+}
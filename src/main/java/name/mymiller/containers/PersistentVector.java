@@ -0,0 +1,605 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Immutable list that shares structure with the versions it was derived from,
+ * so a snapshot can be handed to another stage without copying.
+ * <p>
+ * Elements sit in a tree of 32 wide arrays with the last up to 32 elements in a
+ * separate tail. get is a walk of at most log32(n) levels, and append, set and
+ * removeLast copy only the arrays on the path to the element, sharing the rest
+ * with the previous version. Appending usually copies just the tail.
+ * <p>
+ * A Builder adds and sets elements in place on arrays it owns, for building a
+ * large vector without a copy per element. Arrays are owned through an edit
+ * token: nodes created by a builder carry its token and may be changed by it,
+ * other nodes are copied first. build() takes a fresh token, freezing every node
+ * the vector shares.
+ * <p>
+ * Vectors are safe to share between threads; builders are not.
+ *
+ * @param <E> Element type for this vector
+ * @author jmiller
+ */
+public final class PersistentVector<E> implements Iterable<E> {
+    /**
+     * Bits of the index consumed per level
+     */
+    private static final int bits = 5;
+    /**
+     * Width of a node
+     */
+    private static final int width = 1 << PersistentVector.bits;
+    /**
+     * Mask selecting the index within a node
+     */
+    private static final int mask = PersistentVector.width - 1;
+    /**
+     * Root of the empty tree
+     */
+    private static final Node emptyNode = new Node(null, new Object[PersistentVector.width]);
+    /**
+     * The empty vector
+     */
+    private static final PersistentVector<?> empty = new PersistentVector<>(0, PersistentVector.bits,
+            PersistentVector.emptyNode, new Object[0]);
+
+    /**
+     * Number of elements
+     */
+    private final int count;
+    /**
+     * Shift of the root level
+     */
+    private final int shift;
+    /**
+     * Root of the tree, holding all but the tail
+     */
+    private final Node root;
+    /**
+     * Last up to 32 elements
+     */
+    private final Object[] tail;
+
+    /**
+     * @param count Number of elements
+     * @param shift Shift of the root level
+     * @param root  Root of the tree
+     * @param tail  Last up to 32 elements
+     */
+    private PersistentVector(final int count, final int shift, final Node root, final Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * @param <E> Element type for the vector
+     * @return The empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) PersistentVector.empty;
+    }
+
+    /**
+     * @param elements Elements of the vector
+     * @param <E>      Element type for the vector
+     * @return Vector of the elements in order
+     */
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(final E... elements) {
+        final Builder<E> builder = PersistentVector.builder();
+        for (final E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param elements Elements of the vector
+     * @param <E>      Element type for the vector
+     * @return Vector of the elements in iteration order
+     */
+    public static <E> PersistentVector<E> from(final Iterable<? extends E> elements) {
+        final Builder<E> builder = PersistentVector.builder();
+        for (final E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param <E> Element type for the vector
+     * @return Builder starting from the empty vector
+     */
+    public static <E> Builder<E> builder() {
+        return new Builder<>(PersistentVector.empty());
+    }
+
+    /**
+     * @return Builder starting from this vector, leaving this vector unchanged
+     */
+    public Builder<E> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * @return Number of elements
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @return True if the vector is empty;
+     */
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * @param index Position of the element
+     * @return Element at the position
+     * @throws IndexOutOfBoundsException if the position is not in the vector.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(final int index) {
+        Objects.checkIndex(index, this.count);
+        return (E) PersistentVector.arrayFor(index, this.count, this.shift, this.root, this.tail)[index
+                & PersistentVector.mask];
+    }
+
+    /**
+     * @param value Element to append
+     * @return Vector with the element appended
+     */
+    public PersistentVector<E> append(final E value) {
+        if (this.count - PersistentVector.tailOffset(this.count) < PersistentVector.width) {
+            final Object[] newTail = Arrays.copyOf(this.tail, this.tail.length + 1);
+            newTail[this.tail.length] = value;
+            return new PersistentVector<>(this.count + 1, this.shift, this.root, newTail);
+        }
+        final Node tailNode = new Node(null, this.tail);
+        final Node newRoot;
+        int newShift = this.shift;
+        if ((this.count >>> PersistentVector.bits) > (1 << this.shift)) {
+            newRoot = new Node(null, new Object[PersistentVector.width]);
+            newRoot.array[0] = this.root;
+            newRoot.array[1] = PersistentVector.newPath(null, this.shift, tailNode);
+            newShift += PersistentVector.bits;
+        } else {
+            newRoot = this.pushTail(this.shift, this.root, tailNode);
+        }
+        return new PersistentVector<>(this.count + 1, newShift, newRoot, new Object[]{value});
+    }
+
+    /**
+     * @param index Position of the element
+     * @param value New element
+     * @return Vector with the element at the position replaced
+     * @throws IndexOutOfBoundsException if the position is not in the vector.
+     */
+    public PersistentVector<E> set(final int index, final E value) {
+        Objects.checkIndex(index, this.count);
+        if (index >= PersistentVector.tailOffset(this.count)) {
+            final Object[] newTail = this.tail.clone();
+            newTail[index & PersistentVector.mask] = value;
+            return new PersistentVector<>(this.count, this.shift, this.root, newTail);
+        }
+        return new PersistentVector<>(this.count, this.shift, PersistentVector.assoc(null, this.shift, this.root,
+                index, value), this.tail);
+    }
+
+    /**
+     * @return Vector without its last element
+     * @throws IllegalStateException if the vector is empty.
+     */
+    public PersistentVector<E> removeLast() {
+        if (this.count == 0) {
+            throw new IllegalStateException("Vector is empty");
+        }
+        if (this.count == 1) {
+            return PersistentVector.empty();
+        }
+        if (this.count - PersistentVector.tailOffset(this.count) > 1) {
+            return new PersistentVector<>(this.count - 1, this.shift, this.root,
+                    Arrays.copyOf(this.tail, this.tail.length - 1));
+        }
+        final Object[] newTail = PersistentVector.arrayFor(this.count - 2, this.count, this.shift, this.root,
+                this.tail);
+        Node newRoot = this.popTail(this.shift, this.root);
+        int newShift = this.shift;
+        if (newRoot == null) {
+            newRoot = PersistentVector.emptyNode;
+        }
+        if (this.shift > PersistentVector.bits && newRoot.array[1] == null) {
+            newRoot = (Node) newRoot.array[0];
+            newShift -= PersistentVector.bits;
+        }
+        return new PersistentVector<>(this.count - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * @return Array of the elements in order
+     */
+    public Object[] toArray() {
+        final Object[] array = new Object[this.count];
+        for (int index = 0; index < this.count; index += PersistentVector.width) {
+            final Object[] node = PersistentVector.arrayFor(index, this.count, this.shift, this.root, this.tail);
+            System.arraycopy(node, 0, array, index, Math.min(PersistentVector.width, this.count - index));
+        }
+        return array;
+    }
+
+    /**
+     * Iterate the elements in order, walking a leaf at a time.
+     *
+     * @return Iterator of the elements
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+            private Object[] leaf = null;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < PersistentVector.this.count;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (this.index >= PersistentVector.this.count) {
+                    throw new NoSuchElementException();
+                }
+                if ((this.index & PersistentVector.mask) == 0 || this.leaf == null) {
+                    this.leaf = PersistentVector.arrayFor(this.index, PersistentVector.this.count,
+                            PersistentVector.this.shift, PersistentVector.this.root, PersistentVector.this.tail);
+                }
+                return (E) this.leaf[this.index++ & PersistentVector.mask];
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PersistentVector) || ((PersistentVector<?>) obj).count != this.count) {
+            return false;
+        }
+        final Iterator<?> other = ((PersistentVector<?>) obj).iterator();
+        for (final E element : this) {
+            if (!Objects.equals(element, other.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (final E element : this) {
+            hash = 31 * hash + Objects.hashCode(element);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+
+    /**
+     * @param count Number of elements
+     * @return Index of the first element in the tail
+     */
+    private static int tailOffset(final int count) {
+        return count < PersistentVector.width ? 0 : ((count - 1) >>> PersistentVector.bits) << PersistentVector.bits;
+    }
+
+    /**
+     * @param index Position of an element
+     * @param count Number of elements
+     * @param shift Shift of the root level
+     * @param root  Root of the tree
+     * @param tail  Last up to 32 elements
+     * @return Leaf array holding the element
+     */
+    private static Object[] arrayFor(final int index, final int count, final int shift, final Node root,
+                                     final Object[] tail) {
+        if (index >= PersistentVector.tailOffset(count)) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= PersistentVector.bits) {
+            node = (Node) node.array[(index >>> level) & PersistentVector.mask];
+        }
+        return node.array;
+    }
+
+    /**
+     * @param edit  Edit token of the new nodes
+     * @param level Shift of the level to create
+     * @param node  Node at the bottom of the path
+     * @return Chain of nodes down to the node
+     */
+    private static Node newPath(final Object edit, final int level, final Node node) {
+        if (level == 0) {
+            return node;
+        }
+        final Node path = new Node(edit, new Object[PersistentVector.width]);
+        path.array[0] = PersistentVector.newPath(edit, level - PersistentVector.bits, node);
+        return path;
+    }
+
+    /**
+     * Copy the path to the last leaf, adding the full tail as a new leaf.
+     *
+     * @param level    Shift of the level
+     * @param parent   Node at the level
+     * @param tailNode Leaf holding the old tail
+     * @return Copy of the node with the leaf added
+     */
+    private Node pushTail(final int level, final Node parent, final Node tailNode) {
+        final int index = ((this.count - 1) >>> level) & PersistentVector.mask;
+        final Node copy = new Node(null, parent.array.clone());
+        if (level == PersistentVector.bits) {
+            copy.array[index] = tailNode;
+        } else {
+            final Node child = (Node) parent.array[index];
+            copy.array[index] = child != null ? this.pushTail(level - PersistentVector.bits, child, tailNode)
+                    : PersistentVector.newPath(null, level - PersistentVector.bits, tailNode);
+        }
+        return copy;
+    }
+
+    /**
+     * Copy the path to the last leaf, removing the leaf.
+     *
+     * @param level Shift of the level
+     * @param node  Node at the level
+     * @return Copy of the node without the leaf, or null if left empty.
+     */
+    private Node popTail(final int level, final Node node) {
+        final int index = ((this.count - 2) >>> level) & PersistentVector.mask;
+        if (level > PersistentVector.bits) {
+            final Node child = this.popTail(level - PersistentVector.bits, (Node) node.array[index]);
+            if (child == null && index == 0) {
+                return null;
+            }
+            final Node copy = new Node(null, node.array.clone());
+            copy.array[index] = child;
+            return copy;
+        } else if (index == 0) {
+            return null;
+        }
+        final Node copy = new Node(null, node.array.clone());
+        copy.array[index] = null;
+        return copy;
+    }
+
+    /**
+     * Set an element in the tree, copying each node on the path unless owned by
+     * the edit token.
+     *
+     * @param edit  Edit token of the caller, or null to copy every node
+     * @param level Shift of the level
+     * @param node  Node at the level
+     * @param index Position of the element
+     * @param value New element
+     * @return Node with the element set
+     */
+    private static Node assoc(final Object edit, final int level, final Node node, final int index,
+                              final Object value) {
+        final Node target = node.editableBy(edit);
+        if (level == 0) {
+            target.array[index & PersistentVector.mask] = value;
+        } else {
+            final int child = (index >>> level) & PersistentVector.mask;
+            target.array[child] = PersistentVector.assoc(edit, level - PersistentVector.bits,
+                    (Node) node.array[child], index, value);
+        }
+        return target;
+    }
+
+    /**
+     * Node of the tree, an array of children or of elements at the leaves
+     */
+    private static final class Node {
+        /**
+         * Edit token of the builder that may change this node in place, or null
+         */
+        private final Object edit;
+        /**
+         * Children or elements of the node
+         */
+        private final Object[] array;
+
+        /**
+         * @param edit  Edit token of the owning builder, or null
+         * @param array Children or elements of the node
+         */
+        Node(final Object edit, final Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+        /**
+         * @param edit Edit token of the caller, or null
+         * @return This node if owned by the token, otherwise a copy owned by it
+         */
+        Node editableBy(final Object edit) {
+            return edit != null && this.edit == edit ? this : new Node(edit, this.array.clone());
+        }
+    }
+
+    /**
+     * Builds a vector by changing nodes in place. A builder may keep being used
+     * after build(), without affecting the vectors it built.
+     *
+     * @param <E> Element type for the vector
+     */
+    public static final class Builder<E> {
+        /**
+         * Token marking the nodes this builder may change
+         */
+        private Object edit = new Object();
+        /**
+         * Number of elements
+         */
+        private int count;
+        /**
+         * Shift of the root level
+         */
+        private int shift;
+        /**
+         * Root of the tree
+         */
+        private Node root;
+        /**
+         * Tail, always 32 long
+         */
+        private Object[] tail;
+
+        /**
+         * @param vector Vector to start from
+         */
+        private Builder(final PersistentVector<E> vector) {
+            this.count = vector.count;
+            this.shift = vector.shift;
+            this.root = vector.root;
+            this.tail = Arrays.copyOf(vector.tail, PersistentVector.width);
+        }
+
+        /**
+         * @param value Element to append
+         * @return This builder
+         */
+        public Builder<E> add(final E value) {
+            if (this.count - PersistentVector.tailOffset(this.count) < PersistentVector.width) {
+                this.tail[this.count++ & PersistentVector.mask] = value;
+                return this;
+            }
+            final Node tailNode = new Node(this.edit, this.tail);
+            this.tail = new Object[PersistentVector.width];
+            this.tail[0] = value;
+            if ((this.count >>> PersistentVector.bits) > (1 << this.shift)) {
+                final Node newRoot = new Node(this.edit, new Object[PersistentVector.width]);
+                newRoot.array[0] = this.root;
+                newRoot.array[1] = PersistentVector.newPath(this.edit, this.shift, tailNode);
+                this.root = newRoot;
+                this.shift += PersistentVector.bits;
+            } else {
+                this.root = this.pushTail(this.shift, this.root, tailNode);
+            }
+            this.count++;
+            return this;
+        }
+
+        /**
+         * @param elements Elements to append
+         * @return This builder
+         */
+        public Builder<E> addAll(final Iterable<? extends E> elements) {
+            for (final E element : elements) {
+                this.add(element);
+            }
+            return this;
+        }
+
+        /**
+         * @param index Position of the element
+         * @param value New element
+         * @return This builder
+         * @throws IndexOutOfBoundsException if the position is not in the vector.
+         */
+        public Builder<E> set(final int index, final E value) {
+            Objects.checkIndex(index, this.count);
+            if (index >= PersistentVector.tailOffset(this.count)) {
+                this.tail[index & PersistentVector.mask] = value;
+            } else {
+                this.root = PersistentVector.assoc(this.edit, this.shift, this.root, index, value);
+            }
+            return this;
+        }
+
+        /**
+         * @param index Position of the element
+         * @return Element at the position
+         * @throws IndexOutOfBoundsException if the position is not in the vector.
+         */
+        @SuppressWarnings("unchecked")
+        public E get(final int index) {
+            Objects.checkIndex(index, this.count);
+            return (E) PersistentVector.arrayFor(index, this.count, this.shift, this.root, this.tail)[index
+                    & PersistentVector.mask];
+        }
+
+        /**
+         * @return Number of elements
+         */
+        public int size() {
+            return this.count;
+        }
+
+        /**
+         * @return Vector of the elements added, after which the nodes it shares
+         * are no longer changed in place.
+         */
+        public PersistentVector<E> build() {
+            if (this.count == 0) {
+                return PersistentVector.empty();
+            }
+            this.edit = new Object();
+            return new PersistentVector<>(this.count, this.shift, this.root,
+                    Arrays.copyOf(this.tail, this.count - PersistentVector.tailOffset(this.count)));
+        }
+
+        /**
+         * Add the full tail as a new leaf, changing owned nodes on the path in
+         * place.
+         *
+         * @param level    Shift of the level
+         * @param parent   Node at the level
+         * @param tailNode Leaf holding the old tail
+         * @return Node with the leaf added
+         */
+        private Node pushTail(final int level, final Node parent, final Node tailNode) {
+            final Node target = parent.editableBy(this.edit);
+            final int index = ((this.count - 1) >>> level) & PersistentVector.mask;
+            if (level == PersistentVector.bits) {
+                target.array[index] = tailNode;
+            } else {
+                final Node child = (Node) target.array[index];
+                target.array[index] = child != null ? this.pushTail(level - PersistentVector.bits, child, tailNode)
+                        : PersistentVector.newPath(this.edit, level - PersistentVector.bits, tailNode);
+            }
+            return target;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+/**
+ * Hashing shared by the primitive open addressing maps and sets.
+ *
+ * @author jmiller
+ */
+final class PrimitiveHashing {
+    /**
+     * Fraction of the table filled before it doubles
+     */
+    static final float loadFactor = 0.75f;
+    /**
+     * Largest table length
+     */
+    static final int maximumCapacity = 1 << 30;
+
+    /**
+     * Not instantiated
+     */
+    private PrimitiveHashing() {
+    }
+
+    /**
+     * Mix the bits of a key, so sequential ids spread over the table.
+     *
+     * @param key Key to hash
+     * @return Mixed hash
+     */
+    static int mix(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Mix the bits of a key, so sequential ids spread over the table.
+     *
+     * @param key Key to hash
+     * @return Mixed hash
+     */
+    static int mix(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @param expected Number of entries expected
+     * @return Power of two table length holding them below the load factor
+     */
+    static int tableSize(final int expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + expected);
+        }
+        final long needed = (long) Math.ceil(expected / PrimitiveHashing.loadFactor) + 1;
+        if (needed >= PrimitiveHashing.maximumCapacity) {
+            return PrimitiveHashing.maximumCapacity;
+        }
+        return Math.max(Integer.highestOneBit((int) needed - 1) << 1, 4);
+    }
+
+    /**
+     * @param length Table length
+     * @return Number of entries at which the table doubles
+     */
+    static int threshold(final int length) {
+        return Math.min((int) (length * PrimitiveHashing.loadFactor), length - 1);
+    }
+}
@@ -0,0 +1,567 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+/**
+ * Sorted map backed by a skip list, for time ordered buffers and range indexes.
+ * Keys are ordered by their natural order or a Comparator.
+ * <p>
+ * Reads never lock: get, floor, ceiling and range scans walk the levels down to
+ * the key using acquire loads. Writers are serialized by the map's monitor and
+ * publish a node with release stores from the bottom level up, so a reader sees
+ * a node fully built or not at all. A removed node is flagged before it is
+ * unlinked and keeps its forward links, so readers already on it skip it and
+ * carry on. Iterators are weakly consistent: they never fail, and see changes
+ * made after they pass no further than the current position.
+ * <p>
+ * removeBefore drops every key below a bound in one pass, for expiring the
+ * oldest events. Null keys and values are not permitted.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ * @author jmiller
+ */
+public class SkipListMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    /**
+     * Highest number of levels, enough for 4^16 keys
+     */
+    static final int maxLevel = 16;
+    /**
+     * Handle to load and store the links of a node with ordering
+     */
+    private static final VarHandle NEXT = MethodHandles.arrayElementVarHandle(Node[].class);
+
+    /**
+     * Orders the keys, or null for their natural order
+     */
+    private final Comparator<? super K> comparator;
+    /**
+     * Sentinel before the first node, linked at every level
+     */
+    private final Node<K, V> head = new Node<>(null, null, SkipListMap.maxLevel);
+    /**
+     * Number of keys
+     */
+    private volatile int length;
+    /**
+     * Number of levels in use
+     */
+    private volatile int levels = 1;
+
+    /**
+     * Create a map ordering keys by their natural order.
+     */
+    public SkipListMap() {
+        this(null);
+    }
+
+    /**
+     * Create a map.
+     *
+     * @param comparator Orders the keys, or null for their natural order
+     */
+    public SkipListMap(final Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return Number of levels for a new node, each further level a quarter as
+     * likely
+     */
+    static int randomLevel() {
+        int random = ThreadLocalRandom.current().nextInt();
+        int level = 1;
+        while ((random & 3) == 0 && level < SkipListMap.maxLevel) {
+            level++;
+            random >>>= 2;
+        }
+        return level;
+    }
+
+    /**
+     * @param node  Node to read
+     * @param level Level of the link
+     * @param <K>   Type of the keys
+     * @param <V>   Type of the values
+     * @return Next node at the level, or null
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> next(final Node<K, V> node, final int level) {
+        return (Node<K, V>) SkipListMap.NEXT.getAcquire(node.next, level);
+    }
+
+    /**
+     * @param left  First key
+     * @param right Second key
+     * @return Negative, zero or positive as left is below, equal to or above right
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(final K left, final K right) {
+        return this.comparator == null ? ((Comparable<? super K>) left).compareTo(right)
+                : this.comparator.compare(left, right);
+    }
+
+    /**
+     * Walk down the levels to the last node before a key.
+     *
+     * @param key       Key to find
+     * @param inclusive true to also pass a node equal to the key
+     * @return Last node below the key, or at it if inclusive; the head if none.
+     */
+    private Node<K, V> descend(final K key, final boolean inclusive) {
+        Node<K, V> current = this.head;
+        for (int level = this.levels - 1; level >= 0; level--) {
+            Node<K, V> next;
+            while ((next = SkipListMap.next(current, level)) != null) {
+                final int compared = this.compare(next.key, key);
+                if (compared > 0 || (compared == 0 && !inclusive)) {
+                    break;
+                }
+                current = next;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param node Node to start from
+     * @param <K>  Type of the keys
+     * @param <V>  Type of the values
+     * @return The node or the first node after it that is not removed, or null.
+     */
+    private static <K, V> Node<K, V> live(Node<K, V> node) {
+        while (node != null && node.removed) {
+            node = SkipListMap.next(node, 0);
+        }
+        return node;
+    }
+
+    /**
+     * @param key       Key to find
+     * @param inclusive true to accept a node equal to the key
+     * @return Last live node below the key, or at it if inclusive; null if none.
+     */
+    private Node<K, V> before(final K key, final boolean inclusive) {
+        Node<K, V> node = this.descend(key, inclusive);
+        while (node != this.head && node.removed) {
+            node = this.descend(node.key, false);
+        }
+        return node == this.head ? null : node;
+    }
+
+    /**
+     * @param key       Key to find
+     * @param inclusive true to accept a node equal to the key
+     * @return First live node above the key, or at it if inclusive; null if none.
+     */
+    private Node<K, V> after(final K key, final boolean inclusive) {
+        return SkipListMap.live(SkipListMap.next(this.descend(key, !inclusive), 0));
+    }
+
+    /**
+     * @param node Node to copy, or null
+     * @param <K>  Type of the keys
+     * @param <V>  Type of the values
+     * @return Snapshot of the node's key and value, or null.
+     */
+    private static <K, V> Map.Entry<K, V> entry(final Node<K, V> node) {
+        return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key Key to find
+     * @return Value of the key, or null if absent.
+     */
+    public V get(final K key) {
+        final Node<K, V> node = this.after(key, true);
+        return node != null && this.compare(node.key, key) == 0 ? node.value : null;
+    }
+
+    /**
+     * @param key Key to find
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(final K key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the greatest key at or below the key, or null if none.
+     */
+    public Map.Entry<K, V> floorEntry(final K key) {
+        return SkipListMap.entry(this.before(key, true));
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the greatest key strictly below the key, or null if
+     * none.
+     */
+    public Map.Entry<K, V> lowerEntry(final K key) {
+        return SkipListMap.entry(this.before(key, false));
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the least key at or above the key, or null if none.
+     */
+    public Map.Entry<K, V> ceilingEntry(final K key) {
+        return SkipListMap.entry(this.after(key, true));
+    }
+
+    /**
+     * @param key Key to find
+     * @return Entry with the least key strictly above the key, or null if none.
+     */
+    public Map.Entry<K, V> higherEntry(final K key) {
+        return SkipListMap.entry(this.after(key, false));
+    }
+
+    /**
+     * @return Entry with the least key, or null if empty.
+     */
+    public Map.Entry<K, V> firstEntry() {
+        return SkipListMap.entry(SkipListMap.live(SkipListMap.next(this.head, 0)));
+    }
+
+    /**
+     * @return Entry with the greatest key, or null if empty.
+     */
+    public Map.Entry<K, V> lastEntry() {
+        Node<K, V> current = this.head;
+        for (int level = this.levels - 1; level >= 0; level--) {
+            Node<K, V> next;
+            while ((next = SkipListMap.next(current, level)) != null) {
+                current = next;
+            }
+        }
+        if (current != this.head && current.removed) {
+            return SkipListMap.entry(this.before(current.key, false));
+        }
+        return SkipListMap.entry(current == this.head ? null : current);
+    }
+
+    /**
+     * Set the value of a key.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Previous value of the key, or null if absent.
+     */
+    public V put(final K key, final V value) {
+        return this.insert(key, value, false);
+    }
+
+    /**
+     * Set the value of a key if absent.
+     *
+     * @param key   Key to set
+     * @param value Value of the key
+     * @return Current value of the key, or null if it was absent and is now set.
+     */
+    public V putIfAbsent(final K key, final V value) {
+        return this.insert(key, value, true);
+    }
+
+    /**
+     * Find the last node before a key at every level. Must hold the monitor.
+     *
+     * @param key   Key to find
+     * @param preds Receives the last node before the key at each level
+     * @return Node of the key, or null if absent.
+     */
+    private Node<K, V> predecessors(final K key, final Node<K, V>[] preds) {
+        Node<K, V> current = this.head;
+        for (int level = SkipListMap.maxLevel - 1; level >= 0; level--) {
+            Node<K, V> next;
+            while ((next = current.next[level]) != null && this.compare(next.key, key) < 0) {
+                current = next;
+            }
+            preds[level] = current;
+        }
+        final Node<K, V> next = current.next[0];
+        return next != null && this.compare(next.key, key) == 0 ? next : null;
+    }
+
+    /**
+     * @param key          Key to set
+     * @param value        Value of the key
+     * @param onlyIfAbsent true to leave an existing value
+     * @return Previous value of the key, or null if absent.
+     */
+    private synchronized V insert(final K key, final V value, final boolean onlyIfAbsent) {
+        Objects.requireNonNull(key, "key may not be null");
+        Objects.requireNonNull(value, "value may not be null");
+        final Node<K, V>[] preds = Node.array(SkipListMap.maxLevel);
+        final Node<K, V> found = this.predecessors(key, preds);
+        if (found != null) {
+            final V previous = found.value;
+            if (!onlyIfAbsent) {
+                found.value = value;
+            }
+            return previous;
+        }
+        final int level = SkipListMap.randomLevel();
+        final Node<K, V> node = new Node<>(key, value, level);
+        for (int index = 0; index < level; index++) {
+            node.next[index] = preds[index].next[index];
+        }
+        for (int index = 0; index < level; index++) {
+            SkipListMap.NEXT.setRelease(preds[index].next, index, node);
+        }
+        if (level > this.levels) {
+            this.levels = level;
+        }
+        this.length++;
+        return null;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key Key to remove
+     * @return Value of the key, or null if absent.
+     */
+    public synchronized V remove(final K key) {
+        final Node<K, V>[] preds = Node.array(SkipListMap.maxLevel);
+        final Node<K, V> found = this.predecessors(key, preds);
+        if (found == null) {
+            return null;
+        }
+        found.removed = true;
+        for (int index = found.next.length - 1; index >= 0; index--) {
+            SkipListMap.NEXT.setRelease(preds[index].next, index, found.next[index]);
+        }
+        this.length--;
+        this.trimLevels();
+        return found.value;
+    }
+
+    /**
+     * Remove the entry with the least key.
+     *
+     * @return Entry removed, or null if empty.
+     */
+    public synchronized Map.Entry<K, V> pollFirstEntry() {
+        final Node<K, V> first = this.head.next[0];
+        if (first == null) {
+            return null;
+        }
+        final Map.Entry<K, V> entry = SkipListMap.entry(first);
+        this.remove(first.key);
+        return entry;
+    }
+
+    /**
+     * Remove every key below a bound in one pass.
+     *
+     * @param key Least key to keep
+     * @return Number of keys removed
+     */
+    public synchronized int removeBefore(final K key) {
+        int removed = 0;
+        for (Node<K, V> node = this.head.next[0]; node != null && this.compare(node.key, key) < 0;
+             node = node.next[0]) {
+            node.removed = true;
+            removed++;
+        }
+        if (removed == 0) {
+            return 0;
+        }
+        for (int level = this.levels - 1; level >= 0; level--) {
+            Node<K, V> node = this.head.next[level];
+            while (node != null && node.removed) {
+                node = node.next[level];
+            }
+            SkipListMap.NEXT.setRelease(this.head.next, level, node);
+        }
+        this.length -= removed;
+        this.trimLevels();
+        return removed;
+    }
+
+    /**
+     * Drop empty top levels. Must hold the monitor.
+     */
+    private void trimLevels() {
+        int top = this.levels;
+        while (top > 1 && this.head.next[top - 1] == null) {
+            top--;
+        }
+        this.levels = top;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        for (Node<K, V> node = this.head.next[0]; node != null; node = node.next[0]) {
+            node.removed = true;
+        }
+        for (int level = 0; level < SkipListMap.maxLevel; level++) {
+            SkipListMap.NEXT.setRelease(this.head.next, level, null);
+        }
+        this.length = 0;
+        this.levels = 1;
+    }
+
+    /**
+     * @return Number of entries
+     */
+    public int size() {
+        return this.length;
+    }
+
+    /**
+     * @return True if the map is empty;
+     */
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    /**
+     * Perform an action on each entry in key order.
+     *
+     * @param action Action to perform
+     */
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        this.forEachInRange(null, null, action);
+    }
+
+    /**
+     * Perform an action on each entry with a key in a range, in key order,
+     * without allocating.
+     *
+     * @param from   Least key, inclusive, or null for no lower bound
+     * @param to     Bound above the keys, exclusive, or null for no upper bound
+     * @param action Action to perform
+     */
+    public void forEachInRange(final K from, final K to, final BiConsumer<? super K, ? super V> action) {
+        Node<K, V> node = from == null ? SkipListMap.next(this.head, 0) : this.after(from, true);
+        while ((node = SkipListMap.live(node)) != null && (to == null || this.compare(node.key, to) < 0)) {
+            action.accept(node.key, node.value);
+            node = SkipListMap.next(node, 0);
+        }
+    }
+
+    /**
+     * @param from Least key, inclusive, or null for no lower bound
+     * @param to   Bound above the keys, exclusive, or null for no upper bound
+     * @return Entries with a key in the range, in key order
+     */
+    public Iterable<Map.Entry<K, V>> range(final K from, final K to) {
+        return () -> new Iterator<>() {
+            private Node<K, V> next = SkipListMap.this.bounded(from == null ? SkipListMap.next(SkipListMap.this.head,
+                    0) : SkipListMap.this.after(from, true), to);
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Map.Entry<K, V> entry = SkipListMap.entry(this.next);
+                this.next = SkipListMap.this.bounded(SkipListMap.next(this.next, 0), to);
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * @param node Node to start from
+     * @param to   Bound above the keys, exclusive, or null
+     * @return The node or the first live node after it, or null past the bound.
+     */
+    private Node<K, V> bounded(final Node<K, V> node, final K to) {
+        final Node<K, V> next = SkipListMap.live(node);
+        return next != null && (to == null || this.compare(next.key, to) < 0) ? next : null;
+    }
+
+    /**
+     * Iterate the entries in key order.
+     *
+     * @return Iterator of the entries
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return this.range(null, null).iterator();
+    }
+
+    /**
+     * Node of the skip list, linked at one or more levels
+     *
+     * @param <K> Type of the keys
+     * @param <V> Type of the values
+     */
+    private static final class Node<K, V> {
+        /**
+         * Key of the node
+         */
+        private final K key;
+        /**
+         * Links to the next node at each level
+         */
+        private final Node<K, V>[] next;
+        /**
+         * Value of the key
+         */
+        private volatile V value;
+        /**
+         * True once removed, before being unlinked
+         */
+        private volatile boolean removed;
+
+        /**
+         * @param key   Key of the node
+         * @param value Value of the key
+         * @param level Number of levels the node is linked at
+         */
+        Node(final K key, final V value, final int level) {
+            this.key = key;
+            this.value = value;
+            this.next = Node.array(level);
+        }
+
+        /**
+         * @param length Length of the array
+         * @param <K>    Type of the keys
+         * @param <V>    Type of the values
+         * @return Array of nodes
+         */
+        @SuppressWarnings("unchecked")
+        static <K, V> Node<K, V>[] array(final int length) {
+            return (Node<K, V>[]) new Node<?, ?>[length];
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Sorted set backed by a SkipListMap, with the same lock free reads and
+ * serialized writes.
+ *
+ * @param <E> Element type for this set
+ * @author jmiller
+ */
+public class SkipListSet<E> implements Iterable<E> {
+    /**
+     * Map holding the elements as keys
+     */
+    private final SkipListMap<E, Boolean> map;
+
+    /**
+     * Create a set ordering elements by their natural order.
+     */
+    public SkipListSet() {
+        this(null);
+    }
+
+    /**
+     * Create a set.
+     *
+     * @param comparator Orders the elements, or null for their natural order
+     */
+    public SkipListSet(final Comparator<? super E> comparator) {
+        this.map = new SkipListMap<>(comparator);
+    }
+
+    /**
+     * @param element Element to add
+     * @return true if the element was not already in the set
+     */
+    public boolean add(final E element) {
+        return this.map.putIfAbsent(element, Boolean.TRUE) == null;
+    }
+
+    /**
+     * @param element Element to remove
+     * @return true if the element was in the set
+     */
+    public boolean remove(final E element) {
+        return this.map.remove(element) != null;
+    }
+
+    /**
+     * @param element Element to find
+     * @return true if the element is in the set
+     */
+    public boolean contains(final E element) {
+        return this.map.containsKey(element);
+    }
+
+    /**
+     * @param entry Entry of the map, or null
+     * @param <E>   Element type
+     * @return Key of the entry, or null.
+     */
+    private static <E> E key(final Map.Entry<E, Boolean> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    /**
+     * @return Least element, or null if empty.
+     */
+    public E first() {
+        return SkipListSet.key(this.map.firstEntry());
+    }
+
+    /**
+     * @return Greatest element, or null if empty.
+     */
+    public E last() {
+        return SkipListSet.key(this.map.lastEntry());
+    }
+
+    /**
+     * @param element Element to find
+     * @return Greatest element at or below the element, or null if none.
+     */
+    public E floor(final E element) {
+        return SkipListSet.key(this.map.floorEntry(element));
+    }
+
+    /**
+     * @param element Element to find
+     * @return Greatest element strictly below the element, or null if none.
+     */
+    public E lower(final E element) {
+        return SkipListSet.key(this.map.lowerEntry(element));
+    }
+
+    /**
+     * @param element Element to find
+     * @return Least element at or above the element, or null if none.
+     */
+    public E ceiling(final E element) {
+        return SkipListSet.key(this.map.ceilingEntry(element));
+    }
+
+    /**
+     * @param element Element to find
+     * @return Least element strictly above the element, or null if none.
+     */
+    public E higher(final E element) {
+        return SkipListSet.key(this.map.higherEntry(element));
+    }
+
+    /**
+     * @return Least element removed, or null if empty.
+     */
+    public E pollFirst() {
+        return SkipListSet.key(this.map.pollFirstEntry());
+    }
+
+    /**
+     * Remove every element below a bound in one pass.
+     *
+     * @param element Least element to keep
+     * @return Number of elements removed
+     */
+    public int removeBefore(final E element) {
+        return this.map.removeBefore(element);
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public void clear() {
+        this.map.clear();
+    }
+
+    /**
+     * @return Number of elements
+     */
+    public int size() {
+        return this.map.size();
+    }
+
+    /**
+     * @return True if the set is empty;
+     */
+    public boolean isEmpty() {
+        return this.map.isEmpty();
+    }
+
+    /**
+     * @param from Least element, inclusive, or null for no lower bound
+     * @param to   Bound above the elements, exclusive, or null for no upper bound
+     * @return Elements in the range, in order
+     */
+    public Iterable<E> range(final E from, final E to) {
+        return () -> {
+            final Iterator<Map.Entry<E, Boolean>> entries = this.map.range(from, to).iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    return entries.next().getKey();
+                }
+            };
+        };
+    }
+
+    /**
+     * Iterate the elements in order.
+     *
+     * @return Iterator of the elements
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return this.range(null, null).iterator();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Bounded ring buffer handing elements from exactly one producer thread to
+ * exactly one consumer thread. Neither side uses a compare and set: each side
+ * owns one position and publishes it with a release store, and keeps a cached
+ * copy of the other side's position so it only reads it when the cache says the
+ * buffer is full or empty.
+ * <p>
+ * offer and offerAll may only be called by the producer; poll, peek, drainTo and
+ * clear only by the consumer. offerAll and drainTo publish their whole batch with
+ * one store.
+ *
+ * @param <E> Element type for this buffer
+ * @author jmiller
+ */
+public class SpscRingBuffer<E> implements ConcurrentContainer<E> {
+    /**
+     * Handle to the elements of the buffer
+     */
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    /**
+     * Handle to publish the producer position
+     */
+    private static final VarHandle TAIL;
+    /**
+     * Handle to publish the consumer position
+     */
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(SpscRingBuffer.class, "tail", long.class);
+            HEAD = lookup.findVarHandle(SpscRingBuffer.class, "head", long.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Slots of the buffer, its length a power of two
+     */
+    private final Object[] buffer;
+    /**
+     * Mask selecting the slot of a position
+     */
+    private final int mask;
+    /**
+     * Next position to produce, written by the producer
+     */
+    private long tail;
+    /**
+     * Producer's copy of the consumer position
+     */
+    private long headCache;
+    /**
+     * Next position to consume, written by the consumer
+     */
+    private long head;
+    /**
+     * Consumer's copy of the producer position
+     */
+    private long tailCache;
+
+    /**
+     * Create a buffer.
+     *
+     * @param capacity Number of elements the buffer holds, rounded up to a power
+     *                 of two
+     */
+    public SpscRingBuffer(final int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.buffer = new Object[ArrayDeque.capacityFor(capacity)];
+        this.mask = this.buffer.length - 1;
+    }
+
+    /**
+     * @return Number of elements the buffer holds
+     */
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    /**
+     * Number of free slots seen by the producer.
+     *
+     * @param wanted Number of slots wanted
+     * @return Free slots, up to wanted if the cached position shows enough
+     */
+    private int free(final int wanted) {
+        final long position = this.tail;
+        if (this.buffer.length - (position - this.headCache) < wanted) {
+            this.headCache = (long) SpscRingBuffer.HEAD.getAcquire(this);
+        }
+        return (int) (this.buffer.length - (position - this.headCache));
+    }
+
+    /**
+     * Number of elements seen by the consumer.
+     *
+     * @return Available elements
+     */
+    private int available() {
+        final long position = this.head;
+        if (position >= this.tailCache) {
+            this.tailCache = (long) SpscRingBuffer.TAIL.getAcquire(this);
+        }
+        return (int) (this.tailCache - position);
+    }
+
+    @Override
+    public boolean offer(final E element) {
+        Objects.requireNonNull(element);
+        if (this.free(1) < 1) {
+            return false;
+        }
+        final long position = this.tail;
+        SpscRingBuffer.ELEMENTS.set(this.buffer, (int) position & this.mask, element);
+        SpscRingBuffer.TAIL.setRelease(this, position + 1);
+        return true;
+    }
+
+    @Override
+    public int offerAll(final Collection<? extends E> elements) {
+        final int count = Math.min(elements.size(), this.free(elements.size()));
+        long position = this.tail;
+        int written = 0;
+        for (final E element : elements) {
+            if (written == count) {
+                break;
+            }
+            SpscRingBuffer.ELEMENTS.set(this.buffer, (int) position++ & this.mask, Objects.requireNonNull(element));
+            written++;
+        }
+        SpscRingBuffer.TAIL.setRelease(this, position);
+        return written;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if (this.available() < 1) {
+            return null;
+        }
+        final long position = this.head;
+        final int index = (int) position & this.mask;
+        final E element = (E) SpscRingBuffer.ELEMENTS.get(this.buffer, index);
+        SpscRingBuffer.ELEMENTS.set(this.buffer, index, null);
+        SpscRingBuffer.HEAD.setRelease(this, position + 1);
+        return element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        if (this.available() < 1) {
+            return null;
+        }
+        return (E) SpscRingBuffer.ELEMENTS.get(this.buffer, (int) this.head & this.mask);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drainTo(final Collection<? super E> target, final int maxElements) {
+        final int count = Math.min(this.available(), maxElements);
+        long position = this.head;
+        for (int moved = 0; moved < count; moved++) {
+            final int index = (int) position++ & this.mask;
+            target.add((E) SpscRingBuffer.ELEMENTS.get(this.buffer, index));
+            SpscRingBuffer.ELEMENTS.set(this.buffer, index, null);
+        }
+        SpscRingBuffer.HEAD.setRelease(this, position);
+        return count;
+    }
+
+    @Override
+    public boolean contains(final E element) {
+        final long end = (long) SpscRingBuffer.TAIL.getAcquire(this);
+        for (long position = (long) SpscRingBuffer.HEAD.getAcquire(this); position < end; position++) {
+            final Object item = SpscRingBuffer.ELEMENTS.getAcquire(this.buffer, (int) position & this.mask);
+            if (item != null && item.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public int size() {
+        final long first = (long) SpscRingBuffer.HEAD.getAcquire(this);
+        final long last = (long) SpscRingBuffer.TAIL.getAcquire(this);
+        return (int) Math.max(0, Math.min(last - first, this.buffer.length));
+    }
+
+    /**
+     * Copy the elements from head to tail into an array. If the buffer changed
+     * since the array was sized, extra elements are left out and unused slots are
+     * set to null.
+     *
+     * @param array Array of type E[] the size of this container.
+     * @return Array containing the data of this container
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(final E[] array) {
+        final long end = (long) SpscRingBuffer.TAIL.getAcquire(this);
+        int index = 0;
+        for (long position = (long) SpscRingBuffer.HEAD.getAcquire(this); position < end && index < array.length;
+             position++) {
+            final Object item = SpscRingBuffer.ELEMENTS.getAcquire(this.buffer, (int) position & this.mask);
+            if (item != null) {
+                array[index++] = (E) item;
+            }
+        }
+        while (index < array.length) {
+            array[index++] = null;
+        }
+        return array;
+    }
+}
@@ -18,8 +18,11 @@
  */
 package name.mymiller.containers;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * String Cache to remove redundant String objects that contain the same data.
@@ -42,16 +45,85 @@ public class StringCache extends Cache<String> {
     }
 
     /**
-     * Return a Properties object with all strings Cached.
+     * Return a Properties object with all strings Cached. The keys and values are
+     * cached in bulk, taking each segment's lock once, and in parallel for large
+     * sets of properties.
      *
      * @param properties Properties to convert to Cached Strings
      * @return new Properties object with cached strings.
      */
     public Properties cacheProperties(Properties properties) {
-        Properties cacheProperties = new Properties();
-        Set<String> propertyNames = properties.stringPropertyNames();
-        propertyNames.forEach(propertyName -> cacheProperties.put(this.cache(propertyName), this.cache(properties.getProperty(propertyName))));
+        final List<String> propertyNames = List.copyOf(properties.stringPropertyNames());
+        final int count = propertyNames.size();
+        final String[] strings = new String[count * 2];
+        for (int index = 0; index < count; index++) {
+            final String propertyName = propertyNames.get(index);
+            strings[index * 2] = propertyName;
+            strings[index * 2 + 1] = properties.getProperty(propertyName);
+        }
+        this.parallelCacheAll(strings);
 
+        final Properties cacheProperties = new Properties();
+        for (int index = 0; index < count; index++) {
+            cacheProperties.put(strings[index * 2], strings[index * 2 + 1]);
+        }
         return cacheProperties;
     }
+
+    /**
+     * Cache one column of a table of rows, such as the rows of a CSV file, replacing
+     * the column's values in place. Rows too short to have the column are skipped.
+     *
+     * @param rows   Rows of the table
+     * @param column Index of the column to cache
+     */
+    public void cacheColumn(List<String[]> rows, int column) {
+        final String[] values = new String[rows.size()];
+        int index = 0;
+        for (final String[] row : rows) {
+            values[index++] = column < row.length ? row[column] : null;
+        }
+        this.parallelCacheAll(values);
+        index = 0;
+        for (final String[] row : rows) {
+            if (column < row.length) {
+                row[column] = values[index];
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Write the Strings currently cached to a snapshot file as UTF-8.
+     *
+     * @param path File to write
+     * @return Number of Strings written
+     * @throws IOException if the file could not be written.
+     */
+    public int writeSnapshot(Path path) throws IOException {
+        return this.writeSnapshot(path, Codec.STRING);
+    }
+
+    /**
+     * Load a snapshot file written by writeSnapshot, pinning its Strings until
+     * unpin() is called.
+     *
+     * @param path File to read
+     * @return Number of Strings read
+     * @throws IOException if the file could not be read or is not a snapshot.
+     */
+    public int readSnapshot(Path path) throws IOException {
+        return this.readSnapshot(path, Codec.STRING);
+    }
+
+    /**
+     * Load a snapshot file in the background, pinning its Strings until unpin()
+     * is called.
+     *
+     * @param path File to read
+     * @return Future completing with the number of Strings read
+     */
+    public CompletableFuture<Integer> readSnapshotAsync(Path path) {
+        return this.readSnapshotAsync(path, Codec.STRING);
+    }
 }
@@ -1,21 +1,46 @@
 package name.mymiller.containers;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 /**
  * @param <T> Type of Object to map
  * @author jmiller Class used to map values out on a tree. Allows for infinite
  * depth. Key names should be in form of "/text/text/text/...."
+ * <p>
+ * The tree is safe for concurrent use. Each node keeps its children in a sorted
+ * array and its values in an array, both replaced copy-on-write with a compare
+ * and set, so reads never lock and never see a partial update. Keys are parsed in
+ * place without splitting them, and reads never create nodes. Empty segments,
+ * such as a leading, trailing or doubled "/", are ignored.
+ * <p>
+ * find() accepts patterns where a "*" segment matches any single segment and a
+ * "**" segment matches any number of segments, including none, so "/a/*&#47;c"
+ * and "/a/**" can route a topic hierarchy.
  */
 public class TreeMap<T> {
 
+    /**
+     * Pattern segment matching any single segment
+     */
+    private static final String anySegment = "*";
+    /**
+     * Pattern segment matching any number of segments
+     */
+    private static final String anyPath = "**";
+
     /**
      * Roote Node of the tree also known as "/"
      */
-    private TreeNode root = null;
+    private final TreeNode<T> root = new TreeNode<>("");
 
     /**
      * Adds the Value to the node at specified Key
@@ -24,15 +49,11 @@ public class TreeMap<T> {
      * @param value Values to add at node
      */
     public void add(String key, T value) {
-        final TreeNode node = this.findNode(key);
-
-        ArrayList<T> values = node.getValues();
-        if (values == null) {
-            values = new ArrayList<>();
-            node.setValues(values);
-        }
-
-        values.add(value);
+        this.findNode(key, true).update(values -> {
+            final Object[] updated = Arrays.copyOf(values, values.length + 1);
+            updated[values.length] = value;
+            return updated;
+        });
     }
 
     /**
@@ -40,18 +61,19 @@ public class TreeMap<T> {
      *
      * @param key        Specifies the node to add values to.
      * @param collection Collection of values to add to the node.
-     * @return
+     * @return boolean indicating if any values were added.
      */
     public boolean addAll(String key, Collection<? extends T> collection) {
-        final TreeNode node = this.findNode(key);
-
-        ArrayList<T> values = node.getValues();
-        if (values == null) {
-            values = new ArrayList<>();
-            node.setValues(values);
+        final Object[] added = collection.toArray();
+        if (added.length == 0) {
+            return false;
         }
-
-        return values.addAll(collection);
+        this.findNode(key, true).update(values -> {
+            final Object[] updated = Arrays.copyOf(values, values.length + added.length);
+            System.arraycopy(added, 0, updated, values.length, added.length);
+            return updated;
+        });
+        return true;
     }
 
     /**
@@ -60,51 +82,33 @@ public class TreeMap<T> {
      * @param key Node to clear all values from.
      */
     public void clearNode(String key) {
-        final TreeNode node = this.findNode(key);
-        final ArrayList<T> values = node.getValues();
-
-        if (values != null) {
-            values.clear();
+        final TreeNode<T> node = this.findNode(key, false);
+        if (node != null) {
+            node.update(values -> TreeNode.noValues);
         }
     }
 
     /**
-     * Internal method used to find/create the tree structure to the specified node
+     * Internal method used to find the node at a key, walking the segments of the
+     * key in place.
      *
-     * @param key Node to create/find
-     * @return Node specified
+     * @param key    Node to find
+     * @param create true to create the missing nodes of the path
+     * @return Node specified, or null if it does not exist and create is false.
      */
-    private TreeNode findNode(String key) {
-        final String[] keys = key.split("/");
-
-        TreeNode currentNode = null;
-        for (final String nodeKey : keys) {
-            if (nodeKey.isEmpty()) {
-                if (this.root == null) {
-                    this.root = new TreeNode();
-                }
-                currentNode = this.root;
-            } else if (currentNode == null) {
-                if (this.root == null) {
-                    this.root = new TreeNode();
-                }
-                currentNode = this.root;
+    private TreeNode<T> findNode(String key, boolean create) {
+        TreeNode<T> currentNode = this.root;
+        final int length = key.length();
+        int start = 0;
+        while (start < length && currentNode != null) {
+            int end = key.indexOf('/', start);
+            if (end < 0) {
+                end = length;
             }
-
-            if (!nodeKey.isEmpty()) {
-                HashMap<String, TreeNode> children = currentNode.getChildren();
-                if (children == null) {
-                    currentNode.setChildren(new HashMap<>());
-                    children = currentNode.getChildren();
-                } else {
-                    currentNode = children.get(nodeKey);
-                }
-
-                if (currentNode == null) {
-                    currentNode = new TreeNode();
-                    children.put(nodeKey, currentNode);
-                }
+            if (end > start) {
+                currentNode = currentNode.child(key, start, end, create);
             }
+            start = end + 1;
         }
         return currentNode;
     }
@@ -113,11 +117,154 @@ public class TreeMap<T> {
      * Returns the values associated with this key, or null if none are set.
      *
      * @param key Specified Node to return values on.
-     * @return List of values.
+     * @return Unmodifiable snapshot of the values.
      */
     public List<T> get(String key) {
-        final TreeNode node = this.findNode(key);
-        return node.getValues();
+        final TreeNode<T> node = this.findNode(key, false);
+        return node == null ? null : node.snapshot();
+    }
+
+    /**
+     * Determines if values are set at a key.
+     *
+     * @param key Specified Node to check
+     * @return boolean indicating if the node has values.
+     */
+    public boolean containsKey(String key) {
+        final TreeNode<T> node = this.findNode(key, false);
+        return node != null && node.values.length > 0;
+    }
+
+    /**
+     * Returns the values of every node matching a pattern, in order of the keys.
+     * A "*" segment matches any single segment, and a "**" segment matches any
+     * number of segments including none.
+     *
+     * @param pattern Pattern of keys, such as "/a/*&#47;c" or "/a/**"
+     * @return Values of the matching nodes
+     */
+    public List<T> find(String pattern) {
+        final List<T> found = new ArrayList<>();
+        this.match(this.root, pattern, 0, null, (key, node) -> {
+            for (final Object value : node.values) {
+                @SuppressWarnings("unchecked") final T typed = (T) value;
+                found.add(typed);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Returns the keys of the nodes with values matching a pattern, in order.
+     *
+     * @param pattern Pattern of keys, such as "/a/*&#47;c" or "/a/**"
+     * @return Keys of the matching nodes, each starting with "/"
+     * @see #find(String)
+     */
+    public List<String> findKeys(String pattern) {
+        final List<String> keys = new ArrayList<>();
+        this.match(this.root, pattern, 0, new StringBuilder(),
+                (key, node) -> keys.add(key.length() == 0 ? "/" : key.toString()));
+        return keys;
+    }
+
+    /**
+     * Walk the nodes matching the rest of a pattern. A "**" segment is tried both
+     * as matching nothing and as matching the next segment; nodes reached through
+     * more than one expansion of "**" are reported once.
+     *
+     * @param node    Node reached so far
+     * @param pattern Pattern of keys
+     * @param start   Position in the pattern of the next segment
+     * @param path    Key of the node, or null if keys are not needed
+     * @param visitor Receives each matching node with values
+     */
+    private void match(TreeNode<T> node, String pattern, int start, StringBuilder path, Visitor<T> visitor) {
+        final Set<TreeNode<T>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.walk(node, pattern, start, path, (key, matched) -> {
+            if (seen.add(matched)) {
+                visitor.visit(key, matched);
+            }
+        });
+    }
+
+    /**
+     * Walk the nodes matching the rest of a pattern.
+     *
+     * @param node    Node reached so far
+     * @param pattern Pattern of keys
+     * @param start   Position in the pattern of the next segment
+     * @param path    Key of the node, or null if keys are not needed
+     * @param visitor Receives each matching node with values
+     */
+    private void walk(TreeNode<T> node, String pattern, int start, StringBuilder path, Visitor<T> visitor) {
+        final int length = pattern.length();
+        while (start < length && pattern.charAt(start) == '/') {
+            start++;
+        }
+        if (start >= length) {
+            if (node.values.length > 0) {
+                visitor.visit(path, node);
+            }
+            return;
+        }
+        int end = pattern.indexOf('/', start);
+        if (end < 0) {
+            end = length;
+        }
+        final int mark = path == null ? 0 : path.length();
+        if (TreeMap.isSegment(pattern, start, end, TreeMap.anyPath)) {
+            this.walk(node, pattern, end, path, visitor);
+            for (final TreeNode<T> child : node.children) {
+                TreeMap.append(path, child);
+                this.walk(child, pattern, start, path, visitor);
+                TreeMap.truncate(path, mark);
+            }
+        } else if (TreeMap.isSegment(pattern, start, end, TreeMap.anySegment)) {
+            for (final TreeNode<T> child : node.children) {
+                TreeMap.append(path, child);
+                this.walk(child, pattern, end, path, visitor);
+                TreeMap.truncate(path, mark);
+            }
+        } else {
+            final TreeNode<T> child = node.child(pattern, start, end, false);
+            if (child != null) {
+                TreeMap.append(path, child);
+                this.walk(child, pattern, end, path, visitor);
+                TreeMap.truncate(path, mark);
+            }
+        }
+    }
+
+    /**
+     * @param path Key being built, or null
+     * @param node Node to append to the key
+     */
+    private static void append(StringBuilder path, TreeNode<?> node) {
+        if (path != null) {
+            path.append('/').append(node.segment);
+        }
+    }
+
+    /**
+     * @param path   Key being built, or null
+     * @param length Length to truncate the key to
+     */
+    private static void truncate(StringBuilder path, int length) {
+        if (path != null) {
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * @param pattern Pattern of keys
+     * @param start   Start of the segment
+     * @param end     End of the segment
+     * @param segment Segment to compare to
+     * @return true if the region of the pattern is the segment
+     */
+    private static boolean isSegment(String pattern, int start, int end, String segment) {
+        return end - start == segment.length() && pattern.startsWith(segment, start);
     }
 
     /**
@@ -128,14 +275,25 @@ public class TreeMap<T> {
      * @return boolean indicating success.
      */
     public boolean remove(String key, T value) {
-        final TreeNode node = this.findNode(key);
-        final ArrayList<T> values = node.getValues();
-
-        if (values == null) {
+        final TreeNode<T> node = this.findNode(key, false);
+        if (node == null) {
             return false;
         }
-
-        return values.remove(value);
+        final boolean[] removed = new boolean[1];
+        node.update(values -> {
+            removed[0] = false;
+            for (int index = 0; index < values.length; index++) {
+                if (values[index] == null ? value == null : values[index].equals(value)) {
+                    final Object[] updated = new Object[values.length - 1];
+                    System.arraycopy(values, 0, updated, 0, index);
+                    System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+                    removed[0] = true;
+                    return updated;
+                }
+            }
+            return values;
+        });
+        return removed[0];
     }
 
     /**
@@ -146,64 +304,200 @@ public class TreeMap<T> {
      * @return Boolean indicating if values remoted.
      */
     public boolean removeAll(String key, Collection<?> collection) {
-        final TreeNode node = this.findNode(key);
-
-        final ArrayList<T> values = node.getValues();
-        if (values == null) {
+        final TreeNode<T> node = this.findNode(key, false);
+        if (node == null) {
             return false;
         }
+        final boolean[] removed = new boolean[1];
+        node.update(values -> {
+            final Object[] kept = new Object[values.length];
+            int count = 0;
+            for (final Object value : values) {
+                if (!collection.contains(value)) {
+                    kept[count++] = value;
+                }
+            }
+            removed[0] = count < values.length;
+            return removed[0] ? Arrays.copyOf(kept, count) : values;
+        });
+        return removed[0];
+    }
 
-        return values.removeAll(collection);
+    /**
+     * Receives the nodes matching a pattern.
+     *
+     * @param <T> Type of Object mapped
+     */
+    @FunctionalInterface
+    private interface Visitor<T> {
+        /**
+         * @param path Key of the node, or null if keys are not needed
+         * @param node Matching node
+         */
+        void visit(StringBuilder path, TreeNode<T> node);
     }
 
     /**
      * Internal class used to map out tree structure and hold values.
      *
+     * @param <T> Type of Object mapped
      * @author jmiller
      */
-    private class TreeNode {
+    private static final class TreeNode<T> {
         /**
-         * Values of this branch holds
+         * Shared empty array of values
          */
-        private ArrayList<T> values = null;
+        private static final Object[] noValues = new Object[0];
+        /**
+         * Shared empty array of children
+         */
+        private static final TreeNode<?>[] noChildren = new TreeNode<?>[0];
+        /**
+         * Handle to compare and set the children
+         */
+        private static final VarHandle CHILDREN;
+        /**
+         * Handle to compare and set the values
+         */
+        private static final VarHandle VALUES;
+
+        static {
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.lookup();
+                CHILDREN = lookup.findVarHandle(TreeNode.class, "children", TreeNode[].class);
+                VALUES = lookup.findVarHandle(TreeNode.class, "values", Object[].class);
+            } catch (final ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * Segment of the key naming this node
+         */
+        private final String segment;
+
+        /**
+         * Values of this branch holds, replaced on every change
+         */
+        private volatile Object[] values = TreeNode.noValues;
 
         /**
-         * Map directing to the children of this branch.
+         * Children of this branch sorted by segment, replaced on every change
          */
-        private HashMap<String, TreeNode> children = null;
+        @SuppressWarnings("unchecked")
+        private volatile TreeNode<T>[] children = (TreeNode<T>[]) TreeNode.noChildren;
 
         /**
-         * @return Get the HashMap that has the children of this node.
+         * @param segment Segment of the key naming this node
          */
-        public HashMap<String, TreeNode> getChildren() {
-            return this.children;
+        TreeNode(String segment) {
+            this.segment = segment;
         }
 
         /**
-         * Sets the HashMap for this node, with the children
+         * Compare a segment to a region of a key, as String.compareTo would
+         * compare the segment to the substring.
          *
-         * @param children Hashmap of the children of this node.
+         * @param segment Segment of a node
+         * @param key     Key being parsed
+         * @param start   Start of the region
+         * @param end     End of the region
+         * @return Negative, zero or positive as the segment is less than, equal to or
+         * greater than the region
          */
-        public void setChildren(HashMap<String, TreeNode> children) {
-            this.children = children;
+        private static int compare(String segment, String key, int start, int end) {
+            final int length = Math.min(segment.length(), end - start);
+            for (int index = 0; index < length; index++) {
+                final int difference = segment.charAt(index) - key.charAt(start + index);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return segment.length() - (end - start);
         }
 
         /**
-         * Get the values of the current Node
+         * Binary search of the children for a region of a key.
          *
-         * @return ArrayList of the values on this node
+         * @param children Children sorted by segment
+         * @param key      Key being parsed
+         * @param start    Start of the region
+         * @param end      End of the region
+         * @return Index of the child, or -(insertion point) - 1 if not found.
          */
-        public ArrayList<T> getValues() {
-            return this.values;
+        private static int search(TreeNode<?>[] children, String key, int start, int end) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int comparison = TreeNode.compare(children[middle].segment, key, start, end);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
         }
 
         /**
-         * Sets the values of this node.
+         * Find the child named by a region of a key.
          *
-         * @param values ArrayList containing the values of this node.
+         * @param key    Key being parsed
+         * @param start  Start of the segment
+         * @param end    End of the segment
+         * @param create true to create the child if missing
+         * @return Child, or null if missing and create is false.
+         */
+        TreeNode<T> child(String key, int start, int end, boolean create) {
+            TreeNode<T> created = null;
+            while (true) {
+                final TreeNode<T>[] current = this.children;
+                final int index = TreeNode.search(current, key, start, end);
+                if (index >= 0) {
+                    return current[index];
+                }
+                if (!create) {
+                    return null;
+                }
+                if (created == null) {
+                    created = new TreeNode<>(key.substring(start, end));
+                }
+                final int insert = -(index + 1);
+                final TreeNode<T>[] updated = Arrays.copyOf(current, current.length + 1);
+                System.arraycopy(current, insert, updated, insert + 1, current.length - insert);
+                updated[insert] = created;
+                if (TreeNode.CHILDREN.compareAndSet(this, current, updated)) {
+                    return created;
+                }
+            }
+        }
+
+        /**
+         * Replace the values, retrying if another thread changed them first. The
+         * function may run more than once and must not have other side effects.
+         *
+         * @param function Computes the new values from the current values
+         */
+        void update(UnaryOperator<Object[]> function) {
+            while (true) {
+                final Object[] current = this.values;
+                final Object[] updated = function.apply(current);
+                if (updated == current || TreeNode.VALUES.compareAndSet(this, current, updated)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return Unmodifiable snapshot of the values, or null if none are set.
          */
-        public void setValues(ArrayList<T> values) {
-            this.values = values;
+        @SuppressWarnings("unchecked")
+        List<T> snapshot() {
+            final Object[] current = this.values;
+            return current.length == 0 ? null : Collections.unmodifiableList((List<T>) Arrays.asList(current));
         }
     }
 
@@ -18,6 +18,7 @@
  */
 package name.mymiller.io.net;
 
+import name.mymiller.containers.BoundedCache;
 import name.mymiller.io.Process;
 
 import java.io.BufferedReader;
@@ -27,6 +28,7 @@ import java.net.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +37,14 @@ import java.util.logging.Logger;
  *
  */
 public class AdvancedInetAddress {
+    /**
+     * Vendor names by MAC Address prefix, failed lookups are not cached.
+     */
+    private static final BoundedCache<String, String> vendorCache = BoundedCache.<String, String>builder()
+            .maximumSize(4096)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build(AdvancedInetAddress::requestMacVendor);
+
     /**
      * InetAddress this is used for.
      */
@@ -266,22 +276,31 @@ public class AdvancedInetAddress {
      * @return String containing the vendor name.
      */
     public static String lookupMacVendor(String mac) {
-        String vendorName = null;
         if ((mac != null) && (mac.length() > 8)) {
-            final String vendorID = mac.substring(0, 8).toUpperCase();
+            return AdvancedInetAddress.vendorCache.get(mac.substring(0, 8).toUpperCase());
+        }
+        return null;
+    }
 
-            Logger.getLogger(AdvancedInetAddress.class.getName()).log(Level.INFO, "Looking for Vendor ID: " + vendorID);
+    /**
+     * Method to request the vendor of a MAC Address prefix from the web service.
+     * @param vendorID String containing the first 8 characters of the MAC Address
+     * @return String containing the vendor name, null if the lookup failed.
+     */
+    private static String requestMacVendor(String vendorID) {
+        String vendorName = null;
 
-            try {
-                final URL url = new URL("http://api.macvendors.com/" + vendorID);
-                final BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8));
+        Logger.getLogger(AdvancedInetAddress.class.getName()).log(Level.INFO, "Looking for Vendor ID: " + vendorID);
 
+        try {
+            final URL url = new URL("http://api.macvendors.com/" + vendorID);
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
                 for (String line; (line = reader.readLine()) != null; ) {
                     vendorName = line;
                 }
-            } catch (final IOException e) {
-                Logger.getLogger(AdvancedInetAddress.class.getName()).log(Level.SEVERE, "Failed to Find MAC Address", e);
             }
+        } catch (final IOException e) {
+            Logger.getLogger(AdvancedInetAddress.class.getName()).log(Level.SEVERE, "Failed to Find MAC Address", e);
         }
         return vendorName;
     }
@@ -2,6 +2,7 @@ package name.mymiller.models;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import name.mymiller.containers.BoundedCache;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
@@ -23,6 +24,10 @@ public class ModelManager {
 
     private final Function<String, String> daoSaveResolver;
 
+    private final BoundedCache<String, DaoLookup> daoLookups = BoundedCache.<String, DaoLookup>builder()
+            .maximumSize(256)
+            .build(this::lookupDao);
+
     public ModelManager(Function<String, String> classResolver, Function<String, String> daoResolver,
                         Function<String, String> daoFindResolver, Function<String, String> daoSaveResolver) {
         super();
@@ -68,18 +73,44 @@ public class ModelManager {
 
     private Object getRow(String className, Long id) throws InstantiationException, IllegalAccessException,
             ClassNotFoundException, NoSuchMethodException, InvocationTargetException {
-        final String daoClassName = this.getDaoName(className);
-        final Object dao = Class.forName(daoClassName).getDeclaredConstructor().newInstance();
-
-        final Optional<Method> findMethod = this.getMethodByName(dao.getClass(), this.getFindMethod(className));
+        final DaoLookup lookup;
+        try {
+            lookup = this.daoLookups.get(className);
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) e.getCause();
+            }
+            throw e;
+        }
+        final Object dao = lookup.daoClass.getDeclaredConstructor().newInstance();
 
-        if (findMethod.isPresent()) {
-            return findMethod.get().invoke(dao, id);
+        if (lookup.findMethod.isPresent()) {
+            return lookup.findMethod.get().invoke(dao, id);
         }
 
         return null;
     }
 
+    private DaoLookup lookupDao(String className) {
+        try {
+            final Class<?> daoClass = Class.forName(this.getDaoName(className));
+            return new DaoLookup(daoClass, this.getMethodByName(daoClass, this.getFindMethod(className)));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("DAO not found for " + className, e);
+        }
+    }
+
+    private static final class DaoLookup {
+        private final Class<?> daoClass;
+
+        private final Optional<Method> findMethod;
+
+        private DaoLookup(Class<?> daoClass, Optional<Method> findMethod) {
+            this.daoClass = daoClass;
+            this.findMethod = findMethod;
+        }
+    }
+
     private String getSaveMethod(String className) {
         return this.daoSaveResolver.apply(className);
     }
@@ -1,5 +1,7 @@
 package name.mymiller.pipelines;
 
+import name.mymiller.containers.LongSet;
+
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -8,6 +10,7 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
 
 /**
@@ -188,6 +191,22 @@ public class Pipeline<S, T> {
         return this.connectInternalPipe(new DistinctByPipe<>(keyExtractor));
     }
 
+    /**
+     * Add a pipe for limiting the data to be distinct based on a long key, such as
+     * an id. The keys seen are kept unboxed in a LongSet rather than a Map of
+     * boxed keys.
+     *
+     * @param keyExtractor Function returning the key of the data
+     * @return Pipeline with the segment added.
+     */
+    @SuppressWarnings("unchecked")
+    public Pipeline<S, T> distinctByLong(ToLongFunction<? super T> keyExtractor) {
+        if (this.pipes.isEmpty()) {
+            return (Pipeline<S, T>) this.connectFirstPipe(new DistinctByLongPipe<T>(keyExtractor, true));
+        }
+        return this.connectInternalPipe(new DistinctByLongPipe<>(keyExtractor, true));
+    }
+
     /**
      * Add a pipe for limiting the data to duplicates only. Second instances of
      * identical data objects will be allowed if the two data objects would match
@@ -218,6 +237,21 @@ public class Pipeline<S, T> {
         return this.connectInternalPipe(new DistinctByPipe<>(keyExtractor, false));
     }
 
+    /**
+     * Add a pipe for limiting the data to be duplicates only based on a long key.
+     * Second instances of identical keys will be allowed.
+     *
+     * @param keyExtractor Function returning the key of the data
+     * @return Pipeline with the segment added.
+     */
+    @SuppressWarnings("unchecked")
+    public Pipeline<S, T> duplicatesByLong(ToLongFunction<? super T> keyExtractor) {
+        if (this.pipes.isEmpty()) {
+            return (Pipeline<S, T>) this.connectFirstPipe(new DistinctByLongPipe<T>(keyExtractor, false));
+        }
+        return this.connectInternalPipe(new DistinctByLongPipe<>(keyExtractor, false));
+    }
+
     /**
      * Pipeline to add a filter based on a Predicate passed in.
      *
@@ -556,6 +590,42 @@ public class Pipeline<S, T> {
         }
     }
 
+    /**
+     * Pipe segment used to allow only data blocks with distinct long keys from
+     * being further processed
+     *
+     * @param <A> Source Type
+     * @author jmiller
+     */
+    private class DistinctByLongPipe<A> implements PipeInterface<A, A> {
+
+        /**
+         * Keys of the data blocks previously processed
+         */
+        private final LongSet seen = new LongSet();
+        private final ToLongFunction<? super A> keyExtractor;
+        private final boolean onDistinct;
+
+        /**
+         * @param keyExtractor Function returning the key of the data
+         * @param onDistinct   true to pass distinct data, false to pass duplicates
+         */
+        public DistinctByLongPipe(ToLongFunction<? super A> keyExtractor, boolean onDistinct) {
+            this.keyExtractor = keyExtractor;
+            this.onDistinct = onDistinct;
+        }
+
+        @Override
+        public A process(final A data, List<PipeFuture<?>> futures, String pipelineName, boolean isParallel) {
+            final long key = this.keyExtractor.applyAsLong(data);
+            final boolean added;
+            synchronized (this.seen) {
+                added = this.seen.add(key);
+            }
+            return added == this.onDistinct ? data : null;
+        }
+    }
+
     /**
      * Pipe segment used to allow only distinct data blocks duplicate data blocks
      * from being further processed
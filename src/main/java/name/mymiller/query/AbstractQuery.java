@@ -1,5 +1,7 @@
 package name.mymiller.query;
 
+import java.util.Objects;
+
 /**
  *
  * @param <T>
@@ -25,4 +27,20 @@ public abstract class AbstractQuery<T> implements QueryFilter<T> {
     public Double getWeight() {
         return weight;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || this.getClass() != obj.getClass()) {
+            return false;
+        }
+        return Objects.equals(this.weight, ((AbstractQuery<?>) obj).weight);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.getClass(), this.weight);
+    }
 }
@@ -0,0 +1,85 @@
+package name.mymiller.query;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Base for queries searching the text of an object, or the text returned from a getter. The text is extracted once per
+ * object and handed to score().
+ *
+ * @param <T> Type of object to filter
+ */
+public abstract class AbstractTextQuery<T> extends AbstractQuery<T> {
+    /**
+     * Value to muliple weight if an exact match
+     */
+    private final Integer multiplier;
+    /**
+     * Getter function
+     */
+    private final Function<T, String> getter;
+
+    /**
+     * @param weight     the weight this should return if QueryFilter return matches.
+     * @param multiplier In the case of an exact match, this is applied to the weight
+     * @param getter     the function used to extract the text, or null to use toString() of the object
+     */
+    protected AbstractTextQuery(Double weight, Integer multiplier, Function<T, String> getter) {
+        super(weight);
+        this.multiplier = multiplier;
+        this.getter = getter;
+    }
+
+    /**
+     * @return Getter function, or null if toString() of the object is searched
+     */
+    public Function<T, String> getGetter() {
+        return this.getter;
+    }
+
+    /**
+     * @return Value to muliple weight if an exact match
+     */
+    public Integer getMultiplier() {
+        return this.multiplier;
+    }
+
+    /**
+     * Weigh the text extracted from an object.
+     *
+     * @param content Text to search
+     * @return Double indicating 0 if not include, of Double > 0 indicating weight.
+     */
+    public abstract Double score(CharSequence content);
+
+    /**
+     * Must return true in order for this filter to agree to inclusion.
+     *
+     * @param object Object the filter should check
+     * @return Double indicating 0 if not include, of Double > 0 indicating weight.
+     */
+    @Override
+    public Double process(T object) {
+        if (object != null) {
+            final String content = this.getter == null ? object.toString() : this.getter.apply(object);
+            if (content != null) {
+                return this.score(content);
+            }
+        }
+        return 0D;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) {
+            return false;
+        }
+        final AbstractTextQuery<?> other = (AbstractTextQuery<?>) obj;
+        return Objects.equals(this.multiplier, other.multiplier) && Objects.equals(this.getter, other.getter);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), this.multiplier, this.getter);
+    }
+}
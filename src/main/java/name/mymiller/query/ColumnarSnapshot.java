@@ -0,0 +1,698 @@
+package name.mymiller.query;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Columnar snapshot of a List, used to run the same QueryFilter trees repeatedly over a dataset without calling the
+ * getters on every row for every query. Getter values are extracted once into a column: Integer, Long, Short and Byte
+ * values into a long[], Float and Double values into a double[], Strings into a sorted dictionary with int codes, and
+ * anything else into an Object[]. Filters are then evaluated as scans over the columns producing a selection bitmap.
+ * <p>
+ * Columns are keyed on the identity of the getter Function, so the same Function instance must be used in the queries
+ * to reuse a column. Columns are built lazily the first time a getter is seen, or up front with addColumn(). Null values
+ * never match a column comparison. Text queries on a String column are evaluated once per distinct value. Filters
+ * that have no column representation fall back to calling process() on each row of the snapshot.
+ *
+ * @param <T> Type of data in the snapshot.
+ */
+public class ColumnarSnapshot<T> {
+    /**
+     * Key used for the column holding the rows themselves, for filters without a getter.
+     */
+    private static final Function<Object, Object> IDENTITY = object -> object;
+
+    /**
+     * Rows of the snapshot
+     */
+    private final T[] rows;
+
+    /**
+     * Columns extracted, keyed on the getter used to extract them.
+     */
+    private final Map<Function<?, ?>, Column> columns;
+
+    /**
+     * Create a snapshot of the list. The list is copied, later changes to the list are not reflected.
+     *
+     * @param list List to snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public ColumnarSnapshot(List<T> list) {
+        this.rows = (T[]) list.toArray();
+        this.columns = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Extract the column for the getter ahead of the first query using it.
+     *
+     * @param getter the function used to extract the column values
+     * @return this snapshot
+     */
+    public ColumnarSnapshot<T> addColumn(Function<T, ?> getter) {
+        this.column(getter);
+        return this;
+    }
+
+    /**
+     * @return Number of rows in the snapshot
+     */
+    public int size() {
+        return this.rows.length;
+    }
+
+    /**
+     * @param index Row index
+     * @return Row at the index
+     */
+    public T get(int index) {
+        return this.rows[index];
+    }
+
+    /**
+     * Evaluate the query over the snapshot.
+     *
+     * @param query Query to apply to the snapshot.
+     * @return BitSet with a bit set for each row index matching the query.
+     */
+    public BitSet select(QueryFilter<T> query) {
+        return this.evaluate(query);
+    }
+
+    /**
+     * @param query Query to apply to the snapshot.
+     * @return Number of rows matching the query.
+     */
+    public int count(QueryFilter<T> query) {
+        return this.evaluate(query).cardinality();
+    }
+
+    /**
+     * Returns a stream with the rows matching the query, ordered by weight as Query.stream() does. Weights are only
+     * calculated for matching rows, once per row.
+     *
+     * @param query Query to apply to the snapshot.
+     * @return stream of rows matching the query.
+     */
+    public Stream<T> stream(QueryFilter<T> query) {
+        final int[] selected = this.evaluate(query).stream().toArray();
+        final double[] weights = new double[this.rows.length];
+        for (final int index : selected) {
+            weights[index] = query.process(this.rows[index]);
+        }
+        return IntStream.of(selected).boxed()
+                .sorted(Comparator.comparingDouble(index -> weights[index]))
+                .map(index -> this.rows[index]);
+    }
+
+    /**
+     * Returns a collection with the rows matching the query.
+     *
+     * @param query     Query to apply to the snapshot.
+     * @param collector Collector to gather the results
+     * @param <A>       Intermediate type of the Collector
+     * @param <R>       Type of data that will be returned.
+     * @return collection of rows matching the query.
+     */
+    public <A, R> R collect(QueryFilter<T> query, Collector<? super T, A, R> collector) {
+        return this.stream(query).collect(collector);
+    }
+
+    /**
+     * Processes each matching row.
+     *
+     * @param query  Query to apply to the snapshot.
+     * @param action Consumer to receive each matching row
+     */
+    public void forEach(QueryFilter<T> query, Consumer<? super T> action) {
+        this.stream(query).forEach(action);
+    }
+
+    /**
+     * Recursively evaluate a filter into a selection.
+     *
+     * @param filter Filter to evaluate
+     * @return BitSet of matching rows
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private BitSet evaluate(QueryFilter<T> filter) {
+        BitSet result = null;
+        if (filter instanceof AbstractQuery && !this.positive(((AbstractQuery<T>) filter).getWeight())) {
+            result = null;
+        } else if (filter instanceof Query.And) {
+            result = this.and(((Query.And<T>) filter).getFilters());
+        } else if (filter instanceof Query.Or) {
+            result = this.or(((Query.Or<T>) filter).getFilters());
+        } else if (filter instanceof Query.Xor) {
+            result = this.xor(((Query.Xor<T>) filter).getFilters());
+        } else if (filter instanceof Query.Not) {
+            result = this.evaluate(((Query.Not<T>) filter).getFilter());
+            result.flip(0, this.rows.length);
+        } else if (filter instanceof Query.GreaterThan) {
+            final Query.GreaterThan<T, ?> greaterThan = (Query.GreaterThan<T, ?>) filter;
+            result = this.column((Function) greaterThan.getGetter()).compare(Operator.GREATER, greaterThan.getValue());
+        } else if (filter instanceof Query.LessThan) {
+            final Query.LessThan<T, ?> lessThan = (Query.LessThan<T, ?>) filter;
+            result = this.column((Function) lessThan.getGetter()).compare(Operator.LESS, lessThan.getValue());
+        } else if (filter instanceof Query.Match) {
+            final Query.Match<T, ?> match = (Query.Match<T, ?>) filter;
+            result = this.column((Function) match.getGetter()).compare(Operator.EQUAL, match.getValue());
+        } else if (filter instanceof Query.Between) {
+            final Query.Between<T, ?> between = (Query.Between<T, ?>) filter;
+            result = this.range(this.column((Function) between.getGetter()), Operator.GREATER, between.getLow(),
+                    Operator.LESS, between.getMax());
+        } else if (filter instanceof Query.BetweenOrEqual) {
+            final Query.BetweenOrEqual<T, ?> between = (Query.BetweenOrEqual<T, ?>) filter;
+            result = this.range(this.column((Function) between.getGetter()), Operator.GREATER_OR_EQUAL,
+                    between.getLow(), Operator.LESS_OR_EQUAL, between.getMax());
+        } else if (filter instanceof AbstractTextQuery && ((AbstractTextQuery<T>) filter).getGetter() != null) {
+            final AbstractTextQuery<T> text = (AbstractTextQuery<T>) filter;
+            final Column column = this.column((Function) text.getGetter());
+            if (column instanceof DictionaryColumn) {
+                result = ((DictionaryColumn) column).matching(content -> text.score(content) > 0D);
+            }
+        }
+
+        if (result == null) {
+            result = this.scan(filter);
+        }
+        return result;
+    }
+
+    /**
+     * @param weight Weight of a filter
+     * @return true if the weight lets the filter pass.
+     */
+    private boolean positive(Double weight) {
+        return weight != null && weight > 0D;
+    }
+
+    /**
+     * Intersect the selection of all non null filters.
+     *
+     * @param filters Filters to intersect
+     * @return BitSet of matching rows
+     */
+    private BitSet and(List<QueryFilter<T>> filters) {
+        BitSet result = null;
+        for (final QueryFilter<T> filter : filters) {
+            if (filter != null) {
+                if (result == null) {
+                    result = this.evaluate(filter);
+                } else if (!result.isEmpty()) {
+                    result.and(this.evaluate(filter));
+                }
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+
+    /**
+     * Union the selection of all non null filters.
+     *
+     * @param filters Filters to union
+     * @return BitSet of matching rows
+     */
+    private BitSet or(List<QueryFilter<T>> filters) {
+        final BitSet result = new BitSet(this.rows.length);
+        for (final QueryFilter<T> filter : filters) {
+            if (filter != null) {
+                result.or(this.evaluate(filter));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Select rows matched by exactly one of the non null filters.
+     *
+     * @param filters Filters to check
+     * @return BitSet of matching rows
+     */
+    private BitSet xor(List<QueryFilter<T>> filters) {
+        final BitSet once = new BitSet(this.rows.length);
+        final BitSet more = new BitSet(this.rows.length);
+        for (final QueryFilter<T> filter : filters) {
+            if (filter != null) {
+                final BitSet selection = this.evaluate(filter);
+                final BitSet repeated = (BitSet) selection.clone();
+                repeated.and(once);
+                more.or(repeated);
+                once.or(selection);
+            }
+        }
+        once.andNot(more);
+        return once;
+    }
+
+    /**
+     * Select the rows falling in a range of a column.
+     *
+     * @param column Column to scan
+     * @param lowOperator Operator for the low bound
+     * @param low Low bound
+     * @param highOperator Operator for the high bound
+     * @param high High bound
+     * @return BitSet of matching rows, or null if the column can not evaluate the range.
+     */
+    private BitSet range(Column column, Operator lowOperator, Object low, Operator highOperator, Object high) {
+        final BitSet lower = column.compare(lowOperator, low);
+        final BitSet upper = column.compare(highOperator, high);
+        if (lower == null || upper == null) {
+            return null;
+        }
+        lower.and(upper);
+        return lower;
+    }
+
+    /**
+     * Evaluate the filter row by row, used for filters without a column representation.
+     *
+     * @param filter Filter to evaluate
+     * @return BitSet of matching rows
+     */
+    private BitSet scan(QueryFilter<T> filter) {
+        final BitSet result = new BitSet(this.rows.length);
+        for (int index = 0; index < this.rows.length; index++) {
+            if (filter.process(this.rows[index]) > 0D) {
+                result.set(index);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find or extract the column for a getter.
+     *
+     * @param getter Getter to extract the values, or null for the rows themselves
+     * @return Column of values
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Column column(Function<T, ?> getter) {
+        final Function key = getter == null ? ColumnarSnapshot.IDENTITY : getter;
+        return this.columns.computeIfAbsent(key, function -> this.extract((Function<T, ?>) function));
+    }
+
+    /**
+     * Extract the values for a getter and pick the most compact column able to hold them.
+     *
+     * @param getter Getter to extract the values.
+     * @return Column of values
+     */
+    private Column extract(Function<T, ?> getter) {
+        final Object[] values = new Object[this.rows.length];
+        boolean integral = true;
+        boolean floating = true;
+        boolean strings = true;
+        Class<?> type = null;
+        boolean uniform = true;
+
+        for (int index = 0; index < this.rows.length; index++) {
+            final T row = this.rows[index];
+            final Object value = row == null ? null : getter.apply(row);
+            values[index] = value;
+            if (value != null) {
+                integral &= value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+                floating &= value instanceof Double || value instanceof Float;
+                strings &= value instanceof String;
+                if (type == null) {
+                    type = value.getClass();
+                } else if (type != value.getClass()) {
+                    uniform = false;
+                }
+            }
+        }
+
+        if (type == null) {
+            return new ObjectColumn(values);
+        } else if (integral) {
+            return new LongColumn(values, uniform ? type : null);
+        } else if (floating) {
+            return new DoubleColumn(values, uniform ? type : null);
+        } else if (strings) {
+            return new DictionaryColumn(values);
+        }
+        return new ObjectColumn(values);
+    }
+
+    /**
+     * Comparison performed by a column scan
+     */
+    private enum Operator {
+        LESS, LESS_OR_EQUAL, EQUAL, GREATER_OR_EQUAL, GREATER;
+
+        /**
+         * @param comparison Result of a compare between a column value and the filter value
+         * @return true if the comparison satisfies this operator
+         */
+        boolean test(int comparison) {
+            switch (this) {
+                case LESS:
+                    return comparison < 0;
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case EQUAL:
+                    return comparison == 0;
+                case GREATER_OR_EQUAL:
+                    return comparison >= 0;
+                default:
+                    return comparison > 0;
+            }
+        }
+    }
+
+    /**
+     * Values of one getter for all rows of the snapshot.
+     */
+    private abstract static class Column {
+        /**
+         * Number of rows in the column
+         */
+        protected final int size;
+
+        /**
+         * @param size Number of rows in the column
+         */
+        protected Column(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Compare every value of the column to the value.
+         *
+         * @param operator Comparison to perform
+         * @param value    Value to compare against
+         * @return BitSet of matching rows, or null if this column can not perform the comparison.
+         */
+        abstract BitSet compare(Operator operator, Object value);
+
+        /**
+         * @return Word array large enough to hold a bit per row.
+         */
+        protected long[] words() {
+            return new long[(this.size + 63) >>> 6];
+        }
+    }
+
+    /**
+     * Column of integral values held in a long[], with a bitmap of the rows holding a value.
+     */
+    private static class LongColumn extends Column {
+        /**
+         * Column values, 0 where the value was null.
+         */
+        private final long[] values;
+        /**
+         * Bitmap of rows with a value
+         */
+        private final long[] present;
+        /**
+         * Class of all values, or null if the values were of mixed types.
+         */
+        private final Class<?> type;
+
+        /**
+         * @param values Extracted values
+         * @param type   Class of all values, or null if mixed.
+         */
+        LongColumn(Object[] values, Class<?> type) {
+            super(values.length);
+            this.values = new long[values.length];
+            this.present = this.words();
+            this.type = type;
+            for (int index = 0; index < values.length; index++) {
+                if (values[index] != null) {
+                    this.values[index] = ((Number) values[index]).longValue();
+                    this.present[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+
+        @Override
+        BitSet compare(Operator operator, Object value) {
+            if (!(value instanceof Number)) {
+                return null;
+            }
+            if (operator == Operator.EQUAL && value.getClass() != this.type) {
+                return this.type == null ? null : new BitSet();
+            }
+
+            final long[] words = this.words();
+            if (value instanceof Double || value instanceof Float) {
+                final double target = ((Number) value).doubleValue();
+                for (int index = 0; index < this.size; index++) {
+                    if (operator.test(Double.compare(this.values[index], target))) {
+                        words[index >>> 6] |= 1L << index;
+                    }
+                }
+            } else {
+                final long target = ((Number) value).longValue();
+                final long[] data = this.values;
+                switch (operator) {
+                    case LESS:
+                        for (int index = 0; index < this.size; index++) {
+                            words[index >>> 6] |= (data[index] < target ? 1L : 0L) << index;
+                        }
+                        break;
+                    case LESS_OR_EQUAL:
+                        for (int index = 0; index < this.size; index++) {
+                            words[index >>> 6] |= (data[index] <= target ? 1L : 0L) << index;
+                        }
+                        break;
+                    case EQUAL:
+                        for (int index = 0; index < this.size; index++) {
+                            words[index >>> 6] |= (data[index] == target ? 1L : 0L) << index;
+                        }
+                        break;
+                    case GREATER_OR_EQUAL:
+                        for (int index = 0; index < this.size; index++) {
+                            words[index >>> 6] |= (data[index] >= target ? 1L : 0L) << index;
+                        }
+                        break;
+                    default:
+                        for (int index = 0; index < this.size; index++) {
+                            words[index >>> 6] |= (data[index] > target ? 1L : 0L) << index;
+                        }
+                }
+            }
+            for (int word = 0; word < words.length; word++) {
+                words[word] &= this.present[word];
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * Column of floating point values held in a double[], with a bitmap of the rows holding a value.
+     */
+    private static class DoubleColumn extends Column {
+        /**
+         * Column values, 0 where the value was null.
+         */
+        private final double[] values;
+        /**
+         * Bitmap of rows with a value
+         */
+        private final long[] present;
+        /**
+         * Class of all values, or null if the values were of mixed types.
+         */
+        private final Class<?> type;
+
+        /**
+         * @param values Extracted values
+         * @param type   Class of all values, or null if mixed.
+         */
+        DoubleColumn(Object[] values, Class<?> type) {
+            super(values.length);
+            this.values = new double[values.length];
+            this.present = this.words();
+            this.type = type;
+            for (int index = 0; index < values.length; index++) {
+                if (values[index] != null) {
+                    this.values[index] = ((Number) values[index]).doubleValue();
+                    this.present[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+
+        @Override
+        BitSet compare(Operator operator, Object value) {
+            if (!(value instanceof Number)) {
+                return null;
+            }
+            if (operator == Operator.EQUAL && value.getClass() != this.type) {
+                return this.type == null ? null : new BitSet();
+            }
+
+            final double target = ((Number) value).doubleValue();
+            final long[] words = this.words();
+            for (int index = 0; index < this.size; index++) {
+                if (operator.test(Double.compare(this.values[index], target))) {
+                    words[index >>> 6] |= 1L << index;
+                }
+            }
+            for (int word = 0; word < words.length; word++) {
+                words[word] &= this.present[word];
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * Column of Strings encoded as codes into a sorted dictionary of the distinct values. Comparisons are resolved
+     * against the dictionary once and then performed on the int codes.
+     */
+    private static class DictionaryColumn extends Column {
+        /**
+         * Code for rows holding null
+         */
+        private static final int NULL_CODE = -1;
+        /**
+         * Sorted distinct values of the column
+         */
+        private final String[] dictionary;
+        /**
+         * Dictionary code for each row
+         */
+        private final int[] codes;
+
+        /**
+         * @param values Extracted values, all Strings or null.
+         */
+        DictionaryColumn(Object[] values) {
+            super(values.length);
+            final TreeSet<String> distinct = new TreeSet<>();
+            for (final Object value : values) {
+                if (value != null) {
+                    distinct.add((String) value);
+                }
+            }
+            this.dictionary = distinct.toArray(new String[0]);
+            this.codes = new int[values.length];
+            for (int index = 0; index < values.length; index++) {
+                this.codes[index] = values[index] == null ? NULL_CODE
+                        : Arrays.binarySearch(this.dictionary, (String) values[index]);
+            }
+        }
+
+        @Override
+        BitSet compare(Operator operator, Object value) {
+            if (!(value instanceof String)) {
+                return null;
+            }
+            final int position = Arrays.binarySearch(this.dictionary, (String) value);
+            final boolean found = position >= 0;
+            final int insertion = found ? position : -position - 1;
+
+            int low;
+            int high;
+            switch (operator) {
+                case LESS:
+                    low = 0;
+                    high = insertion - 1;
+                    break;
+                case LESS_OR_EQUAL:
+                    low = 0;
+                    high = found ? position : insertion - 1;
+                    break;
+                case EQUAL:
+                    low = found ? position : 0;
+                    high = found ? position : -1;
+                    break;
+                case GREATER_OR_EQUAL:
+                    low = insertion;
+                    high = this.dictionary.length - 1;
+                    break;
+                default:
+                    low = found ? position + 1 : insertion;
+                    high = this.dictionary.length - 1;
+            }
+            return this.codesBetween(low, high);
+        }
+
+        /**
+         * Select the rows whose value passes the predicate, testing each distinct value once.
+         *
+         * @param predicate Predicate to test the distinct values with
+         * @return BitSet of matching rows
+         */
+        BitSet matching(Predicate<String> predicate) {
+            final boolean[] hits = new boolean[this.dictionary.length];
+            for (int code = 0; code < this.dictionary.length; code++) {
+                hits[code] = predicate.test(this.dictionary[code]);
+            }
+            final long[] words = this.words();
+            for (int index = 0; index < this.size; index++) {
+                final int code = this.codes[index];
+                words[index >>> 6] |= (code != NULL_CODE && hits[code] ? 1L : 0L) << index;
+            }
+            return BitSet.valueOf(words);
+        }
+
+        /**
+         * Select the rows with a code in the inclusive range low to high.
+         *
+         * @param low  Lowest matching code
+         * @param high Highest matching code
+         * @return BitSet of matching rows
+         */
+        private BitSet codesBetween(int low, int high) {
+            final long[] words = this.words();
+            if (low <= high) {
+                for (int index = 0; index < this.size; index++) {
+                    final int code = this.codes[index];
+                    words[index >>> 6] |= (code >= low && code <= high ? 1L : 0L) << index;
+                }
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * Column of arbitrary values, compared with equals() and Comparable.
+     */
+    private static class ObjectColumn extends Column {
+        /**
+         * Column values
+         */
+        private final Object[] values;
+
+        /**
+         * @param values Extracted values
+         */
+        ObjectColumn(Object[] values) {
+            super(values.length);
+            this.values = values;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        BitSet compare(Operator operator, Object value) {
+            if (value == null) {
+                return null;
+            }
+            final BitSet result = new BitSet(this.size);
+            for (int index = 0; index < this.size; index++) {
+                final Object current = this.values[index];
+                if (current != null) {
+                    if (operator == Operator.EQUAL) {
+                        if (value.equals(current)) {
+                            result.set(index);
+                        }
+                    } else if (current instanceof Comparable
+                            && operator.test(((Comparable<Object>) current).compareTo(value))) {
+                        result.set(index);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
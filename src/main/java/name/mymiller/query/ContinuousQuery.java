@@ -0,0 +1,349 @@
+package name.mymiller.query;
+
+import name.mymiller.lang.concurrent.Subscribable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A registered query that maintains its matching elements and their weights as the source collection changes. Instead
+ * of scanning the whole collection again, the owner of the collection reports each add, update and remove, and only the
+ * changed element is processed. Subscribers are notified when an element enters the result, leaves it, or has its
+ * weight changed.
+ * <p>
+ * Elements are identified with equals() and hashCode(). If a change to an element alters its hashCode, report it with
+ * update(oldElement, newElement).
+ * <p>
+ * Each element is evaluated, recorded and published while holding a lock for that element, so its latest state wins
+ * and subscribers receive its changes in the order they were applied to the results. Changes of different elements
+ * may be processed concurrently.
+ *
+ * @param <T> Type of data in the collection.
+ */
+public class ContinuousQuery<T> implements Subscribable<ContinuousQuery.Change<T>> {
+    /**
+     * Number of locks striping the elements, a power of two.
+     */
+    private static final int lockCount = 64;
+    /**
+     * Query maintained by this instance
+     */
+    private final QueryFilter<T> query;
+    /**
+     * Elements currently matching the query, with their weight.
+     */
+    private final Map<T, Double> results;
+    /**
+     * Consumers notified of changes to the results.
+     */
+    private final List<Consumer<? super Change<T>>> subscribers;
+    /**
+     * Locks serializing the changes of an element with their publication, selected by hash.
+     */
+    private final Object[] locks;
+
+    /**
+     * Create a continuous query over an initially empty collection.
+     *
+     * @param query Query to maintain
+     */
+    public ContinuousQuery(QueryFilter<T> query) {
+        if (query == null) {
+            throw new NullPointerException("Query may not be null");
+        }
+        this.query = query;
+        this.results = new ConcurrentHashMap<>();
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.locks = new Object[ContinuousQuery.lockCount];
+        Arrays.setAll(this.locks, index -> new Object());
+    }
+
+    /**
+     * Create a continuous query, processing the current contents of the collection.
+     *
+     * @param query   Query to maintain
+     * @param initial Current contents of the collection
+     */
+    public ContinuousQuery(QueryFilter<T> query, Collection<? extends T> initial) {
+        this(query);
+        this.addAll(initial);
+    }
+
+    /**
+     * Subscribe to the changes of the results.
+     *
+     * @param consumer Consumer functional procedure to handle the change.
+     */
+    @Override
+    public void subscribe(Consumer<? super Change<T>> consumer) {
+        this.subscribers.add(consumer);
+    }
+
+    /**
+     * Stop receiving changes of the results.
+     *
+     * @param consumer Consumer previously subscribed.
+     * @return boolean indicating if the consumer was subscribed.
+     */
+    public boolean unsubscribe(Consumer<? super Change<T>> consumer) {
+        return this.subscribers.remove(consumer);
+    }
+
+    /**
+     * @return Query maintained by this instance
+     */
+    public QueryFilter<T> getQuery() {
+        return this.query;
+    }
+
+    /**
+     * An element was added to the collection.
+     *
+     * @param element Element added
+     */
+    public void add(T element) {
+        this.evaluate(element);
+    }
+
+    /**
+     * Elements were added to the collection.
+     *
+     * @param elements Elements added
+     */
+    public void addAll(Collection<? extends T> elements) {
+        elements.forEach(this::add);
+    }
+
+    /**
+     * An element of the collection was changed in place.
+     *
+     * @param element Element changed
+     */
+    public void update(T element) {
+        this.evaluate(element);
+    }
+
+    /**
+     * An element of the collection was replaced, or changed in a way altering its hashCode.
+     *
+     * @param oldElement Element before the change
+     * @param newElement Element after the change
+     */
+    public void update(T oldElement, T newElement) {
+        if (Objects.equals(oldElement, newElement)) {
+            this.evaluate(newElement);
+        } else {
+            this.remove(oldElement);
+            this.add(newElement);
+        }
+    }
+
+    /**
+     * An element was removed from the collection.
+     *
+     * @param element Element removed
+     */
+    public void remove(T element) {
+        if (element == null) {
+            throw new NullPointerException("element may not be null");
+        }
+        synchronized (this.lockFor(element)) {
+            final Double previous = this.results.remove(element);
+            if (previous != null) {
+                this.publish(new Change<>(ChangeType.EXIT, element, previous, 0D));
+            }
+        }
+    }
+
+    /**
+     * Elements were removed from the collection.
+     *
+     * @param elements Elements removed
+     */
+    public void removeAll(Collection<? extends T> elements) {
+        elements.forEach(this::remove);
+    }
+
+    /**
+     * The collection was cleared. Every element in the results exits.
+     */
+    public void clear() {
+        new ArrayList<>(this.results.keySet()).forEach(this::remove);
+    }
+
+    /**
+     * @param element Element to check
+     * @return boolean indicating if the element currently matches the query.
+     */
+    public boolean contains(T element) {
+        return this.results.containsKey(element);
+    }
+
+    /**
+     * @param element Element to check
+     * @return Weight of the element, or 0 if it does not match the query.
+     */
+    public Double getWeight(T element) {
+        return this.results.getOrDefault(element, 0D);
+    }
+
+    /**
+     * @return Number of elements currently matching the query.
+     */
+    public int size() {
+        return this.results.size();
+    }
+
+    /**
+     * Returns a stream of the elements currently matching, ordered by weight as Query.stream() does.
+     *
+     * @return stream of matching elements.
+     */
+    public Stream<T> stream() {
+        return new ArrayList<>(this.results.entrySet()).stream()
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey);
+    }
+
+    /**
+     * Process an element and record the change to the results, if any.
+     *
+     * @param element Element to process
+     */
+    private void evaluate(T element) {
+        if (element == null) {
+            throw new NullPointerException("element may not be null");
+        }
+        synchronized (this.lockFor(element)) {
+            final double weight = this.query.process(element);
+            final Double previous = this.results.get(element);
+            Change<T> change = null;
+            if (weight > 0D) {
+                if (previous == null) {
+                    change = new Change<>(ChangeType.ENTER, element, 0D, weight);
+                } else if (previous != weight) {
+                    change = new Change<>(ChangeType.UPDATE, element, previous, weight);
+                }
+                this.results.put(element, weight);
+            } else if (previous != null) {
+                change = new Change<>(ChangeType.EXIT, element, previous, 0D);
+                this.results.remove(element);
+            }
+
+            if (change != null) {
+                this.publish(change);
+            }
+        }
+    }
+
+    /**
+     * @param element Element changing
+     * @return Lock guarding the changes of the element
+     */
+    private Object lockFor(T element) {
+        final int hash = element.hashCode();
+        return this.locks[(hash ^ (hash >>> 16)) & (ContinuousQuery.lockCount - 1)];
+    }
+
+    /**
+     * Notify all subscribers of a change
+     *
+     * @param change Change to publish
+     */
+    private void publish(Change<T> change) {
+        for (final Consumer<? super Change<T>> subscriber : this.subscribers) {
+            subscriber.accept(change);
+        }
+    }
+
+    /**
+     * Kind of change to the results
+     */
+    public enum ChangeType {
+        /**
+         * Element now matches the query
+         */
+        ENTER,
+        /**
+         * Element still matches the query, with a different weight
+         */
+        UPDATE,
+        /**
+         * Element no longer matches the query, or was removed
+         */
+        EXIT
+    }
+
+    /**
+     * Change to the results of a continuous query.
+     *
+     * @param <T> Type of data in the collection.
+     */
+    public static class Change<T> {
+        /**
+         * Kind of change
+         */
+        private final ChangeType type;
+        /**
+         * Element changed
+         */
+        private final T element;
+        /**
+         * Weight before the change, 0 if it did not match.
+         */
+        private final Double previousWeight;
+        /**
+         * Weight after the change, 0 if it no longer matches.
+         */
+        private final Double weight;
+
+        /**
+         * @param type           Kind of change
+         * @param element        Element changed
+         * @param previousWeight Weight before the change
+         * @param weight         Weight after the change
+         */
+        public Change(ChangeType type, T element, Double previousWeight, Double weight) {
+            this.type = type;
+            this.element = element;
+            this.previousWeight = previousWeight;
+            this.weight = weight;
+        }
+
+        /**
+         * @return Kind of change
+         */
+        public ChangeType getType() {
+            return this.type;
+        }
+
+        /**
+         * @return Element changed
+         */
+        public T getElement() {
+            return this.element;
+        }
+
+        /**
+         * @return Weight before the change, 0 if it did not match.
+         */
+        public Double getPreviousWeight() {
+            return this.previousWeight;
+        }
+
+        /**
+         * @return Weight after the change, 0 if it no longer matches.
+         */
+        public Double getWeight() {
+            return this.weight;
+        }
+
+        @Override
+        public String toString() {
+            return this.type + " " + this.element + " (" + this.previousWeight + " -> " + this.weight + ")";
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package name.mymiller.query;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Runs a query over a JSON lines file, one JSON object per line, without loading the file into a List. Lines are read
+ * and bound lazily as the returned stream is consumed, so memory use is bounded by the longest line rather than the
+ * size of the file.
+ * <p>
+ * When the fields referenced by the query are known, each line is first streamed through Jackson's parser binding only
+ * those fields, skipping the others without building them. The query runs against that partial object, and only lines
+ * that match are bound in full. Field names are the names in the JSON, which must be the top level names of the
+ * properties the query reads.
+ * <p>
+ * Matches are returned in the order of the file, not sorted by weight as Query.stream() does, as sorting would need the
+ * whole result in memory.
+ *
+ * @param <T> Type each line is bound to
+ */
+public class JsonLinesQuery<T> {
+    /**
+     * Type each line is bound to
+     */
+    private final Class<T> type;
+    /**
+     * Query to apply to each line
+     */
+    private final QueryFilter<T> query;
+    /**
+     * Top level fields read by the query, or null to bind every line in full
+     */
+    private final Set<String> fields;
+    /**
+     * Mapper binding the lines
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Create a query binding every line in full.
+     *
+     * @param type  Type each line is bound to
+     * @param query Query to apply to each line
+     */
+    public JsonLinesQuery(Class<T> type, QueryFilter<T> query) {
+        this(type, query, null);
+    }
+
+    /**
+     * Create a query binding only the fields read by the query until a line matches.
+     *
+     * @param type   Type each line is bound to
+     * @param query  Query to apply to each line
+     * @param fields Top level fields read by the query, or null to bind every line in full
+     */
+    public JsonLinesQuery(Class<T> type, QueryFilter<T> query, Set<String> fields) {
+        this(type, query, fields, new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+    }
+
+    /**
+     * Create a query binding only the fields read by the query until a line matches.
+     *
+     * @param type   Type each line is bound to
+     * @param query  Query to apply to each line
+     * @param fields Top level fields read by the query, or null to bind every line in full
+     * @param mapper Mapper binding the lines
+     */
+    public JsonLinesQuery(Class<T> type, QueryFilter<T> query, Set<String> fields, ObjectMapper mapper) {
+        if (type == null || query == null || mapper == null) {
+            throw new NullPointerException("type, query and mapper may not be null");
+        }
+        this.type = type;
+        this.query = query;
+        this.fields = fields == null ? null : Set.copyOf(fields);
+        this.mapper = mapper;
+    }
+
+    /**
+     * Create a query from text, see QueryParser for the syntax. The fields bound before matching are the top level
+     * properties referenced by the query.
+     *
+     * @param type  Type each line is bound to
+     * @param query Text of the query
+     * @param <T>   Type each line is bound to
+     * @return JsonLinesQuery for the text
+     * @throws QueryParseException if the query is not valid for the class.
+     */
+    public static <T> JsonLinesQuery<T> parse(Class<T> type, String query) {
+        final QueryParser<T> parser = QueryParser.forClass(type);
+        final Set<String> fields = new HashSet<>();
+        for (final String property : parser.getProperties(query)) {
+            final int dot = property.indexOf('.');
+            fields.add(dot < 0 ? property : property.substring(0, dot));
+        }
+        return new JsonLinesQuery<>(type, parser.parse(query), fields);
+    }
+
+    /**
+     * Returns a lazy stream of the lines in the file matching the query. The stream must be closed to close the file.
+     *
+     * @param path JSON lines file to read
+     * @return stream of matching elements, in the order of the file.
+     * @throws IOException if the file could not be opened.
+     */
+    public Stream<T> stream(Path path) throws IOException {
+        final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        try {
+            return this.stream(reader).onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a lazy stream of the lines read matching the query. Errors reading or binding a line are thrown as
+     * UncheckedIOException from the stream.
+     *
+     * @param reader Reader of JSON lines
+     * @return stream of matching elements, in the order read.
+     */
+    public Stream<T> stream(Reader reader) {
+        final BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader
+                : new BufferedReader(reader);
+        return buffered.lines()
+                .filter(line -> !line.isBlank())
+                .map(this::match)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Returns a collection of the lines in the file matching the query.
+     *
+     * @param path      JSON lines file to read
+     * @param collector Collector to gather the matching elements
+     * @param <A>       the mutable accumulation type of the reduction operation
+     * @param <R>       Type of data that will be returned.
+     * @return collection of matching elements.
+     * @throws IOException if the file could not be read.
+     */
+    public <A, R> R collect(Path path, Collector<? super T, A, R> collector) throws IOException {
+        try (final Stream<T> stream = this.stream(path)) {
+            return stream.collect(collector);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Processes each line in the file matching the query.
+     *
+     * @param path   JSON lines file to read
+     * @param action Action to perform on each matching element
+     * @throws IOException if the file could not be read.
+     */
+    public void forEach(Path path, Consumer<? super T> action) throws IOException {
+        try (final Stream<T> stream = this.stream(path)) {
+            stream.forEach(action);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return Query to apply to each line
+     */
+    public QueryFilter<T> getQuery() {
+        return this.query;
+    }
+
+    /**
+     * @return Top level fields read by the query, or null if every line is bound in full.
+     */
+    public Set<String> getFields() {
+        return this.fields;
+    }
+
+    /**
+     * Apply the query to a line.
+     *
+     * @param line Line of JSON
+     * @return Element bound from the line if it matches, null otherwise.
+     */
+    private T match(String line) {
+        try {
+            if (this.fields == null) {
+                final T element = this.mapper.readValue(line, this.type);
+                return this.query.process(element) > 0 ? element : null;
+            }
+            if (this.query.process(this.project(line)) <= 0) {
+                return null;
+            }
+            return this.mapper.readValue(line, this.type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Bind only the fields read by the query, skipping the others, and stopping once every field has been read.
+     *
+     * @param line Line of JSON
+     * @return Element with only the fields read by the query set.
+     * @throws IOException if the line is not a JSON object.
+     */
+    private T project(String line) throws IOException {
+        try (final JsonParser parser = this.mapper.getFactory().createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            final ObjectNode node = this.mapper.createObjectNode();
+            while (node.size() < this.fields.size() && parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                parser.nextToken();
+                if (this.fields.contains(name)) {
+                    node.set(name, this.mapper.readTree(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return this.mapper.treeToValue(node, this.type);
+        }
+    }
+}
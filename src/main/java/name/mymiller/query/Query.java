@@ -2,6 +2,8 @@ package name.mymiller.query;
 
 import name.mymiller.utils.ObjectUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -9,6 +11,7 @@ import java.util.function.Predicate;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Query builder for creating queries to be used in Stream filters, or other uses. Calculates a weight on each passed item.
@@ -103,6 +106,95 @@ public class Query {
         Query.stream(array,query).forEach(action);
     }
 
+    /**
+     * Returns a lazy stream of the elements matching the query, without collecting the source first. Elements are
+     * returned in the order of the source, not sorted by weight, so the source is never held in memory.
+     * @param stream Stream of elements to filter.
+     * @param query Query to apply to the Stream.
+     * @param <T> Type of data that will be passed in.
+     * @return stream of matching elements.
+     */
+    public static <T> Stream<T> scan(Stream<T> stream, QueryFilter<T> query) {
+        return stream.filter(Query.filter(query));
+    }
+
+    /**
+     * Returns a lazy stream of the elements matching the query, in the order of the source.
+     * @param spliterator Spliterator of elements to filter.
+     * @param query Query to apply to the Spliterator.
+     * @param <T> Type of data that will be passed in.
+     * @return stream of matching elements.
+     */
+    public static <T> Stream<T> scan(Spliterator<T> spliterator, QueryFilter<T> query) {
+        return Query.scan(StreamSupport.stream(spliterator, false), query);
+    }
+
+    /**
+     * Returns a lazy stream of the objects in a JSON lines file matching the query, in the order of the file. Only
+     * the fields referenced by the query are bound until a line matches. The stream must be closed to close the file.
+     * @param path JSON lines file to read.
+     * @param type Class each line is bound to.
+     * @param query Text of the query, see QueryParser for the syntax.
+     * @param <T> Type of data that will be passed in.
+     * @return stream of matching elements.
+     * @throws IOException if the file could not be opened.
+     */
+    public static <T> Stream<T> scan(Path path, Class<T> type, String query) throws IOException {
+        return JsonLinesQuery.parse(type, query).stream(path);
+    }
+
+    /**
+     * Creates a columnar snapshot of the list, for running repeated queries as column scans.
+     * @param list List of elements to snapshot.
+     * @param <T> Type of data that will be passed in.
+     * @return ColumnarSnapshot of the list.
+     */
+    public static <T> ColumnarSnapshot<T> snapshot(List<T> list) {
+        return new ColumnarSnapshot<>(list);
+    }
+
+    /**
+     * Registers a query to be maintained incrementally as the collection changes.
+     * @param list Current contents of the collection.
+     * @param query Query to maintain.
+     * @param <T> Type of data that will be passed in.
+     * @return ContinuousQuery holding the current results, ready to receive changes.
+     */
+    public static <T> ContinuousQuery<T> continuous(Collection<? extends T> list, QueryFilter<T> query) {
+        return new ContinuousQuery<>(query, list);
+    }
+
+    /**
+     * Describes the structure of a query tree, one node per line.
+     * @param query Query to describe.
+     * @return Description of the tree.
+     */
+    public static String explain(QueryFilter<?> query) {
+        return QueryProfile.explain(query);
+    }
+
+    /**
+     * Creates an instrumented copy of a query, recording the invocations, passes and time of every node.  Use the
+     * returned profile in place of the query, then read its report().
+     * @param query Query to profile.
+     * @param <T> Type of data that will be passed in.
+     * @return QueryProfile wrapping the query.
+     */
+    public static <T> QueryProfile<T> profile(QueryFilter<T> query) {
+        return new QueryProfile<>(query);
+    }
+
+    /**
+     * Parses the text of a query into a filter, see QueryParser for the syntax.
+     * @param type Class of the elements to filter.
+     * @param query Text of the query.
+     * @param <T> Type of data that will be passed in.
+     * @return QueryFilter for the query, shared by every parse of the same text.
+     */
+    public static <T> QueryFilter<T> parse(Class<T> type, String query) {
+        return QueryParser.forClass(type).parse(query);
+    }
+
     /**
      * Wraps a number of queries in an And filter.  All queries must return a weight > 0 in order of this to pass.
      * @param filters Array of filters to be wrapped in the And.
@@ -229,6 +321,75 @@ public class Query {
         return new Contains<>(value, getter, weight, multiplier);
     }
 
+    /**
+     *
+     * @param value  the value to compe on, ignoring case
+     * @param <T> Type of object to filter
+     * @return Contains QueryFilter to check if the object contains the value.
+     */
+    public static <T> Contains<T> containsIgnoreCase(String value) {
+        return new Contains<>(value, null, 1D, 2, true);
+    }
+
+    /**
+     *
+     * @param value  the value to compe on, ignoring case
+     * @param getter the function used to extract the Comparable sort key
+     * @param <T> Type of object to filter
+     * @return Contains QueryFilter to check if the object contains the value.
+     */
+    public static <T> Contains<T> containsIgnoreCase(String value, Function<T, String> getter) {
+        return new Contains<>(value, getter, 1D, 2, true);
+    }
+
+    /**
+     *
+     * @param value  the value to compe on, ignoring case
+     * @param getter the function used to extract the Comparable sort key
+     * @param weight the weight this should return if QueryFilter return matches.
+     * @param multiplier In the case of an exact match, this is applied to the weight
+     * @param <T> Type of object to filter
+     * @return Contains QueryFilter to check if the object contains the value.
+     */
+    public static <T> Contains<T> containsIgnoreCase(String value, Function<T, String> getter, Double weight, Integer multiplier) {
+        return new Contains<>(value, getter, weight, multiplier, true);
+    }
+
+    /**
+     *
+     * @param values the values to compe on
+     * @param <T> Type of object to filter
+     * @return ContainsAny QueryFilter to check if the object contains any of the values.
+     */
+    public static <T> ContainsAny<T> containsAny(Collection<String> values) {
+        return new ContainsAny<>(values);
+    }
+
+    /**
+     *
+     * @param values the values to compe on
+     * @param getter the function used to extract the Comparable sort key
+     * @param <T> Type of object to filter
+     * @return ContainsAny QueryFilter to check if the object contains any of the values.
+     */
+    public static <T> ContainsAny<T> containsAny(Collection<String> values, Function<T, String> getter) {
+        return new ContainsAny<>(values, getter);
+    }
+
+    /**
+     *
+     * @param values the values to compe on
+     * @param getter the function used to extract the Comparable sort key
+     * @param weight the weight this should return if QueryFilter return matches.
+     * @param multiplier In the case of an exact match, this is applied to the weight
+     * @param ignoreCase Indicates if matching ignores case
+     * @param <T> Type of object to filter
+     * @return ContainsAny QueryFilter to check if the object contains any of the values.
+     */
+    public static <T> ContainsAny<T> containsAny(Collection<String> values, Function<T, String> getter, Double weight, Integer multiplier, boolean ignoreCase) {
+        return new ContainsAny<>(values, getter, weight, multiplier, ignoreCase);
+    }
+
     /**
      *
      * @param value  the value to compe on
@@ -630,6 +791,24 @@ public class Query {
         return new Xor<>(filters);
     }
 
+    /**
+     * Freeze every And, Or and Xor in the filter tree, so none can have filters added once the tree is shared or its
+     * structure is used as a key.
+     *
+     * @param filter Root of the filter tree
+     */
+    static void freeze(QueryFilter<?> filter) {
+        if (filter instanceof And) {
+            ((And<?>) filter).freeze();
+        } else if (filter instanceof Or) {
+            ((Or<?>) filter).freeze();
+        } else if (filter instanceof Xor) {
+            ((Xor<?>) filter).freeze();
+        } else if (filter instanceof Not) {
+            Query.freeze(((Not<?>) filter).getFilter());
+        }
+    }
+
     /**
      * Comparator that accepts a QueryFilter for processing weights to determine order.
      * @param <T> Type of object in filter
@@ -738,6 +917,10 @@ public class Query {
          * LIst of QueryFilters to check if all pass
          */
         private final List<QueryFilter<T>> list;
+        /**
+         * Set once the filter is shared by a QueryCache or QueryParser, after which no filters may be added
+         */
+        private volatile boolean frozen;
 
         /**
          * Generate an And Filter with a list.
@@ -745,7 +928,7 @@ public class Query {
          * @param list List of QueryFilter to require to be true.
          */
         public And(List<QueryFilter<T>> list) {
-            this.list = list;
+            this.list = new ArrayList<>(list);
         }
 
         /**
@@ -755,7 +938,7 @@ public class Query {
          */
         @SafeVarargs
         public And(QueryFilter<T>... filters) {
-            this.list = Arrays.asList(filters);
+            this.list = new ArrayList<>(Arrays.asList(filters));
         }
 
         /**
@@ -770,11 +953,47 @@ public class Query {
          *
          * @param queryFilter QueryFilter to add
          * @return boolean indicating if successfully added
+         * @throws IllegalStateException if the filter has been frozen
          */
         public boolean add(QueryFilter<T> queryFilter) {
+            if (this.frozen) {
+                throw new IllegalStateException("Filter is frozen and may not be modified");
+            }
             return list.add(queryFilter);
         }
 
+        /**
+         * @return Unmodifiable list of QueryFilters wrapped by this filter
+         */
+        public List<QueryFilter<T>> getFilters() {
+            return Collections.unmodifiableList(this.list);
+        }
+
+        /**
+         * Prevent further filters being added, here and in the wrapped filters.
+         */
+        void freeze() {
+            this.frozen = true;
+            this.list.forEach(Query::freeze);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final And<?> other = (And<?>) obj;
+            return Objects.equals(this.list, other.list);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.list);
+        }
+
         @Override
         public Double process(T object) {
             if (this.list.parallelStream().filter(Objects::nonNull).allMatch(filter -> filter.process(object) > 0)) {
@@ -794,6 +1013,18 @@ public class Query {
          * Internal Add, to use in combination with a GreaterThan and LessThan
          */
         private final And and;
+        /**
+         * Getter function
+         */
+        private final Function<T, R> getter;
+        /**
+         * Low value of the range
+         */
+        private final T low;
+        /**
+         * Max value of the range
+         */
+        private final T max;
 
         /**
          * Check if value falls between two values
@@ -802,6 +1033,9 @@ public class Query {
          */
         public Between(T low, T max) {
             this.and = new And(new LessThan(max), new GreaterThan(low));
+            this.getter = null;
+            this.low = low;
+            this.max = max;
         }
 
         /**
@@ -812,6 +1046,47 @@ public class Query {
          */
         public Between(Function<T, R> getter, T low, T max) {
             this.and = new And(new LessThan(getter, max), new GreaterThan(getter, low));
+            this.getter = getter;
+            this.low = low;
+            this.max = max;
+        }
+
+        /**
+         * @return Getter function, or null if the object itself is compared
+         */
+        public Function<T, R> getGetter() {
+            return this.getter;
+        }
+
+        /**
+         * @return Low value of the range
+         */
+        public T getLow() {
+            return this.low;
+        }
+
+        /**
+         * @return Max value of the range
+         */
+        public T getMax() {
+            return this.max;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final Between<?, ?> other = (Between<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter) && Objects.equals(this.low, other.low) && Objects.equals(this.max, other.max);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.getter, this.low, this.max);
         }
 
         /**
@@ -836,6 +1111,18 @@ public class Query {
          * Internal Or filter
          */
         private final Or or;
+        /**
+         * Getter function
+         */
+        private final Function<T, R> getter;
+        /**
+         * Low value of the range
+         */
+        private final T low;
+        /**
+         * Max value of the range
+         */
+        private final T max;
 
         /**
          * Check if value falls between min/max or equal
@@ -844,6 +1131,9 @@ public class Query {
          */
         public BetweenOrEqual(T low, T max) {
             this.or = new Or(new And(new LessThan(max), new GreaterThan(low)), new Match(low), new Match(max));
+            this.getter = null;
+            this.low = low;
+            this.max = max;
         }
 
         /**
@@ -854,6 +1144,47 @@ public class Query {
          */
         public BetweenOrEqual(Function<T, R> getter, T low, T max) {
             this.or = new Or(new And(new LessThan(getter, max), new GreaterThan(getter, low)), new Match(getter, low), new Match(getter, max));
+            this.getter = getter;
+            this.low = low;
+            this.max = max;
+        }
+
+        /**
+         * @return Getter function, or null if the object itself is compared
+         */
+        public Function<T, R> getGetter() {
+            return this.getter;
+        }
+
+        /**
+         * @return Low value of the range
+         */
+        public T getLow() {
+            return this.low;
+        }
+
+        /**
+         * @return Max value of the range
+         */
+        public T getMax() {
+            return this.max;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final BetweenOrEqual<?, ?> other = (BetweenOrEqual<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter) && Objects.equals(this.low, other.low) && Objects.equals(this.max, other.max);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.getter, this.low, this.max);
         }
 
         /**
@@ -869,32 +1200,26 @@ public class Query {
     }
 
     /**
-     * Check if the values associated with key contains the text in the value.
+     * Check if the values associated with key contains the text in the value.  The value is compiled once into a
+     * StringMatcher, and the text is extracted once per object.
      */
-    public static class Contains<T> extends AbstractQuery<T> {
+    public static class Contains<T> extends AbstractTextQuery<T> {
 
         /**
          * Value to see if is in contains
          */
         private final String value;
         /**
-         * Value to muliple weight if an exact match
+         * Precompiled search for the value
          */
-        private final Integer multiplier;
-        /**
-         * Getter function
-         */
-        private final Function<T, String> getter;
+        private final StringMatcher matcher;
 
         /**
          * Constructor to check if value is contained in the object
          * @param value  the value to compe on
          */
         public Contains(String value) {
-            super(1D);
-            this.multiplier = 2;
-            this.value = value;
-            this.getter = null;
+            this(value, null, 1D, 2, false);
         }
 
         /**
@@ -903,10 +1228,7 @@ public class Query {
          * @param getter the function used to extract the Comparable sort key
          */
         public Contains(String value, Function<T, String> getter) {
-            super(1D);
-            this.multiplier = 2;
-            this.value = value;
-            this.getter = getter;
+            this(value, getter, 1D, 2, false);
         }
 
         /**
@@ -916,10 +1238,7 @@ public class Query {
          * @param multiplier In the case of an exact match, this is applied to the weight
          */
         public Contains(String value, Double weigth, Integer multiplier) {
-            super(weigth);
-            this.multiplier = multiplier;
-            this.value = value;
-            this.getter = null;
+            this(value, null, weigth, multiplier, false);
         }
 
         /**
@@ -930,12 +1249,61 @@ public class Query {
          * @param multiplier In the case of an exact match, this is applied to the weight
          */
         public Contains(String value, Function<T, String> getter, Double weight, Integer multiplier) {
-            super(weight);
-            this.multiplier = multiplier;
+            this(value, getter, weight, multiplier, false);
+        }
+
+        /**
+         * Constructor to check if value is contained in the object on the getter, optionally ignoring case
+         * @param value  the value to compe on
+         * @param getter the function used to extract the Comparable sort key
+         * @param weight the weight this should return if QueryFilter return matches.
+         * @param multiplier In the case of an exact match, this is applied to the weight
+         * @param ignoreCase Indicates if matching ignores case
+         */
+        public Contains(String value, Function<T, String> getter, Double weight, Integer multiplier, boolean ignoreCase) {
+            super(weight, multiplier, getter);
             this.value = value;
-            this.getter = getter;
+            this.matcher = value == null ? null : StringMatcher.of(value, ignoreCase);
+        }
+
+        /**
+         * @return Value to see if is in contains
+         */
+        public String getValue() {
+            return this.value;
         }
 
+        /**
+         * @return Indicates if matching ignores case
+         */
+        public boolean isIgnoreCase() {
+            return this.matcher != null && this.matcher.isIgnoreCase();
+        }
+
+        @Override
+        public Double score(CharSequence content) {
+            if (this.matcher != null && this.matcher.find(content)) {
+                if (this.matcher.matchesExactly(content)) {
+                    return this.getWeight() * this.getMultiplier();
+                }
+                return this.getWeight();
+            }
+            return 0D;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final Contains<?> other = (Contains<?>) obj;
+            return Objects.equals(this.value, other.value) && this.isIgnoreCase() == other.isIgnoreCase();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.value, this.isIgnoreCase());
+        }
 
         /**
          * Must return true in order for this filter to agree to inclusion.
@@ -945,30 +1313,94 @@ public class Query {
          */
         @Override
         public Double process(T object) {
-            if (object != null && value != null) {
-                if (getter == null) {
-                    if (object.toString().contains(value)) {
-                        if (object.toString().equals(value)) {
-                            return this.getWeight() * multiplier;
-                        }
-                        return this.getWeight();
-                    }
-                } else if (getter != null) {
-                    String content = this.getter.apply(object);
-                    if (content != null) {
-                        if (content.contains(value)) ;
-                        {
-                            if (content.equals(value)) {
-                                return this.getWeight() * multiplier;
-                            }
-                            return this.getWeight();
-                        }
-                    }
-                }
-            }
             if (object == null && value == null) {
                 return this.getWeight();
             }
+            return super.process(object);
+        }
+    }
+
+    /**
+     * Check if the values associated with key contains any of the text values.  The values are compiled once into an
+     * Aho-Corasick StringMatcher, so the text is searched in a single pass regardless of the number of values.
+     */
+    public static class ContainsAny<T> extends AbstractTextQuery<T> {
+        /**
+         * Values to see if any is contained
+         */
+        private final Collection<String> values;
+        /**
+         * Precompiled search for the values
+         */
+        private final StringMatcher matcher;
+
+        /**
+         * Constructor to check if any value is contained in the object
+         * @param values the values to compe on
+         */
+        public ContainsAny(Collection<String> values) {
+            this(values, null, 1D, 2, false);
+        }
+
+        /**
+         * Constructor to check if any value is contained in the getter
+         * @param values the values to compe on
+         * @param getter the function used to extract the Comparable sort key
+         */
+        public ContainsAny(Collection<String> values, Function<T, String> getter) {
+            this(values, getter, 1D, 2, false);
+        }
+
+        /**
+         * Constructor to check if any value is contained in the object on the getter, optionally ignoring case
+         * @param values the values to compe on
+         * @param getter the function used to extract the Comparable sort key
+         * @param weight the weight this should return if QueryFilter return matches.
+         * @param multiplier In the case of an exact match, this is applied to the weight
+         * @param ignoreCase Indicates if matching ignores case
+         */
+        public ContainsAny(Collection<String> values, Function<T, String> getter, Double weight, Integer multiplier, boolean ignoreCase) {
+            super(weight, multiplier, getter);
+            this.values = values;
+            this.matcher = StringMatcher.any(values, ignoreCase);
+        }
+
+        /**
+         * @return Values to see if any is contained
+         */
+        public Collection<String> getValues() {
+            return this.values;
+        }
+
+        /**
+         * @return Indicates if matching ignores case
+         */
+        public boolean isIgnoreCase() {
+            return this.matcher.isIgnoreCase();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final ContainsAny<?> other = (ContainsAny<?>) obj;
+            return Objects.equals(this.values, other.values) && this.isIgnoreCase() == other.isIgnoreCase();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.values, this.isIgnoreCase());
+        }
+
+        @Override
+        public Double score(CharSequence content) {
+            if (this.matcher.find(content)) {
+                if (this.matcher.matchesExactly(content)) {
+                    return this.getWeight() * this.getMultiplier();
+                }
+                return this.getWeight();
+            }
             return 0D;
         }
     }
@@ -1043,6 +1475,34 @@ public class Query {
             this.value = value;
         }
 
+        /**
+         * @return Getter function, or null if the object itself is compared
+         */
+        public Function<T, R> getGetter() {
+            return this.getter;
+        }
+
+        /**
+         * @return Value to compare against
+         */
+        public T getValue() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final GreaterThan<?, ?> other = (GreaterThan<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter) && Objects.equals(this.value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.getter, this.value);
+        }
+
         /**
          * Must return true in order for this filter to agree to inclusion.
          *
@@ -1116,6 +1576,20 @@ public class Query {
             this.getter = getter;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final IsEmpty<?, ?> other = (IsEmpty<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.getter);
+        }
+
         /**
          * Must return true in order for this filter to agree to inclusion.
          *
@@ -1125,13 +1599,18 @@ public class Query {
         @Override
         public Double process(T object) {
             if (object != null) {
+                final Object value;
                 if (this.getter != null) {
-                    Object obj = this.getter.apply(object);
-                    ObjectUtils.throwIfNotInstance(String.class, obj, "Value from getter must be of type String");
+                    value = this.getter.apply(object);
+                    if (value == null) {
+                        return 0D;
+                    }
+                    ObjectUtils.throwIfNotInstance(String.class, value, "Value from getter must be of type String");
                 } else {
+                    value = object;
                     ObjectUtils.throwIfNotInstance(String.class, object, "Object must be of type String");
                 }
-                if (object.toString().isEmpty()) {
+                if (value.toString().isEmpty()) {
                     return this.getWeight();
                 }
             }
@@ -1185,6 +1664,20 @@ public class Query {
             this.getter = getter;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final IsNull<?, ?> other = (IsNull<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.getter);
+        }
+
         /**
          * Must return true in order for this filter to agree to inclusion.
          *
@@ -1194,9 +1687,10 @@ public class Query {
         @Override
         public Double process(T object) {
             if (this.getter != null) {
-                Object obj = this.getter.apply(object);
-            }
-            if (object == null) {
+                if (object == null || this.getter.apply(object) == null) {
+                    return this.getWeight();
+                }
+            } else if (object == null) {
                 return this.getWeight();
             }
             return 0D;
@@ -1273,6 +1767,34 @@ public class Query {
             this.value = value;
         }
 
+        /**
+         * @return Getter function, or null if the object itself is compared
+         */
+        public Function<T, R> getGetter() {
+            return this.getter;
+        }
+
+        /**
+         * @return Value to compare against
+         */
+        public T getValue() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final LessThan<?, ?> other = (LessThan<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter) && Objects.equals(this.value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.getter, this.value);
+        }
+
         /**
          * Must return true in order for this filter to agree to inclusion.
          *
@@ -1364,6 +1886,34 @@ public class Query {
             this.getter = getter;
         }
 
+        /**
+         * @return Getter function, or null if the object itself is compared
+         */
+        public Function<T, R> getGetter() {
+            return this.getter;
+        }
+
+        /**
+         * @return Value to compare against
+         */
+        public T getValue() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final Match<?, ?> other = (Match<?, ?>) obj;
+            return Objects.equals(this.getter, other.getter) && Objects.equals(this.value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.getter, this.value);
+        }
+
         @Override
         public Double process(T object) {
             if (getter == null) {
@@ -1413,6 +1963,27 @@ public class Query {
             this.filter = filter;
         }
 
+        /**
+         * @return Filter this Not flips the value on
+         */
+        public QueryFilter<T> getFilter() {
+            return this.filter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!super.equals(obj)) {
+                return false;
+            }
+            final Not<?> other = (Not<?>) obj;
+            return Objects.equals(this.filter, other.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), this.filter);
+        }
+
         @Override
         public Double process(T object) {
             if (this.filter.process(object) == 0D) {
@@ -1466,6 +2037,23 @@ public class Query {
             this.not = new Not(new IsEmpty(getter, weight));
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final NotEmpty<?, ?> other = (NotEmpty<?, ?>) obj;
+            return Objects.equals(this.not, other.not);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.not);
+        }
+
         /**
          * Must return true in order for this filter to agree to inclusion.
          *
@@ -1521,6 +2109,23 @@ public class Query {
             this.not = new Not(new IsNull(getter, weight));
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final NotNull<?, ?> other = (NotNull<?, ?>) obj;
+            return Objects.equals(this.not, other.not);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.not);
+        }
+
         /**
          * Must return true in order for this filter to agree to inclusion.
          *
@@ -1539,6 +2144,10 @@ public class Query {
      */
     public static class Or<T> implements QueryFilter<T> {
         private final List<QueryFilter<T>> list;
+        /**
+         * Set once the filter is shared by a QueryCache or QueryParser, after which no filters may be added
+         */
+        private volatile boolean frozen;
 
         /**
          * Generate an Or Filter with a list.
@@ -1546,7 +2155,7 @@ public class Query {
          * @param list List of QueryFilter to require to be true.
          */
         public Or(List<QueryFilter<T>> list) {
-            this.list = list;
+            this.list = new ArrayList<>(list);
         }
 
         /**
@@ -1556,7 +2165,7 @@ public class Query {
          */
         @SafeVarargs
         public Or(QueryFilter<T>... filters) {
-            this.list = Arrays.asList(filters);
+            this.list = new ArrayList<>(Arrays.asList(filters));
         }
 
         /**
@@ -1571,11 +2180,47 @@ public class Query {
          *
          * @param queryFilter QueryFilter to add
          * @return boolean indicating if successfully added
+         * @throws IllegalStateException if the filter has been frozen
          */
         public boolean add(QueryFilter<T> queryFilter) {
+            if (this.frozen) {
+                throw new IllegalStateException("Filter is frozen and may not be modified");
+            }
             return list.add(queryFilter);
         }
 
+        /**
+         * @return Unmodifiable list of QueryFilters wrapped by this filter
+         */
+        public List<QueryFilter<T>> getFilters() {
+            return Collections.unmodifiableList(this.list);
+        }
+
+        /**
+         * Prevent further filters being added, here and in the wrapped filters.
+         */
+        void freeze() {
+            this.frozen = true;
+            this.list.forEach(Query::freeze);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final Or<?> other = (Or<?>) obj;
+            return Objects.equals(this.list, other.list);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.list);
+        }
+
         @Override
         public Double process(T object) {
             return this.list.parallelStream().filter(Objects::nonNull).map(filter -> filter.process(object)).filter(value -> value > 0).mapToDouble(value -> value).sum();
@@ -1588,6 +2233,10 @@ public class Query {
      */
     public static class Xor<T> implements QueryFilter<T> {
         private final List<QueryFilter<T>> list;
+        /**
+         * Set once the filter is shared by a QueryCache or QueryParser, after which no filters may be added
+         */
+        private volatile boolean frozen;
 
         /**
          * Generate an Or Filter with a list.
@@ -1595,7 +2244,7 @@ public class Query {
          * @param list List of QueryFilter to process.
          */
         public Xor(List<QueryFilter<T>> list) {
-            this.list = list;
+            this.list = new ArrayList<>(list);
         }
 
         /**
@@ -1605,7 +2254,7 @@ public class Query {
          */
         @SafeVarargs
         public Xor(QueryFilter<T>... filters) {
-            this.list = Arrays.asList(filters);
+            this.list = new ArrayList<>(Arrays.asList(filters));
         }
 
         /**
@@ -1620,11 +2269,47 @@ public class Query {
          *
          * @param queryFilter QueryFilter to add
          * @return boolean indicating if successfully added
+         * @throws IllegalStateException if the filter has been frozen
          */
         public boolean add(QueryFilter<T> queryFilter) {
+            if (this.frozen) {
+                throw new IllegalStateException("Filter is frozen and may not be modified");
+            }
             return list.add(queryFilter);
         }
 
+        /**
+         * @return Unmodifiable list of QueryFilters wrapped by this filter
+         */
+        public List<QueryFilter<T>> getFilters() {
+            return Collections.unmodifiableList(this.list);
+        }
+
+        /**
+         * Prevent further filters being added, here and in the wrapped filters.
+         */
+        void freeze() {
+            this.frozen = true;
+            this.list.forEach(Query::freeze);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final Xor<?> other = (Xor<?>) obj;
+            return Objects.equals(this.list, other.list);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.getClass(), this.list);
+        }
+
         @Override
         public Double process(T object) {
             List<Double> values = this.list.parallelStream().filter(Objects::nonNull).map(filter -> filter.process(object)).collect(Collectors.toList());
@@ -0,0 +1,294 @@
+package name.mymiller.query;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cache of query results, keyed by the source list, the structure of the query, and a version stamp of the list. The
+ * owner of the list increments the version whenever the list is modified; a lookup with a different version than the
+ * cached result recomputes it. Results also expire after a time to live, and the least recently used results are
+ * evicted once the maximum size is reached.
+ * <p>
+ * Queries are compared with equals(), so two separately built queries with the same shape and values share a result.
+ * Getters are compared by identity, so queries built from the same method reference or constant Function share a
+ * result, while queries built from separate lambdas do not. The And, Or and Xor filters of a query are frozen when it is
+ * first used with the cache, and adding to them afterwards throws IllegalStateException. Identical lookups arriving together compute the result once, the others wait for it.
+ *
+ * @param <T> Type of data in the lists queried.
+ */
+public class QueryCache<T> {
+    /**
+     * Maximum number of results held
+     */
+    private final int maximumSize;
+    /**
+     * Time to live of a result in nanoseconds, 0 if results do not expire.
+     */
+    private final long ttl;
+    /**
+     * Results in least recently used order
+     */
+    private final LinkedHashMap<Key<T>, Entry<T>> entries;
+    /**
+     * Number of lookups served from the cache
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Number of lookups computing the result
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache whose results do not expire.
+     *
+     * @param maximumSize Maximum number of results held
+     */
+    public QueryCache(int maximumSize) {
+        this(maximumSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maximumSize Maximum number of results held
+     * @param ttl         Time to live of a result, 0 if results do not expire.
+     * @param unit        Unit of the time to live
+     */
+    public QueryCache(int maximumSize, long ttl, TimeUnit unit) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be greater than 0");
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("ttl may not be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.ttl = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key<T>, Entry<T>> eldest) {
+                return this.size() > QueryCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the elements of the list matching the query, ordered by weight as Query.stream() does.
+     *
+     * @param list    List of elements to filter
+     * @param version Version stamp of the list, changed whenever the list is modified.
+     * @param query   Query to apply to List.
+     * @return Unmodifiable list of matching elements.
+     */
+    public List<T> results(List<T> list, long version, QueryFilter<T> query) {
+        Query.freeze(query);
+        final Key<T> key = new Key<>(list, query);
+        final long now = System.nanoTime();
+        Entry<T> entry;
+        boolean owner = false;
+
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+            if (entry == null || entry.version != version || this.isExpired(entry, now)) {
+                entry = new Entry<>(version, now, new FutureTask<>(
+                        () -> Collections.unmodifiableList(Query.stream(list, query).collect(Collectors.toList()))));
+                this.entries.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            this.misses.increment();
+            entry.result.run();
+        } else {
+            this.hits.increment();
+        }
+
+        try {
+            return entry.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for query result", e);
+        } catch (ExecutionException e) {
+            synchronized (this.entries) {
+                this.entries.remove(key, entry);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Query failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns a stream of the elements of the list matching the query, ordered by weight as Query.stream() does.
+     *
+     * @param list    List of elements to filter
+     * @param version Version stamp of the list, changed whenever the list is modified.
+     * @param query   Query to apply to List.
+     * @return stream of matching elements.
+     */
+    public Stream<T> stream(List<T> list, long version, QueryFilter<T> query) {
+        return this.results(list, version, query).stream();
+    }
+
+    /**
+     * Returns a collection of the elements of the list matching the query.
+     *
+     * @param list      List of elements to filter
+     * @param version   Version stamp of the list, changed whenever the list is modified.
+     * @param query     Query to apply to List.
+     * @param collector Collector to gather the matching elements
+     * @param <A>       the mutable accumulation type of the reduction operation
+     * @param <R>       Type of data that will be returned.
+     * @return collection of matching elements.
+     */
+    public <A, R> R collect(List<T> list, long version, QueryFilter<T> query, Collector<? super T, A, R> collector) {
+        return this.stream(list, version, query).collect(collector);
+    }
+
+    /**
+     * Remove every result computed from the list.
+     *
+     * @param list List whose results are removed
+     */
+    public void invalidate(List<T> list) {
+        synchronized (this.entries) {
+            this.entries.keySet().removeIf(key -> key.list.get() == null || key.list.get() == list);
+        }
+    }
+
+    /**
+     * Remove every result.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * @return Number of results held
+     */
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return Maximum number of results held
+     */
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * @return Number of lookups served from the cache
+     */
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return Number of lookups computing the result
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @param entry Entry to check
+     * @param now   Current nano time
+     * @return true if the entry has outlived the time to live
+     */
+    private boolean isExpired(Entry<T> entry, long now) {
+        return this.ttl > 0 && now - entry.created >= this.ttl;
+    }
+
+    /**
+     * Key of a result: the list by identity, held weakly, and the query by structure.
+     *
+     * @param <T> Type of data in the list.
+     */
+    private static class Key<T> {
+        /**
+         * List queried
+         */
+        private final WeakReference<List<T>> list;
+        /**
+         * Query applied
+         */
+        private final QueryFilter<T> query;
+        /**
+         * Hash computed once, as hashing a query walks its whole tree.
+         */
+        private final int hash;
+
+        /**
+         * @param list  List queried
+         * @param query Query applied
+         */
+        Key(List<T> list, QueryFilter<T> query) {
+            this.list = new WeakReference<>(list);
+            this.query = query;
+            this.hash = 31 * System.identityHashCode(list) + Objects.hashCode(query);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key<?> other = (Key<?>) obj;
+            final Object list = this.list.get();
+            return this.hash == other.hash && list != null && list == other.list.get()
+                    && Objects.equals(this.query, other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Cached result
+     *
+     * @param <T> Type of data in the list.
+     */
+    private static class Entry<T> {
+        /**
+         * Version of the list the result was computed from
+         */
+        private final long version;
+        /**
+         * Nano time the result was created
+         */
+        private final long created;
+        /**
+         * Result, computed by the first lookup
+         */
+        private final FutureTask<List<T>> result;
+
+        /**
+         * @param version Version of the list the result was computed from
+         * @param created Nano time the result was created
+         * @param result  Result, computed by the first lookup
+         */
+        Entry(long version, long created, FutureTask<List<T>> result) {
+            this.version = version;
+            this.created = created;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package name.mymiller.query;
+
+/**
+ * Thrown when the text of a query is not valid, or does not apply to the class queried.
+ */
+public class QueryParseException extends IllegalArgumentException {
+    /**
+     * Serial Version
+     */
+    private static final long serialVersionUID = 3519224186711520541L;
+
+    /**
+     * Offset in the query text where the error was found
+     */
+    private final int position;
+
+    /**
+     * @param message  The detail message.
+     * @param query    Text of the query
+     * @param position Offset in the query text where the error was found
+     */
+    public QueryParseException(String message, String query, int position) {
+        super(message + " at position " + position + ": " + query);
+        this.position = position;
+    }
+
+    /**
+     * @param message  The detail message.
+     * @param query    Text of the query
+     * @param position Offset in the query text where the error was found
+     * @param cause    The cause
+     */
+    public QueryParseException(String message, String query, int position, Throwable cause) {
+        super(message + " at position " + position + ": " + query, cause);
+        this.position = position;
+    }
+
+    /**
+     * @return Offset in the query text where the error was found
+     */
+    public int getPosition() {
+        return this.position;
+    }
+}
@@ -0,0 +1,1021 @@
+package name.mymiller.query;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Parses the text of a query into a QueryFilter tree for a class. Properties are resolved once into accessors compiled
+ * with LambdaMetafactory, falling back to a MethodHandle when a lambda cannot be spun, so no reflection happens while
+ * rows are filtered. Parsed filters are cached by their text, so repeated queries share the same filter instance. Shared
+ * filters are frozen, so adding to a parsed And, Or or Xor throws IllegalStateException rather than changing the query
+ * for every other caller.
+ * <p>
+ * Syntax, keywords are not case sensitive:
+ * <pre>
+ * query     := or
+ * or        := xor ( OR xor )*
+ * xor       := and ( XOR and )*
+ * and       := unary ( AND unary )*
+ * unary     := NOT unary | '(' query ')' | predicate
+ * predicate := property ( '=' | '!=' | '&lt;&gt;' | '&gt;' | '&gt;=' | '&lt;' | '&lt;=' ) literal
+ *            | property [ NOT ] BETWEEN literal AND literal
+ *            | property [ NOT ] IN '(' literal ( ',' literal )* ')'
+ *            | property [ NOT ] CONTAINS string
+ *            | property [ NOT ] CONTAINS ANY '(' string ( ',' string )* ')'
+ *            | property IS [ NOT ] ( NULL | EMPTY )
+ *            | property
+ * property  := name ( '.' name )*
+ * literal   := string | number | TRUE | FALSE | NULL | name
+ * </pre>
+ * A name resolves to a public getX(), isX() or x() method, or a public field x. Strings are quoted with " or ', and
+ * literals are converted to the type of the property, so {@code age > 30} compares Integers when getAge() returns int.
+ * Unquoted names may be used as literals, such as the constant of an enum property. A boolean property on its own
+ * matches when it is true.
+ * BETWEEN includes both ends of the range.
+ *
+ * @param <T> Type of object the queries filter
+ */
+public class QueryParser<T> {
+    /**
+     * Maximum number of parsed queries cached per class
+     */
+    private static final int MAXIMUM_CACHED = 1024;
+
+    /**
+     * Parser per class, held by the class itself so it does not keep the class from being unloaded
+     */
+    private static final ClassValue<QueryParser<?>> PARSERS = new ClassValue<>() {
+        @Override
+        protected QueryParser<?> computeValue(Class<?> type) {
+            return new QueryParser<>(type);
+        }
+    };
+
+    /**
+     * Class queried
+     */
+    private final Class<T> type;
+    /**
+     * Parsed queries by text, in least recently used order
+     */
+    private final Map<String, QueryFilter<T>> filters;
+    /**
+     * Resolved properties by path
+     */
+    private final Map<String, Property> properties;
+
+    /**
+     * @param type Class queried
+     */
+    private QueryParser(Class<T> type) {
+        this.type = type;
+        this.filters = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryFilter<T>> eldest) {
+                return this.size() > MAXIMUM_CACHED;
+            }
+        };
+        this.properties = new ConcurrentHashMap<>();
+        QueryParser.class.getModule().addReads(type.getModule());
+    }
+
+    /**
+     * Obtain the parser for a class.
+     *
+     * @param type Class queried
+     * @param <T>  Type of object the queries filter
+     * @return QueryParser for the class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> QueryParser<T> forClass(Class<T> type) {
+        if (type == null) {
+            throw new NullPointerException("type may not be null");
+        }
+        return (QueryParser<T>) PARSERS.get(type);
+    }
+
+    /**
+     * @return Class queried
+     */
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Parse the text of a query, or return the filter already parsed for the same text. The filter is frozen, as it is
+     * shared with every caller parsing the same text.
+     *
+     * @param query Text of the query
+     * @return QueryFilter for the query
+     * @throws QueryParseException if the query is not valid for the class.
+     */
+    public QueryFilter<T> parse(String query) {
+        if (query == null) {
+            throw new NullPointerException("query may not be null");
+        }
+        synchronized (this.filters) {
+            final QueryFilter<T> filter = this.filters.get(query);
+            if (filter != null) {
+                return filter;
+            }
+        }
+
+        final QueryFilter<T> filter = new Parser(query).parse();
+        Query.freeze(filter);
+        synchronized (this.filters) {
+            final QueryFilter<T> existing = this.filters.putIfAbsent(query, filter);
+            return existing != null ? existing : filter;
+        }
+    }
+
+    /**
+     * Parse the text of a query, returning the properties it references.
+     *
+     * @param query Text of the query
+     * @return Paths of the properties referenced, in the order they appear.
+     * @throws QueryParseException if the query is not valid for the class.
+     */
+    public Set<String> getProperties(String query) {
+        if (query == null) {
+            throw new NullPointerException("query may not be null");
+        }
+        final Parser parser = new Parser(query);
+        parser.parse();
+        return Collections.unmodifiableSet(parser.referenced);
+    }
+
+    /**
+     * Obtain the compiled accessor for a property. Accessors are shared, so filters built with them compare equal.
+     *
+     * @param path Name of the property, with nested properties separated by '.'
+     * @return Function returning the value of the property, or null if an object along the path is null.
+     * @throws IllegalArgumentException if the property does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public Function<T, Object> getter(String path) {
+        return (Function<T, Object>) (Function<?, ?>) this.property(path).getter;
+    }
+
+    /**
+     * @param path Name of the property, with nested properties separated by '.'
+     * @return Type of the property, primitives are returned as their wrapper class.
+     * @throws IllegalArgumentException if the property does not exist.
+     */
+    public Class<?> getPropertyType(String path) {
+        return this.property(path).type;
+    }
+
+    /**
+     * Resolve a property, or return the one already resolved.
+     *
+     * @param path Name of the property, with nested properties separated by '.'
+     * @return Property resolved
+     */
+    private Property property(String path) {
+        Property property = this.properties.get(path);
+        if (property == null) {
+            property = this.properties.computeIfAbsent(path, this::resolve);
+        }
+        return property;
+    }
+
+    /**
+     * Resolve each name of a path into an accessor, and chain them together.
+     *
+     * @param path Name of the property, with nested properties separated by '.'
+     * @return Property resolved
+     */
+    @SuppressWarnings("unchecked")
+    private Property resolve(String path) {
+        final String[] names = path.split("\\.", -1);
+        final Function<Object, Object>[] chain = (Function<Object, Object>[]) new Function<?, ?>[names.length];
+        Class<?> current = this.type;
+        for (int index = 0; index < names.length; index++) {
+            if (names[index].isEmpty()) {
+                throw new IllegalArgumentException("Invalid property '" + path + "'");
+            }
+            final Method method = QueryParser.findMethod(current, names[index]);
+            if (method != null) {
+                chain[index] = QueryParser.accessor(method);
+                current = method.getReturnType();
+            } else {
+                final Field field = QueryParser.findField(current, names[index]);
+                if (field == null) {
+                    throw new IllegalArgumentException("Unknown property '" + names[index] + "' on " + current.getName());
+                }
+                chain[index] = QueryParser.accessor(field);
+                current = field.getType();
+            }
+        }
+
+        final Function<Object, Object> getter;
+        if (chain.length == 1) {
+            final Function<Object, Object> accessor = chain[0];
+            getter = object -> object == null ? null : accessor.apply(object);
+        } else {
+            getter = object -> {
+                Object value = object;
+                for (final Function<Object, Object> accessor : chain) {
+                    if (value == null) {
+                        return null;
+                    }
+                    value = accessor.apply(value);
+                }
+                return value;
+            };
+        }
+        return new Property(getter, MethodType.methodType(current).wrap().returnType());
+    }
+
+    /**
+     * Find the public method reading a property.
+     *
+     * @param type Class to search
+     * @param name Name of the property
+     * @return Method, or null if none found
+     */
+    private static Method findMethod(Class<?> type, String name) {
+        final String capital = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        final String[] candidates = {"get" + capital, "is" + capital, name};
+        for (int index = 0; index < candidates.length; index++) {
+            try {
+                final Method method = type.getMethod(candidates[index]);
+                if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class) {
+                    continue;
+                }
+                if (index == 1 && method.getReturnType() != boolean.class && method.getReturnType() != Boolean.class) {
+                    continue;
+                }
+                return method;
+            } catch (NoSuchMethodException e) {
+                // try the next candidate
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the public field of a property.
+     *
+     * @param type Class to search
+     * @param name Name of the property
+     * @return Field, or null if none found
+     */
+    private static Field findField(Class<?> type, String name) {
+        try {
+            final Field field = type.getField(name);
+            return Modifier.isStatic(field.getModifiers()) ? null : field;
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compile a method into a Function. LambdaMetafactory produces a class calling the method directly, which the JIT
+     * inlines like a hand written lambda. If that is not possible, the method is called through a MethodHandle.
+     *
+     * @param method Method to call
+     * @return Function calling the method
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> accessor(Method method) {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            return QueryParser.adapt(QueryParser.unreflectAccessible(method));
+        }
+
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(MethodType.methodType(method.getReturnType()).wrap().returnType(),
+                            method.getDeclaringClass()));
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            return QueryParser.adapt(handle);
+        }
+    }
+
+    /**
+     * Compile a field read into a Function.
+     *
+     * @param field Field to read
+     * @return Function reading the field
+     */
+    private static Function<Object, Object> accessor(Field field) {
+        try {
+            return QueryParser.adapt(MethodHandles.lookup().unreflectGetter(field));
+        } catch (IllegalAccessException e) {
+            if (!field.trySetAccessible()) {
+                throw new IllegalArgumentException("Property '" + field.getName() + "' is not accessible", e);
+            }
+            try {
+                return QueryParser.adapt(MethodHandles.lookup().unreflectGetter(field));
+            } catch (IllegalAccessException ex) {
+                throw new IllegalArgumentException("Property '" + field.getName() + "' is not accessible", ex);
+            }
+        }
+    }
+
+    /**
+     * Obtain a MethodHandle for a method not accessible to this class, such as a public method declared on a package
+     * private class.
+     *
+     * @param method Method to call
+     * @return MethodHandle calling the method
+     */
+    private static MethodHandle unreflectAccessible(Method method) {
+        if (!method.trySetAccessible()) {
+            throw new IllegalArgumentException("Property method " + method.getName() + "() is not accessible");
+        }
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Property method " + method.getName() + "() is not accessible", e);
+        }
+    }
+
+    /**
+     * Wrap a MethodHandle taking an object and returning a value into a Function.
+     *
+     * @param handle MethodHandle to call
+     * @return Function calling the MethodHandle
+     */
+    private static Function<Object, Object> adapt(MethodHandle handle) {
+        final MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return object -> {
+            try {
+                return generic.invokeExact(object);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * Resolved property
+     */
+    private static class Property {
+        /**
+         * Function returning the value of the property
+         */
+        private final Function<Object, Object> getter;
+        /**
+         * Function returning the value of the property as a String
+         */
+        private final Function<Object, String> text;
+        /**
+         * Type of the property, primitives as their wrapper class
+         */
+        private final Class<?> type;
+
+        /**
+         * @param getter Function returning the value of the property
+         * @param type   Type of the property, primitives as their wrapper class
+         */
+        Property(Function<Object, Object> getter, Class<?> type) {
+            this.getter = getter;
+            this.type = type;
+            this.text = object -> {
+                final Object value = getter.apply(object);
+                return value == null ? null : value.toString();
+            };
+        }
+
+        /**
+         * @return true if values of the property may be compared
+         */
+        boolean isComparable() {
+            return this.type == Object.class || Comparable.class.isAssignableFrom(this.type);
+        }
+
+        /**
+         * @return true if values of the property are text
+         */
+        boolean isText() {
+            return this.type == Object.class || CharSequence.class.isAssignableFrom(this.type);
+        }
+    }
+
+    /**
+     * Kind of token in the query text
+     */
+    private enum TokenType {
+        /**
+         * Property name or keyword
+         */
+        NAME,
+        /**
+         * Numeric literal
+         */
+        NUMBER,
+        /**
+         * Quoted literal
+         */
+        STRING,
+        /**
+         * Comparison operator
+         */
+        OPERATOR,
+        /**
+         * Opening parenthesis
+         */
+        OPEN,
+        /**
+         * Closing parenthesis
+         */
+        CLOSE,
+        /**
+         * Separator between list entries
+         */
+        COMMA,
+        /**
+         * End of the query
+         */
+        END
+    }
+
+    /**
+     * Token of the query text
+     */
+    private static class Token {
+        /**
+         * Kind of token
+         */
+        private final TokenType type;
+        /**
+         * Text of the token, unquoted for strings
+         */
+        private final String text;
+        /**
+         * Offset of the token in the query
+         */
+        private final int position;
+
+        /**
+         * @param type     Kind of token
+         * @param text     Text of the token
+         * @param position Offset of the token in the query
+         */
+        Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        /**
+         * @param keyword Keyword to check
+         * @return true if this token is the keyword
+         */
+        boolean is(String keyword) {
+            return this.type == TokenType.NAME && this.text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    /**
+     * Recursive descent parser over the text of one query.
+     */
+    private class Parser {
+        /**
+         * Keywords which may not be used as property names
+         */
+        private static final Set<String> KEYWORDS = Set.of("AND", "OR", "XOR", "NOT", "BETWEEN", "IN", "CONTAINS",
+                "ANY", "IS", "NULL", "EMPTY", "TRUE", "FALSE");
+
+        /**
+         * Text of the query
+         */
+        private final String query;
+        /**
+         * Paths of the properties referenced
+         */
+        private final Set<String> referenced = new LinkedHashSet<>();
+        /**
+         * Offset of the next character to read
+         */
+        private int offset;
+        /**
+         * Current token
+         */
+        private Token token;
+
+        /**
+         * @param query Text of the query
+         */
+        Parser(String query) {
+            this.query = query;
+        }
+
+        /**
+         * @return QueryFilter for the whole query
+         */
+        QueryFilter<T> parse() {
+            this.advance();
+            final QueryFilter<T> filter = this.or();
+            if (this.token.type != TokenType.END) {
+                throw this.error("Unexpected '" + this.token.text + "'");
+            }
+            return filter;
+        }
+
+        /**
+         * @return Filter for a list of XOR expressions joined with OR
+         */
+        private QueryFilter<T> or() {
+            final QueryFilter<T> first = this.xor();
+            if (!this.token.is("OR")) {
+                return first;
+            }
+            final List<QueryFilter<T>> list = new ArrayList<>();
+            list.add(first);
+            while (this.accept("OR")) {
+                list.add(this.xor());
+            }
+            return Query.or(list);
+        }
+
+        /**
+         * @return Filter for a list of AND expressions joined with XOR
+         */
+        private QueryFilter<T> xor() {
+            final QueryFilter<T> first = this.and();
+            if (!this.token.is("XOR")) {
+                return first;
+            }
+            final List<QueryFilter<T>> list = new ArrayList<>();
+            list.add(first);
+            while (this.accept("XOR")) {
+                list.add(this.and());
+            }
+            return new Query.Xor<>(list);
+        }
+
+        /**
+         * @return Filter for a list of unary expressions joined with AND
+         */
+        private QueryFilter<T> and() {
+            final QueryFilter<T> first = this.unary();
+            if (!this.token.is("AND")) {
+                return first;
+            }
+            final List<QueryFilter<T>> list = new ArrayList<>();
+            list.add(first);
+            while (this.accept("AND")) {
+                list.add(this.unary());
+            }
+            return Query.and(list);
+        }
+
+        /**
+         * @return Filter for a negation, a parenthesized query, or a predicate
+         */
+        private QueryFilter<T> unary() {
+            if (this.accept("NOT")) {
+                return Query.not(this.unary());
+            }
+            if (this.token.type == TokenType.OPEN) {
+                this.advance();
+                final QueryFilter<T> filter = this.or();
+                this.expect(TokenType.CLOSE, ")");
+                return filter;
+            }
+            return this.predicate();
+        }
+
+        /**
+         * @return Filter for a predicate on a property
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private QueryFilter<T> predicate() {
+            final Token name = this.token;
+            if (name.type != TokenType.NAME || KEYWORDS.contains(name.text.toUpperCase(Locale.ROOT))) {
+                throw this.error("Expected a property but found '" + name.text + "'");
+            }
+            final Property property;
+            try {
+                property = QueryParser.this.property(name.text);
+            } catch (IllegalArgumentException e) {
+                throw new QueryParseException(e.getMessage(), this.query, name.position, e);
+            }
+            this.referenced.add(name.text);
+            this.advance();
+            final Function getter = property.getter;
+
+            if (this.accept("IS")) {
+                final boolean negate = this.accept("NOT");
+                if (this.accept("NULL")) {
+                    return negate ? new Query.NotNull<>(getter) : new Query.IsNull<>(getter);
+                }
+                final Token empty = this.token;
+                if (this.accept("EMPTY")) {
+                    this.require(property.isText(), empty, "EMPTY requires a text property");
+                    return negate ? new Query.NotEmpty(property.text) : new Query.IsEmpty(property.text);
+                }
+                throw this.error("Expected NULL or EMPTY");
+            }
+
+            final boolean negate = this.accept("NOT");
+            final Token keyword = this.token;
+            final QueryFilter<T> filter;
+            if (this.accept("BETWEEN")) {
+                this.require(property.isComparable(), keyword, "BETWEEN requires a comparable property");
+                final Object low = this.literal(property);
+                if (!this.accept("AND")) {
+                    throw this.error("Expected AND");
+                }
+                final Object max = this.literal(property);
+                filter = new Query.BetweenOrEqual(getter, low, max);
+            } else if (this.accept("IN")) {
+                final List<QueryFilter<T>> list = new ArrayList<>();
+                for (final Object value : this.list(property)) {
+                    list.add(value == null ? new Query.IsNull<>(getter) : new Query.Match(getter, value));
+                }
+                filter = Query.or(list);
+            } else if (this.accept("CONTAINS")) {
+                this.require(property.isText(), keyword, "CONTAINS requires a text property");
+                if (this.accept("ANY")) {
+                    final List<String> values = new ArrayList<>();
+                    for (final Object value : this.list(null)) {
+                        values.add(value.toString());
+                    }
+                    filter = Query.containsAny(values, (Function) property.text);
+                } else {
+                    filter = Query.contains(this.string(), (Function) property.text);
+                }
+            } else if (!negate && this.token.type == TokenType.OPERATOR) {
+                filter = this.comparison(property);
+            } else if (!negate && property.type == Boolean.class) {
+                filter = new Query.Match(getter, Boolean.TRUE);
+            } else {
+                throw this.error(negate ? "Expected BETWEEN, IN or CONTAINS" : "Expected an operator");
+            }
+            return negate ? Query.not(filter) : filter;
+        }
+
+        /**
+         * @param property Property compared
+         * @return Filter comparing the property with a literal
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private QueryFilter<T> comparison(Property property) {
+            final Token operator = this.token;
+            this.advance();
+            final Function getter = property.getter;
+            final Object value = this.literal(property);
+
+            if (value == null) {
+                switch (operator.text) {
+                    case "=":
+                        return new Query.IsNull<>(getter);
+                    case "!=":
+                        return new Query.NotNull<>(getter);
+                    default:
+                        throw new QueryParseException("NULL may only be compared with = or !=", this.query,
+                                operator.position);
+                }
+            }
+            if (!"=".equals(operator.text) && !"!=".equals(operator.text)) {
+                this.require(property.isComparable(), operator, operator.text + " requires a comparable property");
+            }
+            switch (operator.text) {
+                case "=":
+                    return new Query.Match(getter, value);
+                case "!=":
+                    return Query.not(new Query.Match(getter, value));
+                case ">":
+                    return new Query.GreaterThan(getter, value);
+                case ">=":
+                    return Query.or(new Query.GreaterThan(getter, value), new Query.Match(getter, value));
+                case "<":
+                    return new Query.LessThan(getter, value);
+                case "<=":
+                    return Query.or(new Query.LessThan(getter, value), new Query.Match(getter, value));
+                default:
+                    throw new QueryParseException("Unknown operator '" + operator.text + "'", this.query,
+                            operator.position);
+            }
+        }
+
+        /**
+         * Read a parenthesized list of literals.
+         *
+         * @param property Property the literals are converted for, or null to read strings
+         * @return Values of the literals
+         */
+        private List<Object> list(Property property) {
+            this.expect(TokenType.OPEN, "(");
+            final List<Object> values = new ArrayList<>();
+            do {
+                values.add(property == null ? this.string() : this.literal(property));
+            } while (this.token.type == TokenType.COMMA && this.advance() != null);
+            this.expect(TokenType.CLOSE, ")");
+            return values;
+        }
+
+        /**
+         * @return Value of a quoted literal
+         */
+        private String string() {
+            if (this.token.type != TokenType.STRING) {
+                throw this.error("Expected a quoted string");
+            }
+            final String value = this.token.text;
+            this.advance();
+            return value;
+        }
+
+        /**
+         * Read a literal and convert it to the type of the property.
+         *
+         * @param property Property the literal is compared with
+         * @return Converted value, null for NULL
+         */
+        private Object literal(Property property) {
+            final Token literal = this.token;
+            if (literal.is("NULL")) {
+                this.advance();
+                return null;
+            }
+            if (literal.type != TokenType.STRING && literal.type != TokenType.NUMBER && (literal.type != TokenType.NAME
+                    || (KEYWORDS.contains(literal.text.toUpperCase(Locale.ROOT)) && !literal.is("TRUE")
+                    && !literal.is("FALSE")))) {
+                throw this.error("Expected a value");
+            }
+            this.advance();
+            try {
+                return Parser.convert(literal, property.type);
+            } catch (RuntimeException e) {
+                throw new QueryParseException("Value '" + literal.text + "' is not a valid "
+                        + property.type.getSimpleName(), this.query, literal.position, e);
+            }
+        }
+
+        /**
+         * Convert a literal to a type.
+         *
+         * @param literal Literal token
+         * @param type    Type to convert to
+         * @return Converted value
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Object convert(Token literal, Class<?> type) {
+            final String text = literal.text;
+            if (type == Object.class || type == Comparable.class || type == java.io.Serializable.class) {
+                if (literal.type == TokenType.STRING) {
+                    return text;
+                }
+                if (literal.type == TokenType.NAME) {
+                    return literal.is("TRUE") || literal.is("FALSE") ? (Object) Boolean.valueOf(text) : text;
+                }
+                return text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0
+                        ? (Object) Double.valueOf(text) : (Object) Long.valueOf(text);
+            }
+            if (type == String.class || type == CharSequence.class) {
+                return text;
+            }
+            if (type == Integer.class) {
+                return Integer.valueOf(text);
+            }
+            if (type == Long.class) {
+                return Long.valueOf(text);
+            }
+            if (type == Double.class) {
+                return Double.valueOf(text);
+            }
+            if (type == Float.class) {
+                return Float.valueOf(text);
+            }
+            if (type == Short.class) {
+                return Short.valueOf(text);
+            }
+            if (type == Byte.class) {
+                return Byte.valueOf(text);
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(text);
+            }
+            if (type == BigInteger.class) {
+                return new BigInteger(text);
+            }
+            if (type == Boolean.class) {
+                if (!"true".equalsIgnoreCase(text) && !"false".equalsIgnoreCase(text)) {
+                    throw new IllegalArgumentException(text);
+                }
+                return Boolean.valueOf(text);
+            }
+            if (type == Character.class) {
+                if (text.length() != 1) {
+                    throw new IllegalArgumentException(text);
+                }
+                return text.charAt(0);
+            }
+            if (type.isEnum()) {
+                for (final Object constant : type.getEnumConstants()) {
+                    if (((Enum) constant).name().equalsIgnoreCase(text)) {
+                        return constant;
+                    }
+                }
+                throw new IllegalArgumentException(text);
+            }
+            if (type == LocalDate.class) {
+                return LocalDate.parse(text);
+            }
+            if (type == LocalDateTime.class) {
+                return LocalDateTime.parse(text);
+            }
+            if (type == LocalTime.class) {
+                return LocalTime.parse(text);
+            }
+            if (type == ZonedDateTime.class) {
+                return ZonedDateTime.parse(text);
+            }
+            if (type == OffsetDateTime.class) {
+                return OffsetDateTime.parse(text);
+            }
+            if (type == Instant.class) {
+                return Instant.parse(text);
+            }
+            if (type == UUID.class) {
+                return UUID.fromString(text);
+            }
+            throw new IllegalArgumentException("Unsupported property type " + type.getName());
+        }
+
+        /**
+         * Consume the current token if it is the keyword.
+         *
+         * @param keyword Keyword to accept
+         * @return true if the keyword was consumed
+         */
+        private boolean accept(String keyword) {
+            if (this.token.is(keyword)) {
+                this.advance();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consume the current token, which must be of the type.
+         *
+         * @param type     Type of token expected
+         * @param expected Text describing the expected token
+         */
+        private void expect(TokenType type, String expected) {
+            if (this.token.type != type) {
+                throw this.error("Expected '" + expected + "'");
+            }
+            this.advance();
+        }
+
+        /**
+         * @param condition Condition which must hold
+         * @param at        Token the error is reported at
+         * @param message   Message if the condition does not hold
+         */
+        private void require(boolean condition, Token at, String message) {
+            if (!condition) {
+                throw new QueryParseException(message, this.query, at.position);
+            }
+        }
+
+        /**
+         * @param message Message of the error
+         * @return QueryParseException at the current token
+         */
+        private QueryParseException error(String message) {
+            return new QueryParseException(message, this.query, this.token.position);
+        }
+
+        /**
+         * Read the next token.
+         *
+         * @return Token read
+         */
+        private Token advance() {
+            final String text = this.query;
+            while (this.offset < text.length() && Character.isWhitespace(text.charAt(this.offset))) {
+                this.offset++;
+            }
+            final int start = this.offset;
+            if (start >= text.length()) {
+                return this.token = new Token(TokenType.END, "end of query", start);
+            }
+
+            final char c = text.charAt(start);
+            if (c == '(') {
+                this.offset++;
+                return this.token = new Token(TokenType.OPEN, "(", start);
+            }
+            if (c == ')') {
+                this.offset++;
+                return this.token = new Token(TokenType.CLOSE, ")", start);
+            }
+            if (c == ',') {
+                this.offset++;
+                return this.token = new Token(TokenType.COMMA, ",", start);
+            }
+            if (c == '"' || c == '\'') {
+                return this.token = this.quoted(c, start);
+            }
+            if (Character.isDigit(c) || ((c == '-' || c == '+' || c == '.') && start + 1 < text.length()
+                    && Character.isDigit(text.charAt(start + 1)))) {
+                this.offset++;
+                while (this.offset < text.length() && (Character.isLetterOrDigit(text.charAt(this.offset))
+                        || text.charAt(this.offset) == '.' || ((text.charAt(this.offset) == '-'
+                        || text.charAt(this.offset) == '+') && (text.charAt(this.offset - 1) == 'e'
+                        || text.charAt(this.offset - 1) == 'E')))) {
+                    this.offset++;
+                }
+                return this.token = new Token(TokenType.NUMBER, text.substring(start, this.offset), start);
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                this.offset++;
+                while (this.offset < text.length() && (Character.isJavaIdentifierPart(text.charAt(this.offset))
+                        || text.charAt(this.offset) == '.')) {
+                    this.offset++;
+                }
+                return this.token = new Token(TokenType.NAME, text.substring(start, this.offset), start);
+            }
+            if (c == '=' || c == '!' || c == '<' || c == '>') {
+                this.offset++;
+                String operator = String.valueOf(c);
+                if (this.offset < text.length()) {
+                    final char next = text.charAt(this.offset);
+                    if (next == '=' || (c == '<' && next == '>')) {
+                        this.offset++;
+                        operator = operator + next;
+                    }
+                }
+                switch (operator) {
+                    case "==":
+                        operator = "=";
+                        break;
+                    case "<>":
+                        operator = "!=";
+                        break;
+                    case "!":
+                        throw new QueryParseException("Unexpected '!'", text, start);
+                    default:
+                        break;
+                }
+                return this.token = new Token(TokenType.OPERATOR, operator, start);
+            }
+            throw new QueryParseException("Unexpected character '" + c + "'", text, start);
+        }
+
+        /**
+         * Read a quoted string, with \ escaping the next character.
+         *
+         * @param quote Quote character
+         * @param start Offset of the opening quote
+         * @return Token for the string
+         */
+        private Token quoted(char quote, int start) {
+            final StringBuilder builder = new StringBuilder();
+            this.offset++;
+            while (this.offset < this.query.length()) {
+                char c = this.query.charAt(this.offset++);
+                if (c == quote) {
+                    return new Token(TokenType.STRING, builder.toString(), start);
+                }
+                if (c == '\\' && this.offset < this.query.length()) {
+                    c = this.query.charAt(this.offset++);
+                    switch (c) {
+                        case 'n':
+                            c = '\n';
+                            break;
+                        case 't':
+                            c = '\t';
+                            break;
+                        case 'r':
+                            c = '\r';
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                builder.append(c);
+            }
+            throw new QueryParseException("Unterminated string", this.query, start);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package name.mymiller.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumented copy of a query tree, recording for every node how many times it ran, how many of those passed, and the
+ * time spent in it. Use the profile in place of the query, then read report() to see which node is expensive and how
+ * selective each one is. And, Or, Xor and Not are rebuilt around profiled children; other filters are profiled as a
+ * single node.
+ * <p>
+ * Times are inclusive of a node's children and measured with System.nanoTime(), so the timing itself adds some
+ * overhead to every node. And, Or and Xor process their children in parallel, so the time of the children may add up to
+ * more than the time of their parent.
+ *
+ * @param <T> Type of object to filter
+ */
+public class QueryProfile<T> implements QueryFilter<T> {
+    /**
+     * Profiled root of the tree
+     */
+    private final Node<T> root;
+
+    /**
+     * Create a profile of a query tree.
+     *
+     * @param query Query to profile
+     */
+    public QueryProfile(QueryFilter<T> query) {
+        if (query == null) {
+            throw new NullPointerException("query may not be null");
+        }
+        this.root = QueryProfile.instrument(query);
+    }
+
+    /**
+     * Describe the structure of a query tree, one node per line, indented by depth.
+     *
+     * @param query Query to describe
+     * @return Description of the tree
+     */
+    public static String explain(QueryFilter<?> query) {
+        final StringBuilder builder = new StringBuilder();
+        QueryProfile.explain(query, 0, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Describe a node and its children.
+     *
+     * @param query   Node to describe
+     * @param depth   Depth of the node in the tree
+     * @param builder Builder receiving the description
+     */
+    private static void explain(QueryFilter<?> query, int depth, StringBuilder builder) {
+        builder.append("  ".repeat(depth)).append(QueryProfile.describe(query)).append('\n');
+        for (final QueryFilter<?> child : QueryProfile.children(query)) {
+            QueryProfile.explain(child, depth + 1, builder);
+        }
+    }
+
+    /**
+     * Describe a single node, without its children.
+     *
+     * @param query Node to describe
+     * @return Name of the node and its parameters
+     */
+    static String describe(QueryFilter<?> query) {
+        if (query == null) {
+            return "null";
+        }
+        final StringBuilder builder = new StringBuilder(query.getClass().getSimpleName());
+        if (query instanceof Query.Contains) {
+            final Query.Contains<?> contains = (Query.Contains<?>) query;
+            builder.append(" \"").append(contains.getValue()).append('"');
+            if (contains.isIgnoreCase()) {
+                builder.append(" ignoreCase");
+            }
+        } else if (query instanceof Query.ContainsAny) {
+            final Query.ContainsAny<?> containsAny = (Query.ContainsAny<?>) query;
+            builder.append(' ').append(containsAny.getValues());
+            if (containsAny.isIgnoreCase()) {
+                builder.append(" ignoreCase");
+            }
+        } else if (query instanceof Query.GreaterThan) {
+            builder.append(" > ").append(((Query.GreaterThan<?, ?>) query).getValue());
+        } else if (query instanceof Query.LessThan) {
+            builder.append(" < ").append(((Query.LessThan<?, ?>) query).getValue());
+        } else if (query instanceof Query.Match) {
+            builder.append(" = ").append(((Query.Match<?, ?>) query).getValue());
+        } else if (query instanceof Query.Between) {
+            final Query.Between<?, ?> between = (Query.Between<?, ?>) query;
+            builder.append(' ').append(between.getLow()).append(" .. ").append(between.getMax());
+        } else if (query instanceof Query.BetweenOrEqual) {
+            final Query.BetweenOrEqual<?, ?> between = (Query.BetweenOrEqual<?, ?>) query;
+            builder.append(' ').append(between.getLow()).append(" .. ").append(between.getMax());
+        }
+        if (query instanceof AbstractQuery && !(query instanceof Query.Not)) {
+            builder.append(" weight=").append(((AbstractQuery<?>) query).getWeight());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param query Node of a tree
+     * @return Children of the node, empty for leaf nodes.
+     */
+    private static List<? extends QueryFilter<?>> children(QueryFilter<?> query) {
+        if (query instanceof Query.And) {
+            return ((Query.And<?>) query).getFilters();
+        }
+        if (query instanceof Query.Or) {
+            return ((Query.Or<?>) query).getFilters();
+        }
+        if (query instanceof Query.Xor) {
+            return ((Query.Xor<?>) query).getFilters();
+        }
+        if (query instanceof Query.Not) {
+            return Collections.singletonList(((Query.Not<?>) query).getFilter());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Rebuild a tree with every node wrapped in a profiled Node.
+     *
+     * @param query Node to instrument
+     * @param <T>   Type of object to filter
+     * @return Profiled node
+     */
+    private static <T> Node<T> instrument(QueryFilter<T> query) {
+        final List<Node<T>> children = new ArrayList<>();
+        final QueryFilter<T> rebuilt;
+        if (query instanceof Query.And || query instanceof Query.Or || query instanceof Query.Xor) {
+            final List<QueryFilter<T>> list = new ArrayList<>();
+            for (final QueryFilter<T> child : QueryProfile.filters(query)) {
+                if (child != null) {
+                    final Node<T> node = QueryProfile.instrument(child);
+                    children.add(node);
+                    list.add(node);
+                }
+            }
+            if (query instanceof Query.And) {
+                rebuilt = new Query.And<>(list);
+            } else if (query instanceof Query.Or) {
+                rebuilt = new Query.Or<>(list);
+            } else {
+                rebuilt = new Query.Xor<>(list);
+            }
+        } else if (query instanceof Query.Not) {
+            final Query.Not<T> not = (Query.Not<T>) query;
+            final Node<T> node = QueryProfile.instrument(not.getFilter());
+            children.add(node);
+            rebuilt = new Query.Not<>(node, not.getWeight());
+        } else {
+            rebuilt = query;
+        }
+        return new Node<>(QueryProfile.describe(query), rebuilt, children);
+    }
+
+    /**
+     * @param query And, Or or Xor filter
+     * @param <T>   Type of object to filter
+     * @return Filters wrapped by the query
+     */
+    private static <T> List<QueryFilter<T>> filters(QueryFilter<T> query) {
+        if (query instanceof Query.And) {
+            return ((Query.And<T>) query).getFilters();
+        }
+        if (query instanceof Query.Or) {
+            return ((Query.Or<T>) query).getFilters();
+        }
+        return ((Query.Xor<T>) query).getFilters();
+    }
+
+    /**
+     * Process an object through the profiled tree.
+     *
+     * @param object Object the filter should check
+     * @return Double indicating 0 if not to include, or Double > 0 indicating weight of matching
+     */
+    @Override
+    public Double process(T object) {
+        return this.root.process(object);
+    }
+
+    /**
+     * @return Profiled root of the tree
+     */
+    public Node<T> getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Clear the counts and times of every node.
+     */
+    public void reset() {
+        this.root.reset();
+    }
+
+    /**
+     * Report the tree with the counts and times recorded, one node per line, indented by depth.
+     *
+     * @return Report of the profile
+     */
+    public String report() {
+        final StringBuilder builder = new StringBuilder();
+        this.root.report(0, builder);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.report();
+    }
+
+    /**
+     * Profiled node of a query tree.
+     *
+     * @param <T> Type of object to filter
+     */
+    public static class Node<T> implements QueryFilter<T> {
+        /**
+         * Description of the node
+         */
+        private final String name;
+        /**
+         * Filter run by this node, rebuilt around profiled children
+         */
+        private final QueryFilter<T> filter;
+        /**
+         * Profiled children of this node
+         */
+        private final List<Node<T>> children;
+        /**
+         * Number of times this node ran
+         */
+        private final LongAdder invocations = new LongAdder();
+        /**
+         * Number of times this node passed
+         */
+        private final LongAdder passes = new LongAdder();
+        /**
+         * Total time spent in this node, including its children
+         */
+        private final LongAdder nanos = new LongAdder();
+
+        /**
+         * @param name     Description of the node
+         * @param filter   Filter run by this node
+         * @param children Profiled children of this node
+         */
+        Node(String name, QueryFilter<T> filter, List<Node<T>> children) {
+            this.name = name;
+            this.filter = filter;
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        /**
+         * Run the filter, recording the count and time.
+         *
+         * @param object Object the filter should check
+         * @return Double indicating 0 if not to include, or Double > 0 indicating weight of matching
+         */
+        @Override
+        public Double process(T object) {
+            final long start = System.nanoTime();
+            final Double weight = this.filter.process(object);
+            this.nanos.add(System.nanoTime() - start);
+            this.invocations.increment();
+            if (weight != null && weight > 0) {
+                this.passes.increment();
+            }
+            return weight;
+        }
+
+        /**
+         * @return Description of the node
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return Profiled children of this node
+         */
+        public List<Node<T>> getChildren() {
+            return this.children;
+        }
+
+        /**
+         * @return Number of times this node ran
+         */
+        public long getInvocations() {
+            return this.invocations.sum();
+        }
+
+        /**
+         * @return Number of times this node passed
+         */
+        public long getPasses() {
+            return this.passes.sum();
+        }
+
+        /**
+         * @return Fraction of runs that passed, 0 if the node never ran.
+         */
+        public double getPassRate() {
+            final long invocations = this.getInvocations();
+            return invocations == 0 ? 0D : (double) this.getPasses() / invocations;
+        }
+
+        /**
+         * @return Total time spent in this node in nanoseconds, including its children.
+         */
+        public long getNanos() {
+            return this.nanos.sum();
+        }
+
+        /**
+         * @return Average time of a run in nanoseconds, 0 if the node never ran.
+         */
+        public double getAverageNanos() {
+            final long invocations = this.getInvocations();
+            return invocations == 0 ? 0D : (double) this.getNanos() / invocations;
+        }
+
+        /**
+         * Clear the counts and times of this node and its children.
+         */
+        void reset() {
+            this.invocations.reset();
+            this.passes.reset();
+            this.nanos.reset();
+            this.children.forEach(Node::reset);
+        }
+
+        /**
+         * Report this node and its children.
+         *
+         * @param depth   Depth of the node in the tree
+         * @param builder Builder receiving the report
+         */
+        void report(int depth, StringBuilder builder) {
+            builder.append("  ".repeat(depth)).append(this.name)
+                    .append(String.format("  [calls=%d pass=%.1f%% total=%.3fms avg=%.0fns]",
+                            this.getInvocations(), this.getPassRate() * 100D, this.getNanos() / 1_000_000D,
+                            this.getAverageNanos()))
+                    .append('\n');
+            for (final Node<T> child : this.children) {
+                child.report(depth + 1, builder);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package name.mymiller.query;
+
+import java.util.*;
+
+/**
+ * Precompiled substring search, built once for a needle (or set of needles) and reused for every text searched.
+ * Single needles use Boyer-Moore-Horspool, sets of needles use Aho-Corasick. Both support case-insensitive matching by
+ * folding characters as they are compared, so no lower/upper case copies of the text are allocated.
+ */
+public abstract class StringMatcher {
+    /**
+     * Case sensitive needles shorter than this use String.indexOf(), which the JIT compiles to a vectorized intrinsic
+     * that out performs Horspool on short needles.
+     */
+    private static final int HORSPOOL_MIN_LENGTH = 8;
+
+    /**
+     * Indicates if matching ignores case
+     */
+    protected final boolean ignoreCase;
+
+    /**
+     * @param ignoreCase Indicates if matching ignores case
+     */
+    protected StringMatcher(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Compile a matcher for a single needle.
+     *
+     * @param needle     String to search for
+     * @param ignoreCase Indicates if matching ignores case
+     * @return StringMatcher for the needle
+     */
+    public static StringMatcher of(String needle, boolean ignoreCase) {
+        if (needle == null) {
+            throw new NullPointerException("needle may not be null");
+        }
+        return new Horspool(needle, ignoreCase);
+    }
+
+    /**
+     * Compile a matcher finding any of the needles.
+     *
+     * @param needles    Strings to search for
+     * @param ignoreCase Indicates if matching ignores case
+     * @return StringMatcher for the needles
+     */
+    public static StringMatcher any(Collection<String> needles, boolean ignoreCase) {
+        if (needles == null) {
+            throw new NullPointerException("needles may not be null");
+        }
+        return new AhoCorasick(needles, ignoreCase);
+    }
+
+    /**
+     * Fold a character for case-insensitive comparison.
+     *
+     * @param c Character to fold
+     * @return Folded character
+     */
+    static char fold(char c) {
+        if (c < 128) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Fold every character of a String.
+     *
+     * @param value String to fold
+     * @return Folded String
+     */
+    static String fold(String value) {
+        final char[] chars = value.toCharArray();
+        for (int index = 0; index < chars.length; index++) {
+            chars[index] = StringMatcher.fold(chars[index]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return Indicates if matching ignores case
+     */
+    public boolean isIgnoreCase() {
+        return this.ignoreCase;
+    }
+
+    /**
+     * @param text Text to search
+     * @return true if a needle is found in the text.
+     */
+    public abstract boolean find(CharSequence text);
+
+    /**
+     * @param text Text to compare
+     * @return true if the whole text equals a needle.
+     */
+    public abstract boolean matchesExactly(CharSequence text);
+
+    /**
+     * Compare two character sequences, folding case if configured.
+     *
+     * @param text   Text to compare
+     * @param needle Needle to compare, already folded if ignoring case
+     * @return true if equal
+     */
+    protected boolean equal(CharSequence text, String needle) {
+        if (text.length() != needle.length()) {
+            return false;
+        }
+        for (int index = 0; index < needle.length(); index++) {
+            final char c = this.ignoreCase ? StringMatcher.fold(text.charAt(index)) : text.charAt(index);
+            if (c != needle.charAt(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Boyer-Moore-Horspool search for a single needle.
+     */
+    private static class Horspool extends StringMatcher {
+        /**
+         * Needle as given
+         */
+        private final String needle;
+        /**
+         * Needle characters, folded if ignoring case
+         */
+        private final char[] pattern;
+        /**
+         * Bad character shift, indexed on the low byte of the character. Characters sharing a low byte share the
+         * smallest shift, which keeps the table small while remaining correct.
+         */
+        private final int[] shift;
+
+        /**
+         * @param needle     String to search for
+         * @param ignoreCase Indicates if matching ignores case
+         */
+        Horspool(String needle, boolean ignoreCase) {
+            super(ignoreCase);
+            this.needle = ignoreCase ? StringMatcher.fold(needle) : needle;
+            this.pattern = this.needle.toCharArray();
+            this.shift = new int[256];
+            Arrays.fill(this.shift, this.pattern.length);
+            for (int index = 0; index < this.pattern.length - 1; index++) {
+                this.shift[this.pattern[index] & 0xFF] = this.pattern.length - 1 - index;
+            }
+        }
+
+        @Override
+        public boolean find(CharSequence text) {
+            final int length = this.pattern.length;
+            if (length == 0) {
+                return true;
+            }
+            if (!this.ignoreCase && length < HORSPOOL_MIN_LENGTH && text instanceof String) {
+                return ((String) text).indexOf(this.needle) >= 0;
+            }
+
+            final int last = text.length() - length;
+            int position = 0;
+            while (position <= last) {
+                int index = length - 1;
+                char c = this.charAt(text, position + index);
+                final char tail = c;
+                while (c == this.pattern[index]) {
+                    if (index == 0) {
+                        return true;
+                    }
+                    index--;
+                    c = this.charAt(text, position + index);
+                }
+                position += this.shift[tail & 0xFF];
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matchesExactly(CharSequence text) {
+            return this.equal(text, this.needle);
+        }
+
+        /**
+         * @param text  Text to read
+         * @param index Index in the text
+         * @return Character at index, folded if ignoring case
+         */
+        private char charAt(CharSequence text, int index) {
+            return this.ignoreCase ? StringMatcher.fold(text.charAt(index)) : text.charAt(index);
+        }
+    }
+
+    /**
+     * Aho-Corasick automaton finding any of a set of needles in one pass over the text. Transitions for ASCII
+     * characters are resolved into a dense table, other characters use sorted edge arrays and failure links.
+     */
+    private static class AhoCorasick extends StringMatcher {
+        /**
+         * Size of the dense transition table per state
+         */
+        private static final int ASCII = 128;
+        /**
+         * Needles, folded if ignoring case
+         */
+        private final Set<String> needles;
+        /**
+         * Dense transitions for ASCII characters, indexed state * ASCII + character
+         */
+        private final int[] ascii;
+        /**
+         * Sorted non ASCII edge characters per state
+         */
+        private final char[][] edgeKeys;
+        /**
+         * Targets of the non ASCII edges per state
+         */
+        private final int[][] edgeTargets;
+        /**
+         * Failure link per state
+         */
+        private final int[] failure;
+        /**
+         * States at which a needle ends
+         */
+        private final boolean[] terminal;
+
+        /**
+         * @param needles    Strings to search for
+         * @param ignoreCase Indicates if matching ignores case
+         */
+        AhoCorasick(Collection<String> needles, boolean ignoreCase) {
+            super(ignoreCase);
+            this.needles = new HashSet<>();
+            for (final String needle : needles) {
+                this.needles.add(ignoreCase ? StringMatcher.fold(needle) : needle);
+            }
+
+            final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+            final List<Boolean> ends = new ArrayList<>();
+            trie.add(new TreeMap<>());
+            ends.add(false);
+            for (final String needle : this.needles) {
+                int state = 0;
+                for (int index = 0; index < needle.length(); index++) {
+                    final Integer next = trie.get(state).get(needle.charAt(index));
+                    if (next == null) {
+                        trie.add(new TreeMap<>());
+                        ends.add(false);
+                        trie.get(state).put(needle.charAt(index), trie.size() - 1);
+                        state = trie.size() - 1;
+                    } else {
+                        state = next;
+                    }
+                }
+                ends.set(state, true);
+            }
+
+            final int states = trie.size();
+            this.ascii = new int[states * ASCII];
+            this.edgeKeys = new char[states][];
+            this.edgeTargets = new int[states][];
+            this.failure = new int[states];
+            this.terminal = new boolean[states];
+
+            for (int state = 0; state < states; state++) {
+                this.terminal[state] = ends.get(state);
+                final Map<Character, Integer> other = trie.get(state).tailMap((char) ASCII);
+                this.edgeKeys[state] = new char[other.size()];
+                this.edgeTargets[state] = new int[other.size()];
+                int edge = 0;
+                for (final Map.Entry<Character, Integer> entry : other.entrySet()) {
+                    this.edgeKeys[state][edge] = entry.getKey();
+                    this.edgeTargets[state][edge] = entry.getValue();
+                    edge++;
+                }
+            }
+
+            final ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (final Map.Entry<Character, Integer> entry : trie.get(0).entrySet()) {
+                this.failure[entry.getValue()] = 0;
+                queue.add(entry.getValue());
+            }
+            for (int c = 0; c < ASCII; c++) {
+                this.ascii[c] = trie.get(0).getOrDefault((char) c, 0);
+            }
+            while (!queue.isEmpty()) {
+                final int state = queue.poll();
+                this.terminal[state] |= this.terminal[this.failure[state]];
+                for (final Map.Entry<Character, Integer> entry : trie.get(state).entrySet()) {
+                    final int child = entry.getValue();
+                    this.failure[child] = this.step(this.failure[state], entry.getKey());
+                    queue.add(child);
+                }
+                for (int c = 0; c < ASCII; c++) {
+                    final Integer child = trie.get(state).get((char) c);
+                    this.ascii[state * ASCII + c] = child != null ? child : this.ascii[this.failure[state] * ASCII + c];
+                }
+            }
+        }
+
+        @Override
+        public boolean find(CharSequence text) {
+            if (this.terminal[0]) {
+                return true;
+            }
+            int state = 0;
+            for (int index = 0; index < text.length(); index++) {
+                final char c = this.ignoreCase ? StringMatcher.fold(text.charAt(index)) : text.charAt(index);
+                state = this.step(state, c);
+                if (this.terminal[state]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matchesExactly(CharSequence text) {
+            return this.needles.contains(this.ignoreCase ? StringMatcher.fold(text.toString()) : text.toString());
+        }
+
+        /**
+         * Follow the transition for a character, using failure links for non ASCII characters.
+         *
+         * @param state Current state
+         * @param c     Character read
+         * @return Next state
+         */
+        private int step(int state, char c) {
+            if (c < ASCII) {
+                return this.ascii[state * ASCII + c];
+            }
+            while (true) {
+                final int edge = Arrays.binarySearch(this.edgeKeys[state], c);
+                if (edge >= 0) {
+                    return this.edgeTargets[state][edge];
+                }
+                if (state == 0) {
+                    return 0;
+                }
+                state = this.failure[state];
+            }
+        }
+    }
+}
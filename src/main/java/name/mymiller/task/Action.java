@@ -1,7 +1,10 @@
 package name.mymiller.task;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
 
 /**
@@ -13,12 +16,39 @@ public abstract class Action extends RecursiveAction implements Runnable {
      * name.mymiller.action.
      */
     protected List<Action> subJobs = null;
+    /**
+     * Actions that must complete before this one runs in a JobGraph.
+     */
+    protected List<Action> dependencies = null;
 
     /**
      * Constructor allowing direct subclassing
      */
     protected Action() {
         this.subJobs = new ArrayList<>();
+        this.dependencies = new ArrayList<>();
+    }
+
+    /**
+     * Declare actions that must complete before this one when run in a JobGraph.
+     *
+     * @param actions Actions this one depends on
+     * @return This action
+     */
+    public Action dependsOn(final Action... actions) {
+        for (final Action action : actions) {
+            if (!this.dependencies.contains(action)) {
+                this.dependencies.add(Objects.requireNonNull(action, "action may not be null"));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return Actions that must complete before this one
+     */
+    public List<Action> getDependencies() {
+        return Collections.unmodifiableList(this.dependencies);
     }
 
     /**
@@ -68,6 +98,9 @@ public abstract class Action extends RecursiveAction implements Runnable {
      * <p>
      * The general contract of the method {@code run} is that it may
      * take any action whatsoever.
+     * <p>
+     * Sub-jobs are forked together and joined before postProcess, on the
+     * fork join pool of the TaskManager when not already running in one.
      *
      * @see Thread#run()
      */
@@ -75,8 +108,17 @@ public abstract class Action extends RecursiveAction implements Runnable {
     public void run() {
         this.preProcess();
         this.process();
-        for (final Action action : this.subJobs) {
-            TaskManager.getInstance().invoke(action);
+        if (!this.subJobs.isEmpty()) {
+            for (final Action action : this.subJobs) {
+                if (action.isDone()) {
+                    action.reinitialize();
+                }
+            }
+            if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(this.subJobs);
+            } else {
+                TaskManager.getInstance().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(this.subJobs)));
+            }
         }
         this.postProcess();
     }
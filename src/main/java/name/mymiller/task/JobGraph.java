@@ -0,0 +1,549 @@
+package name.mymiller.task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Graph of Actions run in dependency order. Each action starts on the executor
+ * as soon as every action it depends on has completed, so independent branches
+ * run in parallel rather than in hand written stages.
+ * <p>
+ * An action that fails or is cancelled does not run its dependents, which end
+ * SKIPPED or CANCELLED, while branches not depending on it carry on. Once
+ * finished the execution reports each action's timings and the critical path,
+ * the chain of dependent actions that bounded the total time.
+ *
+ * @author jmiller
+ */
+public class JobGraph {
+    /**
+     * Actions of the graph in the order added, dependencies included
+     */
+    private final List<Action> actions = new ArrayList<>();
+    /**
+     * Set of the actions, by identity
+     */
+    private final Map<Action, Boolean> members = new IdentityHashMap<>();
+
+    /**
+     * Add an action to the graph, with every action it depends on.
+     *
+     * @param action Action to add
+     * @return This graph
+     */
+    public JobGraph add(final Action action) {
+        final Deque<Action> waiting = new ArrayDeque<>();
+        waiting.push(Objects.requireNonNull(action, "action may not be null"));
+        while (!waiting.isEmpty()) {
+            final Action next = waiting.pop();
+            if (this.members.put(next, Boolean.TRUE) == null) {
+                this.actions.add(next);
+                next.getDependencies().forEach(waiting::push);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Add actions to the graph, with every action they depend on.
+     *
+     * @param actions Actions to add
+     * @return This graph
+     */
+    public JobGraph addAll(final Action... actions) {
+        for (final Action action : actions) {
+            this.add(action);
+        }
+        return this;
+    }
+
+    /**
+     * @return Actions of the graph
+     */
+    public List<Action> getActions() {
+        return Collections.unmodifiableList(this.actions);
+    }
+
+    /**
+     * Add the dependencies declared since their dependents were added, so the
+     * graph again holds every action its actions depend on.
+     */
+    private void collect() {
+        for (int index = 0; index < this.actions.size(); index++) {
+            for (final Action dependency : this.actions.get(index).getDependencies()) {
+                if (this.members.put(dependency, Boolean.TRUE) == null) {
+                    this.actions.add(dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Order the actions so each follows its dependencies, first adding any
+     * dependency declared after its dependent was added.
+     *
+     * @return Actions in dependency order
+     * @throws IllegalStateException if the dependencies form a cycle.
+     */
+    public List<Action> sort() {
+        this.collect();
+        final Map<Action, Integer> remaining = new IdentityHashMap<>();
+        final Map<Action, List<Action>> dependents = new IdentityHashMap<>();
+        final Deque<Action> ready = new ArrayDeque<>();
+        for (final Action action : this.actions) {
+            remaining.put(action, action.getDependencies().size());
+            for (final Action dependency : action.getDependencies()) {
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(action);
+            }
+            if (action.getDependencies().isEmpty()) {
+                ready.add(action);
+            }
+        }
+        final List<Action> sorted = new ArrayList<>(this.actions.size());
+        while (!ready.isEmpty()) {
+            final Action action = ready.poll();
+            sorted.add(action);
+            for (final Action dependent : dependents.getOrDefault(action, Collections.emptyList())) {
+                if (remaining.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (sorted.size() < this.actions.size()) {
+            throw new IllegalStateException("Dependency cycle through: " + this.cycle(remaining));
+        }
+        return sorted;
+    }
+
+    /**
+     * Find a cycle among the actions left unsorted. Every such action has a
+     * dependency also left, so following them must come back round.
+     *
+     * @param remaining Count of unsorted dependencies by action
+     * @return Actions of a cycle, each depending on the next
+     */
+    private List<Action> cycle(final Map<Action, Integer> remaining) {
+        final Map<Action, Integer> visited = new IdentityHashMap<>();
+        final List<Action> path = new ArrayList<>();
+        Action action = null;
+        for (final Action candidate : this.actions) {
+            if (remaining.getOrDefault(candidate, 0) > 0) {
+                action = candidate;
+                break;
+            }
+        }
+        while (!visited.containsKey(action)) {
+            visited.put(action, path.size());
+            path.add(action);
+            for (final Action dependency : action.getDependencies()) {
+                if (remaining.getOrDefault(dependency, 0) > 0) {
+                    action = dependency;
+                    break;
+                }
+            }
+        }
+        return path.subList(visited.get(action), path.size());
+    }
+
+    /**
+     * Run the graph on the pool of the TaskManager.
+     *
+     * @return Execution of the graph
+     * @throws IllegalStateException if the dependencies form a cycle.
+     */
+    public Execution execute() {
+        return this.execute(TaskManager.getInstance().getPool());
+    }
+
+    /**
+     * Run the graph from a lane of the TaskManager.
+     *
+     * @param lane Name of the lane
+     * @return Execution of the graph
+     * @throws IllegalStateException if the dependencies form a cycle.
+     */
+    public Execution execute(final String lane) {
+        final LaneScheduler scheduler = TaskManager.getInstance().getLaneScheduler();
+        if (scheduler.getLane(lane) == null) {
+            throw new IllegalArgumentException("No lane named: " + lane);
+        }
+        return this.execute(runnable -> scheduler.execute(lane, runnable));
+    }
+
+    /**
+     * Run the graph, starting each action on the executor once its dependencies
+     * have completed.
+     *
+     * @param executor Executor to run the actions on
+     * @return Execution of the graph
+     * @throws IllegalStateException if the dependencies form a cycle.
+     */
+    public Execution execute(final Executor executor) {
+        return new Execution(this.sort(), executor);
+    }
+
+    /**
+     * State of an action within an execution
+     */
+    public enum State {
+        /**
+         * Waiting on its dependencies
+         */
+        PENDING,
+        /**
+         * Running on the executor
+         */
+        RUNNING,
+        /**
+         * Ran without throwing
+         */
+        COMPLETED,
+        /**
+         * Threw while running, or the executor refused to run it
+         */
+        FAILED,
+        /**
+         * Not run as a dependency failed
+         */
+        SKIPPED,
+        /**
+         * Not run as the execution or a dependency was cancelled
+         */
+        CANCELLED
+    }
+
+    /**
+     * An action within an execution, with its state and timings
+     */
+    public static final class Node {
+        /**
+         * Action run by the node
+         */
+        private final Action action;
+        /**
+         * Nodes of the dependencies
+         */
+        private final List<Node> dependencies;
+        /**
+         * Completes when the action has run, or will never run
+         */
+        private CompletableFuture<Void> future;
+        /**
+         * State of the action
+         */
+        private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+        /**
+         * System.nanoTime when the action started, or 0
+         */
+        private volatile long startNanos;
+        /**
+         * System.nanoTime when the action finished, or 0
+         */
+        private volatile long endNanos;
+        /**
+         * Exception thrown by the action, or null
+         */
+        private volatile Throwable error;
+
+        /**
+         * @param action       Action run by the node
+         * @param dependencies Nodes of the dependencies
+         */
+        private Node(final Action action, final List<Node> dependencies) {
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Run the action, recording its state and timings, unless the node was
+         * cancelled first.
+         */
+        private void run() {
+            if (!this.state.compareAndSet(State.PENDING, State.RUNNING)) {
+                return;
+            }
+            this.startNanos = System.nanoTime();
+            try {
+                this.action.run();
+                this.state.set(State.COMPLETED);
+            } catch (final RuntimeException | Error e) {
+                this.error = e;
+                this.state.set(State.FAILED);
+                throw e;
+            } finally {
+                this.endNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * Cancel the node if its action has not started.
+         *
+         * @return true if the node was cancelled
+         */
+        private boolean cancel() {
+            if (this.state.compareAndSet(State.PENDING, State.CANCELLED)) {
+                this.future.cancel(false);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Record why an action that never ran ended. With every dependency
+         * completed the node itself failed to start, as when the executor rejects
+         * it; otherwise it ends with the failure or cancellation of a dependency.
+         *
+         * @param thrown Exception completing the future
+         */
+        private void settle(final Throwable thrown) {
+            if (thrown == null) {
+                return;
+            }
+            final Throwable cause = thrown instanceof CompletionException && thrown.getCause() != null
+                    ? thrown.getCause() : thrown;
+            boolean ready = true;
+            for (final Node dependency : this.dependencies) {
+                ready &= dependency.getState() == State.COMPLETED;
+            }
+            if (ready && !(cause instanceof CancellationException)) {
+                if (this.state.compareAndSet(State.PENDING, State.FAILED)) {
+                    this.error = cause;
+                }
+            } else {
+                this.state.compareAndSet(State.PENDING,
+                        cause instanceof CancellationException ? State.CANCELLED : State.SKIPPED);
+            }
+        }
+
+        /**
+         * @return Action run by the node
+         */
+        public Action getAction() {
+            return this.action;
+        }
+
+        /**
+         * @return State of the action
+         */
+        public State getState() {
+            return this.state.get();
+        }
+
+        /**
+         * @return Exception thrown by the action, or null
+         */
+        public Throwable getError() {
+            return this.error;
+        }
+
+        /**
+         * @return System.nanoTime when the action started, or 0 if it never did
+         */
+        public long getStartNanos() {
+            return this.startNanos;
+        }
+
+        /**
+         * @return System.nanoTime when the action finished, or 0 if it has not
+         */
+        public long getEndNanos() {
+            return this.endNanos;
+        }
+
+        /**
+         * @return Nanoseconds the action ran, or 0 if it has not finished
+         */
+        public long getDurationNanos() {
+            return this.endNanos == 0 ? 0 : this.endNanos - this.startNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" + "action=" + this.action + ", state=" + this.state.get() + ", durationNanos="
+                    + this.getDurationNanos() + '}';
+        }
+    }
+
+    /**
+     * A run of the graph
+     */
+    public static final class Execution {
+        /**
+         * Nodes in dependency order
+         */
+        private final List<Node> nodes;
+        /**
+         * Completes once every node has settled its state, exceptionally if any
+         * did not complete
+         */
+        private final CompletableFuture<Void> future;
+
+        /**
+         * Start the actions with no dependencies and chain the rest.
+         *
+         * @param sorted   Actions in dependency order
+         * @param executor Executor to run the actions on
+         */
+        private Execution(final List<Action> sorted, final Executor executor) {
+            final Map<Action, Node> byAction = new IdentityHashMap<>();
+            final List<Node> nodes = new ArrayList<>(sorted.size());
+            final CompletableFuture<?>[] futures = new CompletableFuture<?>[sorted.size()];
+            for (final Action action : sorted) {
+                final List<Node> dependencies = new ArrayList<>(action.getDependencies().size());
+                final CompletableFuture<?>[] inputs = new CompletableFuture<?>[action.getDependencies().size()];
+                for (final Action dependency : action.getDependencies()) {
+                    final Node input = byAction.get(dependency);
+                    if (input == null) {
+                        throw new IllegalStateException("Dependency " + dependency + " of " + action
+                                + " is not in the graph");
+                    }
+                    inputs[dependencies.size()] = input.future;
+                    dependencies.add(input);
+                }
+                final Node node = new Node(action, dependencies);
+                node.future = CompletableFuture.allOf(inputs).thenRunAsync(node::run, executor);
+                futures[nodes.size()] = node.future.whenComplete((ignored, thrown) -> node.settle(thrown));
+                byAction.put(action, node);
+                nodes.add(node);
+            }
+            this.nodes = Collections.unmodifiableList(nodes);
+            this.future = CompletableFuture.allOf(futures);
+        }
+
+        /**
+         * @return Completes once every action has run or been skipped, exceptionally
+         * if any did not complete
+         */
+        public CompletableFuture<Void> getFuture() {
+            return this.future;
+        }
+
+        /**
+         * Wait until every action has run or been skipped.
+         *
+         * @return This execution
+         */
+        public Execution await() {
+            try {
+                this.future.join();
+            } catch (final CompletionException | CancellationException e) {
+                // reported through the nodes
+            }
+            return this;
+        }
+
+        /**
+         * Cancel the actions not yet started. Their dependents end CANCELLED;
+         * running actions finish.
+         */
+        public void cancel() {
+            for (final Node node : this.nodes) {
+                node.cancel();
+            }
+        }
+
+        /**
+         * @return true if every action completed
+         */
+        public boolean isSuccessful() {
+            for (final Node node : this.nodes) {
+                if (node.getState() != State.COMPLETED) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return Nodes in dependency order
+         */
+        public List<Node> getNodes() {
+            return this.nodes;
+        }
+
+        /**
+         * @param action Action of the graph
+         * @return Node of the action, or null if not in the graph.
+         */
+        public Node getNode(final Action action) {
+            for (final Node node : this.nodes) {
+                if (node.action == action) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return Nanoseconds from the first action starting to the last finishing
+         */
+        public long getElapsedNanos() {
+            long start = Long.MAX_VALUE;
+            long end = Long.MIN_VALUE;
+            for (final Node node : this.nodes) {
+                if (node.endNanos != 0) {
+                    start = Math.min(start, node.startNanos);
+                    end = Math.max(end, node.endNanos);
+                }
+            }
+            return end < start ? 0 : end - start;
+        }
+
+        /**
+         * Find the chain of dependent actions with the greatest total run time,
+         * the least time the graph could take however many workers it had.
+         *
+         * @return Nodes of the critical path, first to last
+         */
+        public List<Node> getCriticalPath() {
+            final Map<Node, Long> finish = new IdentityHashMap<>();
+            final Map<Node, Node> previous = new IdentityHashMap<>();
+            Node last = null;
+            for (final Node node : this.nodes) {
+                long longest = 0;
+                Node via = null;
+                for (final Node dependency : node.dependencies) {
+                    if (via == null || finish.get(dependency) > longest) {
+                        longest = finish.get(dependency);
+                        via = dependency;
+                    }
+                }
+                if (via != null) {
+                    previous.put(node, via);
+                }
+                finish.put(node, longest + node.getDurationNanos());
+                if (last == null || finish.get(node) > finish.get(last)) {
+                    last = node;
+                }
+            }
+            final List<Node> path = new ArrayList<>();
+            for (Node node = last; node != null; node = previous.get(node)) {
+                path.add(node);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+
+        /**
+         * @return Total run time of the critical path in nanoseconds
+         */
+        public long getCriticalPathNanos() {
+            long total = 0;
+            for (final Node node : this.getCriticalPath()) {
+                total += node.getDurationNanos();
+            }
+            return total;
+        }
+    }
+}
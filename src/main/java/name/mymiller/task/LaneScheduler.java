@@ -0,0 +1,395 @@
+package name.mymiller.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tasks from named lanes on a work stealing pool, sharing the workers
+ * between lanes by weight.
+ * <p>
+ * Tasks wait in their lane's queue and are handed to the pool only while fewer
+ * than parallelism tasks are running, so the lanes rather than the pool's queue
+ * decide what runs next. Each free worker goes to the lane chosen by smooth
+ * weighted round robin among the lanes with work waiting and below their
+ * concurrency cap: with weights 8, 4 and 1 a busy interactive lane gets 8 of
+ * every 13 workers, spread evenly rather than in bursts, and a lane alone gets
+ * every worker up to its cap. Tasks forking subtasks still steal work within the
+ * pool.
+ *
+ * @author jmiller
+ */
+public class LaneScheduler {
+    /**
+     * Work stealing pool running the tasks
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Most tasks running at once across all lanes
+     */
+    private final int parallelism;
+    /**
+     * Lanes in creation order, replaced on each change so readers need no lock
+     */
+    private volatile TaskLane[] lanes = new TaskLane[0];
+    /**
+     * Number of tasks handed to the pool and not yet finished, guarded by this
+     */
+    private int active;
+    /**
+     * True once shut down, guarded by this
+     */
+    private boolean shutdown;
+
+    /**
+     * Create a scheduler with its own work stealing pool.
+     *
+     * @param parallelism Most tasks running at once across all lanes
+     */
+    public LaneScheduler(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * Create a lane, or return the lane of that name if it exists.
+     *
+     * @param name           Name of the lane
+     * @param weight         Share of the workers relative to the other lanes
+     * @param maxConcurrency Most tasks of this lane running at once
+     * @return Lane of the name
+     */
+    public synchronized TaskLane createLane(final String name, final int weight, final int maxConcurrency) {
+        final TaskLane existing = this.getLane(name);
+        if (existing != null) {
+            return existing;
+        }
+        final TaskLane lane = new TaskLane(Objects.requireNonNull(name, "name may not be null"), weight,
+                maxConcurrency);
+        final TaskLane[] grown = Arrays.copyOf(this.lanes, this.lanes.length + 1);
+        grown[this.lanes.length] = lane;
+        this.lanes = grown;
+        return lane;
+    }
+
+    /**
+     * @param name Name of the lane
+     * @return Lane of the name, or null if absent.
+     */
+    public TaskLane getLane(final String name) {
+        for (final TaskLane lane : this.lanes) {
+            if (lane.getName().equals(name)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Lanes in creation order
+     */
+    public List<TaskLane> getLanes() {
+        return List.of(this.lanes);
+    }
+
+    /**
+     * @param name Name of the lane
+     * @return Lane of the name
+     * @throws IllegalArgumentException if there is no lane of the name.
+     */
+    private TaskLane lane(final String name) {
+        final TaskLane lane = this.getLane(name);
+        if (lane == null) {
+            throw new IllegalArgumentException("No lane named: " + name);
+        }
+        return lane;
+    }
+
+    /**
+     * Submit a callable to a lane.
+     *
+     * @param lane     Name of the lane
+     * @param callable Executable unit to process
+     * @param <T>      Type of the result
+     * @return Future for the callable
+     */
+    public <T> Future<T> submit(final String lane, final Callable<T> callable) {
+        final LaneFuture<T> task = new LaneFuture<>(callable);
+        this.enqueue(this.lane(lane), task);
+        return task;
+    }
+
+    /**
+     * Submit a runnable to a lane.
+     *
+     * @param lane     Name of the lane
+     * @param runnable Runnable to process
+     * @return Future for the runnable
+     */
+    public Future<?> submit(final String lane, final Runnable runnable) {
+        final LaneFuture<?> task = new LaneFuture<>(Executors.callable(runnable));
+        this.enqueue(this.lane(lane), task);
+        return task;
+    }
+
+    /**
+     * Run a runnable from a lane, logging anything it throws.
+     *
+     * @param lane     Name of the lane
+     * @param runnable Runnable to process
+     */
+    public void execute(final String lane, final Runnable runnable) {
+        this.enqueue(this.lane(lane), Objects.requireNonNull(runnable, "runnable may not be null"));
+    }
+
+    /**
+     * @param lane     Lane of the task
+     * @param runnable Task to queue
+     */
+    private void enqueue(final TaskLane lane, final Runnable runnable) {
+        synchronized (this) {
+            if (this.shutdown) {
+                throw new RejectedExecutionException("Scheduler is shut down");
+            }
+            lane.queue.add(new LaneTask(runnable));
+            lane.queued.incrementAndGet();
+        }
+        lane.recordSubmitted();
+        this.dispatch();
+    }
+
+    /**
+     * Hand waiting tasks to the pool while workers are free. A task the pool
+     * refuses, once shut down by shutdownNow, is given back its counts and
+     * cancelled rather than left holding a worker.
+     */
+    private void dispatch() {
+        while (true) {
+            final TaskLane lane;
+            final LaneTask task;
+            synchronized (this) {
+                if (this.active >= this.parallelism) {
+                    return;
+                }
+                lane = this.select();
+                if (lane == null) {
+                    if (this.shutdown && this.active == 0) {
+                        this.pool.shutdown();
+                    }
+                    return;
+                }
+                task = lane.queue.poll();
+                lane.queued.decrementAndGet();
+                lane.running.incrementAndGet();
+                this.active++;
+            }
+            try {
+                this.pool.execute(() -> this.run(lane, task));
+            } catch (final RejectedExecutionException e) {
+                synchronized (this) {
+                    lane.running.decrementAndGet();
+                    this.active--;
+                }
+                if (task.runnable instanceof Future) {
+                    ((Future<?>) task.runnable).cancel(false);
+                } else {
+                    Logger.getLogger(this.getClass().getName()).log(Level.WARNING,
+                            "Task dropped from lane " + lane.getName() + " as the pool is shut down", e);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pick the next lane by smooth weighted round robin: every eligible lane gains
+     * its weight, the lane with the most is chosen and gives back the total. Must
+     * hold the monitor.
+     *
+     * @return Lane to run from, or null if none has runnable work.
+     */
+    private TaskLane select() {
+        TaskLane best = null;
+        int total = 0;
+        for (final TaskLane lane : this.lanes) {
+            if (lane.queued.get() > 0 && lane.running.get() < lane.getMaxConcurrency()) {
+                lane.currentWeight += lane.getWeight();
+                total += lane.getWeight();
+                if (best == null || lane.currentWeight > best.currentWeight) {
+                    best = lane;
+                }
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= total;
+        }
+        return best;
+    }
+
+    /**
+     * Run a task on a worker, recording its timings, then dispatch the next.
+     *
+     * @param lane Lane of the task
+     * @param task Task to run
+     */
+    private void run(final TaskLane lane, final LaneTask task) {
+        final long start = System.nanoTime();
+        lane.recordWait(start - task.enqueued);
+        boolean failed = true;
+        try {
+            task.runnable.run();
+            failed = task.runnable instanceof LaneFuture && ((LaneFuture<?>) task.runnable).failed;
+        } catch (final RuntimeException e) {
+            Logger.getLogger(this.getClass().getName()).log(Level.WARNING,
+                    "Task failed in lane " + lane.getName(), e);
+        } finally {
+            lane.recordRun(System.nanoTime() - start, failed);
+            synchronized (this) {
+                lane.running.decrementAndGet();
+                this.active--;
+            }
+            this.dispatch();
+        }
+    }
+
+    /**
+     * @return Most tasks running at once across all lanes
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * @return Number of tasks running
+     */
+    public synchronized int getActive() {
+        return this.active;
+    }
+
+    /**
+     * @return Number of tasks waiting across all lanes
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (final TaskLane lane : this.lanes) {
+            depth += lane.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Stop accepting tasks. Waiting and running tasks still finish, after which
+     * the pool shuts down.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            this.shutdown = true;
+        }
+        this.dispatch();
+    }
+
+    /**
+     * Stop accepting tasks, interrupt running tasks and return the tasks never
+     * started.
+     *
+     * @return Tasks that never commenced execution
+     */
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> waiting = new ArrayList<>();
+        synchronized (this) {
+            this.shutdown = true;
+            for (final TaskLane lane : this.lanes) {
+                LaneTask task;
+                while ((task = lane.queue.poll()) != null) {
+                    lane.queued.decrementAndGet();
+                    waiting.add(task.runnable);
+                }
+            }
+        }
+        this.pool.shutdownNow();
+        return waiting;
+    }
+
+    /**
+     * @return true once shutdown or shutdownNow has been called
+     */
+    public synchronized boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /**
+     * @return true once shut down and every task has finished
+     */
+    public boolean isTerminated() {
+        return this.pool.isTerminated();
+    }
+
+    /**
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the timeout argument
+     * @return true if every task finished and false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Task waiting in a lane with the time it was queued
+     */
+    static final class LaneTask {
+        /**
+         * Task to run
+         */
+        final Runnable runnable;
+        /**
+         * System.nanoTime when queued
+         */
+        final long enqueued = System.nanoTime();
+
+        /**
+         * @param runnable Task to run
+         */
+        LaneTask(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * Future of a submitted task, noting whether the task threw
+     *
+     * @param <T> Type of the result
+     */
+    private static final class LaneFuture<T> extends FutureTask<T> {
+        /**
+         * True if the task threw
+         */
+        private volatile boolean failed;
+
+        /**
+         * @param callable Task to run
+         */
+        LaneFuture(final Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void setException(final Throwable t) {
+            this.failed = true;
+            super.setException(t);
+        }
+    }
+}
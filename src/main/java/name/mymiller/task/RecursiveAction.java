@@ -3,12 +3,38 @@ package name.mymiller.task;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Divide and conquer task without a result. While split() holds the task breaks
+ * into sub-tasks, which are forked together and joined before postProcess();
+ * otherwise process() handles this piece directly.
+ * <p>
+ * By default a task splits while its size() exceeds the threshold given to the
+ * constructor.
+ */
 public abstract class RecursiveAction extends java.util.concurrent.RecursiveAction {
+    /**
+     * Largest size processed without splitting
+     */
+    private final long threshold;
 
     /**
-     * Constructor allowing direct subclassing
+     * Constructor allowing direct subclassing, splitting only where split() is
+     * overridden
      */
     protected RecursiveAction() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for tasks splitting by size
+     *
+     * @param threshold Largest size processed without splitting
+     */
+    protected RecursiveAction(final long threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.threshold = threshold;
     }
 
     /**
@@ -27,12 +53,29 @@ public abstract class RecursiveAction extends java.util.concurrent.RecursiveActi
 
     }
 
+    /**
+     * @return Largest size processed without splitting
+     */
+    public long getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Overwrite this method to report the amount of work in this task, compared
+     * against the threshold by split().
+     *
+     * @return default is 0
+     */
+    protected long size() {
+        return 0;
+    }
+
     /**
      * Overwrite this method to implement a check to split the work into smaller units.
-     * @return default is false
+     * @return default is true when size() exceeds the threshold
      */
     protected boolean split() {
-        return false;
+        return this.size() > this.threshold;
     }
 
     /**
@@ -40,7 +83,7 @@ public abstract class RecursiveAction extends java.util.concurrent.RecursiveActi
      * @return List of actions to break this action into.
      */
     protected List<RecursiveAction> createSubTasks() {
-        return Collections.EMPTY_LIST;
+        return Collections.emptyList();
     }
 
     /**
@@ -1,15 +1,48 @@
 package name.mymiller.task;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
 import java.util.stream.Stream;
 
+/**
+ * Divide and conquer task producing a Stream of results. While split() holds the
+ * task breaks into sub-tasks, which are forked together and their streams merged
+ * by combine(); otherwise process() computes the result of this piece directly.
+ * <p>
+ * By default a task splits while its size() exceeds the threshold given to the
+ * constructor, so a subclass describing its range of work through size() and
+ * createSubTasks() gets threshold based splitting without overriding split().
+ *
+ * @param <T> Type of the results
+ */
 public abstract class RecursiveFutureAction<T> extends RecursiveTask<Stream<T>> {
     /**
-     * Constructor allowing direct subclassing
+     * Largest size processed without splitting
+     */
+    private final long threshold;
+
+    /**
+     * Constructor allowing direct subclassing, splitting only where split() is
+     * overridden
      */
     protected RecursiveFutureAction() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for tasks splitting by size
+     *
+     * @param threshold Largest size processed without splitting
+     */
+    protected RecursiveFutureAction(final long threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.threshold = threshold;
     }
 
     /**
@@ -28,12 +61,29 @@ public abstract class RecursiveFutureAction<T> extends RecursiveTask<Stream<T>>
 
     }
 
+    /**
+     * @return Largest size processed without splitting
+     */
+    public long getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Overwrite this method to report the amount of work in this task, compared
+     * against the threshold by split().
+     *
+     * @return default is 0
+     */
+    protected long size() {
+        return 0;
+    }
+
     /**
      * Overwrite this method to implement a check to split the work into smaller units.
-     * @return default is false
+     * @return default is true when size() exceeds the threshold
      */
     protected boolean split() {
-        return false;
+        return this.size() > this.threshold;
     }
 
     /**
@@ -41,7 +91,7 @@ public abstract class RecursiveFutureAction<T> extends RecursiveTask<Stream<T>>
      * @return List of actions to break this action into.
      */
     protected Collection<RecursiveFutureAction<T>> createSubTasks() {
-        return Collections.EMPTY_LIST;
+        return Collections.emptyList();
     }
 
     /**
@@ -49,15 +99,43 @@ public abstract class RecursiveFutureAction<T> extends RecursiveTask<Stream<T>>
      */
     protected abstract T process();
 
+    /**
+     * Overwrite this method to merge the results of the sub-tasks differently,
+     * for example reducing them to a single value.
+     *
+     * @param results Streams of the sub-tasks, in the order createSubTasks() returned them
+     * @return default is the streams concatenated in order
+     */
+    protected Stream<T> combine(final List<Stream<T>> results) {
+        return results.stream().flatMap(stream -> stream);
+    }
+
+    /**
+     * Run this task on the fork join pool of the TaskManager and collect its
+     * results.
+     *
+     * @param collector Collector for the results
+     * @param <A>       Intermediate accumulation type of the collector
+     * @param <R>       Type of the collected result
+     * @return Collected results
+     */
+    public <A, R> R collect(final Collector<? super T, A, R> collector) {
+        return TaskManager.getInstance().invoke(this).collect(collector);
+    }
+
     @Override
     protected Stream<T> compute() {
 
-        Stream<T> stream = null;
+        final Stream<T> stream;
 
         this.preProcess();
         if(this.split()) {
-            Stream<RecursiveFutureAction<T>> stream1 = invokeAll(this.createSubTasks()).stream();
-
+            final Collection<RecursiveFutureAction<T>> subTasks = invokeAll(this.createSubTasks());
+            final List<Stream<T>> results = new ArrayList<>(subTasks.size());
+            for (final RecursiveFutureAction<T> subTask : subTasks) {
+                results.add(subTask.join());
+            }
+            stream = this.combine(results);
         } else {
             stream = Stream.of(this.process());
         }
@@ -0,0 +1,216 @@
+package name.mymiller.task;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named lane of work run by a LaneScheduler. The weight sets the lane's share of
+ * the workers while other lanes also have work waiting, and the concurrency cap
+ * bounds how many of its tasks run at once however idle the other lanes are.
+ * <p>
+ * The lane keeps its queue depth and how long its tasks waited and ran, so a
+ * backed up lane shows as growing wait times rather than as a slow system.
+ *
+ * @author jmiller
+ */
+public class TaskLane {
+    /**
+     * Name of the lane for latency sensitive work
+     */
+    public static final String INTERACTIVE = "interactive";
+    /**
+     * Name of the lane for ordinary work
+     */
+    public static final String NORMAL = "normal";
+    /**
+     * Name of the lane for batch work
+     */
+    public static final String BULK = "bulk";
+
+    /**
+     * Name of the lane
+     */
+    private final String name;
+    /**
+     * Share of the workers relative to the other lanes
+     */
+    private final int weight;
+    /**
+     * Most tasks of this lane running at once
+     */
+    private final int maxConcurrency;
+    /**
+     * Tasks waiting to run
+     */
+    final Queue<LaneScheduler.LaneTask> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Number of tasks waiting
+     */
+    final AtomicInteger queued = new AtomicInteger();
+    /**
+     * Number of tasks running
+     */
+    final AtomicInteger running = new AtomicInteger();
+    /**
+     * Current weight for smooth weighted round robin, guarded by the scheduler
+     */
+    int currentWeight;
+    /**
+     * Number of tasks submitted
+     */
+    private final LongAdder submitted = new LongAdder();
+    /**
+     * Number of tasks finished
+     */
+    private final LongAdder completed = new LongAdder();
+    /**
+     * Number of tasks that threw
+     */
+    private final LongAdder failed = new LongAdder();
+    /**
+     * Total nanoseconds tasks waited in the queue
+     */
+    private final LongAdder waitNanos = new LongAdder();
+    /**
+     * Longest nanoseconds a task waited in the queue
+     */
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    /**
+     * Total nanoseconds tasks ran
+     */
+    private final LongAdder runNanos = new LongAdder();
+
+    /**
+     * @param name           Name of the lane
+     * @param weight         Share of the workers relative to the other lanes
+     * @param maxConcurrency Most tasks of this lane running at once
+     */
+    TaskLane(final String name, final int weight, final int maxConcurrency) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+        }
+        this.name = name;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Count a task added to the queue.
+     */
+    void recordSubmitted() {
+        this.submitted.increment();
+    }
+
+    /**
+     * @param nanos Nanoseconds a task waited before running
+     */
+    void recordWait(final long nanos) {
+        this.waitNanos.add(nanos);
+        this.maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @param nanos  Nanoseconds a task ran
+     * @param failed true if the task threw
+     */
+    void recordRun(final long nanos, final boolean failed) {
+        this.runNanos.add(nanos);
+        this.completed.increment();
+        if (failed) {
+            this.failed.increment();
+        }
+    }
+
+    /**
+     * @return Name of the lane
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return Share of the workers relative to the other lanes
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * @return Most tasks of this lane running at once
+     */
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * @return Number of tasks waiting to run
+     */
+    public int getQueueDepth() {
+        return this.queued.get();
+    }
+
+    /**
+     * @return Number of tasks running
+     */
+    public int getRunning() {
+        return this.running.get();
+    }
+
+    /**
+     * @return Number of tasks submitted
+     */
+    public long getSubmitted() {
+        return this.submitted.sum();
+    }
+
+    /**
+     * @return Number of tasks finished, including those that threw
+     */
+    public long getCompleted() {
+        return this.completed.sum();
+    }
+
+    /**
+     * @return Number of tasks that threw
+     */
+    public long getFailed() {
+        return this.failed.sum();
+    }
+
+    /**
+     * @return Mean nanoseconds a started task waited in the queue
+     */
+    public double getAverageWaitNanos() {
+        final long started = this.completed.sum() + this.running.get();
+        return started == 0 ? 0D : (double) this.waitNanos.sum() / started;
+    }
+
+    /**
+     * @return Longest nanoseconds a task waited in the queue
+     */
+    public long getMaxWaitNanos() {
+        return this.maxWaitNanos.get();
+    }
+
+    /**
+     * @return Mean nanoseconds a finished task ran
+     */
+    public double getAverageRunNanos() {
+        final long finished = this.completed.sum();
+        return finished == 0 ? 0D : (double) this.runNanos.sum() / finished;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskLane{" + "name='" + this.name + '\'' + ", weight=" + this.weight + ", maxConcurrency="
+                + this.maxConcurrency + ", queued=" + this.getQueueDepth() + ", running=" + this.getRunning()
+                + ", completed=" + this.getCompleted() + ", failed=" + this.getFailed() + ", averageWaitNanos="
+                + this.getAverageWaitNanos() + ", maxWaitNanos=" + this.getMaxWaitNanos() + '}';
+    }
+}
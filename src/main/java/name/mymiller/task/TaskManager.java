@@ -2,6 +2,7 @@ package name.mymiller.task;
 
 import name.mymiller.lang.singleton.SingletonInterface;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.*;
@@ -23,16 +24,19 @@ public class TaskManager implements SingletonInterface<TaskManager> {
      */
     protected ExecutorService pool = null;
     /**
-     * Thread pool for scheduled jobs
+     * Timing wheel holding scheduled jobs until due, then running them on the pool
      */
-    protected ScheduledExecutorService scheduledPool = null;
+    protected TimingWheelScheduler scheduledPool = null;
     /**
      * Map of named threads created.
      */
     private HashMap<String, Thread> namedThreads = null;
 
     private ForkJoinPool forkJoinPool = null;
-
+    /**
+     * Scheduler for work submitted to named lanes
+     */
+    protected LaneScheduler laneScheduler = null;
 
     /**
      * Constructor protected to limit instantiation.
@@ -56,7 +60,12 @@ public class TaskManager implements SingletonInterface<TaskManager> {
 
         this.forkJoinPool = ForkJoinPool.commonPool();
 
-        this.scheduledPool = Executors.newScheduledThreadPool(1);
+        this.scheduledPool = new TimingWheelScheduler(this.pool);
+
+        this.laneScheduler = new LaneScheduler(processors);
+        this.laneScheduler.createLane(TaskLane.INTERACTIVE, 8, processors);
+        this.laneScheduler.createLane(TaskLane.NORMAL, 4, processors);
+        this.laneScheduler.createLane(TaskLane.BULK, 1, Math.max(1, processors / 2));
     }
 
     /**
@@ -79,7 +88,7 @@ public class TaskManager implements SingletonInterface<TaskManager> {
     /**
      * Blocks until all tasks have completed execution after a shutdown request, or
      * the timeout occurs, or the current thread is interrupted, whichever happens
-     * first.
+     * first. The timing wheel, the lanes and the pool share the one timeout.
      *
      * @param timeout the maximum time to wait
      * @param unit    the time unit of the timeout argument
@@ -89,7 +98,10 @@ public class TaskManager implements SingletonInterface<TaskManager> {
      * @see ExecutorService#awaitTermination(long, TimeUnit)
      */
     public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
-        return this.pool.awaitTermination(timeout, unit);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return this.scheduledPool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                && this.laneScheduler.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                && this.pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -116,25 +128,26 @@ public class TaskManager implements SingletonInterface<TaskManager> {
     }
 
     /**
-     * Returns true if this executor has been shut down.
+     * Returns true if this executor has been shut down, which is true as soon as
+     * any of the timing wheel, the lanes or the pool has been.
      *
      * @return true if this executor has been shut down
      * @see ExecutorService#isShutdown()
      */
     public boolean isShutdown() {
-        return this.pool.isShutdown();
+        return this.scheduledPool.isShutdown() || this.laneScheduler.isShutdown() || this.pool.isShutdown();
     }
 
     /**
-     * Returns true if all tasks have completed following shut down. Note that
-     * isTerminated is never true unless either shutdown or shutdownNow was called
-     * first.
+     * Returns true if all tasks have completed following shut down, in the timing
+     * wheel, the lanes and the pool alike. Note that isTerminated is never true
+     * unless either shutdown or shutdownNow was called first.
      *
      * @return true if all tasks have completed following shut down
      * @see ExecutorService#isTerminated()
      */
     public boolean isTerminated() {
-        return this.pool.isTerminated();
+        return this.scheduledPool.isTerminated() && this.laneScheduler.isTerminated() && this.pool.isTerminated();
     }
 
     /**
@@ -202,11 +215,14 @@ public class TaskManager implements SingletonInterface<TaskManager> {
     }
 
     /**
-     * Stops all execution once all jobs complete.
+     * Stops all execution once all jobs complete. Delayed jobs already scheduled
+     * still run when due while periodic jobs stop, so the pool they run on is
+     * only shut down once the scheduler has handed over its last delayed job.
      */
     public void shutdown() {
-        this.pool.shutdown();
         this.scheduledPool.shutdown();
+        this.laneScheduler.shutdown();
+        this.scheduledPool.whenTerminated().thenRun(this.pool::shutdown);
     }
 
     /**
@@ -225,7 +241,9 @@ public class TaskManager implements SingletonInterface<TaskManager> {
      */
     public List<Runnable> shutdownNow() {
         this.scheduledPool.shutdownNow();
-        return this.pool.shutdownNow();
+        final List<Runnable> waiting = new ArrayList<>(this.laneScheduler.shutdownNow());
+        waiting.addAll(this.pool.shutdownNow());
+        return waiting;
     }
 
     /**
@@ -259,6 +277,72 @@ public class TaskManager implements SingletonInterface<TaskManager> {
         return this.pool.submit(runnable);
     }
 
+    /**
+     * Submits a callable to a lane, to run ahead of or behind other work by the
+     * lane's weight.
+     *
+     * @param lane     Name of the lane, such as TaskLane.INTERACTIVE
+     * @param callable Executable unit to process
+     * @return Future for the callable
+     * @throws IllegalArgumentException if there is no lane of the name.
+     */
+    public <T> Future<T> submit(String lane, Callable<T> callable) {
+        return this.laneScheduler.submit(lane, callable);
+    }
+
+    /**
+     * Submits a Runnable to a lane.
+     *
+     * @param lane     Name of the lane, such as TaskLane.BULK
+     * @param runnable Runnable to process
+     * @return Future for the Runnable.
+     * @throws IllegalArgumentException if there is no lane of the name.
+     */
+    public Future<?> submit(String lane, Runnable runnable) {
+        return this.laneScheduler.submit(lane, runnable);
+    }
+
+    /**
+     * Executes the name.mymiller.action asynchronously from a lane.
+     *
+     * @param lane   Name of the lane
+     * @param action Action to process
+     * @throws IllegalArgumentException if there is no lane of the name.
+     */
+    public void executeJob(String lane, final Action action) {
+        this.laneScheduler.execute(lane, action);
+    }
+
+    /**
+     * Create a lane, or return the lane of that name if it exists. The interactive,
+     * normal and bulk lanes exist from the start with weights 8, 4 and 1, bulk
+     * capped at half the processors.
+     *
+     * @param name           Name of the lane
+     * @param weight         Share of the workers relative to the other lanes
+     * @param maxConcurrency Most tasks of the lane running at once
+     * @return Lane of the name
+     */
+    public TaskLane createLane(String name, int weight, int maxConcurrency) {
+        return this.laneScheduler.createLane(name, weight, maxConcurrency);
+    }
+
+    /**
+     * @param name Name of the lane
+     * @return Lane of the name with its metrics, or null if absent.
+     */
+    public TaskLane getLane(String name) {
+        return this.laneScheduler.getLane(name);
+    }
+
+    /**
+     *
+     * @return Scheduler of the lanes
+     */
+    public LaneScheduler getLaneScheduler() {
+        return laneScheduler;
+    }
+
     /**
      *
      * @return Pool Executor
@@ -0,0 +1,626 @@
+package name.mymiller.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ScheduledExecutorService keeping its timers in a hierarchical timing wheel and
+ * running due tasks on another executor, so a slow task never delays other
+ * timers.
+ * <p>
+ * Time advances in ticks. The wheel has 6 levels of 64 slots: level 0 holds
+ * timers due within the next 64 ticks, one slot per tick, and each level above
+ * covers 64 times the span of the one below. A timer goes in the lowest level
+ * whose span reaches its deadline, and when the ticks reach a slot of a higher
+ * level its timers cascade down to the level below, so every timer is handled
+ * at most 6 times whatever the number of timers. Scheduling only appends to a
+ * lock free queue and cancelling unlinks the timer from its slot, both constant
+ * time, against the logarithmic inserts of a heap. Timers beyond the wheel's
+ * span, 64^6 ticks, wait in an overflow list placed again whenever the top
+ * level turns.
+ * <p>
+ * A single ticker thread owns the wheel. It sleeps while the wheel is empty, and
+ * fires each timer on the first tick at or after its deadline, so timers run up
+ * to one tick late.
+ *
+ * @author jmiller
+ */
+public class TimingWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    /**
+     * Bits of the tick consumed per level
+     */
+    private static final int slotBits = 6;
+    /**
+     * Slots per level
+     */
+    private static final int slots = 1 << TimingWheelScheduler.slotBits;
+    /**
+     * Levels of the wheel
+     */
+    private static final int levels = 6;
+    /**
+     * State while accepting timers
+     */
+    private static final int running = 0;
+    /**
+     * State after shutdown, running the timers left
+     */
+    private static final int shuttingDown = 1;
+    /**
+     * State after shutdownNow, dropping the timers left
+     */
+    private static final int stopped = 2;
+
+    /**
+     * Executor running due tasks
+     */
+    private final Executor executor;
+    /**
+     * Nanoseconds per tick
+     */
+    private final long tickNanos;
+    /**
+     * System.nanoTime when tick 0 began
+     */
+    private final long startNanos;
+    /**
+     * Timers scheduled and not yet placed in the wheel
+     */
+    private final Queue<Timer<?>> pending = new ConcurrentLinkedQueue<>();
+    /**
+     * Timers cancelled and not yet unlinked from the wheel
+     */
+    private final Queue<Timer<?>> cancelled = new ConcurrentLinkedQueue<>();
+    /**
+     * Slots of each level, owned by the ticker thread
+     */
+    private final Slot[][] wheel = new Slot[TimingWheelScheduler.levels][TimingWheelScheduler.slots];
+    /**
+     * Timers beyond the span of the wheel, owned by the ticker thread
+     */
+    private final Slot overflow = new Slot();
+    /**
+     * Released when the ticker thread exits
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    /**
+     * Completed when the ticker thread exits
+     */
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+    /**
+     * Thread advancing the wheel
+     */
+    private final Thread ticker;
+    /**
+     * Last tick processed, owned by the ticker thread
+     */
+    private long currentTick;
+    /**
+     * Number of timers in the wheel and overflow, owned by the ticker thread
+     */
+    private int count;
+    /**
+     * True once the periodic timers have been cancelled for shutdown, owned by
+     * the ticker thread
+     */
+    private boolean purged;
+    /**
+     * True while the ticker sleeps with an empty wheel
+     */
+    private volatile boolean idle;
+    /**
+     * Running, shutting down or stopped
+     */
+    private volatile int state = TimingWheelScheduler.running;
+
+    /**
+     * Create a scheduler with 1 millisecond ticks.
+     *
+     * @param executor Executor running due tasks
+     */
+    public TimingWheelScheduler(final Executor executor) {
+        this(executor, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param executor Executor running due tasks
+     * @param tick     Length of a tick, the precision of the timers
+     * @param unit     Unit of the tick
+     */
+    public TimingWheelScheduler(final Executor executor, final long tick, final TimeUnit unit) {
+        this.executor = Objects.requireNonNull(executor, "executor may not be null");
+        this.tickNanos = unit.toNanos(tick);
+        if (this.tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        for (final Slot[] level : this.wheel) {
+            for (int index = 0; index < level.length; index++) {
+                level[index] = new Slot();
+            }
+        }
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread(this::tick, "timing-wheel");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        return this.add(new Timer<>(Executors.callable(command, null), this.deadline(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        return this.add(new Timer<>(Objects.requireNonNull(callable), this.deadline(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period,
+                                                  final TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return this.add(new Timer<>(Executors.callable(command, null), this.deadline(initialDelay, unit),
+                unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay,
+                                                     final long delay, final TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive");
+        }
+        return this.add(new Timer<>(Executors.callable(command, null), this.deadline(initialDelay, unit),
+                -unit.toNanos(delay)));
+    }
+
+    /**
+     * Runs the command on the executor straight away.
+     *
+     * @param command Runnable to process
+     */
+    @Override
+    public void execute(final Runnable command) {
+        if (this.state != TimingWheelScheduler.running) {
+            throw new RejectedExecutionException("Scheduler is shut down");
+        }
+        this.executor.execute(command);
+    }
+
+    /**
+     * @param delay Delay from now
+     * @param unit  Unit of the delay
+     * @return System.nanoTime of the deadline
+     */
+    private long deadline(final long delay, final TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(delay, 0));
+    }
+
+    /**
+     * Queue a timer for the ticker to place.
+     *
+     * @param timer Timer to add
+     * @param <V>   Type of the result
+     * @return The timer
+     */
+    private <V> Timer<V> add(final Timer<V> timer) {
+        if (this.state != TimingWheelScheduler.running) {
+            throw new RejectedExecutionException("Scheduler is shut down");
+        }
+        this.pending.add(timer);
+        if (this.idle) {
+            LockSupport.unpark(this.ticker);
+        }
+        return timer;
+    }
+
+    /**
+     * Body of the ticker thread: place new timers, unlink cancelled ones and
+     * process every tick that has passed, then sleep until the next tick.
+     */
+    private void tick() {
+        try {
+            while (this.state != TimingWheelScheduler.stopped) {
+                final long elapsed = System.nanoTime() - this.startNanos;
+                final long target = elapsed / this.tickNanos;
+                if (this.state == TimingWheelScheduler.shuttingDown && !this.purged) {
+                    this.cancelPeriodic();
+                    this.purged = true;
+                }
+                this.drainCancelled();
+                if (this.count == 0) {
+                    this.currentTick = Math.max(this.currentTick, target);
+                }
+                if (this.count == 0 && this.pending.isEmpty()) {
+                    if (this.state == TimingWheelScheduler.shuttingDown) {
+                        break;
+                    }
+                    this.idle = true;
+                    if (this.pending.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    this.idle = false;
+                    continue;
+                }
+                this.drainPending();
+                while (this.currentTick < target && this.state != TimingWheelScheduler.stopped) {
+                    this.advance();
+                }
+                LockSupport.parkNanos(this, (target + 1) * this.tickNanos - elapsed);
+            }
+        } finally {
+            this.termination.complete(null);
+            this.terminated.countDown();
+        }
+    }
+
+    /**
+     * Cancel every periodic timer in the wheel once shutting down, queueing them
+     * to be unlinked. Periodic timers still pending are cancelled as they are
+     * placed.
+     */
+    private void cancelPeriodic() {
+        final List<Slot> all = new ArrayList<>();
+        for (final Slot[] level : this.wheel) {
+            all.addAll(Arrays.asList(level));
+        }
+        all.add(this.overflow);
+        for (final Slot slot : all) {
+            for (Timer<?> timer = slot.head; timer != null; timer = timer.next) {
+                if (timer.isPeriodic()) {
+                    timer.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Place the timers scheduled since the last tick.
+     */
+    private void drainPending() {
+        Timer<?> timer;
+        while ((timer = this.pending.poll()) != null) {
+            this.place(timer);
+        }
+    }
+
+    /**
+     * Unlink the timers cancelled since the last tick.
+     */
+    private void drainCancelled() {
+        Timer<?> timer;
+        while ((timer = this.cancelled.poll()) != null) {
+            if (timer.slot != null) {
+                timer.slot.unlink(timer);
+                this.count--;
+            }
+        }
+    }
+
+    /**
+     * Put a timer in the slot for its deadline, or dispatch it if already due.
+     *
+     * @param timer Timer to place
+     */
+    private void place(final Timer<?> timer) {
+        if (timer.isPeriodic() && this.state != TimingWheelScheduler.running) {
+            timer.cancel(false);
+        }
+        if (timer.isCancelled()) {
+            return;
+        }
+        final long tick = Math.max(0, -Math.floorDiv(this.startNanos - timer.deadline, this.tickNanos));
+        if (tick <= this.currentTick) {
+            this.dispatch(timer);
+            return;
+        }
+        final int level = (63 - Long.numberOfLeadingZeros(tick ^ this.currentTick)) / TimingWheelScheduler.slotBits;
+        final Slot slot = level >= TimingWheelScheduler.levels ? this.overflow
+                : this.wheel[level][(int) (tick >>> (level * TimingWheelScheduler.slotBits))
+                & (TimingWheelScheduler.slots - 1)];
+        slot.append(timer);
+        this.count++;
+    }
+
+    /**
+     * Advance one tick: cascade each higher level whose slot turns, top down,
+     * then fire the level 0 slot.
+     */
+    private void advance() {
+        this.currentTick++;
+        if ((this.currentTick & ((1L << (TimingWheelScheduler.levels * TimingWheelScheduler.slotBits)) - 1)) == 0) {
+            this.replace(this.overflow);
+        }
+        for (int level = TimingWheelScheduler.levels - 1; level > 0; level--) {
+            if ((this.currentTick & ((1L << (level * TimingWheelScheduler.slotBits)) - 1)) == 0) {
+                this.replace(this.wheel[level][(int) (this.currentTick >>> (level * TimingWheelScheduler.slotBits))
+                        & (TimingWheelScheduler.slots - 1)]);
+            }
+        }
+        final Slot slot = this.wheel[0][(int) this.currentTick & (TimingWheelScheduler.slots - 1)];
+        Timer<?> timer;
+        while ((timer = slot.poll()) != null) {
+            this.count--;
+            this.dispatch(timer);
+        }
+    }
+
+    /**
+     * Empty a slot, placing each of its timers again relative to the current tick.
+     *
+     * @param slot Slot to empty
+     */
+    private void replace(final Slot slot) {
+        Timer<?> timer;
+        while ((timer = slot.poll()) != null) {
+            this.count--;
+            this.place(timer);
+        }
+    }
+
+    /**
+     * Hand a due timer to the executor, cancelling it if the executor refuses.
+     *
+     * @param timer Timer to run
+     */
+    private void dispatch(final Timer<?> timer) {
+        if (timer.isCancelled()) {
+            return;
+        }
+        try {
+            this.executor.execute(timer);
+        } catch (final RejectedExecutionException e) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Stop accepting timers. Delayed tasks already scheduled still run, while
+     * periodic tasks are cancelled without running again, as
+     * ScheduledThreadPoolExecutor does by default. The ticker exits once no
+     * timers are left.
+     */
+    @Override
+    public void shutdown() {
+        if (this.state == TimingWheelScheduler.running) {
+            this.state = TimingWheelScheduler.shuttingDown;
+        }
+        LockSupport.unpark(this.ticker);
+    }
+
+    /**
+     * Stop accepting timers and cancel every timer left.
+     *
+     * @return Tasks that never ran
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        this.state = TimingWheelScheduler.stopped;
+        LockSupport.unpark(this.ticker);
+        try {
+            this.terminated.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<Runnable> waiting = new ArrayList<>();
+        Timer<?> timer;
+        while ((timer = this.pending.poll()) != null) {
+            waiting.add(timer);
+        }
+        for (final Slot[] level : this.wheel) {
+            for (final Slot slot : level) {
+                while ((timer = slot.poll()) != null) {
+                    waiting.add(timer);
+                }
+            }
+        }
+        while ((timer = this.overflow.poll()) != null) {
+            waiting.add(timer);
+        }
+        waiting.removeIf(task -> ((Timer<?>) task).isCancelled());
+        waiting.forEach(task -> ((Timer<?>) task).cancel(false));
+        this.count = 0;
+        return waiting;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.state != TimingWheelScheduler.running;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.terminated.await(timeout, unit);
+    }
+
+    /**
+     * Stage completing once the scheduler has terminated, after shutdown every
+     * remaining delayed task has been handed to the executor. Actions chained
+     * on it run on the ticker thread before awaitTermination returns, or at once
+     * if already terminated.
+     *
+     * @return Stage completing on termination
+     */
+    public CompletionStage<Void> whenTerminated() {
+        return this.termination.minimalCompletionStage();
+    }
+
+    /**
+     * Timers of one slot in a doubly linked list, owned by the ticker thread
+     */
+    private static final class Slot {
+        /**
+         * First timer of the slot
+         */
+        private Timer<?> head;
+        /**
+         * Last timer of the slot
+         */
+        private Timer<?> tail;
+
+        /**
+         * @param timer Timer to append
+         */
+        void append(final Timer<?> timer) {
+            timer.slot = this;
+            timer.previous = this.tail;
+            timer.next = null;
+            if (this.tail == null) {
+                this.head = timer;
+            } else {
+                this.tail.next = timer;
+            }
+            this.tail = timer;
+        }
+
+        /**
+         * @param timer Timer of this slot to remove
+         */
+        void unlink(final Timer<?> timer) {
+            if (timer.previous == null) {
+                this.head = timer.next;
+            } else {
+                timer.previous.next = timer.next;
+            }
+            if (timer.next == null) {
+                this.tail = timer.previous;
+            } else {
+                timer.next.previous = timer.previous;
+            }
+            timer.slot = null;
+            timer.previous = null;
+            timer.next = null;
+        }
+
+        /**
+         * @return First timer removed, or null if empty.
+         */
+        Timer<?> poll() {
+            final Timer<?> timer = this.head;
+            if (timer != null) {
+                this.unlink(timer);
+            }
+            return timer;
+        }
+    }
+
+    /**
+     * Scheduled task, linked into a slot while waiting
+     *
+     * @param <V> Type of the result
+     */
+    private final class Timer<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        /**
+         * Nanoseconds between runs: positive at a fixed rate, negative with a
+         * fixed delay, 0 to run once
+         */
+        private final long period;
+        /**
+         * System.nanoTime when the task is due
+         */
+        private volatile long deadline;
+        /**
+         * Slot holding the timer, owned by the ticker thread
+         */
+        private Slot slot;
+        /**
+         * Previous timer in the slot
+         */
+        private Timer<?> previous;
+        /**
+         * Next timer in the slot
+         */
+        private Timer<?> next;
+
+        /**
+         * @param callable Task to run
+         * @param deadline System.nanoTime when the task is due
+         * @param period   Nanoseconds between runs, see the field
+         */
+        Timer(final Callable<V> callable, final long deadline, final long period) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return this.period != 0;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(this.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * Run the task, and queue the next run of a periodic task unless it
+         * failed, was cancelled or the scheduler is shutting down.
+         */
+        @Override
+        public void run() {
+            if (!this.isPeriodic()) {
+                super.run();
+            } else if (this.runAndReset()) {
+                if (TimingWheelScheduler.this.state != TimingWheelScheduler.running) {
+                    this.cancel(false);
+                    return;
+                }
+                this.deadline = this.period > 0 ? this.deadline + this.period : System.nanoTime() - this.period;
+                TimingWheelScheduler.this.pending.add(this);
+                if (TimingWheelScheduler.this.idle) {
+                    LockSupport.unpark(TimingWheelScheduler.this.ticker);
+                }
+            }
+        }
+
+        /**
+         * Cancel the task, queueing it for the ticker to unlink from its slot.
+         *
+         * @param mayInterruptIfRunning true to interrupt the task if running
+         * @return false if the task could not be cancelled
+         */
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                TimingWheelScheduler.this.cancelled.add(this);
+            }
+            return cancelled;
+        }
+    }
+}
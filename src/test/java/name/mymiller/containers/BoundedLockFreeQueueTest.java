@@ -0,0 +1,100 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of BoundedLockFreeQueue
+ *
+ * @author jmiller
+ */
+class BoundedLockFreeQueueTest {
+    /**
+     * The capacity rounds up to a power of two and a full queue refuses offers.
+     */
+    @Test
+    void capacity() {
+        final BoundedLockFreeQueue<Integer> queue = new BoundedLockFreeQueue<>(5);
+        assertEquals(8, queue.capacity());
+        for (int index = 0; index < 8; index++) {
+            assertTrue(queue.offer(index));
+        }
+        assertFalse(queue.offer(8));
+        assertEquals(8, queue.size());
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(8));
+    }
+
+    /**
+     * Elements come out in order, also once the positions wrap around the buffer.
+     */
+    @Test
+    void fifoOrderAcrossWrap() {
+        final BoundedLockFreeQueue<Integer> queue = new BoundedLockFreeQueue<>(4);
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int index = 0; index < 3; index++) {
+                assertTrue(queue.offer(round * 3 + index));
+            }
+            for (int index = 0; index < 3; index++) {
+                assertEquals(next++, queue.poll());
+            }
+        }
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+    }
+
+    /**
+     * Batch offers stop once the queue is full.
+     */
+    @Test
+    void offerAllAndDrain() {
+        final BoundedLockFreeQueue<Integer> queue = new BoundedLockFreeQueue<>(4);
+        assertEquals(4, queue.offerAll(List.of(1, 2, 3, 4, 5)));
+        assertTrue(queue.contains(4));
+        assertFalse(queue.contains(5));
+        assertArrayEquals(new Integer[]{1, 2, 3, 4}, queue.toArray(new Integer[4]));
+
+        final List<Integer> drained = new ArrayList<>();
+        assertEquals(4, queue.drainTo(drained));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Invalid capacities and null elements are rejected.
+     */
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedLockFreeQueue<Integer>(0));
+        assertThrows(NullPointerException.class, () -> new BoundedLockFreeQueue<Integer>(2).offer(null));
+    }
+
+    /**
+     * Every element offered by several producers is polled exactly once by
+     * several consumers, with producers retrying while the queue is full.
+     */
+    @Test
+    void concurrentProducersAndConsumers() throws InterruptedException {
+        ContainerStress.run(new BoundedLockFreeQueue<>(64), 4, 4, 10_000, false);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs producers and consumers against a ConcurrentContainer, checking every
+ * element is taken exactly once.
+ *
+ * @author jmiller
+ */
+final class ContainerStress {
+    /**
+     * Not instantiated
+     */
+    private ContainerStress() {
+    }
+
+    /**
+     * Offer elements from producer threads while consumer threads poll them.
+     * Elements encode their producer and sequence, so each consumer also checks
+     * the elements of one producer arrive in order when the container is FIFO.
+     *
+     * @param container Container under test
+     * @param producers Number of producer threads
+     * @param consumers Number of consumer threads
+     * @param perProducer Elements offered by each producer
+     * @param lifo      true if the container is a stack, so order is not checked
+     * @throws InterruptedException if interrupted waiting for the threads
+     */
+    static void run(final ConcurrentContainer<Long> container, final int producers, final int consumers,
+                    final int perProducer, final boolean lifo) throws InterruptedException {
+        final int total = producers * perProducer;
+        final Set<Long> seen = ConcurrentHashMap.newKeySet();
+        final AtomicInteger taken = new AtomicInteger();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(producers + consumers);
+
+        for (int producer = 0; producer < producers; producer++) {
+            final long id = producer;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (long sequence = 0; sequence < perProducer; sequence++) {
+                        final Long element = (id << 32) | sequence;
+                        while (!container.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        for (int consumer = 0; consumer < consumers; consumer++) {
+            new Thread(() -> {
+                final long[] last = new long[producers];
+                Arrays.fill(last, -1);
+                try {
+                    start.await();
+                    while (taken.get() < total) {
+                        final Long element = container.poll();
+                        if (element == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        taken.incrementAndGet();
+                        if (!seen.add(element)) {
+                            failure.compareAndSet(null, "Taken twice: " + Long.toHexString(element));
+                        }
+                        final int producer = (int) (element >>> 32);
+                        final long sequence = element & 0xFFFFFFFFL;
+                        if (!lifo && sequence <= last[producer]) {
+                            failure.compareAndSet(null, "Out of order for producer " + producer);
+                        }
+                        last[producer] = sequence;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS), "Threads did not finish");
+        assertNull(failure.get(), failure.get());
+        assertEquals(total, seen.size());
+        assertTrue(container.isEmpty());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of LockFreeQueue
+ *
+ * @author jmiller
+ */
+class LockFreeQueueTest {
+    /**
+     * Elements come out in the order they went in.
+     */
+    @Test
+    void fifoOrder() {
+        final LockFreeQueue<Integer> queue = new LockFreeQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int index = 0; index < 10; index++) {
+            assertTrue(queue.offer(index));
+        }
+        assertEquals(10, queue.size());
+        assertEquals(0, queue.peek());
+        for (int index = 0; index < 10; index++) {
+            assertEquals(index, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * A batch is appended in order behind the existing elements.
+     */
+    @Test
+    void offerAllAndDrain() {
+        final LockFreeQueue<Integer> queue = new LockFreeQueue<>();
+        queue.offer(0);
+        assertEquals(3, queue.offerAll(List.of(1, 2, 3)));
+        assertTrue(queue.contains(2));
+        assertArrayEquals(new Integer[]{0, 1, 2, 3}, queue.toArray(new Integer[4]));
+
+        final List<Integer> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained, 2));
+        assertEquals(List.of(0, 1), drained);
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Null elements are rejected.
+     */
+    @Test
+    void rejectsNull() {
+        assertThrows(NullPointerException.class, () -> new LockFreeQueue<Integer>().offer(null));
+    }
+
+    /**
+     * Every element offered by several producers is polled exactly once by
+     * several consumers, in the order each producer offered them.
+     */
+    @Test
+    void concurrentProducersAndConsumers() throws InterruptedException {
+        final LockFreeQueue<Long> queue = new LockFreeQueue<>();
+        ContainerStress.run(queue, 4, 4, 10_000, false);
+    }
+}
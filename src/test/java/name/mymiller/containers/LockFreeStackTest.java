@@ -0,0 +1,76 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of LockFreeStack
+ *
+ * @author jmiller
+ */
+class LockFreeStackTest {
+    /**
+     * Elements come out in the reverse of the order they went in.
+     */
+    @Test
+    void lifoOrder() {
+        final LockFreeStack<Integer> stack = new LockFreeStack<>();
+        assertTrue(stack.isEmpty());
+        assertNull(stack.pop());
+        for (int index = 0; index < 10; index++) {
+            stack.push(index);
+        }
+        assertEquals(10, stack.size());
+        assertEquals(9, stack.peek());
+        for (int index = 9; index >= 0; index--) {
+            assertEquals(index, stack.pop());
+        }
+        assertNull(stack.poll());
+    }
+
+    /**
+     * A batch is pushed so its last element is on top, and draining takes the
+     * elements from the top down.
+     */
+    @Test
+    void pushAllAndDrain() {
+        final LockFreeStack<Integer> stack = new LockFreeStack<>();
+        stack.push(0);
+        assertEquals(3, stack.pushAll(List.of(1, 2, 3)));
+        assertTrue(stack.contains(0));
+        assertArrayEquals(new Integer[]{3, 2, 1, 0}, stack.toArray(new Integer[4]));
+
+        final List<Integer> drained = new ArrayList<>();
+        assertEquals(4, stack.drainTo(drained));
+        assertEquals(List.of(3, 2, 1, 0), drained);
+        assertTrue(stack.isEmpty());
+    }
+
+    /**
+     * Every element pushed by several threads is popped exactly once by several
+     * others.
+     */
+    @Test
+    void concurrentPushAndPop() throws InterruptedException {
+        ContainerStress.run(new LockFreeStack<>(), 4, 4, 10_000, true);
+    }
+}
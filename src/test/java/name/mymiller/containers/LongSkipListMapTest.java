@@ -0,0 +1,112 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of LongSkipListMap
+ *
+ * @author jmiller
+ */
+class LongSkipListMapTest {
+    /**
+     * @param entry Entry, or null
+     * @return Key of the entry, or null
+     */
+    private static Long key(final LongSkipListMap.Entry<String> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    /**
+     * Random puts and removes over the whole range of long, including the
+     * extremes, leave the same entries in the same order as a TreeMap.
+     */
+    @Test
+    void matchesTreeMap() {
+        final Random random = new Random(46);
+        final TreeMap<Long, String> expected = new TreeMap<>();
+        final LongSkipListMap<String> map = new LongSkipListMap<>();
+        final long[] keys = new long[2_000];
+        for (int index = 0; index < keys.length; index++) {
+            keys[index] = random.nextLong();
+        }
+        keys[0] = Long.MIN_VALUE;
+        keys[1] = Long.MAX_VALUE;
+        keys[2] = 0;
+        for (int index = 0; index < 20_000; index++) {
+            final long key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + index), map.put(key, "v" + index));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+
+        final List<Long> actual = new ArrayList<>();
+        map.forEach((key, value) -> actual.add(key));
+        assertEquals(new ArrayList<>(expected.keySet()), actual);
+        final List<Long> iterated = new ArrayList<>();
+        for (final LongSkipListMap.Entry<String> entry : map) {
+            iterated.add(entry.getKey());
+        }
+        assertEquals(actual, iterated);
+
+        for (final long key : keys) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.floorKey(key), key(map.floorEntry(key)));
+            assertEquals(expected.lowerKey(key), key(map.lowerEntry(key)));
+            assertEquals(expected.ceilingKey(key), key(map.ceilingEntry(key)));
+            assertEquals(expected.higherKey(key), key(map.higherEntry(key)));
+        }
+        assertEquals(expected.firstKey(), map.firstEntry().getKey());
+        assertEquals(expected.lastKey(), map.lastEntry().getKey());
+    }
+
+    /**
+     * Range scans, removeBefore and pollFirstEntry work in key order.
+     */
+    @Test
+    void rangesAndExpiry() {
+        final LongSkipListMap<String> map = new LongSkipListMap<>();
+        for (long key = -50; key < 50; key++) {
+            map.put(key, "v" + key);
+        }
+        final List<Long> range = new ArrayList<>();
+        map.forEachInRange(-2, 3, (key, value) -> range.add(key));
+        assertEquals(List.of(-2L, -1L, 0L, 1L, 2L), range);
+        final List<Long> iterated = new ArrayList<>();
+        for (final LongSkipListMap.Entry<String> entry : map.range(47, 100)) {
+            iterated.add(entry.getKey());
+        }
+        assertEquals(List.of(47L, 48L, 49L), iterated);
+
+        assertEquals(50, map.removeBefore(0));
+        assertEquals(0L, map.pollFirstEntry().getKey());
+        assertEquals(1L, map.firstEntry().getKey());
+        assertEquals(49, map.size());
+        assertEquals("v1", map.putIfAbsent(1, "x"));
+        assertThrows(NullPointerException.class, () -> map.put(5, null));
+    }
+}
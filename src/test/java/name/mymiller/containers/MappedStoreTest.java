@@ -0,0 +1,217 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of MappedStore
+ *
+ * @author jmiller
+ */
+class MappedStoreTest {
+    /**
+     * Directory of the segment files, new for each test
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * @param segmentSize Size of a new segment file
+     * @return Store of String keys and values in the test directory
+     * @throws IOException if the segments could not be opened.
+     */
+    private MappedStore<String, String> open(final int segmentSize) throws IOException {
+        return new MappedStore<>(this.directory, Codec.STRING, Codec.STRING, segmentSize);
+    }
+
+    /**
+     * @return Segment files of the store, in order
+     * @throws IOException if the directory could not be listed.
+     */
+    private List<Path> segments() throws IOException {
+        try (final Stream<Path> stream = Files.list(this.directory)) {
+            return stream.filter(path -> path.toString().endsWith(".seg")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Overwrite bytes of a segment file.
+     *
+     * @param segment Segment file
+     * @param offset  Offset of the bytes
+     * @param bytes   Bytes to write
+     * @throws IOException if the file could not be written.
+     */
+    private static void write(final Path segment, final long offset, final byte... bytes) throws IOException {
+        try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    /**
+     * Values can be stored, replaced and removed.
+     */
+    @Test
+    void putGetRemove() throws IOException {
+        try (final MappedStore<String, String> store = this.open(4096)) {
+            assertNull(store.get("a"));
+            store.put("a", "1");
+            store.put("b", "2");
+            store.put("a", "3");
+            assertEquals("3", store.get("a"));
+            assertEquals("2", store.get("b"));
+            assertEquals(2, store.size());
+            assertTrue(store.remove("b"));
+            assertFalse(store.remove("b"));
+            assertFalse(store.containsKey("b"));
+            assertEquals(1, store.size());
+        }
+    }
+
+    /**
+     * Reopening replays every segment, including records spread over several
+     * segment files, overwrites and tombstones.
+     */
+    @Test
+    void recoversAcrossSegments() throws IOException {
+        final Map<String, String> expected = new TreeMap<>();
+        try (final MappedStore<String, String> store = this.open(1024)) {
+            for (int index = 0; index < 500; index++) {
+                store.put("key" + (index % 200), "value" + index);
+                expected.put("key" + (index % 200), "value" + index);
+            }
+            for (int index = 0; index < 200; index += 3) {
+                store.remove("key" + index);
+                expected.remove("key" + index);
+            }
+        }
+        assertTrue(this.segments().size() > 1);
+
+        try (final MappedStore<String, String> store = this.open(1024)) {
+            final Map<String, String> actual = new TreeMap<>();
+            store.forEach(actual::put);
+            assertEquals(expected, actual);
+            assertEquals(expected.size(), store.size());
+        }
+    }
+
+    /**
+     * A record whose CRC does not match, as left by a write torn by a crash, ends
+     * the log. The records before it survive, and the next write replaces it.
+     */
+    @Test
+    void recoversAfterTornWrite() throws IOException {
+        try (final MappedStore<String, String> store = this.open(4096)) {
+            store.put("a", "1");
+            store.put("b", "2");
+            store.put("c", "3");
+        }
+        // each record is a 12 byte header, a 1 byte key and a 1 byte value
+        final Path segment = this.segments().get(0);
+        write(segment, 14 + 13, (byte) 'x');
+
+        try (final MappedStore<String, String> store = this.open(4096)) {
+            assertEquals("1", store.get("a"));
+            assertNull(store.get("b"));
+            assertNull(store.get("c"));
+            assertEquals(1, store.size());
+            store.put("d", "4");
+        }
+
+        try (final MappedStore<String, String> store = this.open(4096)) {
+            assertEquals("1", store.get("a"));
+            assertEquals("4", store.get("d"));
+            assertNull(store.get("c"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    /**
+     * A record whose header was never written ends the log.
+     */
+    @Test
+    void recoversAfterTornHeader() throws IOException {
+        try (final MappedStore<String, String> store = this.open(4096)) {
+            store.put("a", "1");
+            store.put("b", "2");
+        }
+        write(this.segments().get(0), 14, new byte[12]);
+
+        try (final MappedStore<String, String> store = this.open(4096)) {
+            assertEquals("1", store.get("a"));
+            assertNull(store.get("b"));
+            assertEquals(1, store.size());
+        }
+    }
+
+    /**
+     * Compaction keeps the live records, drops the garbage and deletes the old
+     * segment files.
+     */
+    @Test
+    void compact() throws IOException {
+        final List<Path> before;
+        try (final MappedStore<String, String> store = this.open(1024)) {
+            for (int index = 0; index < 300; index++) {
+                store.put("key" + (index % 10), "value" + index);
+            }
+            store.remove("key0");
+            assertTrue(store.getGarbageRatio() > 0.9);
+            before = this.segments();
+
+            store.compact();
+            assertEquals(0D, store.getGarbageRatio());
+            assertEquals(9, store.size());
+            assertEquals("value299", store.get("key9"));
+            assertNull(store.get("key0"));
+            for (final Path segment : before) {
+                assertFalse(Files.exists(segment), segment::toString);
+            }
+        }
+
+        try (final MappedStore<String, String> store = this.open(1024)) {
+            assertEquals(9, store.size());
+            assertEquals("value291", store.get("key1"));
+            assertNull(store.get("key0"));
+        }
+    }
+
+    /**
+     * A closed store refuses writes.
+     */
+    @Test
+    void closed() throws IOException {
+        final MappedStore<String, String> store = this.open(4096);
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.put("a", "1"));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static name.mymiller.containers.PersistentVectorTest.field;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of PersistentHashMap
+ *
+ * @author jmiller
+ */
+class PersistentHashMapTest {
+    /**
+     * Key whose hash is given, to force collisions
+     */
+    private static final class Colliding {
+        /**
+         * Name of the key
+         */
+        private final String name;
+        /**
+         * Hash of the key
+         */
+        private final int hash;
+
+        /**
+         * @param name Name of the key
+         * @param hash Hash of the key
+         */
+        Colliding(final String name, final int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Colliding && ((Colliding) obj).name.equals(this.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * The map holds the same entries as a HashMap given the same changes.
+     */
+    @Test
+    void matchesHashMap() {
+        final Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        for (int index = 0; index < 20_000; index++) {
+            map = map.put(index % 7_000, index);
+            expected.put(index % 7_000, index);
+        }
+        for (int index = 0; index < 7_000; index += 2) {
+            map = map.remove(index);
+            expected.remove(index);
+        }
+        assertEquals(expected.size(), map.size());
+        for (int index = 0; index < 7_000; index++) {
+            assertEquals(expected.get(index), map.get(index));
+        }
+        final Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+        assertEquals(map, PersistentHashMap.from(expected));
+        assertEquals(map.hashCode(), PersistentHashMap.from(expected).hashCode());
+    }
+
+    /**
+     * Keys with the same hash are kept apart, and removing them all empties the
+     * map.
+     */
+    @Test
+    void collisions() {
+        PersistentHashMap<Colliding, String> map = PersistentHashMap.empty();
+        for (int index = 0; index < 10; index++) {
+            map = map.put(new Colliding("key" + index, 42), "value" + index);
+        }
+        assertEquals(10, map.size());
+        assertEquals("value3", map.get(new Colliding("key3", 42)));
+        assertNull(map.get(new Colliding("key10", 42)));
+        for (int index = 0; index < 10; index++) {
+            map = map.remove(new Colliding("key" + index, 42));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Deriving a version leaves the original unchanged, and removing a missing key
+     * returns the same map.
+     */
+    @Test
+    void versionsAreIndependent() {
+        final PersistentHashMap<String, Integer> original = PersistentHashMap.<String, Integer>empty()
+                .put("a", 1).put("b", 2);
+        final PersistentHashMap<String, Integer> changed = original.put("a", 3).remove("b").put("c", 4);
+        assertEquals(1, original.get("a"));
+        assertEquals(2, original.get("b"));
+        assertFalse(original.containsKey("c"));
+        assertEquals(3, changed.get("a"));
+        assertFalse(changed.containsKey("b"));
+        assertEquals(4, changed.getOrDefault("c", 0));
+        assertSame(original, original.remove("z"));
+        assertThrows(NullPointerException.class, () -> original.put(null, 1));
+    }
+
+    /**
+     * Replacing a value copies only the path to its entry, sharing the other
+     * children of the root.
+     */
+    @Test
+    void structuralSharing() {
+        PersistentHashMap<Integer, Integer> original = PersistentHashMap.empty();
+        for (int index = 0; index < 5_000; index++) {
+            original = original.put(index, index);
+        }
+        final PersistentHashMap<Integer, Integer> changed = original.put(0, -1);
+
+        final Object[] before = (Object[]) field(field(original, "root"), "array");
+        final Object[] after = (Object[]) field(field(changed, "root"), "array");
+        assertEquals(before.length, after.length);
+        int shared = 0;
+        for (int index = 1; index < before.length; index += 2) {
+            if (before[index] == after[index]) {
+                shared++;
+            }
+        }
+        assertEquals(before.length / 2 - 1, shared);
+        assertEquals(0, original.get(0));
+        assertEquals(-1, changed.get(0));
+    }
+
+    /**
+     * A builder changes its own nodes in place, without touching the map it
+     * started from or the maps it built.
+     */
+    @Test
+    void builder() {
+        final PersistentHashMap<String, Integer> original = PersistentHashMap.<String, Integer>empty().put("a", 1);
+        final PersistentHashMap.Builder<String, Integer> builder = original.toBuilder();
+        for (int index = 0; index < 1_000; index++) {
+            builder.put("key" + index, index);
+        }
+        builder.remove("a");
+        final PersistentHashMap<String, Integer> built = builder.build();
+        builder.put("key0", -1);
+
+        assertEquals(1, original.get("a"));
+        assertEquals(1, original.size());
+        assertEquals(1_000, built.size());
+        assertEquals(0, built.get("key0"));
+        assertEquals(-1, builder.build().get("key0"));
+    }
+}
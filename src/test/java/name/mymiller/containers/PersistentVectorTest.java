@@ -0,0 +1,145 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of PersistentVector
+ *
+ * @author jmiller
+ */
+class PersistentVectorTest {
+    /**
+     * Read a private field, to check which arrays versions share.
+     *
+     * @param object Object holding the field
+     * @param name   Name of the field
+     * @return Value of the field
+     */
+    static Object field(final Object object, final String name) {
+        try {
+            final Field field = object.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(object);
+        } catch (final ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @param size Number of elements
+     * @return Vector of 0 to size - 1, built by appending one at a time
+     */
+    private static PersistentVector<Integer> range(final int size) {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int index = 0; index < size; index++) {
+            vector = vector.append(index);
+        }
+        return vector;
+    }
+
+    /**
+     * Appending grows the tree through several levels and keeps every element in
+     * place; removing from the end shrinks it again.
+     */
+    @Test
+    void appendAndRemoveLast() {
+        PersistentVector<Integer> vector = PersistentVectorTest.range(40_000);
+        assertEquals(40_000, vector.size());
+        for (int index = 0; index < vector.size(); index++) {
+            assertEquals(index, vector.get(index));
+        }
+        while (vector.size() > 0) {
+            assertEquals(vector.size() - 1, vector.get(vector.size() - 1));
+            vector = vector.removeLast();
+        }
+        assertTrue(vector.isEmpty());
+        assertThrows(IllegalStateException.class, vector::removeLast);
+        assertThrows(IndexOutOfBoundsException.class, () -> PersistentVector.of(1).get(1));
+    }
+
+    /**
+     * Deriving a version leaves the original unchanged.
+     */
+    @Test
+    void versionsAreIndependent() {
+        final PersistentVector<Integer> original = PersistentVectorTest.range(1_000);
+        final PersistentVector<Integer> changed = original.set(10, -1).set(999, -2).append(1_000);
+        assertEquals(10, original.get(10));
+        assertEquals(999, original.get(999));
+        assertEquals(1_000, original.size());
+        assertEquals(-1, changed.get(10));
+        assertEquals(-2, changed.get(999));
+        assertEquals(1_001, changed.size());
+        assertNotEquals(original, changed);
+        assertEquals(original, PersistentVector.from(original));
+        assertEquals(original.hashCode(), PersistentVector.from(original).hashCode());
+    }
+
+    /**
+     * Setting an element copies only its path, appending to a tail with room
+     * copies only the tail, and both share everything else.
+     */
+    @Test
+    void structuralSharing() {
+        final PersistentVector<Integer> original = PersistentVectorTest.range(2_000);
+
+        final PersistentVector<Integer> set = original.set(0, -1);
+        assertSame(field(original, "tail"), field(set, "tail"));
+        final Object[] before = (Object[]) field(field(original, "root"), "array");
+        final Object[] after = (Object[]) field(field(set, "root"), "array");
+        assertNotSame(before[0], after[0]);
+        for (int index = 1; index < before.length; index++) {
+            assertSame(before[index], after[index]);
+        }
+
+        final PersistentVector<Integer> appended = original.append(2_000);
+        assertSame(field(original, "root"), field(appended, "root"));
+    }
+
+    /**
+     * A builder changes its own arrays in place, without touching the vector it
+     * started from or the vectors it built.
+     */
+    @Test
+    void builder() {
+        final PersistentVector<Integer> original = PersistentVectorTest.range(100);
+        final PersistentVector.Builder<Integer> builder = original.toBuilder();
+        builder.set(0, -1).addAll(IntStream.range(100, 5_000).boxed()::iterator);
+        final PersistentVector<Integer> built = builder.build();
+        builder.set(1, -2).add(5_000);
+
+        assertEquals(0, original.get(0));
+        assertEquals(100, original.size());
+        assertEquals(-1, built.get(0));
+        assertEquals(1, built.get(1));
+        assertEquals(5_000, built.size());
+        assertEquals(-2, builder.build().get(1));
+
+        final List<Integer> elements = new ArrayList<>();
+        built.forEach(elements::add);
+        assertEquals(5_000, elements.size());
+        assertEquals(4_999, elements.get(4_999));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of SkipListMap
+ *
+ * @author jmiller
+ */
+class SkipListMapTest {
+    /**
+     * @param entries Entries to copy
+     * @return Keys of the entries, in iteration order
+     */
+    private static List<Integer> keys(final Iterable<Map.Entry<Integer, String>> entries) {
+        final List<Integer> keys = new ArrayList<>();
+        for (final Map.Entry<Integer, String> entry : entries) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Random puts and removes leave the same entries, in the same order, as a
+     * TreeMap, and the navigation methods agree with it.
+     */
+    @Test
+    void matchesTreeMap() {
+        final Random random = new Random(46);
+        final TreeMap<Integer, String> expected = new TreeMap<>();
+        final SkipListMap<Integer, String> map = new SkipListMap<>();
+        for (int index = 0; index < 20_000; index++) {
+            final int key = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + index), map.put(key, "v" + index));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.keySet()), SkipListMapTest.keys(map));
+
+        for (int key = -2_600; key <= 2_600; key += 7) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.floorKey(key), key(map.floorEntry(key)));
+            assertEquals(expected.lowerKey(key), key(map.lowerEntry(key)));
+            assertEquals(expected.ceilingKey(key), key(map.ceilingEntry(key)));
+            assertEquals(expected.higherKey(key), key(map.higherEntry(key)));
+        }
+        assertEquals(expected.firstKey(), map.firstEntry().getKey());
+        assertEquals(expected.lastKey(), map.lastEntry().getKey());
+        assertEquals(new ArrayList<>(expected.subMap(-100, 100).keySet()), SkipListMapTest.keys(map.range(-100, 100)));
+    }
+
+    /**
+     * @param entry Entry, or null
+     * @return Key of the entry, or null
+     */
+    private static Integer key(final Map.Entry<Integer, String> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    /**
+     * A Comparator orders the keys in its place of their natural order.
+     */
+    @Test
+    void comparatorOrder() {
+        final SkipListMap<String, String> map = new SkipListMap<>(Comparator.reverseOrder());
+        for (final String key : List.of("b", "d", "a", "c")) {
+            map.put(key, key.toUpperCase());
+        }
+        final List<String> keys = new ArrayList<>();
+        map.forEach((key, value) -> keys.add(key));
+        assertEquals(List.of("d", "c", "b", "a"), keys);
+        assertEquals("c", map.floorEntry("bb").getKey());
+        assertEquals("D", map.pollFirstEntry().getValue());
+        assertEquals(3, map.size());
+    }
+
+    /**
+     * removeBefore drops exactly the keys below the bound, and putIfAbsent keeps
+     * an existing value.
+     */
+    @Test
+    void removeBeforeAndPutIfAbsent() {
+        final SkipListMap<Integer, String> map = new SkipListMap<>();
+        for (int key = 0; key < 100; key++) {
+            map.put(key, "v" + key);
+        }
+        assertEquals(40, map.removeBefore(40));
+        assertEquals(60, map.size());
+        assertEquals(40, map.firstEntry().getKey());
+        assertNull(map.get(39));
+        assertEquals("v40", map.putIfAbsent(40, "x"));
+        assertNull(map.putIfAbsent(10, "x"));
+        assertEquals(10, map.firstEntry().getKey());
+
+        final List<Integer> range = new ArrayList<>();
+        map.forEachInRange(null, 42, (key, value) -> range.add(key));
+        assertEquals(List.of(10, 40, 41), range);
+        assertThrows(NullPointerException.class, () -> map.put(null, "x"));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.firstEntry());
+    }
+
+    /**
+     * Readers iterating without locks while a writer adds and removes keys always
+     * see the keys in strictly ascending order.
+     */
+    @Test
+    void readersSeeOrderDuringWrites() throws InterruptedException {
+        final SkipListMap<Integer, String> map = new SkipListMap<>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final Thread reader = new Thread(() -> {
+            while (running.get()) {
+                Integer previous = null;
+                for (final Map.Entry<Integer, String> entry : map) {
+                    if (previous != null && entry.getKey() <= previous) {
+                        failure.compareAndSet(null, previous + " before " + entry.getKey());
+                    }
+                    previous = entry.getKey();
+                }
+            }
+        });
+        reader.start();
+        final Random random = new Random(7);
+        for (int index = 0; index < 50_000; index++) {
+            final int key = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                map.put(key, "v");
+            } else {
+                map.remove(key);
+            }
+        }
+        running.set(false);
+        reader.join();
+        assertNull(failure.get(), failure.get());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of SkipListSet
+ *
+ * @author jmiller
+ */
+class SkipListSetTest {
+    /**
+     * Elements are kept once each, in order, and navigated like a NavigableSet.
+     */
+    @Test
+    void orderAndNavigation() {
+        final SkipListSet<String> set = new SkipListSet<>();
+        for (final String element : List.of("pear", "apple", "fig", "apple", "kiwi")) {
+            set.add(element);
+        }
+        assertEquals(4, set.size());
+        final List<String> elements = new ArrayList<>();
+        set.forEach(elements::add);
+        assertEquals(List.of("apple", "fig", "kiwi", "pear"), elements);
+        assertEquals("apple", set.first());
+        assertEquals("pear", set.last());
+        assertEquals("fig", set.floor("grape"));
+        assertEquals("kiwi", set.ceiling("grape"));
+        assertEquals("apple", set.lower("fig"));
+        assertEquals("kiwi", set.higher("fig"));
+
+        final List<String> range = new ArrayList<>();
+        set.range("b", "l").forEach(range::add);
+        assertEquals(List.of("fig", "kiwi"), range);
+
+        assertFalse(set.add("fig"));
+        assertTrue(set.remove("fig"));
+        assertFalse(set.contains("fig"));
+        assertEquals(1, set.removeBefore("kiwi"));
+        assertEquals("kiwi", set.pollFirst());
+        assertEquals(List.of("pear"), List.of(set.first()));
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+}
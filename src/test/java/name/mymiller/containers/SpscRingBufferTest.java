@@ -0,0 +1,71 @@
+/*
+  Copyright 2018 MyMiller Consulting LLC.
+  <p>
+  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+  use this file except in compliance with the License.  You may obtain a copy
+  of the License at
+  <p>
+  http://www.apache.org/licenses/LICENSE-2.0
+  <p>
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+  License for the specific language governing permissions and limitations under
+  the License.
+ */
+package name.mymiller.containers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of SpscRingBuffer
+ *
+ * @author jmiller
+ */
+class SpscRingBufferTest {
+    /**
+     * A full buffer refuses offers until an element is polled.
+     */
+    @Test
+    void capacity() {
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertEquals(4, buffer.offerAll(List.of(0, 1, 2, 3, 4)));
+        assertFalse(buffer.offer(4));
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertArrayEquals(new Integer[]{1, 2, 3, 4}, buffer.toArray(new Integer[4]));
+    }
+
+    /**
+     * Elements come out in order, also once the positions wrap around the buffer.
+     */
+    @Test
+    void fifoOrderAcrossWrap() {
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        final List<Integer> drained = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            buffer.offerAll(List.of(round * 3, round * 3 + 1, round * 3 + 2));
+            assertEquals(round * 3, buffer.peek());
+            assertEquals(3, buffer.drainTo(drained, 3));
+        }
+        for (int index = 0; index < drained.size(); index++) {
+            assertEquals(index, drained.get(index));
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Every element offered by the producer thread is polled once, in order, by
+     * the consumer thread.
+     */
+    @Test
+    void producerAndConsumer() throws InterruptedException {
+        ContainerStress.run(new SpscRingBuffer<>(64), 1, 1, 100_000, false);
+    }
+}
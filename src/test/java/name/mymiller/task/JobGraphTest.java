@@ -0,0 +1,226 @@
+package name.mymiller.task;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of JobGraph
+ */
+class JobGraphTest {
+    /**
+     * Executor running the actions
+     */
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    /**
+     * Names of the actions in the order they ran
+     */
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+
+    /**
+     * Stop the executor after each test
+     */
+    @AfterEach
+    void stopExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @param name Name of the action
+     * @param body Work of the action
+     * @return Action recording its name once its work is done
+     */
+    private Action action(final String name, final Runnable body) {
+        return new Action() {
+            @Override
+            protected void process() {
+                body.run();
+                JobGraphTest.this.ran.add(name);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    /**
+     * @param name Name of the action
+     * @return Action doing nothing but record its name
+     */
+    private Action action(final String name) {
+        return this.action(name, () -> { });
+    }
+
+    /**
+     * Sorting puts every action after its dependencies, and takes in
+     * dependencies declared after their dependent was added.
+     */
+    @Test
+    void sortFollowsDependencies() {
+        final Action a = this.action("a");
+        final Action b = this.action("b").dependsOn(a);
+        final Action c = this.action("c").dependsOn(a);
+        final Action d = this.action("d").dependsOn(b, c);
+        final JobGraph graph = new JobGraph().add(d);
+        final Action late = this.action("late");
+        c.dependsOn(late);
+
+        final List<Action> sorted = graph.sort();
+        assertEquals(5, sorted.size());
+        assertTrue(sorted.indexOf(a) < sorted.indexOf(b));
+        assertTrue(sorted.indexOf(a) < sorted.indexOf(c));
+        assertTrue(sorted.indexOf(late) < sorted.indexOf(c));
+        assertTrue(sorted.indexOf(b) < sorted.indexOf(d));
+        assertTrue(sorted.indexOf(c) < sorted.indexOf(d));
+    }
+
+    /**
+     * A cycle is refused, naming the actions on it.
+     */
+    @Test
+    void detectsCycles() {
+        final Action a = this.action("a");
+        final Action b = this.action("b").dependsOn(a);
+        final Action c = this.action("c").dependsOn(b);
+        final Action outside = this.action("outside").dependsOn(c);
+        a.dependsOn(c);
+
+        final JobGraph graph = new JobGraph().addAll(outside);
+        final IllegalStateException e = assertThrows(IllegalStateException.class, graph::sort);
+        assertTrue(e.getMessage().contains("a") && e.getMessage().contains("b") && e.getMessage().contains("c"),
+                e.getMessage());
+        assertFalse(e.getMessage().contains("outside"), e.getMessage());
+
+        final Action self = this.action("self");
+        self.dependsOn(self);
+        assertThrows(IllegalStateException.class, () -> new JobGraph().add(self).execute(this.executor));
+    }
+
+    /**
+     * Every action runs after its dependencies, and the critical path follows
+     * the slowest chain.
+     */
+    @Test
+    void runsInDependencyOrder() {
+        final Action a = this.action("a");
+        final Action slow = this.action("slow", () -> JobGraphTest.sleep(50)).dependsOn(a);
+        final Action fast = this.action("fast").dependsOn(a);
+        final Action d = this.action("d").dependsOn(slow, fast);
+
+        final JobGraph.Execution execution = new JobGraph().add(d).execute(this.executor).await();
+        assertTrue(execution.isSuccessful());
+        assertEquals(4, this.ran.size());
+        assertEquals("a", this.ran.get(0));
+        assertEquals("d", this.ran.get(3));
+        assertEquals(List.of(a, slow, d), execution.getCriticalPath().stream().map(JobGraph.Node::getAction)
+                .collect(Collectors.toList()));
+        assertTrue(execution.getCriticalPathNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(execution.getElapsedNanos() >= execution.getCriticalPathNanos());
+    }
+
+    /**
+     * A failure skips the actions depending on it, while independent branches
+     * still run.
+     */
+    @Test
+    void failureSkipsDependents() {
+        final IllegalArgumentException failure = new IllegalArgumentException("failed");
+        final Action a = this.action("a");
+        final Action broken = this.action("broken", () -> {
+            throw failure;
+        }).dependsOn(a);
+        final Action after = this.action("after").dependsOn(broken);
+        final Action last = this.action("last").dependsOn(after);
+        final Action independent = this.action("independent").dependsOn(a);
+
+        final JobGraph.Execution execution = new JobGraph().addAll(last, independent).execute(this.executor).await();
+        assertFalse(execution.isSuccessful());
+        assertTrue(execution.getFuture().isCompletedExceptionally());
+        assertEquals(JobGraph.State.COMPLETED, execution.getNode(a).getState());
+        assertEquals(JobGraph.State.FAILED, execution.getNode(broken).getState());
+        assertSame(failure, execution.getNode(broken).getError());
+        assertEquals(JobGraph.State.SKIPPED, execution.getNode(after).getState());
+        assertEquals(JobGraph.State.SKIPPED, execution.getNode(last).getState());
+        assertEquals(JobGraph.State.COMPLETED, execution.getNode(independent).getState());
+        assertFalse(this.ran.contains("after") || this.ran.contains("last"));
+    }
+
+    /**
+     * Cancelling lets running actions finish and cancels every action not yet
+     * started, which then never runs.
+     */
+    @Test
+    void cancelStopsPendingActions() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Action blocking = this.action("blocking", () -> {
+            started.countDown();
+            JobGraphTest.await(release);
+        });
+        final Action next = this.action("next").dependsOn(blocking);
+        final Action last = this.action("last").dependsOn(next);
+
+        final JobGraph.Execution execution = new JobGraph().add(last).execute(this.executor);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        execution.cancel();
+        release.countDown();
+        execution.await();
+
+        assertEquals(JobGraph.State.COMPLETED, execution.getNode(blocking).getState());
+        assertEquals(JobGraph.State.CANCELLED, execution.getNode(next).getState());
+        assertEquals(JobGraph.State.CANCELLED, execution.getNode(last).getState());
+        assertEquals(List.of("blocking"), this.ran);
+    }
+
+    /**
+     * An action the executor refuses fails with the rejection, and its
+     * dependents are skipped.
+     */
+    @Test
+    void rejectionFailsTheAction() {
+        final Action a = this.action("a");
+        final Action b = this.action("b").dependsOn(a);
+        final JobGraph.Execution execution = new JobGraph().add(b).execute(command -> {
+            throw new RejectedExecutionException("refused");
+        }).await();
+
+        assertEquals(JobGraph.State.FAILED, execution.getNode(a).getState());
+        assertInstanceOf(RejectedExecutionException.class, execution.getNode(a).getError());
+        assertEquals(JobGraph.State.SKIPPED, execution.getNode(b).getState());
+        assertTrue(this.ran.isEmpty());
+    }
+
+    /**
+     * @param millis Milliseconds to sleep
+     */
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param latch Latch to wait on
+     */
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
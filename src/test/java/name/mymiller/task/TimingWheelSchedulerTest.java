@@ -0,0 +1,151 @@
+package name.mymiller.task;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of TimingWheelScheduler
+ */
+class TimingWheelSchedulerTest {
+    /**
+     * Executor running the due tasks
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Stop the executor after each test
+     */
+    @AfterEach
+    void stopExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * A delayed task runs once, no earlier than its delay, and its result is
+     * returned by the future.
+     */
+    @Test
+    void runsAfterDelay() throws Exception {
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor);
+        final long start = System.nanoTime();
+        final ScheduledFuture<Long> future = scheduler.schedule(System::nanoTime, 50, TimeUnit.MILLISECONDS);
+        final long ran = future.get(5, TimeUnit.SECONDS);
+        assertTrue(ran - start >= TimeUnit.MILLISECONDS.toNanos(50), "Ran early");
+        assertTrue(future.isDone());
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Timers fire in deadline order, whichever order they were scheduled in and
+     * whichever level of the wheel they were placed on.
+     */
+    @Test
+    void firesInDeadlineOrder() throws InterruptedException {
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor, 100, TimeUnit.MICROSECONDS);
+        final List<Integer> fired = new CopyOnWriteArrayList<>();
+        final int[] delays = {600, 5, 450, 0, 40, 120, 2};
+        final CountDownLatch done = new CountDownLatch(delays.length);
+        for (final int delay : delays) {
+            scheduler.schedule(() -> {
+                fired.add(delay);
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 2, 5, 40, 120, 450, 600), fired);
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A timer far enough out to sit on a higher level cascades down and still
+     * waits for its deadline.
+     */
+    @Test
+    void cascadesFromHigherLevels() throws Exception {
+        // with 100 microsecond ticks level 0 spans 6.4ms and level 1 409.6ms, so
+        // 500ms is placed on level 2
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor, 100, TimeUnit.MICROSECONDS);
+        final long start = System.nanoTime();
+        final ScheduledFuture<Long> future = scheduler.schedule(System::nanoTime, 500, TimeUnit.MILLISECONDS);
+        assertTrue(future.get(10, TimeUnit.SECONDS) - start >= TimeUnit.MILLISECONDS.toNanos(500), "Ran early");
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A cancelled timer never runs.
+     */
+    @Test
+    void cancel() throws InterruptedException {
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor);
+        final AtomicInteger runs = new AtomicInteger();
+        final ScheduledFuture<?> future = scheduler.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        final CountDownLatch later = new CountDownLatch(1);
+        scheduler.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A periodic task runs repeatedly until cancelled.
+     */
+    @Test
+    void fixedRate() throws InterruptedException {
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor);
+        final CountDownLatch runs = new CountDownLatch(5);
+        final ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(runs::countDown, 0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(runs.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * After shutdown delayed tasks still run, periodic tasks are cancelled, new
+     * tasks are refused, and the scheduler terminates once nothing is left.
+     */
+    @Test
+    void shutdownRunsDelayedTasks() throws Exception {
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor);
+        final ScheduledFuture<String> delayed = scheduler.schedule(() -> "ran", 100, TimeUnit.MILLISECONDS);
+        final ScheduledFuture<?> periodic = scheduler.scheduleWithFixedDelay(() -> { }, 10, 10, TimeUnit.MILLISECONDS);
+        scheduler.shutdown();
+
+        assertTrue(scheduler.isShutdown());
+        assertThrows(RejectedExecutionException.class, () -> scheduler.schedule(() -> { }, 1, TimeUnit.MILLISECONDS));
+        assertEquals("ran", delayed.get(5, TimeUnit.SECONDS));
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(scheduler.isTerminated());
+        assertTrue(periodic.isCancelled());
+        assertTrue(scheduler.whenTerminated().toCompletableFuture().isDone());
+    }
+
+    /**
+     * shutdownNow returns the tasks that never ran and cancels them.
+     */
+    @Test
+    void shutdownNowReturnsWaitingTasks() {
+        final TimingWheelScheduler scheduler = new TimingWheelScheduler(this.executor);
+        final ScheduledFuture<?> first = scheduler.schedule(() -> { }, 1, TimeUnit.HOURS);
+        scheduler.schedule(() -> { }, 2, TimeUnit.HOURS);
+        scheduler.schedule(() -> { }, 3, TimeUnit.HOURS).cancel(false);
+
+        assertEquals(2, scheduler.shutdownNow().size());
+        assertTrue(first.isCancelled());
+        assertTrue(scheduler.isTerminated());
+    }
+}